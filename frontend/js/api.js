@@ -1,11 +1,13 @@
-const API_BASE_URL = "http://localhost:8080/api";
+// Same origin when the pages are served by the application; Live Server (port 5500) talks to it cross-origin
+const API_BASE_URL = location.port === "5500" ? "http://localhost:8080/api" : "/api";
 
 async function apiRequest(endpoint, options = {}) {
     const token = localStorage.getItem("token");
 
     const headers = {
         "Content-Type": "application/json",
-        ...(token && { "Authorization": `Bearer ${token}` })
+        ...(token && { "Authorization": `Bearer ${token}` }),
+        ...options.headers
     };
 
     const response = await fetch(`${API_BASE_URL}${endpoint}`, {
@@ -14,6 +14,9 @@ const formatDate = (dateString) => new Date(dateString).toLocaleDateString('en-U
 
 // Global State
 let allExpenses = [];
+let visibleExpenses = [];
+// Ids matching the tag query in the filter panel, answered by the server; null when there is no tag query
+let tagMatches = null;
 let allCategories = [];
 let pieChart = null;
 let trendChart = null;
@@ -29,6 +32,7 @@ const elements = {
     filterCategory: document.getElementById("filterCategory"),
     filterStartDate: document.getElementById("filterStartDate"),
     filterEndDate: document.getElementById("filterEndDate"),
+    filterTags: document.getElementById("filterTags"),
     modal: document.getElementById("expenseModal"),
     categorySelect: document.getElementById("categorySelect"),
     addCategoryBtn: document.getElementById("addCategoryBtn"),
@@ -48,29 +52,24 @@ const elements = {
 };
 
 // --- 1. INITIALIZATION ---
+// Idempotency-Key of the create request being submitted from the expense form
+let pendingCreateKey = null;
+
+// Last change sequence seen from /sync; later refreshes only fetch what changed since then
+let syncSeq = 0;
+
 async function loadDashboard() {
     try {
         console.log("Loading Dashboard Data...");
 
-        const [expenses, globalCats, userCats] = await Promise.all([
-            apiRequest(`/expenses/user/${userId}`),
-            apiRequest(`/categories/global`),
-            apiRequest(`/categories/user/${userId}`)
+        syncSeq = 0;
+        // Snapshot and the bootstrap payload in parallel; the bootstrap saves the separate budget request
+        const [changes, bootstrap] = await Promise.all([
+            apiRequest(`/sync/user/${userId}?since=0`),
+            apiRequest(`/dashboard/user/${userId}`)
         ]);
-
-        // Merge Categories safely
-        const safeGlobal = Array.isArray(globalCats) ? globalCats : [];
-        const safeUser = Array.isArray(userCats) ? userCats : [];
-        allCategories = [...safeGlobal, ...safeUser];
-        allExpenses = expenses;
-
-        // Populate UI
-        populateCategoryDropdown(allCategories);
-        populateFilterDropdowns(allCategories, expenses);
-
-        applyFilters();
-        renderTrendChart(expenses);
-        loadBudgets();
+        applyChanges(changes);
+        renderDashboard(bootstrap.budgets);
 
     } catch (error) {
         console.error("Critical Error:", error);
@@ -81,37 +80,83 @@ async function loadDashboard() {
     }
 }
 
-// --- 2. BUDGET LOGIC ---
-async function loadBudgets() {
-    try {
-        const budgets = await apiRequest(`/expenses/budget/status/user/${userId}`);
+async function refreshChanges() {
+    const changes = await apiRequest(`/sync/user/${userId}?since=${syncSeq}`);
+    applyChanges(changes);
+    renderDashboard();
+}
 
-        if (!budgets || budgets.length === 0) {
-            elements.budgetList.innerHTML = `<p class="text-muted" style="font-size:13px; text-align:center;">No budgets set.</p>`;
-            return;
-        }
+function applyChanges(changes) {
+    // since=0 (or a compacted cursor) returns a full snapshot
+    if (syncSeq === 0 || changes.fullResync) {
+        allExpenses = [];
+        allCategories = [];
+    }
 
-        elements.budgetList.innerHTML = budgets.map(b => {
-            let colorClass = "";
-            if (b.percentage > 100) colorClass = "danger";
-            else if (b.percentage > 80) colorClass = "warning";
+    const deleted = Array.isArray(changes.deleted) ? changes.deleted : [];
+    const removedExpenses = new Set(deleted.filter(d => d.type === "EXPENSE").map(d => d.id));
+    const removedCategories = new Set(deleted.filter(d => d.type === "CATEGORY").map(d => d.id));
+    changes.expenses.forEach(e => removedExpenses.add(e.id));
+    changes.categories.forEach(c => removedCategories.add(c.id));
 
-            return `
-            <div class="budget-item">
-                <div class="budget-info">
-                    <span>${b.categoryName}</span>
-                    <span>${formatCurrency(b.spent)} / ${formatCurrency(b.limit)}</span>
-                </div>
-                <div class="progress-track">
-                    <div class="progress-fill ${colorClass}" style="width: ${Math.min(b.percentage, 100)}%"></div>
-                </div>
-            </div>`;
-        }).join("");
+    allExpenses = allExpenses.filter(e => !removedExpenses.has(e.id)).concat(changes.expenses);
+    allCategories = allCategories.filter(c => !removedCategories.has(c.id)).concat(changes.categories);
+    syncSeq = changes.seq;
+}
+
+function renderDashboard(budgets) {
+    populateCategoryDropdown(allCategories);
+    populateFilterDropdowns(allCategories, allExpenses);
+
+    applyFilters();
+    renderTrendChart(allExpenses);
+    // A null section means it failed or timed out on the server, so fetch it on its own
+    if (budgets) renderBudgets(budgets);
+    else loadBudgets();
+}
+
+// --- 2. BUDGET LOGIC ---
+async function loadBudgets() {
+    try {
+        renderBudgets(await apiRequest(`/expenses/budget/status/user/${userId}`));
     } catch (e) {
         console.error("Budget Error", e);
     }
 }
 
+function renderBudgets(budgets) {
+    if (!budgets || budgets.length === 0) {
+        elements.budgetList.innerHTML = `<p class="text-muted" style="font-size:13px; text-align:center;">No budgets set.</p>`;
+        return;
+    }
+
+    elements.budgetList.innerHTML = budgets.map(b => {
+        let colorClass = "";
+        if (b.percentage > 100) colorClass = "danger";
+        else if (b.percentage > 80) colorClass = "warning";
+
+        return `
+        <div class="budget-item">
+            <div class="budget-info">
+                <span>${b.categoryName} <span class="text-muted" style="font-size:11px;">${periodLabel(b)}</span></span>
+                <span>${formatCurrency(b.spent)} / ${formatCurrency(b.limit)}</span>
+            </div>
+            <div class="progress-track">
+                <div class="progress-fill ${colorClass}" style="width: ${Math.min(b.percentage, 100)}%"></div>
+            </div>
+        </div>`;
+    }).join("");
+}
+
+function periodLabel(b) {
+    if (b.period === "ROLLING_DAYS") return `last ${daysBetween(b.periodStart, b.periodEnd) + 1} days`;
+    return (b.period || "MONTHLY").toLowerCase();
+}
+
+function daysBetween(from, to) {
+    return Math.round((new Date(to) - new Date(from)) / 86400000);
+}
+
 elements.addBudgetBtn.addEventListener("click", async () => {
     const catName = prompt("Enter exact Category Name to set budget for:");
     if (!catName) return;
@@ -120,7 +165,13 @@ elements.addBudgetBtn.addEventListener("click", async () => {
     const category = allCategories.find(c => c.name.toLowerCase() === catName.toLowerCase());
     if (!category) return alert("Category not found! Please check spelling.");
 
-    const amountStr = prompt(`Enter monthly limit for ${category.name}:`);
+    const periodStr = prompt("Budget period: weekly, monthly, quarterly, yearly, or a number of days for a rolling window", "monthly");
+    if (!periodStr) return;
+    const rollingDays = parseInt(periodStr);
+    const period = isNaN(rollingDays) ? periodStr.trim().toUpperCase() : "ROLLING_DAYS";
+    if (!["WEEKLY", "MONTHLY", "QUARTERLY", "YEARLY", "ROLLING_DAYS"].includes(period)) return alert("Unknown period.");
+
+    const amountStr = prompt(`Enter ${isNaN(rollingDays) ? period.toLowerCase() : rollingDays + "-day"} limit for ${category.name}:`);
     if (!amountStr) return;
 
     const amount = parseFloat(amountStr);
@@ -131,7 +182,7 @@ elements.addBudgetBtn.addEventListener("click", async () => {
     try {
         await apiRequest(`/expenses/budget/user/${userId}`, {
             method: "POST",
-            body: JSON.stringify({ categoryId: category.id, limitAmount: amount })
+            body: JSON.stringify({ categoryId: category.id, limitAmount: amount, period, rollingDays: isNaN(rollingDays) ? null : rollingDays })
         });
         alert("Budget Set!");
         loadBudgets();
@@ -244,10 +295,13 @@ function applyFilters() {
     // 1. Search
     if (search) filtered = filtered.filter(e => e.description.toLowerCase().includes(search) || (e.categoryName && e.categoryName.toLowerCase().includes(search)));
 
-    // 2. Category
+    // 2. Tags
+    if (tagMatches) filtered = filtered.filter(e => tagMatches.has(e.id));
+
+    // 3. Category
     if (elements.filterCategory.value !== 'all') filtered = filtered.filter(e => e.categoryName === elements.filterCategory.value);
 
-    // 3. Date
+    // 4. Date
     if (startDate || endDate) {
         if (startDate) filtered = filtered.filter(e => e.expenseDate >= startDate);
         if (endDate) filtered = filtered.filter(e => e.expenseDate <= endDate);
@@ -256,7 +310,7 @@ function applyFilters() {
         if (elements.filterYear.value !== 'all') filtered = filtered.filter(e => new Date(e.expenseDate).getFullYear() === parseInt(elements.filterYear.value));
     }
 
-    // 4. Sort
+    // 5. Sort
     const sort = elements.filterSort.value;
     filtered.sort((a, b) => {
         if (sort === 'date-desc') return new Date(b.expenseDate) - new Date(a.expenseDate);
@@ -266,6 +320,7 @@ function applyFilters() {
         return 0;
     });
 
+    visibleExpenses = filtered;
     updateStats(filtered);
     renderPieChart(filtered);
     renderList(filtered);
@@ -275,6 +330,31 @@ function applyFilters() {
 [elements.filterSearch, elements.filterSort, elements.filterCategory, elements.filterStartDate, elements.filterEndDate, elements.filterMonth, elements.filterYear]
     .forEach(el => el.addEventListener('input', applyFilters));
 
+// Tag queries ("reimbursable AND trip-paris NOT personal") are evaluated by the server's tag index
+let tagFilterTimer = null;
+elements.filterTags.addEventListener('input', () => {
+    clearTimeout(tagFilterTimer);
+    tagFilterTimer = setTimeout(loadTagMatches, 250);
+});
+
+async function loadTagMatches() {
+    const query = elements.filterTags.value.trim();
+    elements.filterTags.classList.remove("invalid");
+    if (!query) {
+        tagMatches = null;
+        return applyFilters();
+    }
+    try {
+        const matching = await apiRequest(`/expenses/user/${userId}?tags=${encodeURIComponent(query)}`);
+        if (query !== elements.filterTags.value.trim()) return;
+        tagMatches = new Set(matching.map(e => e.id));
+        applyFilters();
+    } catch (err) {
+        elements.filterTags.classList.add("invalid");
+        elements.filterTags.title = err.message;
+    }
+}
+
 
 // --- 5. UI RENDERING HELPERS ---
 function updateStats(expenses) {
@@ -288,7 +368,7 @@ function renderList(expenses) {
         <div class="expense-item">
             <div class="expense-info">
                 <h4>${exp.description}</h4>
-                <div class="expense-meta">${formatDate(exp.expenseDate)} • <span style="color:var(--accent)">${exp.categoryName || 'General'}</span></div>
+                <div class="expense-meta">${formatDate(exp.expenseDate)} • <span style="color:var(--accent)">${exp.categoryName || 'General'}</span>${(exp.tags || []).map(t => ` <span class="tag-chip">#${t}</span>`).join('')}</div>
             </div>
             <div style="display:flex; align-items:center; gap: 8px;">
                 <div class="expense-amount" style="margin-right:8px;">${formatCurrency(exp.amount)}</div>
@@ -336,6 +416,8 @@ elements.addForm.addEventListener("submit", async (e) => {
     if (isNaN(amountVal) || amountVal <= 0) return alert("Amount must be a positive number.");
     if (!dateVal) return alert("Please select a valid date.");
 
+    const tags = parseTags(document.getElementById("tags").value);
+
     const expenseData = {
         description: document.getElementById("desc").value,
         amount: amountVal,
@@ -345,20 +427,48 @@ elements.addForm.addEventListener("submit", async (e) => {
 
     try {
         if (id) {
-            await apiRequest(`/expenses/${id}/user/${userId}`, { method: "PUT", body: JSON.stringify(expenseData) });
-        } else if (isRecurring) {
-            await apiRequest(`/expenses/recurring/user/${userId}`, { method: "POST", body: JSON.stringify(expenseData) });
-            alert("Recurring Expense Set!");
+            // Send only the changed fields plus the version we last saw; 409 means someone else edited it first
+            const original = allExpenses.find(e => e.id === parseInt(id));
+            const patch = { version: original.version };
+            for (const [key, value] of Object.entries(expenseData)) {
+                if (String(value) !== String(original[key])) patch[key] = value;
+            }
+            if (Object.keys(patch).length > 1) {
+                await apiRequest(`/expenses/${id}/user/${userId}`, { method: "PATCH", body: JSON.stringify(patch) });
+            }
+            if (tags.join(",") !== (original.tags || []).join(",")) {
+                await saveTags(id, tags);
+            }
         } else {
-            await apiRequest(`/expenses/user/${userId}`, { method: "POST", body: JSON.stringify(expenseData) });
+            // Kept until a create succeeds, so a double submit or a resend after a timeout can't add a second copy
+            pendingCreateKey ??= crypto.randomUUID();
+            const headers = { "Idempotency-Key": pendingCreateKey };
+            if (isRecurring) {
+                await apiRequest(`/expenses/recurring/user/${userId}`, { method: "POST", headers, body: JSON.stringify(expenseData) });
+                alert("Recurring Expense Set!");
+            } else {
+                const created = await apiRequest(`/expenses/user/${userId}`, { method: "POST", headers, body: JSON.stringify(expenseData) });
+                if (tags.length > 0) await saveTags(created.id, tags);
+            }
+            pendingCreateKey = null;
         }
 
         elements.modal.classList.remove("active");
         elements.addForm.reset();
-        loadDashboard();
+        await refreshChanges();
+        if (tagMatches) loadTagMatches();
     } catch (err) { alert("Error: " + err.message); }
 });
 
+// Comma or space separated, lower case, sorted and without duplicates, as the server stores them
+function parseTags(text) {
+    return [...new Set(text.split(/[\s,]+/).map(t => t.trim().toLowerCase()).filter(t => t))].sort();
+}
+
+async function saveTags(expenseId, tags) {
+    await apiRequest(`/expenses/${expenseId}/user/${userId}/tags`, { method: "PUT", body: JSON.stringify({ tags }) });
+}
+
 window.editExpense = (id) => {
     const expense = allExpenses.find(e => e.id === id);
     if (!expense) return;
@@ -367,6 +477,7 @@ window.editExpense = (id) => {
     document.getElementById("desc").value = expense.description;
     document.getElementById("amount").value = expense.amount;
     document.getElementById("date").value = expense.expenseDate;
+    document.getElementById("tags").value = (expense.tags || []).join(", ");
     elements.categorySelect.value = expense.categoryId;
 
     document.getElementById("isRecurring").parentElement.style.display = "none";
@@ -379,13 +490,14 @@ window.deleteExpense = async (id) => {
     if (!confirm("Delete this expense?")) return;
     try {
         await apiRequest(`/expenses/${id}/user/${userId}`, { method: 'DELETE' });
-        loadDashboard();
+        refreshChanges();
     } catch (err) { alert(err.message); }
 };
 
 // Modal Controls
 document.getElementById("openModalBtn").addEventListener("click", () => {
     elements.addForm.reset();
+    pendingCreateKey = null;
     document.getElementById("expenseId").value = "";
     document.getElementById("isRecurring").parentElement.style.display = "flex";
     document.querySelector(".modal h3").textContent = "Add Expense";
@@ -395,6 +507,33 @@ document.getElementById("openModalBtn").addEventListener("click", () => {
 
 document.getElementById("closeModalBtn").addEventListener("click", () => elements.modal.classList.remove("active"));
 
+// Description autocomplete: suggestions follow the typed prefix; picking one fills in its category and amount
+let descSuggestions = [];
+let suggestTimer = null;
+const descInput = document.getElementById("desc");
+
+descInput.addEventListener("input", () => {
+    const picked = descSuggestions.find(s => s.description === descInput.value);
+    if (picked) {
+        if (!document.getElementById("amount").value) document.getElementById("amount").value = picked.amount;
+        if (picked.categoryId && !elements.categorySelect.value) elements.categorySelect.value = picked.categoryId;
+        return;
+    }
+    clearTimeout(suggestTimer);
+    suggestTimer = setTimeout(loadSuggestions, 80);
+});
+
+async function loadSuggestions() {
+    const prefix = descInput.value;
+    try {
+        const suggestions = await apiRequest(`/expenses/suggestions/user/${userId}?prefix=${encodeURIComponent(prefix)}`);
+        if (prefix !== descInput.value) return;
+        descSuggestions = suggestions || [];
+        document.getElementById("descSuggestions").innerHTML = descSuggestions
+            .map(s => `<option value="${s.description.replace(/"/g, "&quot;")}"></option>`).join("");
+    } catch (err) { console.error(err); }
+}
+
 // Add Category
 elements.addCategoryBtn.addEventListener("click", async () => {
     const name = prompt("Enter new category name:");
@@ -433,10 +572,11 @@ elements.profileTrigger.addEventListener("click", (e) => { e.stopPropagation();
 document.addEventListener("click", (e) => { if (!elements.profileTrigger.contains(e.target) && !elements.profileMenu.contains(e.target)) elements.profileMenu.classList.remove("active"); });
 document.getElementById("logoutBtn").addEventListener("click", () => { localStorage.clear(); window.location.href = "index.html"; });
 
+// Exports what the filters currently show
 document.getElementById("exportBtn").addEventListener("click", () => {
-    if (allExpenses.length === 0) return alert("No expenses to export!");
-    let csvContent = "data:text/csv;charset=utf-8,Date,Description,Category,Amount\n";
-    allExpenses.forEach(exp => { csvContent += [exp.expenseDate, `"${exp.description}"`, exp.categoryName || "General", exp.amount].join(",") + "\n"; });
+    if (visibleExpenses.length === 0) return alert("No expenses to export!");
+    let csvContent = "data:text/csv;charset=utf-8,Date,Description,Category,Amount,Tags\n";
+    visibleExpenses.forEach(exp => { csvContent += [exp.expenseDate, `"${exp.description}"`, exp.categoryName || "General", exp.amount, `"${(exp.tags || []).join(" ")}"`].join(",") + "\n"; });
     const link = document.createElement("a"); link.setAttribute("href", encodeURI(csvContent)); link.setAttribute("download", "my_expenses.csv"); document.body.appendChild(link); link.click(); document.body.removeChild(link);
 });
 
@@ -478,7 +618,7 @@ async function loadSubscriptions() {
                     </div>
                 </div>
                 <div style="display:flex; gap:10px;">
-                    <button onclick="editSubscription(${sub.id}, '${sub.amount}')" class="btn-edit" title="Update Amount" style="height:32px; width:32px;">
+                    <button onclick="editSubscription(${sub.id}, '${sub.amount}', ${sub.version})" class="btn-edit" title="Update Amount" style="height:32px; width:32px;">
                         <svg width="16" height="16" viewBox="0 0 24 24" fill="none" stroke="currentColor" stroke-width="2" stroke-linecap="round" stroke-linejoin="round"><path d="M11 4H4a2 2 0 0 0-2 2v14a2 2 0 0 0 2 2h14a2 2 0 0 0 2-2v-7"></path><path d="M18.5 2.5a2.121 2.121 0 0 1 3 3L12 15l-4 1 1-4 9.5-9.5z"></path></svg>
                     </button>
                     <button onclick="cancelSubscription(${sub.id})" class="btn-delete" title="Cancel Subscription" style="height:32px; width:32px;">
@@ -494,7 +634,7 @@ async function loadSubscriptions() {
 }
 
 // Edit Logic
-window.editSubscription = async (id, currentAmount) => {
+window.editSubscription = async (id, currentAmount, version) => {
     const newAmountStr = prompt("Enter new monthly amount for this subscription:", currentAmount);
     if (!newAmountStr) return;
 
@@ -502,9 +642,9 @@ window.editSubscription = async (id, currentAmount) => {
     if (isNaN(newAmount) || newAmount <= 0) return alert("Invalid amount.");
 
     try {
-        await apiRequest(`/expenses/recurring/${id}`, {
-            method: "PUT",
-            body: JSON.stringify({ amount: newAmount })
+        await apiRequest(`/expenses/recurring/${id}/user/${userId}`, {
+            method: "PATCH",
+            body: JSON.stringify({ amount: newAmount, version })
         });
         alert("Subscription updated! Future bills will use this amount.");
         loadSubscriptions();
@@ -525,5 +665,49 @@ window.cancelSubscription = async (id) => {
     }
 };
 
+// --- BUDGET ALERT STREAM ---
+// EventSource cannot send the Authorization header, so the SSE stream is read via fetch
+async function subscribeBudgetAlerts() {
+    try {
+        const response = await fetch(`${API_BASE_URL}/expenses/budget/alerts/user/${userId}`, {
+            headers: { "Authorization": `Bearer ${token}`, "Accept": "text/event-stream" }
+        });
+        if (!response.ok || !response.body) return;
+
+        const reader = response.body.getReader();
+        const decoder = new TextDecoder();
+        let buffer = "";
+
+        while (true) {
+            const { value, done } = await reader.read();
+            if (done) break;
+            buffer += decoder.decode(value, { stream: true });
+
+            let boundary;
+            while ((boundary = buffer.indexOf("\n\n")) >= 0) {
+                const rawEvent = buffer.slice(0, boundary);
+                buffer = buffer.slice(boundary + 2);
+
+                const data = rawEvent.split("\n")
+                    .filter(line => line.startsWith("data:"))
+                    .map(line => line.slice(5))
+                    .join("\n");
+                if (data) handleBudgetAlert(JSON.parse(data));
+            }
+        }
+    } catch (e) {
+        console.error("Budget alert stream error", e);
+    }
+    // Server timeout or network drop: reconnect after a short pause
+    setTimeout(subscribeBudgetAlerts, 5000);
+}
+
+function handleBudgetAlert(alertData) {
+    loadBudgets();
+    alert(`Budget alert: ${alertData.categoryName} has reached ${alertData.threshold}% of its limit ` +
+        `(${formatCurrency(alertData.spent)} / ${formatCurrency(alertData.limit)}).`);
+}
+
 // Start
-loadDashboard();
\ No newline at end of file
+loadDashboard();
+subscribeBudgetAlerts();
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.example.expensetracker.config;
+
+import com.example.expensetracker.dto.ExpenseDto;
+import com.example.expensetracker.dto.SyncResponse;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractSmartHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+// Writes expense lists and sync responses for clients sending Accept: application/vnd.expensetracker.compact,
+// see CompactPayloadWriter. Write-only. The endpoints serving it list their formats in "produces", JSON
+// first, so a request accepting anything still gets JSON although custom converters are consulted first.
+@Component
+public class CompactPayloadHttpMessageConverter extends AbstractSmartHttpMessageConverter<Object> {
+
+    public static final String MEDIA_TYPE = "application/vnd.expensetracker.compact";
+    // Registered by Spring along with CBOR once jackson-dataformat-smile is on the classpath
+    public static final String SMILE_MEDIA_TYPE = "application/x-jackson-smile";
+
+    private static final ResolvableType EXPENSE_LIST = ResolvableType.forClassWithGenerics(List.class, ExpenseDto.class);
+
+    public CompactPayloadHttpMessageConverter() {
+        super(MediaType.parseMediaType(MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(@NonNull Class<?> clazz) {
+        return SyncResponse.class.isAssignableFrom(clazz) || List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(@NonNull Class<?> clazz, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(@NonNull ResolvableType type, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(@NonNull ResolvableType targetType, @NonNull Class<?> valueClass, @Nullable MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        return SyncResponse.class.isAssignableFrom(valueClass)
+                || List.class.isAssignableFrom(valueClass) && EXPENSE_LIST.isAssignableFrom(targetType);
+    }
+
+    @Override
+    public boolean canWrite(@NonNull Class<?> clazz, @Nullable MediaType mediaType) {
+        // Without the generic type a List could hold anything
+        return SyncResponse.class.isAssignableFrom(clazz) && canWrite(mediaType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(@NonNull Object body, @NonNull ResolvableType type, @NonNull HttpOutputMessage outputMessage,
+                                 @Nullable Map<String, Object> hints) throws IOException {
+        CompactPayloadWriter writer = new CompactPayloadWriter(outputMessage.getBody());
+        if (body instanceof SyncResponse sync) {
+            writer.writeSync(sync);
+        } else {
+            writer.writeExpenses((List<ExpenseDto>) body);
+        }
+    }
+
+    @Override
+    public @NonNull Object read(@NonNull ResolvableType type, @NonNull HttpInputMessage inputMessage,
+                                @Nullable Map<String, Object> hints) {
+        throw new HttpMessageNotReadableException("The compact format is write-only", inputMessage);
+    }
+}
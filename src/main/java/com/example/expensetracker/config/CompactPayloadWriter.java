@@ -0,0 +1,248 @@
+package com.example.expensetracker.config;
+
+import com.example.expensetracker.dto.BudgetDto;
+import com.example.expensetracker.dto.CategoryDto;
+import com.example.expensetracker.dto.ExpenseDto;
+import com.example.expensetracker.dto.SubscriptionDto;
+import com.example.expensetracker.dto.SyncResponse;
+import com.example.expensetracker.dto.TombstoneDto;
+import com.example.expensetracker.service.Cents;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Protobuf wire encoding of the CompactPayload message in src/main/proto/compact_payload.proto. Every
+// top-level field is repeated or written once, so the payload is a plain sequence of fields: each element is
+// encoded into a scratch buffer, appended and the output drained every FLUSH_BYTES, never holding the
+// whole response. Dictionary entries are appended the first time an element refers to them.
+final class CompactPayloadWriter {
+
+    private static final int FLUSH_BYTES = 8192;
+
+    private static final int VARINT = 0;
+    private static final int LEN = 2;
+
+    // CompactPayload
+    private static final int CATEGORY = 1;
+    private static final int TAG = 2;
+    private static final int EXPENSE = 3;
+    private static final int SEQ = 4;
+    private static final int FULL_RESYNC = 5;
+    private static final int CHANGED_CATEGORY = 6;
+    private static final int BUDGET = 7;
+    private static final int SUBSCRIPTION = 8;
+    private static final int DELETED = 9;
+
+    private final OutputStream out;
+    private final Buffer payload = new Buffer(FLUSH_BYTES + 1024);
+    private final Buffer message = new Buffer(256);
+    private final Buffer entry = new Buffer(64);
+
+    private final Map<Long, Integer> categoryRefs = new HashMap<>();
+    private final Map<String, Integer> tagRefs = new HashMap<>();
+    private long previousDay;
+
+    CompactPayloadWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    void writeExpenses(List<ExpenseDto> expenses) throws IOException {
+        for (ExpenseDto expense : expenses) {
+            writeExpense(expense);
+        }
+        drain();
+    }
+
+    void writeSync(SyncResponse sync) throws IOException {
+        uint(payload, SEQ, sync.getSeq());
+        uint(payload, FULL_RESYNC, sync.isFullResync() ? 1 : 0);
+        for (CategoryDto category : sync.getCategories()) {
+            uint(payload, CHANGED_CATEGORY, categoryRef(category.getId(), category.getName()));
+        }
+        for (ExpenseDto expense : sync.getExpenses()) {
+            writeExpense(expense);
+        }
+        for (BudgetDto budget : sync.getBudgets()) {
+            int category = categoryRef(budget.getCategoryId(), null);
+            message.reset();
+            uint(message, 1, budget.getId());
+            uint(message, 2, category);
+            sint(message, 3, minorUnits(budget.getLimitAmount()));
+            uint(message, 4, budget.getPeriod() == null ? 0 : budget.getPeriod().ordinal() + 1);
+            uint(message, 5, budget.getRollingDays());
+            append(BUDGET, message);
+        }
+        for (SubscriptionDto subscription : sync.getSubscriptions()) {
+            int category = categoryRef(subscription.getCategoryId(), subscription.getCategoryName());
+            message.reset();
+            uint(message, 1, subscription.getId());
+            string(message, 2, subscription.getDescription());
+            sint(message, 3, minorUnits(subscription.getAmount()));
+            if (subscription.getNextDueDate() != null) {
+                sint(message, 4, subscription.getNextDueDate().toEpochDay());
+            }
+            string(message, 5, subscription.getFrequency());
+            uint(message, 6, category);
+            uint(message, 7, subscription.getVersion());
+            append(SUBSCRIPTION, message);
+        }
+        for (TombstoneDto tombstone : sync.getDeleted()) {
+            message.reset();
+            uint(message, 1, tombstone.getType().ordinal() + 1);
+            uint(message, 2, tombstone.getId());
+            uint(message, 3, tombstone.getChangeSeq());
+            append(DELETED, message);
+        }
+        drain();
+    }
+
+    private void writeExpense(ExpenseDto expense) throws IOException {
+        // Dictionary entries go out before the expense referring to them
+        int category = categoryRef(expense.getCategoryId(), expense.getCategoryName());
+        List<String> tags = expense.getTags() == null ? List.of() : expense.getTags();
+        int[] tagIndexes = new int[tags.size()];
+        for (int i = 0; i < tagIndexes.length; i++) {
+            tagIndexes[i] = tagRef(tags.get(i));
+        }
+
+        message.reset();
+        uint(message, 1, expense.getId());
+        sint(message, 2, minorUnits(expense.getAmount()));
+        string(message, 3, expense.getDescription());
+        if (expense.getExpenseDate() != null) {
+            long day = expense.getExpenseDate().toEpochDay();
+            sint(message, 4, day - previousDay);
+            previousDay = day;
+        }
+        uint(message, 5, category);
+        uint(message, 6, expense.getVersion());
+        for (int tag : tagIndexes) {
+            uint(message, 7, tag);
+        }
+        append(EXPENSE, message);
+    }
+
+    private int categoryRef(Long id, String name) {
+        if (id == null) {
+            return 0;
+        }
+        Integer ref = categoryRefs.get(id);
+        if (ref == null) {
+            ref = categoryRefs.size() + 1;
+            categoryRefs.put(id, ref);
+            entry.reset();
+            uint(entry, 1, id);
+            string(entry, 2, name);
+            field(payload, CATEGORY, entry);
+        }
+        return ref;
+    }
+
+    private int tagRef(String tag) {
+        Integer ref = tagRefs.get(tag);
+        if (ref == null) {
+            ref = tagRefs.size() + 1;
+            tagRefs.put(tag, ref);
+            string(payload, TAG, tag);
+        }
+        return ref;
+    }
+
+    private void append(int field, Buffer element) throws IOException {
+        field(payload, field, element);
+        if (payload.size >= FLUSH_BYTES) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(payload.bytes, 0, payload.size);
+        payload.reset();
+    }
+
+    // Matches the scale of the amount columns; budgets and subscriptions have none, so round like the sketches
+    private static long minorUnits(BigDecimal amount) {
+        return amount == null ? 0 : Cents.of(amount);
+    }
+
+    // proto3 leaves fields at their default value out
+    private static void uint(Buffer buffer, int field, Long value) {
+        if (value != null) {
+            uint(buffer, field, value.longValue());
+        }
+    }
+
+    private static void uint(Buffer buffer, int field, Integer value) {
+        if (value != null) {
+            uint(buffer, field, value.longValue());
+        }
+    }
+
+    private static void uint(Buffer buffer, int field, long value) {
+        if (value != 0) {
+            buffer.varint((long) field << 3 | VARINT);
+            buffer.varint(value);
+        }
+    }
+
+    // Zigzag, so small negative deltas stay one byte
+    private static void sint(Buffer buffer, int field, long value) {
+        uint(buffer, field, value << 1 ^ value >> 63);
+    }
+
+    private static void string(Buffer buffer, int field, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        buffer.varint((long) field << 3 | LEN);
+        buffer.varint(utf8.length);
+        buffer.write(utf8, utf8.length);
+    }
+
+    private static void field(Buffer buffer, int field, Buffer element) {
+        buffer.varint((long) field << 3 | LEN);
+        buffer.varint(element.size);
+        buffer.write(element.bytes, element.size);
+    }
+
+    private static final class Buffer {
+        private byte[] bytes;
+        private int size;
+
+        private Buffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        private void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void write(byte[] source, int length) {
+            ensure(length);
+            System.arraycopy(source, 0, bytes, size, length);
+            size += length;
+        }
+
+        private void ensure(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+
+        private void reset() {
+            size = 0;
+        }
+    }
+}
@@ -15,11 +15,14 @@ public class CorsConfig {
 
             @Override
             public void addCorsMappings(@NonNull CorsRegistry registry) {
-                registry.addMapping("/**")
+                // Only needed when the frontend is served from elsewhere (e.g. a dev server); the packaged
+                // frontend is same-origin. Preflights are cached by the browser for max-age seconds.
+                registry.addMapping("/api/**")
                         .allowedOrigins("http://127.0.0.1:5500")
-                        .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
+                        .allowedMethods("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
-                        .allowCredentials(true);
+                        .allowCredentials(true)
+                        .maxAge(3600);
             }
         };
     }
@@ -0,0 +1,51 @@
+package com.example.expensetracker.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.jspecify.annotations.NonNull;
+import org.springframework.core.io.Resource;
+import org.springframework.web.servlet.resource.ResourceTransformerChain;
+import org.springframework.web.servlet.resource.ResourceTransformerSupport;
+import org.springframework.web.servlet.resource.TransformedResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Rewrites relative src/href attributes in HTML pages to the public (content-hashed) URL of the
+// asset, the way CssLinkResourceTransformer does for url(...) in stylesheets
+public class HtmlLinkResourceTransformer extends ResourceTransformerSupport {
+
+    private static final Pattern LINK = Pattern.compile("\\b(src|href)=\"([^\"#?:]+)\"");
+
+    @Override
+    public @NonNull Resource transform(@NonNull HttpServletRequest request, @NonNull Resource resource,
+                                       @NonNull ResourceTransformerChain transformerChain) throws IOException {
+        resource = transformerChain.transform(request, resource);
+        String filename = resource.getFilename();
+        if (filename == null || !filename.endsWith(".html")) {
+            return resource;
+        }
+
+        String html = resource.getContentAsString(StandardCharsets.UTF_8);
+        Matcher matcher = LINK.matcher(html);
+        StringBuilder rewritten = new StringBuilder(html.length() + 256);
+        boolean changed = false;
+        while (matcher.find()) {
+            String link = matcher.group(2);
+            String publicUrl = link.startsWith("//") ? null
+                    : resolveUrlPath(toAbsolutePath(link, request), request, resource, transformerChain);
+            if (publicUrl != null && !publicUrl.equals(toAbsolutePath(link, request))) {
+                matcher.appendReplacement(rewritten, Matcher.quoteReplacement(matcher.group(1) + "=\"" + publicUrl + "\""));
+                changed = true;
+            } else {
+                matcher.appendReplacement(rewritten, Matcher.quoteReplacement(matcher.group()));
+            }
+        }
+        if (!changed) {
+            return resource;
+        }
+        matcher.appendTail(rewritten);
+        return new TransformedResource(resource, rewritten.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.expensetracker.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ratelimit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Distinct keys tracked per group before new keys share striped overflow buckets
+    private int maxKeysPerGroup = 100_000;
+
+    private long evictionIntervalMs = 60_000;
+
+    // First matching group wins, so list the most specific prefixes first
+    private List<Group> groups = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Group {
+        private String name;
+        private List<String> pathPrefixes = new ArrayList<>();
+        private KeyType key = KeyType.USER;
+        private int capacity = 60;
+        private double refillPerSecond = 1.0;
+    }
+
+    public enum KeyType {
+        // Authenticated user, falling back to client IP for anonymous requests
+        USER,
+        IP
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.expensetracker.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+// Sends read-only transactions to a replica picked by ReplicaLagMonitor and everything else to the
+// primary. Must sit behind a LazyConnectionDataSourceProxy: the read-only flag is only visible once the
+// transaction has started, after the transaction manager asked for its connection.
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return lagMonitor.pickReplica().orElse(PRIMARY);
+        }
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.expensetracker.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties(ReplicaProperties.class)
+@ConditionalOnProperty(name = "replicas.enabled", havingValue = "true")
+public class ReplicaConfig {
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReplicaProperties properties,
+                                               @Value("${sharding.enabled:false}") boolean shardingEnabled,
+                                               @Value("${spring.datasource.url}") String url,
+                                               @Value("${spring.datasource.username:sa}") String username,
+                                               @Value("${spring.datasource.password:}") String password,
+                                               @Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+        // Each shard would need its own replicas; not supported
+        if (shardingEnabled) {
+            throw new IllegalStateException("replicas.enabled and sharding.enabled can't be combined");
+        }
+        // The request-wide session keeps the first connection it opens. That is usually the read-only user
+        // lookup's replica connection, and the write transaction that follows would reuse it.
+        if (openInView) {
+            throw new IllegalStateException("replicas.enabled requires spring.jpa.open-in-view=false");
+        }
+        return new ReplicaLagMonitor(properties,
+                ReplicaLagMonitor.pool("primary", url, username, password, properties.getPoolSize(), false));
+    }
+
+    // Replaces the auto-configured pool. The lazy proxy delays choosing a target until the first
+    // statement, when the transaction's read-only flag is known.
+    @Bean
+    @Primary
+    public DataSource readWriteDataSource(ReplicaLagMonitor lagMonitor) {
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(lagMonitor.primary(), lagMonitor.replicas(), lagMonitor));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.expensetracker.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Owns the primary and replica pools. The primary writes a heartbeat row; a replica is eligible for
+// reads while the heartbeat it has replicated is within replicas.max-lag-ms.
+public class ReplicaLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final HikariDataSource primary;
+    private final Map<String, DataSource> replicas = new LinkedHashMap<>();
+    private final long maxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile List<String> healthy = List.of();
+
+    public ReplicaLagMonitor(ReplicaProperties properties, HikariDataSource primary) {
+        this.primary = primary;
+        this.maxLagMs = properties.getMaxLagMs();
+        for (int i = 0; i < properties.getUrls().size(); i++) {
+            ReplicaProperties.Replica replica = properties.getUrls().get(i);
+            replicas.put("replica-" + i, pool("replica-" + i, replica.getUrl(), replica.getUsername(),
+                    replica.getPassword(), properties.getPoolSize(), true));
+        }
+        new JdbcTemplate(primary).execute("CREATE TABLE IF NOT EXISTS replication_heartbeat (" +
+                "id INT PRIMARY KEY, beat_millis BIGINT NOT NULL)");
+    }
+
+    static HikariDataSource pool(String name, String url, String username, String password, int size, boolean readOnly) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(size);
+        config.setReadOnly(readOnly);
+        return new HikariDataSource(config);
+    }
+
+    public DataSource primary() {
+        return primary;
+    }
+
+    public Map<String, DataSource> replicas() {
+        return Collections.unmodifiableMap(replicas);
+    }
+
+    // Round-robin over healthy replicas; empty means read from the primary
+    public Optional<String> pickReplica() {
+        List<String> candidates = healthy;
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size())));
+    }
+
+    @Scheduled(fixedDelayString = "${replicas.heartbeat-interval-ms:500}")
+    public void heartbeat() {
+        new JdbcTemplate(primary).update(
+                "MERGE INTO replication_heartbeat (id, beat_millis) KEY (id) VALUES (1, ?)", System.currentTimeMillis());
+
+        List<String> upToDate = new ArrayList<>();
+        for (Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            try {
+                Long beat = new JdbcTemplate(replica.getValue()).queryForObject(
+                        "SELECT beat_millis FROM replication_heartbeat WHERE id = 1", Long.class);
+                if (beat != null && System.currentTimeMillis() - beat <= maxLagMs) {
+                    upToDate.add(replica.getKey());
+                }
+            } catch (RuntimeException e) {
+                log.debug("Replica {} unavailable: {}", replica.getKey(), e.getMessage());
+            }
+        }
+        if (upToDate.size() != healthy.size()) {
+            log.info("Healthy replicas: {} of {}", upToDate.size(), replicas.size());
+        }
+        healthy = List.copyOf(upToDate);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (DataSource replica : replicas.values()) {
+            ((HikariDataSource) replica).close();
+        }
+        primary.close();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.expensetracker.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "replicas")
+public class ReplicaProperties {
+
+    // Read-only transactions go to a replica when true; spring.datasource stays the primary
+    private boolean enabled = false;
+
+    // Replicas whose heartbeat is older than this are skipped until they catch up
+    private long maxLagMs = 2000;
+
+    private long heartbeatIntervalMs = 500;
+
+    private int poolSize = 10;
+
+    private List<Replica> urls = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String url;
+        private String username = "sa";
+        private String password = "";
+    }
+}
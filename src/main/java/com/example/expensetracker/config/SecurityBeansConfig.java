@@ -1,18 +1,44 @@
 package com.example.expensetracker.config;
 
+import com.example.expensetracker.security.BoundedPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 public class SecurityBeansConfig {
 
+    // Hashes are stored as "{id}hash". Any stored hash whose id or cost differs from the
+    // configuration is re-encoded on the next successful login (see CustomUserDetailsService).
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${security.password.encoder:bcrypt}") String encoderId,
+            @Value("${security.password.bcrypt-strength:10}") int bcryptStrength,
+            @Value("${security.password.hashing-threads:0}") int hashingThreads,
+            @Value("${security.password.hashing-queue:256}") int hashingQueue,
+            @Value("${security.password.hashing-timeout-ms:5000}") long hashingTimeoutMs) {
+
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", bcrypt);
+        encoders.put("pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(encoderId, encoders);
+        // Hashes written before the "{id}" prefix was introduced are plain BCrypt
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        int threads = hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(delegating, threads, hashingQueue, hashingTimeoutMs);
     }
 
     @Bean
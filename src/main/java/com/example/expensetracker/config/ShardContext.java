@@ -0,0 +1,29 @@
+package com.example.expensetracker.config;
+
+// Shard chosen for the current thread; read by ShardRoutingDataSource when a connection is opened
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard != null ? shard : 0;
+    }
+
+    static Integer lookupKey() {
+        return CURRENT.get();
+    }
+
+    public static Integer set(Integer shard) {
+        Integer previous = CURRENT.get();
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+        return previous;
+    }
+}
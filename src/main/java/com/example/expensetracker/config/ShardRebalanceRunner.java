@@ -0,0 +1,29 @@
+package com.example.expensetracker.config;
+
+import com.example.expensetracker.service.ShardRebalancer;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Moves a user at startup: --sharding.enabled=true --move-user=<userId> --to-shard=<shard>
+@Component
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardRebalanceRunner implements ApplicationRunner {
+
+    private final ShardRebalancer shardRebalancer;
+
+    public ShardRebalanceRunner(ShardRebalancer shardRebalancer) {
+        this.shardRebalancer = shardRebalancer;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption("move-user") || !args.containsOption("to-shard")) {
+            return;
+        }
+        for (String userId : args.getOptionValues("move-user")) {
+            shardRebalancer.moveUser(Long.parseLong(userId), Integer.parseInt(args.getOptionValues("to-shard").getFirst()));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.expensetracker.config;
+
+import com.example.expensetracker.service.ShardRouter;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceConfiguration;
+import jakarta.persistence.metamodel.ManagedType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Hibernate only manages the schema of the default shard (0). Once it has, the same entity model is
+// applied to every other shard, data.sql is seeded there, and identity columns are moved into the
+// shard's id range.
+@Component
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardSchemaInitializer implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardSchemaInitializer.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ShardRouter shardRouter;
+
+    public ShardSchemaInitializer(EntityManagerFactory entityManagerFactory, ShardRouter shardRouter) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (Map.Entry<Integer, DataSource> shard : shardRouter.shardDataSources().entrySet()) {
+            if (shard.getKey() == 0) {
+                continue;
+            }
+            updateSchema(shard.getKey(), shard.getValue());
+            new ResourceDatabasePopulator(new ClassPathResource("data.sql")).execute(shard.getValue());
+            moveIdentityRanges(shard.getKey(), shard.getValue());
+        }
+    }
+
+    private void updateSchema(int shard, DataSource dataSource) {
+        PersistenceConfiguration configuration = new PersistenceConfiguration("shard-" + shard);
+        for (ManagedType<?> type : entityManagerFactory.getMetamodel().getManagedTypes()) {
+            configuration.managedClass(type.getJavaType());
+        }
+
+        // Same naming strategies and dialect as the main persistence unit, so table and column names match
+        entityManagerFactory.getProperties().forEach((key, value) -> {
+            if (key.endsWith("naming_strategy") || key.equals("hibernate.dialect")) {
+                configuration.property(key, value);
+            }
+        });
+        configuration.property("hibernate.connection.datasource", dataSource);
+        configuration.property("hibernate.hbm2ddl.auto", "update");
+
+        configuration.createEntityManagerFactory().close();
+        log.info("Schema updated on shard {}", shard);
+    }
+
+    private void moveIdentityRanges(int shard, DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        long base = (long) shard << ShardRouter.SHARD_ID_BITS;
+
+        jdbcTemplate.query("SELECT TABLE_NAME, COLUMN_NAME FROM INFORMATION_SCHEMA.COLUMNS " +
+                "WHERE TABLE_SCHEMA = 'PUBLIC' AND IS_IDENTITY = 'YES'", rs -> {
+            String table = rs.getString(1);
+            String column = rs.getString(2);
+            Long max = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MAX(\"" + column + "\"), 0) FROM \"" + table + "\"", Long.class);
+            if (max != null && max < base) {
+                jdbcTemplate.execute("ALTER TABLE \"" + table + "\" ALTER COLUMN \"" + column + "\" RESTART WITH " + base);
+            }
+        });
+    }
+}
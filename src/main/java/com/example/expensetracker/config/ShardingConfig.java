@@ -0,0 +1,23 @@
+package com.example.expensetracker.config;
+
+import com.example.expensetracker.service.ShardRouter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    // Replaces the auto-configured spring.datasource pool
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+    public DataSource dataSource(ShardRouter shardRouter) {
+        return new ShardRoutingDataSource(shardRouter.shardDataSources());
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.expensetracker.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "sharding")
+public class ShardingProperties {
+
+    // When false the single spring.datasource is used and everything runs on "shard 0"
+    private boolean enabled = false;
+
+    // Points per shard on the email hash ring
+    private int virtualNodes = 64;
+
+    // Shard k hands out ids from k << 40, so a user id also names the shard it was created on
+    private List<Shard> shards = new ArrayList<>();
+
+    private int poolSize = 10;
+
+    @Getter
+    @Setter
+    public static class Shard {
+        private String url;
+        private String username = "sa";
+        private String password = "";
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.expensetracker.config;
+
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import java.time.Duration;
+
+// Serves the frontend packaged into classpath:/static (see the frontend resource in pom.xml).
+// Scripts and styles are addressed by content hash (style-<md5>.css) and cached forever; the build
+// stores .gz/.br siblings next to them, which are sent as-is to clients that accept them.
+// Pages are revalidated on every visit and have their asset links rewritten to the hashed names.
+@Configuration
+public class StaticResourceConfig implements WebMvcConfigurer {
+
+    private static final String LOCATION = "classpath:/static/";
+
+    private final boolean cacheResources;
+
+    public StaticResourceConfig(@Value("${frontend.cache-resources:true}") boolean cacheResources) {
+        this.cacheResources = cacheResources;
+    }
+
+    @Override
+    public void addResourceHandlers(@NonNull ResourceHandlerRegistry registry) {
+        registry.addResourceHandler("/css/**", "/js/**")
+                .addResourceLocations(LOCATION)
+                .setCacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                .resourceChain(cacheResources)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"))
+                .addResolver(new PathResourceResolver());
+
+        registry.addResourceHandler("/*.html")
+                .addResourceLocations(LOCATION)
+                .setCacheControl(CacheControl.noCache())
+                .resourceChain(cacheResources)
+                .addResolver(new PathResourceResolver())
+                .addTransformer(new HtmlLinkResourceTransformer());
+    }
+
+    @Override
+    public void addViewControllers(@NonNull ViewControllerRegistry registry) {
+        registry.addViewController("/").setViewName("forward:/index.html");
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.expensetracker.controller;
+
+import com.example.expensetracker.dto.CacheBusStatsDto;
+import com.example.expensetracker.dto.CacheStatsDto;
+import com.example.expensetracker.dto.CategoryDistributionDto;
+import com.example.expensetracker.dto.CategoryMonthTotalDto;
+import com.example.expensetracker.dto.SpendDistributionDto;
+import com.example.expensetracker.service.BudgetStatusCache;
+import com.example.expensetracker.service.CacheInvalidationBus;
+import com.example.expensetracker.service.ExpenseAnomalyDetector;
+import com.example.expensetracker.service.PlatformAnalyticsService;
+import com.example.expensetracker.service.SpendingDistributionService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+// Platform-wide statistics for admins (ROLE_ADMIN, see security.admin-emails); served from the columnar store
+@RestController
+@RequestMapping("/api/admin/analytics")
+public class AdminAnalyticsController {
+
+    private final PlatformAnalyticsService platformAnalyticsService;
+    private final ExpenseAnomalyDetector anomalyDetector;
+    private final SpendingDistributionService distributionService;
+    private final BudgetStatusCache budgetStatusCache;
+    private final CacheInvalidationBus invalidationBus;
+
+    public AdminAnalyticsController(PlatformAnalyticsService platformAnalyticsService, ExpenseAnomalyDetector anomalyDetector,
+                                    SpendingDistributionService distributionService, BudgetStatusCache budgetStatusCache,
+                                    CacheInvalidationBus invalidationBus) {
+        this.platformAnalyticsService = platformAnalyticsService;
+        this.anomalyDetector = anomalyDetector;
+        this.distributionService = distributionService;
+        this.budgetStatusCache = budgetStatusCache;
+        this.invalidationBus = invalidationBus;
+    }
+
+    @GetMapping("/category-monthly")
+    public ResponseEntity<List<CategoryMonthTotalDto>> getCategoryMonthlyTotals(@RequestParam String from,
+                                                                                @RequestParam String to) {
+        return ResponseEntity.ok(platformAnalyticsService.totalsByGlobalCategoryAndMonth(parseMonth(from), parseMonth(to)));
+    }
+
+    @GetMapping("/spend-distribution")
+    public ResponseEntity<SpendDistributionDto> getSpendDistribution(@RequestParam String month) {
+        return ResponseEntity.ok(platformAnalyticsService.monthlySpendDistribution(parseMonth(month)));
+    }
+
+    // Merges every user's quantile sketches per global category; doesn't need the columnar store
+    @GetMapping("/category-distribution")
+    public ResponseEntity<List<CategoryDistributionDto>> getCategoryDistribution(@RequestParam String from,
+                                                                                 @RequestParam String to) {
+        return ResponseEntity.ok(distributionService.getPlatformDistribution(parseMonth(from), parseMonth(to)));
+    }
+
+    // Recomputes the detector's per-user statistics from all expenses in the background (409 while one runs)
+    @PostMapping("/anomalies/rebuild")
+    public ResponseEntity<Void> rebuildAnomalyState() {
+        return anomalyDetector.startRebuild()
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    // Hit rate and computation times of the budget status cache since startup
+    @GetMapping("/budget-status-cache")
+    public ResponseEntity<CacheStatsDto> getBudgetStatusCacheStats() {
+        return ResponseEntity.ok(budgetStatusCache.stats());
+    }
+
+    // Invalidations sent and received by this instance and their delivery lag
+    @GetMapping("/cache-bus")
+    public ResponseEntity<CacheBusStatsDto> getCacheBusStats() {
+        return ResponseEntity.ok(invalidationBus.stats());
+    }
+
+    private static YearMonth parseMonth(String month) {
+        try {
+            return YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Month must be formatted as yyyy-MM: " + month);
+        }
+    }
+}
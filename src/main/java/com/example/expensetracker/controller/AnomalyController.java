@@ -0,0 +1,38 @@
+package com.example.expensetracker.controller;
+
+import com.example.expensetracker.dto.ExpenseAnomalyDto;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.service.AnomalyService;
+import com.example.expensetracker.service.UserService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Expenses flagged on arrival by ExpenseAnomalyDetector, newest first
+@RestController
+@RequestMapping("/api/anomalies")
+public class AnomalyController {
+
+    private final AnomalyService anomalyService;
+    private final UserService userService;
+
+    public AnomalyController(AnomalyService anomalyService, UserService userService) {
+        this.anomalyService = anomalyService;
+        this.userService = userService;
+    }
+
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<List<ExpenseAnomalyDto>> getAnomalies(@PathVariable Long userId,
+                                                                @RequestParam(defaultValue = "false") boolean includeDismissed) {
+        User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+        return ResponseEntity.ok(anomalyService.getAnomalies(user, includeDismissed));
+    }
+
+    @PutMapping("/{anomalyId}/user/{userId}/dismiss")
+    public ResponseEntity<Void> dismiss(@PathVariable Long anomalyId, @PathVariable Long userId) {
+        User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+        anomalyService.dismiss(anomalyId, user);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -3,7 +3,9 @@ package com.example.expensetracker.controller;
 import com.example.expensetracker.dto.*;
 import com.example.expensetracker.mapper.UserMapper;
 import com.example.expensetracker.model.User;
+import com.example.expensetracker.security.CustomUserDetails;
 import com.example.expensetracker.security.JwtService;
+import com.example.expensetracker.service.ShardRouter;
 import com.example.expensetracker.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
@@ -22,25 +24,30 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
     private final UserService userService;
+    private final ShardRouter shardRouter;
 
     public AuthController(AuthenticationManager authenticationManager,
                           JwtService jwtService,
-                          UserService userService) {
+                          UserService userService,
+                          ShardRouter shardRouter) {
         this.authenticationManager = authenticationManager;
         this.jwtService = jwtService;
         this.userService = userService;
+        this.shardRouter = shardRouter;
     }
 
     @PostMapping("/login")
     public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
-        );
+        // No token yet, so the user's shard comes from the email being signed in
+        Authentication authentication = shardRouter.callOn(shardRouter.shardForEmail(request.getEmail()), () ->
+                authenticationManager.authenticate(
+                        new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
+                ));
 
-        String token = jwtService.generateToken(authentication.getName());
+        // The principal already carries the user loaded for the password check
+        User user = ((CustomUserDetails) authentication.getPrincipal()).getUser();
 
-        User user = userService.findByEmail(request.getEmail())
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        String token = jwtService.generateToken(authentication.getName(), user.getId());
 
         // ✅ Return Name in response
         return ResponseEntity.ok(new AuthResponse(token, user.getId(), user.getName()));
@@ -53,7 +60,9 @@ public class AuthController {
         user.setEmail(request.getEmail());
         user.setPassword(request.getPassword());
 
-        User registeredUser = userService.registerUser(user);
+        int shard = shardRouter.shardForEmail(user.getEmail());
+        User registeredUser = shardRouter.callOn(shard, () -> userService.registerUser(user));
+        shardRouter.recordRegistration(registeredUser.getId(), registeredUser.getEmail(), shard);
 
         return new ResponseEntity<>(UserMapper.toDto(registeredUser), HttpStatus.CREATED);
     }
@@ -64,7 +73,8 @@ public class AuthController {
         if (request.getEmail() == null || request.getNewPassword() == null) {
             return ResponseEntity.badRequest().build();
         }
-        userService.updatePassword(request.getEmail(), request.getNewPassword());
+        shardRouter.runOn(shardRouter.shardForEmail(request.getEmail()),
+                () -> userService.updatePassword(request.getEmail(), request.getNewPassword()));
         return ResponseEntity.ok().build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.example.expensetracker.controller;
+
+import com.example.expensetracker.dto.DashboardDto;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.service.DashboardService;
+import com.example.expensetracker.service.UserService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/dashboard")
+public class DashboardController {
+
+    private static final int MAX_RECENT_EXPENSES = 200;
+
+    private final DashboardService dashboardService;
+    private final UserService userService;
+
+    public DashboardController(DashboardService dashboardService, UserService userService) {
+        this.dashboardService = dashboardService;
+        this.userService = userService;
+    }
+
+    // One round trip for the first paint: the user is loaded once and every section is fetched in parallel
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<DashboardDto> getDashboard(@PathVariable Long userId,
+                                                     @RequestParam(defaultValue = "50") int recent) {
+        if (recent < 1 || recent > MAX_RECENT_EXPENSES) {
+            throw new IllegalArgumentException("recent must be between 1 and " + MAX_RECENT_EXPENSES);
+        }
+        User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+        return ResponseEntity.ok(dashboardService.load(user, recent));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.expensetracker.controller;
+
+import com.example.expensetracker.dto.CategoryDistributionDto;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.service.SpendingDistributionService;
+import com.example.expensetracker.service.UserService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+// Typical and high amounts of single expenses per category, from the per-month quantile sketches
+@RestController
+@RequestMapping("/api/distribution")
+public class DistributionController {
+
+    private final SpendingDistributionService distributionService;
+    private final UserService userService;
+
+    public DistributionController(SpendingDistributionService distributionService, UserService userService) {
+        this.distributionService = distributionService;
+        this.userService = userService;
+    }
+
+    // Defaults to the last twelve months, this one included
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<List<CategoryDistributionDto>> getDistribution(@PathVariable Long userId,
+                                                                         @RequestParam(required = false) String from,
+                                                                         @RequestParam(required = false) String to) {
+        User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+        YearMonth end = to != null ? parseMonth(to) : YearMonth.now();
+        YearMonth start = from != null ? parseMonth(from) : end.minusMonths(11);
+        return ResponseEntity.ok(distributionService.getUserDistribution(user, start, end));
+    }
+
+    private static YearMonth parseMonth(String month) {
+        try {
+            return YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Month must be formatted as yyyy-MM: " + month);
+        }
+    }
+}
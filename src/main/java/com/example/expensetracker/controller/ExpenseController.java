@@ -1,26 +1,43 @@
 package com.example.expensetracker.controller;
 
+import com.example.expensetracker.config.CompactPayloadHttpMessageConverter;
 import com.example.expensetracker.dto.BudgetDto;
 import com.example.expensetracker.dto.BudgetStatusDto;
+import com.example.expensetracker.dto.DescriptionSuggestionDto;
 import com.example.expensetracker.dto.ExpenseDto;
+import com.example.expensetracker.dto.ExpensePatchRequest;
 import com.example.expensetracker.dto.ExpenseRequest;
+import com.example.expensetracker.dto.ExpenseSummaryDto;
+import com.example.expensetracker.dto.SubscriptionDto;
+import com.example.expensetracker.dto.SubscriptionPatchRequest;
+import com.example.expensetracker.dto.TagDto;
+import com.example.expensetracker.dto.TagsRequest;
 import com.example.expensetracker.mapper.ExpenseMapper;
+import com.example.expensetracker.mapper.SubscriptionMapper;
 import com.example.expensetracker.model.*;
-import com.example.expensetracker.repository.BudgetRepository;
 import com.example.expensetracker.repository.CategoryRepository;
-import com.example.expensetracker.repository.ExpenseRepository;
-import com.example.expensetracker.repository.RecurringExpenseRepository;
+import com.example.expensetracker.service.BudgetAlertService;
+import com.example.expensetracker.service.BudgetService;
+import com.example.expensetracker.service.ExpenseIngestionQueue;
 import com.example.expensetracker.service.ExpenseService;
+import com.example.expensetracker.service.IdempotencyService;
+import com.example.expensetracker.service.RecurringExpenseService;
+import com.example.expensetracker.service.TagService;
 import com.example.expensetracker.service.UserService;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
@@ -32,26 +49,44 @@ public class ExpenseController {
     private final CategoryRepository categoryRepository;
 
     // ✅ NEW DEPENDENCIES for Features
-    private final BudgetRepository budgetRepository;
-    private final RecurringExpenseRepository recurringRepository;
-    private final ExpenseRepository expenseRepository;
+    private final BudgetService budgetService;
+    private final RecurringExpenseService recurringExpenseService;
+    private final BudgetAlertService budgetAlertService;
+    private final ExpenseIngestionQueue ingestionQueue;
+    private final IdempotencyService idempotencyService;
+    private final TagService tagService;
 
     // ✅ UPDATED CONSTRUCTOR
-    public ExpenseController(ExpenseService expenseService, UserService userService, CategoryRepository categoryRepository, BudgetRepository budgetRepository, RecurringExpenseRepository recurringRepository, ExpenseRepository expenseRepository) {
+    public ExpenseController(ExpenseService expenseService, UserService userService, CategoryRepository categoryRepository, BudgetService budgetService, RecurringExpenseService recurringExpenseService, BudgetAlertService budgetAlertService, ExpenseIngestionQueue ingestionQueue, IdempotencyService idempotencyService, TagService tagService) {
         this.expenseService = expenseService;
         this.userService = userService;
         this.categoryRepository = categoryRepository;
-        this.budgetRepository = budgetRepository;
-        this.recurringRepository = recurringRepository;
-        this.expenseRepository = expenseRepository;
+        this.budgetService = budgetService;
+        this.recurringExpenseService = recurringExpenseService;
+        this.budgetAlertService = budgetAlertService;
+        this.ingestionQueue = ingestionQueue;
+        this.idempotencyService = idempotencyService;
+        this.tagService = tagService;
     }
 
     // ================= EXISTING ENDPOINTS (Preserved) =================
 
+    // Retries carrying the same Idempotency-Key get the first response instead of a second expense
     @PostMapping("/user/{userId}")
-    public ResponseEntity<ExpenseDto> createExpense(@PathVariable Long userId, @Valid @RequestBody ExpenseRequest request) {
+    public CompletableFuture<ResponseEntity<ExpenseDto>> createExpense(@PathVariable Long userId, @Valid @RequestBody ExpenseRequest request,
+                                                                       @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
 
+        long fingerprint = IdempotencyService.fingerprint(request.getAmount(), request.getDescription(), request.getExpenseDate(), request.getCategoryId());
+        return idempotencyService.execute(user.getId(), IdempotentOperation.CREATE_EXPENSE, idempotencyKey, fingerprint,
+                () -> createExpense(request, user),
+                response -> response.getBody().getId(),
+                expenseId -> expenseService.getExpenseById(expenseId, user)
+                        .map(expense -> new ResponseEntity<>(ExpenseMapper.toDto(expense), HttpStatus.CREATED))
+                        .orElseThrow(() -> new NoSuchElementException("The expense created with this " + IdempotencyService.HEADER + " no longer exists")));
+    }
+
+    private CompletableFuture<ResponseEntity<ExpenseDto>> createExpense(ExpenseRequest request, User user) {
         Expense expense = new Expense();
         expense.setAmount(request.getAmount());
         expense.setDescription(request.getDescription());
@@ -61,18 +96,71 @@ public class ExpenseController {
         category.setId(request.getCategoryId());
         expense.setCategory(category);
 
+        // Queued mode: the response is sent once the writer's group commit is durable
+        if (ingestionQueue.isEnabled()) {
+            return ingestionQueue.submit(expense, user)
+                    .thenApply(saved -> new ResponseEntity<>(ExpenseMapper.toDto(saved), HttpStatus.CREATED));
+        }
+
         Expense savedExpense = expenseService.createExpense(expense, user);
 
-        return new ResponseEntity<>(ExpenseMapper.toDto(savedExpense), HttpStatus.CREATED);
+        return CompletableFuture.completedFuture(new ResponseEntity<>(ExpenseMapper.toDto(savedExpense), HttpStatus.CREATED));
     }
 
-    @GetMapping("/user/{userId}")
-    public ResponseEntity<List<ExpenseDto>> getExpenses(@PathVariable Long userId) {
+    // Optional filters: tags=reimbursable AND trip-paris NOT personal, from/to (inclusive) and categoryId.
+    // JSON unless the Accept header asks for CBOR, Smile or the compact format (src/main/proto/compact_payload.proto)
+    @GetMapping(value = "/user/{userId}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            CompactPayloadHttpMessageConverter.SMILE_MEDIA_TYPE, CompactPayloadHttpMessageConverter.MEDIA_TYPE})
+    public ResponseEntity<List<ExpenseDto>> getExpenses(@PathVariable Long userId,
+                                                        @RequestParam(required = false) String tags,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                        @RequestParam(required = false) Long categoryId) {
         User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
-        List<ExpenseDto> expenses = expenseService.getUserExpenses(user).stream().map(ExpenseMapper::toDto).collect(Collectors.toList());
+        List<Expense> matching = tags == null && from == null && to == null && categoryId == null
+                ? expenseService.getUserExpenses(user)
+                : tagService.filterExpenses(user, tags, from, to, categoryId);
+        Map<Long, List<String>> tagsByExpense = tagService.tagsByExpense(user);
+        List<ExpenseDto> expenses = matching.stream()
+                .map(e -> ExpenseMapper.toDto(e, tagsByExpense.getOrDefault(e.getId(), List.of())))
+                .collect(Collectors.toList());
         return ResponseEntity.ok(expenses);
     }
 
+    // Count and totals of the expenses the same filters would list
+    @GetMapping("/summary/user/{userId}")
+    public ResponseEntity<ExpenseSummaryDto> summarizeExpenses(@PathVariable Long userId,
+                                                               @RequestParam(required = false) String tags,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                               @RequestParam(required = false) Long categoryId) {
+        User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+        return ResponseEntity.ok(tagService.summarize(tagService.filterExpenses(user, tags, from, to, categoryId)));
+    }
+
+    // Replaces the expense's tags with the given set
+    @PutMapping("/{expenseId}/user/{userId}/tags")
+    public ResponseEntity<Map<String, List<String>>> setTags(@PathVariable Long expenseId, @PathVariable Long userId, @Valid @RequestBody TagsRequest request) {
+        User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+        return ResponseEntity.ok(Map.of("tags", tagService.setTags(expenseId, user, request.getTags())));
+    }
+
+    // Every tag in use with the number of expenses carrying it
+    @GetMapping("/tags/user/{userId}")
+    public ResponseEntity<List<TagDto>> getTags(@PathVariable Long userId) {
+        User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+        return ResponseEntity.ok(tagService.getUserTags(user));
+    }
+
+    // Called as the user types a description: their most used matching descriptions with category and amount
+    @GetMapping("/suggestions/user/{userId}")
+    public ResponseEntity<List<DescriptionSuggestionDto>> suggestDescriptions(@PathVariable Long userId,
+                                                                              @RequestParam(defaultValue = "") String prefix,
+                                                                              @RequestParam(defaultValue = "5") int limit) {
+        User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+        return ResponseEntity.ok(expenseService.suggestDescriptions(user, prefix, limit));
+    }
+
     @DeleteMapping("/{expenseId}/user/{userId}")
     public ResponseEntity<Void> deleteExpense(@PathVariable Long userId, @PathVariable Long expenseId) {
         User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
@@ -95,7 +183,14 @@ public class ExpenseController {
         }
 
         Expense updatedExpense = expenseService.updateExpense(expenseId, expenseUpdates, user);
-        return ResponseEntity.ok(mapToDto(updatedExpense));
+        return ResponseEntity.ok(mapToDto(updatedExpense, tagService.getTags(expenseId, user.getId())));
+    }
+
+    // Partial update: only non-null fields change, and only if the expense is still at the given version (409 otherwise)
+    @PatchMapping("/{expenseId}/user/{userId}")
+    public ResponseEntity<ExpenseDto> patchExpense(@PathVariable Long expenseId, @PathVariable Long userId, @Valid @RequestBody ExpensePatchRequest request) {
+        Expense patched = expenseService.patchExpense(expenseId, userId, request);
+        return ResponseEntity.ok(ExpenseMapper.toDto(patched, tagService.getTags(expenseId, userId)));
     }
 
     // ================= ✅ NEW BUDGET ENDPOINTS =================
@@ -107,15 +202,9 @@ public class ExpenseController {
         }
 
         User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
-        Category category = categoryRepository.findById(dto.getCategoryId()).orElseThrow(() -> new IllegalArgumentException("Category not found"));
-
-        Budget budget = budgetRepository.findByUserAndCategoryId(user, dto.getCategoryId()).orElse(new Budget());
-
-        budget.setUser(user);
-        budget.setCategory(category);
-        budget.setLimitAmount(dto.getLimitAmount());
 
-        budgetRepository.save(budget);
+        budgetService.setBudget(user, dto.getCategoryId(), dto.getLimitAmount(), dto.getPeriod(), dto.getRollingDays());
+        budgetAlertService.budgetChanged(user.getId());
 
         return ResponseEntity.ok(java.util.Collections.singletonMap("message", "Budget set successfully"));
     }
@@ -123,59 +212,38 @@ public class ExpenseController {
     @GetMapping("/budget/status/user/{userId}")
     public ResponseEntity<List<BudgetStatusDto>> getBudgetStatus(@PathVariable Long userId) {
         User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
-        List<Budget> budgets = budgetRepository.findByUser(user);
-
-        // Define Month Range
-        LocalDate startOfMonth = LocalDate.now().withDayOfMonth(1);
-        LocalDate endOfMonth = LocalDate.now().plusMonths(1).withDayOfMonth(1).minusDays(1);
-
-        List<BudgetStatusDto> statusList = budgets.stream().map(b -> {
-            // Calculate total spent in this category for this month
-            BigDecimal spent = expenseRepository.findByUserAndExpenseDateBetween(user, startOfMonth, endOfMonth).stream().filter(e -> e.getCategory() != null && e.getCategory().getId().equals(b.getCategory().getId())).map(Expense::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            double percentage = 0;
-            if (b.getLimitAmount().doubleValue() > 0) {
-                percentage = spent.doubleValue() / b.getLimitAmount().doubleValue() * 100;
-            }
-
-            return new BudgetStatusDto(b.getCategory().getName(), b.getLimitAmount(), spent, percentage);
-        }).collect(Collectors.toList());
+        return ResponseEntity.ok(budgetService.getBudgetStatus(user));
+    }
 
-        return ResponseEntity.ok(statusList);
+    // Pushes threshold crossings (see budget.alerts.thresholds) as they happen
+    @GetMapping(value = "/budget/alerts/user/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBudgetAlerts(@PathVariable Long userId) {
+        User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+        return budgetAlertService.subscribe(user.getId());
     }
 
     // ================= ✅ NEW RECURRING ENDPOINT =================
 
     @PostMapping("/recurring/user/{userId}")
-    public ResponseEntity<?> addRecurring(@PathVariable Long userId, @RequestBody ExpenseDto dto) {
+    public CompletableFuture<ResponseEntity<?>> addRecurring(@PathVariable Long userId, @RequestBody ExpenseDto dto,
+                                                             @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
-        Category category = categoryRepository.findById(dto.getCategoryId()).orElseThrow(() -> new IllegalArgumentException("Category not found"));
-
-        // 1. Save Recurring Record
-        RecurringExpense rec = new RecurringExpense();
-        rec.setAmount(dto.getAmount());
-        rec.setDescription(dto.getDescription());
-        rec.setFrequency("MONTHLY");
-        rec.setNextDueDate(dto.getExpenseDate().plusMonths(1));
-        rec.setCategory(category);
-        rec.setUser(user);
-        recurringRepository.save(rec);
-
-        // 2. Save Immediate Expense
-        Expense firstExp = new Expense();
-        firstExp.setAmount(dto.getAmount());
-        firstExp.setDescription(dto.getDescription());
-        firstExp.setExpenseDate(dto.getExpenseDate());
-        firstExp.setCategory(category);
-        expenseService.createExpense(firstExp, user);
 
         // ✅ FIX: Return JSON instead of plain string
-        return ResponseEntity.ok(java.util.Collections.singletonMap("message", "Recurring Expense Setup Successfully"));
+        ResponseEntity<?> created = ResponseEntity.ok(java.util.Collections.singletonMap("message", "Recurring Expense Setup Successfully"));
+
+        long fingerprint = IdempotencyService.fingerprint(dto.getAmount(), dto.getDescription(), dto.getExpenseDate(), dto.getCategoryId());
+        return idempotencyService.<Long>execute(user.getId(), IdempotentOperation.CREATE_SUBSCRIPTION, idempotencyKey, fingerprint,
+                // Saves the recurring record and its first expense in one transaction
+                () -> CompletableFuture.completedFuture(recurringExpenseService.addRecurring(user, dto).getId()),
+                recId -> recId,
+                recId -> recId
+        ).thenApply(recId -> created);
     }
 
     // Helper method (Kept from your original code)
-    private ExpenseDto mapToDto(Expense expense) {
-        return new ExpenseDto(expense.getId(), expense.getAmount(), expense.getDescription(), expense.getExpenseDate(), expense.getCategory() != null ? expense.getCategory().getId() : null, expense.getCategory() != null ? expense.getCategory().getName() : "Uncategorized");
+    private ExpenseDto mapToDto(Expense expense, List<String> tags) {
+        return new ExpenseDto(expense.getId(), expense.getAmount(), expense.getDescription(), expense.getExpenseDate(), expense.getCategory() != null ? expense.getCategory().getId() : null, expense.getCategory() != null ? expense.getCategory().getName() : "Uncategorized", expense.getVersion(), tags);
     }
 
     // 1. Get All Active Subscriptions (Fixed to avoid JSON Loop)
@@ -183,7 +251,7 @@ public class ExpenseController {
     public ResponseEntity<List<Map<String, Object>>> getUserSubscriptions(@PathVariable Long userId) {
         User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
 
-        List<RecurringExpense> subs = recurringRepository.findByUser(user);
+        List<RecurringExpense> subs = recurringExpenseService.getUserSubscriptions(user);
 
         // Convert Entity to simple JSON Map manually
         List<Map<String, Object>> response = subs.stream().map(sub -> {
@@ -193,6 +261,7 @@ public class ExpenseController {
             map.put("amount", sub.getAmount());
             map.put("nextDueDate", sub.getNextDueDate());
             map.put("frequency", sub.getFrequency());
+            map.put("version", sub.getVersion());
 
             // Handle Category safely
             if (sub.getCategory() != null) {
@@ -210,28 +279,21 @@ public class ExpenseController {
     // 2. Delete/Cancel a Subscription
     @DeleteMapping("/recurring/{recId}")
     public ResponseEntity<?> deleteSubscription(@PathVariable Long recId) {
-        recurringRepository.deleteById(recId);
+        recurringExpenseService.cancelSubscription(recId);
         return ResponseEntity.ok(java.util.Collections.singletonMap("message", "Subscription cancelled successfully"));
     }
 
     // 3. Update a Subscription (Amount, Description, or Date)
     @PutMapping("/recurring/{recId}")
     public ResponseEntity<?> updateSubscription(@PathVariable Long recId, @RequestBody Map<String, Object> updates) {
-        RecurringExpense rec = recurringRepository.findById(recId)
-                .orElseThrow(() -> new IllegalArgumentException("Subscription not found"));
-
-        if (updates.containsKey("amount")) {
-            rec.setAmount(new BigDecimal(updates.get("amount").toString()));
-        }
-        if (updates.containsKey("description")) {
-            rec.setDescription((String) updates.get("description"));
-        }
-        // Handle Date updates if needed
-        if (updates.containsKey("nextDueDate")) {
-            rec.setNextDueDate(LocalDate.parse((String) updates.get("nextDueDate")));
-        }
-
-        recurringRepository.save(rec);
+        recurringExpenseService.updateSubscription(recId, updates);
         return ResponseEntity.ok(java.util.Collections.singletonMap("message", "Subscription updated successfully"));
     }
-}
\ No newline at end of file
+
+    // 4. Partial update of an owned subscription, guarded by its version
+    @PatchMapping("/recurring/{recId}/user/{userId}")
+    public ResponseEntity<SubscriptionDto> patchSubscription(@PathVariable Long recId, @PathVariable Long userId, @Valid @RequestBody SubscriptionPatchRequest request) {
+        RecurringExpense patched = recurringExpenseService.patchSubscription(recId, userId, request);
+        return ResponseEntity.ok(SubscriptionMapper.toDto(patched));
+    }
+}
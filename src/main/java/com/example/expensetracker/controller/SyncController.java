@@ -0,0 +1,32 @@
+package com.example.expensetracker.controller;
+
+import com.example.expensetracker.config.CompactPayloadHttpMessageConverter;
+import com.example.expensetracker.dto.SyncResponse;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.service.SyncService;
+import com.example.expensetracker.service.UserService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/sync")
+public class SyncController {
+
+    private final SyncService syncService;
+    private final UserService userService;
+
+    public SyncController(SyncService syncService, UserService userService) {
+        this.syncService = syncService;
+        this.userService = userService;
+    }
+
+    // since=0 returns a full snapshot; afterwards pass the previous response's seq. Formats as for the expense list
+    @GetMapping(value = "/user/{userId}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            CompactPayloadHttpMessageConverter.SMILE_MEDIA_TYPE, CompactPayloadHttpMessageConverter.MEDIA_TYPE})
+    public ResponseEntity<SyncResponse> getChanges(@PathVariable Long userId,
+                                                   @RequestParam(defaultValue = "0") long since) {
+        User user = userService.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+        return ResponseEntity.ok(syncService.getChangesSince(user, since));
+    }
+}
@@ -1,7 +1,8 @@
 package com.example.expensetracker.controller;
 
-import com.example.expensetracker.model.User;
-import com.example.expensetracker.service.UserService;
+import com.example.expensetracker.dto.PurgeStatusDto;
+import com.example.expensetracker.service.AccountPurgeService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -9,15 +10,25 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/api/users")
 public class UserController {
 
-    private final UserService userService;
+    private final AccountPurgeService accountPurgeService;
 
-    public UserController(UserService userService) {
-        this.userService = userService;
+    public UserController(AccountPurgeService accountPurgeService) {
+        this.accountPurgeService = accountPurgeService;
     }
 
+    // 204 when the account was small enough to purge inline, otherwise 202 with progress to poll.
+    // Repeating the request while a purge runs returns that purge's progress.
     @DeleteMapping("/{userId}")
-    public ResponseEntity<Void> deleteAccount(@PathVariable Long userId) {
-        userService.deleteUser(userId);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<PurgeStatusDto> deleteAccount(@PathVariable Long userId) {
+        PurgeStatusDto status = accountPurgeService.deleteAccount(userId);
+        if ("COMPLETED".equals(status.getState())) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/{userId}/purge-status")
+    public ResponseEntity<PurgeStatusDto> getPurgeStatus(@PathVariable Long userId) {
+        return ResponseEntity.ok(accountPurgeService.getStatus(userId));
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.expensetracker.dto;
+
+import com.example.expensetracker.model.BudgetPeriod;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class BudgetAlertDto {
+    private Long categoryId;
+    private String categoryName;
+    private int threshold;
+    private BigDecimal limit;
+    private BigDecimal spent;
+    private double percentage;
+    private BudgetPeriod period;
+}
@@ -1,10 +1,14 @@
 package com.example.expensetracker.dto;
 
+import com.example.expensetracker.model.BudgetPeriod;
 import lombok.Data;
 import java.math.BigDecimal;
 
 @Data
 public class BudgetDto {
+    private Long id;
     private Long categoryId;
     private BigDecimal limitAmount;
+    private BudgetPeriod period;        // MONTHLY when omitted
+    private Integer rollingDays;        // required for ROLLING_DAYS
 }
\ No newline at end of file
@@ -1,10 +1,12 @@
 // BudgetStatusDto.java
 package com.example.expensetracker.dto;
 
+import com.example.expensetracker.model.BudgetPeriod;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 
 @Data
 @AllArgsConstructor
@@ -13,4 +15,7 @@ public class BudgetStatusDto {
     private BigDecimal limit;
     private BigDecimal spent;
     private double percentage;
+    private BudgetPeriod period;
+    private LocalDate periodStart;
+    private LocalDate periodEnd;
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Counters since startup. Lag runs from just before the sender's commit until this instance picked the
+// invalidation up, so it includes any clock difference between the two instances.
+@Getter
+@AllArgsConstructor
+public class CacheBusStatsDto {
+    private final String nodeId;
+    private final String transport;
+    private final long published;
+    private final long received;
+    private final long lastLagMillis;
+    private final long averageLagMillis;
+    private final long maxLagMillis;
+}
@@ -0,0 +1,19 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Counters since startup; coalesced lookups waited for another caller's computation
+@Getter
+@AllArgsConstructor
+public class CacheStatsDto {
+    private final int entries;
+    private final long hits;
+    private final long misses;
+    private final long coalesced;
+    private final double hitRate;
+    private final long invalidations;
+    private final long expirations;
+    private final long averageComputeMicros;
+    private final long maxComputeMicros;
+}
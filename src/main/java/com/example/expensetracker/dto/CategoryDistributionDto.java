@@ -0,0 +1,22 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// Amounts of single expenses in a category over a range of months. Percentiles come from quantile sketches:
+// a percentile's rank is off by at most rankError (a fraction of count, 0 when exact).
+@Data
+@AllArgsConstructor
+public class CategoryDistributionDto {
+    private Long categoryId;
+    private String categoryName;
+    private long count;
+    private BigDecimal min;
+    private BigDecimal p50;
+    private BigDecimal p90;
+    private BigDecimal p99;
+    private BigDecimal max;
+    private double rankError;
+}
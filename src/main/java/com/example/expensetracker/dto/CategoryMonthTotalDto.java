@@ -0,0 +1,15 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class CategoryMonthTotalDto {
+    private Long categoryId;
+    private String categoryName;
+    private String month;
+    private BigDecimal total;
+}
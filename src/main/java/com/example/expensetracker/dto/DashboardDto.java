@@ -0,0 +1,22 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+// Everything the dashboard needs for its first paint. A section that failed or timed out is null
+// and listed in "errors" (section name -> reason); the rest are still returned.
+@Getter
+@AllArgsConstructor
+public class DashboardDto {
+
+    private final List<ExpenseDto> recentExpenses;
+    private final List<CategoryDto> globalCategories;
+    private final List<CategoryDto> userCategories;
+    private final List<BudgetStatusDto> budgets;
+    private final List<SubscriptionDto> subscriptions;
+    private final DashboardSummaryDto summary;
+    private final Map<String, String> errors;
+}
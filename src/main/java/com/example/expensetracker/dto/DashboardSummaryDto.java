@@ -0,0 +1,14 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class DashboardSummaryDto {
+    private BigDecimal monthTotal;
+    private BigDecimal yearTotal;
+    private long expenseCount;
+}
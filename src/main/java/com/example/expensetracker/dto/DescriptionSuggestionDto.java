@@ -0,0 +1,16 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+// A description the user has typed before, with what they usually file it under and the latest amount
+@Getter
+@AllArgsConstructor
+public class DescriptionSuggestionDto {
+    private final String description;
+    private final long uses;
+    private final Long categoryId;
+    private final BigDecimal amount;
+}
@@ -0,0 +1,26 @@
+package com.example.expensetracker.dto;
+
+import com.example.expensetracker.model.AnomalyType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class ExpenseAnomalyDto {
+    private Long id;
+    private Long expenseId;
+    private Long categoryId;
+    private AnomalyType type;
+    private BigDecimal amount;
+    private BigDecimal typicalAmount;
+    private double score;
+    private Long relatedExpenseId;
+    private LocalDate expenseDate;
+    private String description;
+    private LocalDateTime detectedAt;
+    private boolean dismissed;
+}
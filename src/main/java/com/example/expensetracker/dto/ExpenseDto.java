@@ -7,6 +7,7 @@ import lombok.Setter;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 
 @Getter
 @Setter
@@ -20,4 +21,6 @@ public class ExpenseDto {
     private LocalDate expenseDate;
     private Long categoryId;
     private String categoryName;
+    private Long version;
+    private List<String> tags;
 }
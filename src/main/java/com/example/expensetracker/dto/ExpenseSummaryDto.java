@@ -0,0 +1,16 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+// Totals over a filtered set of expenses; byCategory is keyed by category name
+@Getter
+@AllArgsConstructor
+public class ExpenseSummaryDto {
+    private final long count;
+    private final BigDecimal total;
+    private final Map<String, BigDecimal> byCategory;
+}
@@ -0,0 +1,15 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class PurgeStatusDto {
+
+    private final Long userId;
+    private final String state;   // RUNNING, COMPLETED or FAILED
+    private final String phase;
+    private final long expensesDeleted;
+    private final long expensesTotal;
+}
@@ -0,0 +1,21 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// Distribution of per-user totals for one month, over users who spent anything
+@Data
+@AllArgsConstructor
+public class SpendDistributionDto {
+    private String month;
+    private long users;
+    private BigDecimal total;
+    private BigDecimal mean;
+    private BigDecimal p50;
+    private BigDecimal p75;
+    private BigDecimal p90;
+    private BigDecimal p99;
+    private BigDecimal max;
+}
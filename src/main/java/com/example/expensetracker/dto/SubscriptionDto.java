@@ -0,0 +1,25 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubscriptionDto {
+
+    private Long id;
+    private String description;
+    private BigDecimal amount;
+    private LocalDate nextDueDate;
+    private String frequency;
+    private Long categoryId;
+    private String categoryName;
+    private Long version;
+}
@@ -0,0 +1,25 @@
+package com.example.expensetracker.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Fields left null are not changed; version is the one the client last read
+@Getter
+@Setter
+public class SubscriptionPatchRequest {
+
+    @Positive(message = "Amount must be positive")
+    private BigDecimal amount;
+
+    private String description;
+
+    private LocalDate nextDueDate;
+
+    @NotNull(message = "Version is required")
+    private Long version;
+}
@@ -0,0 +1,21 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// Pass "seq" back as "since" on the next call. When fullResync is true the client
+// asked for changes older than the compacted tombstones and must replace its local copy.
+@Getter
+@AllArgsConstructor
+public class SyncResponse {
+
+    private final long seq;
+    private final boolean fullResync;
+    private final List<ExpenseDto> expenses;
+    private final List<CategoryDto> categories;
+    private final List<BudgetDto> budgets;
+    private final List<SubscriptionDto> subscriptions;
+    private final List<TombstoneDto> deleted;
+}
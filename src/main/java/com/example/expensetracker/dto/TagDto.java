@@ -0,0 +1,11 @@
+package com.example.expensetracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TagDto {
+    private final String name;
+    private final int expenseCount;
+}
@@ -0,0 +1,16 @@
+package com.example.expensetracker.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+// The complete set of tags an expense should carry; an empty list removes them all
+@Getter
+@Setter
+public class TagsRequest {
+
+    @NotNull(message = "Tags are required")
+    private List<String> tags;
+}
@@ -0,0 +1,14 @@
+package com.example.expensetracker.dto;
+
+import com.example.expensetracker.model.SyncEntityType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TombstoneDto {
+
+    private final SyncEntityType type;
+    private final Long id;
+    private final Long changeSeq;
+}
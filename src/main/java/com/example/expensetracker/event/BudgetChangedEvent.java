@@ -0,0 +1,12 @@
+package com.example.expensetracker.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published when a user's budget limits are created or changed
+@Getter
+@AllArgsConstructor
+public class BudgetChangedEvent {
+
+    private final Long userId;
+}
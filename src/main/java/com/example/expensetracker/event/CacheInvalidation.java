@@ -0,0 +1,27 @@
+package com.example.expensetracker.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// A write on another instance changed these regions (a CacheRegion bit mask) of the user's data.
+// Published locally by CacheInvalidationBus for every invalidation it receives; writes on this instance
+// already reach the caches through their own events.
+@Getter
+@AllArgsConstructor
+public class CacheInvalidation {
+
+    private final String origin;
+    private final Long userId;
+    private final int regions;
+    // Sender's clock, epoch millis
+    private final long sentAt;
+
+    public boolean covers(CacheRegion... regions) {
+        for (CacheRegion region : regions) {
+            if ((this.regions & region.bit()) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.expensetracker.event;
+
+// Parts of a user's data that in-process caches are built from; an invalidation names the ones a write changed
+public enum CacheRegion {
+    // The users row: password, account flags
+    USER,
+    CATEGORIES,
+    EXPENSES,
+    TAGS,
+    BUDGETS,
+    // The shard the user's rows live on
+    SHARD;
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    public static int all() {
+        return (1 << values().length) - 1;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.expensetracker.event;
+
+import com.example.expensetracker.model.Expense;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published by every expense write path; "before" is null on create, "after" is null on delete.
+// changeSeq is the user's sequence number of the write (the tombstone's on delete): listeners run after
+// commit, and two writes of the same user can reach them in the opposite order to their commits.
+@Getter
+@AllArgsConstructor
+public class ExpenseChangedEvent {
+
+    private final Long userId;
+    private final long changeSeq;
+    private final ExpenseSnapshot before;
+    private final ExpenseSnapshot after;
+
+    public static ExpenseChangedEvent created(Expense expense) {
+        return new ExpenseChangedEvent(expense.getUser().getId(), expense.getChangeSeq(), null, ExpenseSnapshot.of(expense));
+    }
+
+    public static ExpenseChangedEvent deleted(Expense expense, long changeSeq) {
+        return new ExpenseChangedEvent(expense.getUser().getId(), changeSeq, ExpenseSnapshot.of(expense), null);
+    }
+}
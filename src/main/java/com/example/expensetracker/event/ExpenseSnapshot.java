@@ -0,0 +1,30 @@
+package com.example.expensetracker.event;
+
+import com.example.expensetracker.model.Expense;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Immutable copy of the fields listeners care about, taken inside the write transaction
+@Getter
+@AllArgsConstructor
+public class ExpenseSnapshot {
+
+    private final Long id;
+    private final Long categoryId;
+    private final BigDecimal amount;
+    private final LocalDate expenseDate;
+    private final String description;
+
+    public static ExpenseSnapshot of(Expense expense) {
+        return new ExpenseSnapshot(
+                expense.getId(),
+                expense.getCategory() != null ? expense.getCategory().getId() : null,
+                expense.getAmount(),
+                expense.getExpenseDate(),
+                expense.getDescription()
+        );
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.expensetracker.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// Published when an expense's tags are replaced; "tags" is the complete new set
+@Getter
+@AllArgsConstructor
+public class ExpenseTagsChangedEvent {
+
+    private final Long userId;
+    private final Long expenseId;
+    private final List<String> tags;
+}
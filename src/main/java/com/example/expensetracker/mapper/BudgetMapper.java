@@ -0,0 +1,25 @@
+package com.example.expensetracker.mapper;
+
+import com.example.expensetracker.dto.BudgetDto;
+import com.example.expensetracker.model.Budget;
+
+public final class BudgetMapper {
+
+    private BudgetMapper() {
+        // prevent instantiation
+    }
+
+    public static BudgetDto toDto(Budget budget) {
+        if (budget == null) {
+            return null;
+        }
+
+        BudgetDto dto = new BudgetDto();
+        dto.setId(budget.getId());
+        dto.setCategoryId(budget.getCategory() != null ? budget.getCategory().getId() : null);
+        dto.setLimitAmount(budget.getLimitAmount());
+        dto.setPeriod(budget.getPeriod());
+        dto.setRollingDays(budget.getRollingDays());
+        return dto;
+    }
+}
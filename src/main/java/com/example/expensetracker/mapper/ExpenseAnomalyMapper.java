@@ -0,0 +1,32 @@
+package com.example.expensetracker.mapper;
+
+import com.example.expensetracker.dto.ExpenseAnomalyDto;
+import com.example.expensetracker.model.ExpenseAnomaly;
+
+public final class ExpenseAnomalyMapper {
+
+    private ExpenseAnomalyMapper() {
+        // prevent instantiation
+    }
+
+    public static ExpenseAnomalyDto toDto(ExpenseAnomaly anomaly) {
+        if (anomaly == null) {
+            return null;
+        }
+
+        return new ExpenseAnomalyDto(
+                anomaly.getId(),
+                anomaly.getExpenseId(),
+                anomaly.getCategoryId(),
+                anomaly.getType(),
+                anomaly.getAmount(),
+                anomaly.getTypicalAmount(),
+                anomaly.getScore(),
+                anomaly.getRelatedExpenseId(),
+                anomaly.getExpenseDate(),
+                anomaly.getDescription(),
+                anomaly.getDetectedAt(),
+                anomaly.isDismissed()
+        );
+    }
+}
@@ -4,6 +4,8 @@ import com.example.expensetracker.dto.ExpenseDto;
 import com.example.expensetracker.model.Expense;
 import com.example.expensetracker.model.Category;
 
+import java.util.List;
+
 public final class ExpenseMapper {
 
     private ExpenseMapper() {
@@ -11,6 +13,10 @@ public final class ExpenseMapper {
     }
 
     public static ExpenseDto toDto(Expense expense) {
+        return toDto(expense, List.of());
+    }
+
+    public static ExpenseDto toDto(Expense expense, List<String> tags) {
         if (expense == null) {
             return null;
         }
@@ -30,7 +36,9 @@ public final class ExpenseMapper {
                 expense.getDescription(),
                 expense.getExpenseDate(),
                 categoryId,
-                categoryName
+                categoryName,
+                expense.getVersion(),
+                tags
         );
     }
 }
@@ -0,0 +1,31 @@
+package com.example.expensetracker.mapper;
+
+import com.example.expensetracker.dto.SubscriptionDto;
+import com.example.expensetracker.model.Category;
+import com.example.expensetracker.model.RecurringExpense;
+
+public final class SubscriptionMapper {
+
+    private SubscriptionMapper() {
+        // prevent instantiation
+    }
+
+    public static SubscriptionDto toDto(RecurringExpense recurring) {
+        if (recurring == null) {
+            return null;
+        }
+
+        Category category = recurring.getCategory();
+
+        return new SubscriptionDto(
+                recurring.getId(),
+                recurring.getDescription(),
+                recurring.getAmount(),
+                recurring.getNextDueDate(),
+                recurring.getFrequency(),
+                category != null ? category.getId() : null,
+                category != null ? category.getName() : "Uncategorized",
+                recurring.getVersion()
+        );
+    }
+}
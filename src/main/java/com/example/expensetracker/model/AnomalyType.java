@@ -0,0 +1,8 @@
+package com.example.expensetracker.model;
+
+public enum AnomalyType {
+    // Far above what the user usually spends in the category
+    AMOUNT_OUTLIER,
+    // Same amount, category and description as a recent expense
+    DUPLICATE
+}
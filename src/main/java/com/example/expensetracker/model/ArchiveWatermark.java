@@ -0,0 +1,25 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+// Upper bound of expenses_archive in this database: every archived row is dated before it. A single row
+// (id 1), only ever written by ExpenseTieringService's SQL and raised before rows move, so every instance
+// reading it sees the archive's reach.
+@Entity
+@Table(name = "archive_watermark")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ArchiveWatermark {
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private LocalDate watermark;
+}
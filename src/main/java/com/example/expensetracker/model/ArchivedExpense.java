@@ -0,0 +1,58 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Cold tier of expenses. Rows are moved here by ExpenseTieringService with their original id and
+// sequence, and are only ever written by that service's SQL.
+@Entity
+@Table(name = "expenses_archive", indexes = {
+        @Index(name = "idx_archive_user_date", columnList = "user_id, expense_date"),
+        @Index(name = "idx_archive_user_seq", columnList = "user_id, change_seq")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class ArchivedExpense {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+
+    @Column(length = 255)
+    private String description;
+
+    @Column(name = "expense_date", nullable = false)
+    private LocalDate expenseDate;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "category_id")
+    private Category category;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
+    // Carried over from expenses so a restored row keeps its optimistic-lock version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+}
@@ -5,10 +5,14 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 
 @Entity
+// One budget per user, category and period; setBudget updates the existing row
+@Table(indexes = @Index(name = "idx_budget_user_seq", columnList = "user_id, change_seq"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_budget_user_category_period", columnNames = {"user_id", "category_id", "period"}))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,6 +24,14 @@ public class Budget {
 
     private BigDecimal limitAmount; // e.g. 5000
 
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'MONTHLY'")
+    @Column(nullable = false, length = 16)
+    private BudgetPeriod period = BudgetPeriod.MONTHLY;
+
+    // Only for ROLLING_DAYS
+    private Integer rollingDays;
+
     @ManyToOne
     @JoinColumn(name = "category_id")
     private Category category;
@@ -27,4 +39,7 @@ public class Budget {
     @ManyToOne
     @JoinColumn(name = "user_id")
     private User user;
+
+    @Column(name = "change_seq")
+    private Long changeSeq;
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.example.expensetracker.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+// The window a budget limit applies to, relative to "today". Calendar periods include the whole
+// period (so future-dated expenses in it count); ROLLING_DAYS is the last N days up to today.
+public enum BudgetPeriod {
+    WEEKLY,
+    MONTHLY,
+    QUARTERLY,
+    YEARLY,
+    ROLLING_DAYS;
+
+    public static final int MAX_ROLLING_DAYS = 366;
+
+    public LocalDate start(LocalDate today, Integer rollingDays) {
+        return switch (this) {
+            case WEEKLY -> today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTHLY -> today.withDayOfMonth(1);
+            case QUARTERLY -> today.withMonth((today.getMonthValue() - 1) / 3 * 3 + 1).withDayOfMonth(1);
+            case YEARLY -> today.withDayOfYear(1);
+            case ROLLING_DAYS -> today.minusDays(rollingDays - 1);
+        };
+    }
+
+    public LocalDate end(LocalDate today) {
+        return switch (this) {
+            case WEEKLY -> today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+            case MONTHLY -> today.withDayOfMonth(today.lengthOfMonth());
+            case QUARTERLY -> start(today, null).plusMonths(3).minusDays(1);
+            case YEARLY -> today.withDayOfYear(today.lengthOfYear());
+            case ROLLING_DAYS -> today;
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Outbox of the JDBC cache invalidation transport: written in the same transaction as the change it
+// announces, polled by the other instances and deleted after cache.bus.retention-ms
+@Entity
+@Table(name = "cache_invalidations", indexes = @Index(name = "idx_cache_invalidation_sent_at", columnList = "sent_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class CacheInvalidationMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Instance that wrote it (cache.bus.node-id)
+    @Column(nullable = false, length = 64)
+    private String origin;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // CacheRegion bit mask
+    @Column(nullable = false)
+    private int regions;
+
+    // Sender's clock, epoch millis
+    @Column(name = "sent_at", nullable = false)
+    private long sentAt;
+}
@@ -8,7 +8,7 @@ import lombok.Setter;
 import java.util.List;
 
 @Entity
-@Table(name = "categories")
+@Table(name = "categories", indexes = @Index(name = "idx_category_user_seq", columnList = "user_id, change_seq"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -27,4 +27,8 @@ public class Category extends BaseEntity {
 
     @OneToMany(mappedBy = "category", fetch = FetchType.LAZY)
     private List<Expense> expenses;
+
+    // Null for global categories, which are seeded once and never change
+    @Column(name = "change_seq")
+    private Long changeSeq;
 }
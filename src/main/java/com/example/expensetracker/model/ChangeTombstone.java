@@ -0,0 +1,40 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Remembers a delete so delta sync can tell clients to drop the row
+@Entity
+@Table(name = "change_tombstones", indexes = {
+        @Index(name = "idx_tombstone_user_seq", columnList = "user_id, change_seq"),
+        @Index(name = "idx_tombstone_deleted_at", columnList = "deleted_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class ChangeTombstone {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private SyncEntityType entityType;
+
+    @Column(nullable = false)
+    private Long entityId;
+
+    @Column(name = "change_seq", nullable = false)
+    private Long changeSeq;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+}
@@ -4,12 +4,16 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "expenses")
+@Table(name = "expenses", indexes = {
+        @Index(name = "idx_expense_user_seq", columnList = "user_id, change_seq"),
+        @Index(name = "idx_expense_user_date", columnList = "user_id, expense_date")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -25,7 +29,7 @@ public class Expense extends BaseEntity {
     @Column(length = 255)
     private String description;
 
-    @Column(nullable = false)
+    @Column(name = "expense_date", nullable = false)
     private LocalDate expenseDate;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -35,4 +39,13 @@ public class Expense extends BaseEntity {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id")
     private Category category;
+
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
+    // Bumped by every update; PATCH requests must send the version they last read
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
 }
@@ -0,0 +1,59 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// An expense flagged by ExpenseAnomalyDetector when it was created
+@Entity
+@Table(name = "expense_anomalies", indexes = @Index(name = "idx_anomaly_user_detected", columnList = "user_id, detected_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class ExpenseAnomaly {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long expenseId;
+
+    private Long categoryId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private AnomalyType type;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+
+    // Median amount in the category at detection time; the earlier expense's amount for duplicates
+    @Column(precision = 10, scale = 2)
+    private BigDecimal typicalAmount;
+
+    // Robust z-score for outliers; 0 for duplicates
+    private double score;
+
+    // Earlier expense a duplicate repeats
+    private Long relatedExpenseId;
+
+    @Column(nullable = false)
+    private LocalDate expenseDate;
+
+    private String description;
+
+    @Column(name = "detected_at", nullable = false)
+    private LocalDateTime detectedAt;
+
+    @Column(nullable = false)
+    private boolean dismissed;
+}
@@ -0,0 +1,38 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Quantile sketch (KllSketch) of one user's expense amounts in one category and month, kept by ExpenseSketchStore
+@Entity
+@Table(name = "expense_sketches",
+        uniqueConstraints = @UniqueConstraint(name = "uk_sketch_user_category_month", columnNames = {"user_id", "category_id", "sketch_month"}),
+        indexes = @Index(name = "idx_sketch_category_month", columnList = "category_id, sketch_month"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class ExpenseSketch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // 0 for uncategorized expenses
+    @Column(name = "category_id", nullable = false)
+    private Long categoryId;
+
+    // yyyyMM, e.g. 202610. MONTH is a keyword in H2
+    @Column(name = "sketch_month", nullable = false)
+    private int month;
+
+    @Column(nullable = false)
+    private long itemCount;
+
+    @Column(nullable = false, length = 16384)
+    private byte[] sketch;
+}
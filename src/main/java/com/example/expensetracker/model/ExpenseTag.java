@@ -0,0 +1,30 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Tag on an expense. No foreign key to expenses: the row stays valid while the expense moves to the archive.
+@Entity
+@Table(name = "expense_tags",
+        uniqueConstraints = @UniqueConstraint(name = "uk_expense_tag", columnNames = {"expense_id", "tag_id"}),
+        indexes = @Index(name = "idx_expense_tag_user", columnList = "user_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class ExpenseTag {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "expense_id", nullable = false)
+    private Long expenseId;
+
+    @Column(name = "tag_id", nullable = false)
+    private Long tagId;
+}
@@ -0,0 +1,43 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Outcome of a create request sent with an Idempotency-Key: the id of the row it created
+@Entity
+@Table(name = "idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(name = "uk_idempotency_user_key", columnNames = {"user_id", "operation", "idempotency_key"}),
+        indexes = @Index(name = "idx_idempotency_created_at", columnList = "created_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private IdempotentOperation operation;
+
+    @Column(name = "idempotency_key", nullable = false, length = 64)
+    private String idempotencyKey;
+
+    // Hash of the request body, to reject a key reused for a different request
+    @Column(nullable = false)
+    private long fingerprint;
+
+    @Column(nullable = false)
+    private Long resourceId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,6 @@
+package com.example.expensetracker.model;
+
+public enum IdempotentOperation {
+    CREATE_EXPENSE,
+    CREATE_SUBSCRIPTION
+}
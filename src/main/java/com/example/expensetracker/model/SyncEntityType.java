@@ -0,0 +1,8 @@
+package com.example.expensetracker.model;
+
+public enum SyncEntityType {
+    EXPENSE,
+    CATEGORY,
+    BUDGET,
+    RECURRING_EXPENSE
+}
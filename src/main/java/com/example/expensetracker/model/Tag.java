@@ -0,0 +1,25 @@
+package com.example.expensetracker.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// A user's label for expenses, e.g. "trip-paris" or "reimbursable"; names are stored lower case
+@Entity
+@Table(name = "tags", uniqueConstraints = @UniqueConstraint(name = "uk_tag_user_name", columnNames = {"user_id", "name"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class Tag {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 64)
+    private String name;
+}
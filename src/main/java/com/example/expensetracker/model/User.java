@@ -4,10 +4,11 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = @UniqueConstraint(name = "uk_user_email", columnNames = "email"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,7 +21,7 @@ public class User {
     @Column(nullable = false)
     private String name;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String email;
 
     @Column(nullable = false)
@@ -32,6 +33,23 @@ public class User {
     @Column(nullable = false)
     private boolean accountLocked;
 
+    // Per-user change sequence; only ever bumped by UserRepository.incrementChangeSeq
+    @Column(nullable = false, updatable = false)
+    private long changeSeq;
+
+    // Tombstones at or below this sequence have been compacted away
+    @Column(nullable = false, updatable = false)
+    private long syncFloorSeq;
+
+    // Set when account deletion starts; the user is invisible from then on until the purge removes the row
+    @Column(nullable = false)
+    private boolean pendingDeletion;
+
+    // False for users whose expenses predate expense_sketches until ExpenseSketchStore has backfilled them
+    @ColumnDefault("false")
+    @Column(nullable = false, updatable = false)
+    private boolean sketchesBuilt = true;
+
     @OneToMany(mappedBy = "user", fetch = FetchType.LAZY)
     private List<Expense> expenses;
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.ArchivedExpense;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface ArchivedExpenseRepository extends JpaRepository<ArchivedExpense, Long> {
+
+    @EntityGraph(attributePaths = "category")
+    List<ArchivedExpense> findByUserId(Long userId);
+
+    @EntityGraph(attributePaths = "category")
+    Page<ArchivedExpense> findByUserId(Long userId, Pageable pageable);
+
+    @EntityGraph(attributePaths = "category")
+    List<ArchivedExpense> findByUserIdAndExpenseDateBetween(Long userId, LocalDate startDate, LocalDate endDate);
+
+    @EntityGraph(attributePaths = "category")
+    List<ArchivedExpense> findByUserIdAndIdIn(Long userId, Collection<Long> ids);
+
+    @EntityGraph(attributePaths = "category")
+    List<ArchivedExpense> findByUserIdAndChangeSeqGreaterThan(Long userId, Long changeSeq);
+
+    @Query("SELECT MAX(a.expenseDate) FROM ArchivedExpense a")
+    LocalDate findLatestExpenseDate();
+}
@@ -1,12 +1,19 @@
 package com.example.expensetracker.repository;
 
 import com.example.expensetracker.model.Budget;
+import com.example.expensetracker.model.BudgetPeriod;
 import com.example.expensetracker.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import java.util.List;
 import java.util.Optional;
 
 public interface BudgetRepository extends JpaRepository<Budget, Long> {
+    @EntityGraph(attributePaths = "category")
     List<Budget> findByUser(User user);
-    Optional<Budget> findByUserAndCategoryId(User user, Long categoryId);
+    @EntityGraph(attributePaths = "category")
+    List<Budget> findByUserId(Long userId);
+    Optional<Budget> findByUserAndCategoryIdAndPeriod(User user, Long categoryId, BudgetPeriod period);
+    @EntityGraph(attributePaths = "category")
+    List<Budget> findByUserIdAndChangeSeqGreaterThan(Long userId, Long changeSeq);
 }
\ No newline at end of file
@@ -13,4 +13,6 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     List<Category> findByUserIsNull();
 
     boolean existsByNameAndUser(String name, User user);
+
+    List<Category> findByUserIdAndChangeSeqGreaterThan(Long userId, Long changeSeq);
 }
@@ -0,0 +1,23 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.ChangeTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ChangeTombstoneRepository extends JpaRepository<ChangeTombstone, Long> {
+
+    List<ChangeTombstone> findByUserIdAndChangeSeqGreaterThan(Long userId, Long changeSeq);
+
+    // Rows of [userId, highest compacted seq]
+    @Query("SELECT t.userId, MAX(t.changeSeq) FROM ChangeTombstone t WHERE t.deletedAt < :cutoff GROUP BY t.userId")
+    List<Object[]> findCompactableFloors(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("DELETE FROM ChangeTombstone t WHERE t.deletedAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,23 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.ExpenseAnomaly;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ExpenseAnomalyRepository extends JpaRepository<ExpenseAnomaly, Long> {
+
+    // Anomalies of expenses that were deleted since are left out
+    @Query("SELECT a FROM ExpenseAnomaly a WHERE a.userId = :userId AND (:includeDismissed = true OR a.dismissed = false) " +
+            "AND (EXISTS (SELECT 1 FROM Expense e WHERE e.id = a.expenseId) " +
+            "OR EXISTS (SELECT 1 FROM ArchivedExpense x WHERE x.id = a.expenseId)) " +
+            "ORDER BY a.detectedAt DESC")
+    List<ExpenseAnomaly> findForUser(@Param("userId") Long userId, @Param("includeDismissed") boolean includeDismissed);
+
+    @Modifying
+    @Query("UPDATE ExpenseAnomaly a SET a.dismissed = true WHERE a.id = :id AND a.userId = :userId")
+    int dismiss(@Param("id") Long id, @Param("userId") Long userId);
+}
@@ -4,18 +4,26 @@ import com.example.expensetracker.model.Expense;
 import com.example.expensetracker.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ExpenseRepository extends JpaRepository<Expense, Long> {
 
+    @EntityGraph(attributePaths = "category")
     List<Expense> findByUser(User user);
 
+    @EntityGraph(attributePaths = "category")
     Page<Expense> findByUser(User user, Pageable pageable);
 
+    @EntityGraph(attributePaths = "category")
     List<Expense> findByUserAndExpenseDateBetween(
             User user,
             LocalDate startDate,
@@ -23,4 +31,26 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
     );
 
     Optional<Expense> findByIdAndUser(Long id, User user);
+
+    @EntityGraph(attributePaths = "category")
+    List<Expense> findByUserAndIdIn(User user, Collection<Long> ids);
+
+    // Moves the expense into the next sync without touching its version
+    @Modifying
+    @Query("UPDATE Expense e SET e.changeSeq = :changeSeq WHERE e.id = :id AND e.user.id = :userId")
+    int updateChangeSeq(@Param("id") Long id, @Param("userId") Long userId, @Param("changeSeq") long changeSeq);
+
+    @EntityGraph(attributePaths = "category")
+    List<Expense> findByUserIdAndChangeSeqGreaterThan(Long userId, Long changeSeq);
+
+    // Rows of [id, amount, expenseDate, categoryId, changeSeq] for ExpenseAnalyticsCache, hot and archived
+    // in one statement so both are read from the same snapshot. One more row, with a null id, carries the
+    // user's committed change sequence, which also covers deletions made after the newest row was written.
+    @Query("SELECT e.id, e.amount, e.expenseDate, c.id, e.changeSeq FROM Expense e LEFT JOIN e.category c WHERE e.user.id = :userId " +
+            "UNION ALL " +
+            "SELECT a.id, a.amount, a.expenseDate, c.id, a.changeSeq FROM ArchivedExpense a LEFT JOIN a.category c WHERE a.user.id = :userId " +
+            "UNION ALL " +
+            "SELECT CAST(NULL AS Long), CAST(NULL AS BigDecimal), CAST(NULL AS LocalDate), CAST(NULL AS Long), u.changeSeq " +
+            "FROM User u WHERE u.id = :userId")
+    List<Object[]> findAnalyticsRows(@Param("userId") Long userId);
 }
@@ -0,0 +1,22 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.ExpenseTag;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ExpenseTagRepository extends JpaRepository<ExpenseTag, Long> {
+
+    @Modifying
+    @Query("DELETE FROM ExpenseTag et WHERE et.expenseId = :expenseId")
+    int deleteByExpenseId(@Param("expenseId") Long expenseId);
+
+    // Rows of [expenseId, tag name], names in order
+    @Query("SELECT et.expenseId, t.name FROM ExpenseTag et JOIN Tag t ON t.id = et.tagId " +
+            "WHERE et.userId = :userId AND et.expenseId IN :expenseIds ORDER BY t.name")
+    List<Object[]> findTagNames(@Param("userId") Long userId, @Param("expenseIds") Collection<Long> expenseIds);
+}
@@ -2,13 +2,33 @@ package com.example.expensetracker.repository;
 
 import com.example.expensetracker.model.RecurringExpense;
 import com.example.expensetracker.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.time.LocalDate;
 import java.util.List;
 
 public interface RecurringExpenseRepository extends JpaRepository<RecurringExpense, Long> {
+    @EntityGraph(attributePaths = "category")
     List<RecurringExpense> findByUser(User user);
     // Find expenses that are due today or in the past (in case app was off)
     List<RecurringExpense> findByNextDueDateLessThanEqual(LocalDate date);
 
+    // [id, user id] of due subscriptions, for the scheduler to post one by one
+    @Query("SELECT r.id, r.user.id FROM RecurringExpense r WHERE r.nextDueDate <= :date ORDER BY r.id")
+    List<Object[]> findDueIds(@Param("date") LocalDate date);
+
+    // Moves the due date on only if it is still the one that was posted; bumps the version so a stale
+    // entity loaded by updateSubscription can't put the old date back
+    @Modifying
+    @Query("UPDATE RecurringExpense r SET r.nextDueDate = :next, r.changeSeq = :changeSeq, r.version = r.version + 1 " +
+            "WHERE r.id = :id AND r.nextDueDate = :due")
+    int advanceDueDate(@Param("id") Long id, @Param("due") LocalDate due, @Param("next") LocalDate next,
+                       @Param("changeSeq") long changeSeq);
+    @EntityGraph(attributePaths = "category")
+    List<RecurringExpense> findByUserIdAndChangeSeqGreaterThan(Long userId, Long changeSeq);
+
 }
\ No newline at end of file
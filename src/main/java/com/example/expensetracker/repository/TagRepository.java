@@ -0,0 +1,12 @@
+package com.example.expensetracker.repository;
+
+import com.example.expensetracker.model.Tag;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface TagRepository extends JpaRepository<Tag, Long> {
+
+    List<Tag> findByUserIdAndNameIn(Long userId, Collection<String> names);
+}
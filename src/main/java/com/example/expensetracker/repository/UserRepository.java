@@ -2,12 +2,46 @@ package com.example.expensetracker.repository;
 
 import com.example.expensetracker.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
 
+    Optional<User> findByEmailAndPendingDeletionFalse(String email);
+
+    Optional<User> findByIdAndPendingDeletionFalse(Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.pendingDeletion = true WHERE u.id = :userId AND u.pendingDeletion = false")
+    int markPendingDeletion(@Param("userId") Long userId);
+
+    @Query("SELECT u.id FROM User u WHERE u.pendingDeletion = true")
+    List<Long> findIdsPendingDeletion();
+
     boolean existsByEmail(String email);
+
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :userId")
+    int updatePassword(@Param("userId") Long userId, @Param("password") String encodedPassword);
+
+    // Row-locks the user until commit, which keeps that user's sequence gap-free for readers
+    @Modifying
+    @Query("UPDATE User u SET u.changeSeq = u.changeSeq + :count WHERE u.id = :userId")
+    int incrementChangeSeq(@Param("userId") Long userId, @Param("count") long count);
+
+    @Query("SELECT u.changeSeq FROM User u WHERE u.id = :userId")
+    long findChangeSeq(@Param("userId") Long userId);
+
+    @Query("SELECT u.syncFloorSeq FROM User u WHERE u.id = :userId")
+    long findSyncFloorSeq(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE User u SET u.syncFloorSeq = :floor WHERE u.id = :userId AND u.syncFloorSeq < :floor")
+    int raiseSyncFloorSeq(@Param("userId") Long userId, @Param("floor") long floor);
 }
@@ -2,6 +2,7 @@ package com.example.expensetracker.security;
 
 import com.example.expensetracker.model.User;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import org.jspecify.annotations.NonNull;
@@ -9,13 +10,20 @@ import org.jspecify.annotations.NonNull;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 public class CustomUserDetails implements UserDetails {
 
     private final User user;
+    private final boolean admin;
 
     public CustomUserDetails(User user) {
+        this(user, false);
+    }
+
+    public CustomUserDetails(User user, boolean admin) {
         this.user = user;
+        this.admin = admin;
     }
 
     public User getUser() {
@@ -24,8 +32,9 @@ public class CustomUserDetails implements UserDetails {
 
     @Override
     public @NonNull Collection<? extends GrantedAuthority> getAuthorities() {
-        // No roles yet
-        return Collections.emptyList();
+        return admin
+                ? List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))
+                : Collections.emptyList();
     }
 
     @Override
@@ -4,18 +4,31 @@ import com.example.expensetracker.model.User;
 import com.example.expensetracker.service.UserService;
 import org.jspecify.annotations.NonNull;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserService userService;
+    private final Set<String> adminEmails;
 
-    public CustomUserDetailsService(UserService userService) {
+    public CustomUserDetailsService(UserService userService,
+                                    @Value("${security.admin-emails:}") List<String> adminEmails) {
         this.userService = userService;
+        this.adminEmails = adminEmails.stream()
+                .map(email -> email.trim().toLowerCase(Locale.ROOT))
+                .filter(email -> !email.isEmpty())
+                .collect(Collectors.toSet());
     }
 
     @Override
@@ -26,6 +39,16 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .orElseThrow(() ->
                         new UsernameNotFoundException("User not found: " + email));
 
-        return new CustomUserDetails(user);
+        return new CustomUserDetails(user, adminEmails.contains(user.getEmail().toLowerCase(Locale.ROOT)));
+    }
+
+    // Called by the authentication provider after a successful login when the stored
+    // hash uses an outdated algorithm or cost; newPassword is already encoded
+    @Override
+    public @NonNull UserDetails updatePassword(@NonNull UserDetails userDetails, String newPassword) {
+        User user = ((CustomUserDetails) userDetails).getUser();
+        userService.updateEncodedPassword(user.getId(), newPassword);
+        user.setPassword(newPassword);
+        return userDetails;
     }
 }
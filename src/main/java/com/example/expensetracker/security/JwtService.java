@@ -13,6 +13,8 @@ import java.util.Date;
 @Service
 public class JwtService {
 
+    private static final String USER_ID_CLAIM = "uid";
+
     private final Key signingKey;
     private final long expirationMs;
 
@@ -25,12 +27,18 @@ public class JwtService {
     }
 
     public String generateToken(String email) {
+        return generateToken(email, null);
+    }
+
+    // The user id lets ShardRoutingFilter route the request without looking the email up
+    public String generateToken(String email, Long userId) {
 
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expirationMs);
 
         return Jwts.builder()
                 .setSubject(email)
+                .claim(USER_ID_CLAIM, userId)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(signingKey, SignatureAlgorithm.HS256)
@@ -41,6 +49,12 @@ public class JwtService {
         return extractAllClaims(token).getSubject();
     }
 
+    // Null for tokens issued without one
+    public Long extractUserId(String token) {
+        Number userId = extractAllClaims(token).get(USER_ID_CLAIM, Number.class);
+        return userId != null ? userId.longValue() : null;
+    }
+
     public boolean isTokenValid(String token, String expectedEmail) {
         String username = extractUsername(token);
         return username.equals(expectedEmail) && !isTokenExpired(token);
@@ -0,0 +1,108 @@
+package com.example.expensetracker.security;
+
+import com.example.expensetracker.config.RateLimitProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jspecify.annotations.NonNull;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final List<GroupLimiter> groups = new ArrayList<>();
+
+    public RateLimitFilter(RateLimitProperties properties) {
+        this.enabled = properties.isEnabled();
+        for (RateLimitProperties.Group group : properties.getGroups()) {
+            groups.add(new GroupLimiter(group, new TokenBucketRateLimiter(
+                    group.getCapacity(), group.getRefillPerSecond(), properties.getMaxKeysPerGroup())));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+
+        GroupLimiter group = enabled ? match(request.getRequestURI()) : null;
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long waitNanos = group.limiter.tryAcquire(key(group.config, request));
+        if (waitNanos == 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        // Same shape as ErrorResponse; written by hand because this runs outside MVC
+        response.getWriter().write("{\"timestamp\":\"" + LocalDateTime.now()
+                + "\",\"status\":429,\"error\":\"Too Many Requests\",\"message\":\"Rate limit exceeded, retry in "
+                + retryAfterSeconds + "s\",\"path\":\"" + escape(request.getRequestURI()) + "\"}");
+    }
+
+    @Scheduled(fixedDelayString = "${ratelimit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        for (GroupLimiter group : groups) {
+            group.limiter.evictIdle();
+        }
+    }
+
+    private GroupLimiter match(String uri) {
+        for (GroupLimiter group : groups) {
+            for (String prefix : group.config.getPathPrefixes()) {
+                if (uri.startsWith(prefix)) {
+                    return group;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String key(RateLimitProperties.Group config, HttpServletRequest request) {
+        if (config.getKey() == RateLimitProperties.KeyType.USER) {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+                return "u:" + auth.getName();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static final class GroupLimiter {
+        private final RateLimitProperties.Group config;
+        private final TokenBucketRateLimiter limiter;
+
+        private GroupLimiter(RateLimitProperties.Group config, TokenBucketRateLimiter limiter) {
+            this.config = config;
+            this.limiter = limiter;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.expensetracker.security;
+
+import com.example.expensetracker.config.ShardContext;
+import com.example.expensetracker.service.ShardRouter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jspecify.annotations.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Picks the shard before the security chain loads the user. The signed-in user's shard wins, found from
+// the user id in the token (older tokens without one go through the directory by email); anonymous
+// requests fall back to the user id in the path, then shard 0. AuthController routes by email itself.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+public class ShardRoutingFilter extends OncePerRequestFilter {
+
+    private static final Pattern USER_ID_IN_PATH = Pattern.compile("/users?/(\\d{1,18})(/|$)");
+
+    private final ShardRouter shardRouter;
+    private final JwtService jwtService;
+
+    public ShardRoutingFilter(ShardRouter shardRouter, JwtService jwtService) {
+        this.shardRouter = shardRouter;
+        this.jwtService = jwtService;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Integer previous = ShardContext.set(resolveShard(request));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    private int resolveShard(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                String token = authHeader.substring(7);
+                Long userId = jwtService.extractUserId(token);
+                return userId != null
+                        ? shardRouter.shardForUserId(userId)
+                        : shardRouter.shardForEmail(jwtService.extractUsername(token));
+            } catch (RuntimeException e) {
+                // Invalid token: the JWT filter rejects it, the shard doesn't matter
+                return 0;
+            }
+        }
+
+        Matcher matcher = USER_ID_IN_PATH.matcher(request.getRequestURI());
+        if (matcher.find()) {
+            return shardRouter.shardForUserId(Long.parseLong(matcher.group(1)));
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.expensetracker.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket expressed as GCRA: each key holds one "theoretical arrival time" that is
+// advanced with a single CAS, so there are no locks and no per-bucket refill bookkeeping.
+public class TokenBucketRateLimiter {
+
+    private static final int OVERFLOW_STRIPES = 256;
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    // Shared by keys that arrive while the map is full, which keeps memory bounded
+    private final AtomicLong[] overflow = new AtomicLong[OVERFLOW_STRIPES];
+
+    public TokenBucketRateLimiter(int capacity, double refillPerSecond, int maxKeys) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate limit capacity and refill rate must be positive");
+        }
+        this.intervalNanos = (long) (1_000_000_000L / refillPerSecond);
+        this.burstNanos = intervalNanos * capacity;
+        this.maxKeys = maxKeys;
+        long now = System.nanoTime();
+        for (int i = 0; i < OVERFLOW_STRIPES; i++) {
+            overflow[i] = new AtomicLong(now);
+        }
+    }
+
+    // Returns 0 when a token was taken, otherwise the nanoseconds until one is available
+    public long tryAcquire(String key) {
+        return tryAcquire(bucketFor(key), System.nanoTime());
+    }
+
+    private long tryAcquire(AtomicLong bucket, long now) {
+        while (true) {
+            long tat = bucket.get();
+            long newTat = Math.max(tat, now) + intervalNanos;
+            long allowAt = newTat - burstNanos;
+            if (allowAt > now) {
+                return allowAt - now;
+            }
+            if (bucket.compareAndSet(tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucketFor(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.mappingCount() >= maxKeys) {
+            return overflow[(key.hashCode() & 0x7fffffff) % OVERFLOW_STRIPES];
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+    }
+
+    // A bucket whose arrival time has passed is full again, i.e. identical to a new one,
+    // so dropping it never changes a decision
+    public void evictIdle() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.get() <= now);
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.PurgeStatusDto;
+import com.example.expensetracker.event.CacheRegion;
+import com.example.expensetracker.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntSupplier;
+
+// Deletes an account with set-based statements. The user is flagged first, which hides it from the
+// API immediately; large accounts are then purged in fixed-size chunks on a background thread so
+// neither the persistence context nor a single transaction grows with the account. A finished purge's
+// progress is kept until its final state has been read once (a status poll or a repeated delete), or for
+// account.purge.status-retention-ms if nobody asks.
+@Service
+public class AccountPurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountPurgeService.class);
+
+    private final UserRepository userRepository;
+    private final ShardRouter shardRouter;
+    private final ExpenseAnalyticsCache analyticsCache;
+    private final ExpenseAnomalyDetector anomalyDetector;
+    private final DescriptionAutocompleteIndex autocompleteIndex;
+    private final ExpenseTagIndex tagIndex;
+    private final BudgetStatusCache budgetStatusCache;
+    private final ColumnarExpenseStore columnarStore;
+    private final CacheInvalidationBus invalidationBus;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final long inlineThreshold;
+    private final long statusRetentionMs;
+
+    private final Map<Long, Progress> progressByUser = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "account-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AccountPurgeService(UserRepository userRepository,
+                               ShardRouter shardRouter,
+                               ExpenseAnalyticsCache analyticsCache,
+                               ExpenseAnomalyDetector anomalyDetector,
+                               DescriptionAutocompleteIndex autocompleteIndex,
+                               ExpenseTagIndex tagIndex,
+                               BudgetStatusCache budgetStatusCache,
+                               ColumnarExpenseStore columnarStore,
+                               CacheInvalidationBus invalidationBus,
+                               JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${account.purge.chunk-size:5000}") int chunkSize,
+                               @Value("${account.purge.inline-threshold:5000}") long inlineThreshold,
+                               @Value("${account.purge.status-retention-ms:3600000}") long statusRetentionMs) {
+        this.userRepository = userRepository;
+        this.shardRouter = shardRouter;
+        this.analyticsCache = analyticsCache;
+        this.anomalyDetector = anomalyDetector;
+        this.autocompleteIndex = autocompleteIndex;
+        this.tagIndex = tagIndex;
+        this.budgetStatusCache = budgetStatusCache;
+        this.columnarStore = columnarStore;
+        this.invalidationBus = invalidationBus;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.inlineThreshold = inlineThreshold;
+        this.statusRetentionMs = statusRetentionMs;
+    }
+
+    public PurgeStatusDto deleteAccount(Long userId) {
+        Integer marked = transactionTemplate.execute(status -> {
+            int updated = userRepository.markPendingDeletion(userId);
+            if (updated > 0) {
+                invalidationBus.publish(userId, CacheRegion.USER);
+            }
+            return updated;
+        });
+        if (marked == null || marked == 0) {
+            // A retried request: report the purge already under way instead of starting another
+            Progress existing = progressByUser.get(userId);
+            if (existing != null) {
+                return read(existing);
+            }
+            if (!userRepository.existsById(userId)) {
+                throw new IllegalArgumentException("User not found");
+            }
+            // Flagged by a request that has not registered its progress yet
+            return new PurgeStatusDto(userId, "RUNNING", "queued", 0, -1);
+        }
+
+        Long total = jdbcTemplate.queryForObject("SELECT (SELECT COUNT(*) FROM expenses WHERE user_id = ?) + " +
+                "(SELECT COUNT(*) FROM expenses_archive WHERE user_id = ?)", Long.class, userId, userId);
+        Progress progress = new Progress(userId, total != null ? total : 0);
+        progressByUser.put(userId, progress);
+
+        if (progress.expensesTotal <= inlineThreshold) {
+            purge(progress);
+        } else {
+            int shard = shardRouter.currentShard();
+            executor.submit(() -> shardRouter.runOn(shard, () -> purge(progress)));
+        }
+        return progress.toDto();
+    }
+
+    public PurgeStatusDto getStatus(Long userId) {
+        Progress progress = progressByUser.get(userId);
+        if (progress == null) {
+            throw new NoSuchElementException("No account deletion in progress for this user");
+        }
+        return read(progress);
+    }
+
+    // Finished purges nobody asked about
+    @Scheduled(fixedDelayString = "${account.purge.status-cleanup-interval-ms:60000}")
+    public void expireFinishedStatuses() {
+        long cutoff = System.currentTimeMillis() - statusRetentionMs;
+        progressByUser.values().removeIf(progress -> progress.finishedAt > 0 && progress.finishedAt < cutoff);
+    }
+
+    // The final state is reported once; after that the entry is dropped
+    private PurgeStatusDto read(Progress progress) {
+        // Checked first: a purge finishing in between must not be dropped while reported as running
+        boolean finished = progress.finishedAt > 0;
+        PurgeStatusDto status = progress.toDto();
+        if (finished) {
+            progressByUser.remove(progress.userId, progress);
+        }
+        return status;
+    }
+
+    // Picks up purges interrupted by a restart
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingPurges() {
+        shardRouter.fanOut(shard -> {
+            for (Long userId : userRepository.findIdsPendingDeletion()) {
+                Progress progress = new Progress(userId, -1);
+                progressByUser.put(userId, progress);
+                executor.submit(() -> shardRouter.runOn(shard, () -> purge(progress)));
+            }
+            return null;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void purge(Progress progress) {
+        Long userId = progress.userId;
+        try {
+            // Leaves first: nothing references recurring expenses, budgets or tombstones
+            progress.phase = "recurring_expenses";
+            inTransaction(() -> jdbcTemplate.update(
+                    "DELETE FROM recurring_expense WHERE user_id = ? " +
+                    "OR category_id IN (SELECT id FROM categories WHERE user_id = ?)", userId, userId));
+
+            progress.phase = "budgets";
+            inTransaction(() -> jdbcTemplate.update(
+                    "DELETE FROM budget WHERE user_id = ? " +
+                    "OR category_id IN (SELECT id FROM categories WHERE user_id = ?)", userId, userId));
+
+            progress.phase = "expenses";
+            deleteInChunks("expenses", userId, progress);
+            deleteInChunks("expenses_archive", userId, progress);
+
+            progress.phase = "tombstones";
+            deleteInChunks("change_tombstones", userId, null);
+            deleteInChunks("idempotency_keys", userId, null);
+            deleteInChunks("expense_anomalies", userId, null);
+            deleteInChunks("expense_sketches", userId, null);
+            deleteInChunks("expense_tags", userId, null);
+            deleteInChunks("tags", userId, null);
+
+            progress.phase = "categories";
+            inTransaction(() -> {
+                // Other users' expenses that point at this user's categories become uncategorized
+                jdbcTemplate.update("UPDATE expenses SET category_id = NULL " +
+                        "WHERE category_id IN (SELECT id FROM categories WHERE user_id = ?)", userId);
+                jdbcTemplate.update("UPDATE expenses_archive SET category_id = NULL " +
+                        "WHERE category_id IN (SELECT id FROM categories WHERE user_id = ?)", userId);
+                return jdbcTemplate.update("DELETE FROM categories WHERE user_id = ?", userId);
+            });
+
+            progress.phase = "user";
+            inTransaction(() -> {
+                // Catches rows written by in-flight requests that passed the visibility check
+                jdbcTemplate.update("DELETE FROM expenses WHERE user_id = ?", userId);
+                jdbcTemplate.update("DELETE FROM expenses_archive WHERE user_id = ?", userId);
+                return jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+            });
+            shardRouter.recordDeletion(userId);
+
+            // Bulk deletes publish no events
+            analyticsCache.evict(userId);
+            anomalyDetector.forget(userId);
+            autocompleteIndex.forget(userId);
+            tagIndex.forget(userId);
+            budgetStatusCache.invalidate(userId);
+            columnarStore.markStale(userId);
+            invalidationBus.publish(userId, CacheRegion.values());
+            progress.state = "COMPLETED";
+            progress.phase = "done";
+            progress.finishedAt = System.currentTimeMillis();
+        } catch (RuntimeException e) {
+            progress.state = "FAILED";
+            progress.finishedAt = System.currentTimeMillis();
+            log.error("Account purge for user {} failed during {}", userId, progress.phase, e);
+            throw e;
+        }
+    }
+
+    // Each chunk commits on its own, so memory and lock footprint stay constant
+    private void deleteInChunks(String table, Long userId, Progress progress) {
+        String sql = "DELETE FROM " + table + " WHERE id IN (" +
+                "SELECT id FROM " + table + " WHERE user_id = ? FETCH FIRST ? ROWS ONLY)";
+        int deleted;
+        do {
+            deleted = inTransaction(() -> jdbcTemplate.update(sql, userId, chunkSize));
+            if (progress != null) {
+                progress.expensesDeleted += deleted;
+            }
+        } while (deleted == chunkSize);
+    }
+
+    private int inTransaction(IntSupplier work) {
+        Integer result = transactionTemplate.execute(status -> work.getAsInt());
+        return result != null ? result : 0;
+    }
+
+    private static final class Progress {
+        private final Long userId;
+        private final long expensesTotal;
+        private volatile String state = "RUNNING";
+        private volatile String phase = "queued";
+        private volatile long expensesDeleted;
+        // Set once the purge completed or failed
+        private volatile long finishedAt;
+
+        private Progress(Long userId, long expensesTotal) {
+            this.userId = userId;
+            this.expensesTotal = expensesTotal;
+        }
+
+        private PurgeStatusDto toDto() {
+            return new PurgeStatusDto(userId, state, phase, expensesDeleted, expensesTotal);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.ExpenseAnomalyDto;
+import com.example.expensetracker.model.User;
+
+import java.util.List;
+
+public interface AnomalyService {
+
+    List<ExpenseAnomalyDto> getAnomalies(User user, boolean includeDismissed);
+
+    void dismiss(Long anomalyId, User user);
+}
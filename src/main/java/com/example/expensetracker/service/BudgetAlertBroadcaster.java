@@ -0,0 +1,78 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.BudgetAlertDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class BudgetAlertBroadcaster {
+
+    // Idle emitters only hold an async request context, not a servlet thread
+    private final Map<Long, Set<SseEmitter>> emittersByUser = new ConcurrentHashMap<>();
+    private final long timeoutMs;
+
+    public BudgetAlertBroadcaster(@Value("${budget.alerts.sse-timeout-ms:1800000}") long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        emittersByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(emitter);
+
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(() -> remove(userId, emitter));
+        emitter.onError(e -> remove(userId, emitter));
+
+        send(userId, emitter, SseEmitter.event().comment("connected"));
+        return emitter;
+    }
+
+    public boolean hasSubscribers(Long userId) {
+        return emittersByUser.containsKey(userId);
+    }
+
+    public void publish(Long userId, BudgetAlertDto alert) {
+        Set<SseEmitter> emitters = emittersByUser.get(userId);
+        if (emitters == null) {
+            return;
+        }
+        SseEmitter.SseEventBuilder event = SseEmitter.event().name("budget-alert").data(alert);
+        for (SseEmitter emitter : emitters) {
+            send(userId, emitter, event);
+        }
+    }
+
+    // Keeps proxies from closing idle streams and flushes out dead connections
+    @Scheduled(fixedDelayString = "${budget.alerts.heartbeat-ms:25000}")
+    public void heartbeat() {
+        SseEmitter.SseEventBuilder ping = SseEmitter.event().comment("ping");
+        emittersByUser.forEach((userId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                send(userId, emitter, ping);
+            }
+        });
+    }
+
+    private void send(Long userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            remove(userId, emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void remove(Long userId, SseEmitter emitter) {
+        emittersByUser.computeIfPresent(userId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
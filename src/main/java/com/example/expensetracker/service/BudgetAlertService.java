@@ -0,0 +1,204 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.BudgetAlertDto;
+import com.example.expensetracker.event.CacheInvalidation;
+import com.example.expensetracker.event.CacheRegion;
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.event.ExpenseSnapshot;
+import com.example.expensetracker.model.Budget;
+import com.example.expensetracker.model.BudgetPeriod;
+import com.example.expensetracker.repository.BudgetRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class BudgetAlertService {
+
+    private final BudgetRepository budgetRepository;
+    private final ExpenseAnalyticsCache analyticsCache;
+    private final BudgetAlertBroadcaster broadcaster;
+    private final int[] thresholds;
+
+    // Running totals of each budget's current window, only kept for users with an open alert stream
+    private final Map<Long, WindowTotals> totalsByUser = new ConcurrentHashMap<>();
+
+    public BudgetAlertService(BudgetRepository budgetRepository,
+                              ExpenseAnalyticsCache analyticsCache,
+                              BudgetAlertBroadcaster broadcaster,
+                              @Value("${budget.alerts.thresholds:50,80,100}") int[] thresholds) {
+        this.budgetRepository = budgetRepository;
+        this.analyticsCache = analyticsCache;
+        this.broadcaster = broadcaster;
+        this.thresholds = thresholds;
+    }
+
+    @Order(10)
+    @TransactionalEventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        Long userId = event.getUserId();
+        if (!broadcaster.hasSubscribers(userId)) {
+            totalsByUser.remove(userId);
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        List<BudgetAlertDto> alerts = new ArrayList<>();
+
+        // Loaded outside the map, which must not be blocked by a query. When two writes load at once the
+        // first install wins; the other event is checked against the totals that were kept.
+        WindowTotals totals = totalsByUser.get(userId);
+        if (totals == null || !totals.today.equals(today)) {
+            WindowTotals loaded = load(userId, today);
+            totals = totalsByUser.compute(userId, (id, current) ->
+                    current != null && current.today.equals(today) ? current : loaded);
+        }
+
+        synchronized (totals) {
+            // The load may already contain this change, including when another write's listener loaded
+            // after the cache had applied it
+            boolean alreadyApplied = totals.coverage.includes(event);
+            apply(totals, event.getBefore(), true, alreadyApplied, alerts);
+            apply(totals, event.getAfter(), false, alreadyApplied, alerts);
+        }
+
+        for (BudgetAlertDto alert : alerts) {
+            broadcaster.publish(userId, alert);
+        }
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        totalsByUser.remove(userId);
+        return broadcaster.subscribe(userId);
+    }
+
+    // The running totals kept for a user's open alert stream; empty until the first write after subscribing
+    public List<TrackedWindow> trackedWindows(Long userId) {
+        WindowTotals totals = totalsByUser.get(userId);
+        if (totals == null) {
+            return List.of();
+        }
+        List<TrackedWindow> windows = new ArrayList<>();
+        synchronized (totals) {
+            totals.lines.forEach((categoryId, lines) -> lines.forEach(line ->
+                    windows.add(new TrackedWindow(categoryId, line.period, line.start, line.end, line.spent))));
+        }
+        return windows;
+    }
+
+    // Limits changed, so the cached lines are rebuilt on the next write
+    public void budgetChanged(Long userId) {
+        totalsByUser.remove(userId);
+    }
+
+    // Written on another instance: the totals are reloaded on the next local write
+    @EventListener
+    public void onRemoteInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.covers(CacheRegion.EXPENSES, CacheRegion.BUDGETS)) {
+            totalsByUser.remove(invalidation.getUserId());
+        }
+    }
+
+    private void apply(WindowTotals totals, ExpenseSnapshot snapshot, boolean removed,
+                       boolean alreadyApplied, List<BudgetAlertDto> alerts) {
+        if (snapshot == null || snapshot.getCategoryId() == null) {
+            return;
+        }
+        BigDecimal delta = removed ? snapshot.getAmount().negate() : snapshot.getAmount();
+
+        for (BudgetLine line : totals.lines.getOrDefault(snapshot.getCategoryId(), List.of())) {
+            if (snapshot.getExpenseDate().isBefore(line.start) || snapshot.getExpenseDate().isAfter(line.end)) {
+                continue;
+            }
+            BigDecimal before = alreadyApplied ? line.spent.subtract(delta) : line.spent;
+            if (!alreadyApplied) {
+                line.spent = line.spent.add(delta);
+            }
+
+            double percentBefore = percentage(before, line.limit);
+            double percentAfter = percentage(line.spent, line.limit);
+
+            // Only upward crossings are pushed; dropping back under a threshold is silent
+            for (int threshold : thresholds) {
+                if (percentBefore < threshold && percentAfter >= threshold) {
+                    alerts.add(new BudgetAlertDto(snapshot.getCategoryId(), line.categoryName,
+                            threshold, line.limit, line.spent, percentAfter, line.period));
+                }
+            }
+        }
+    }
+
+    private WindowTotals load(Long userId, LocalDate today) {
+        List<BudgetLine> lines = new ArrayList<>();
+        List<ExpenseAnalyticsCache.Window> windows = new ArrayList<>();
+        for (Budget budget : budgetRepository.findByUserId(userId)) {
+            BudgetLine line = new BudgetLine(budget.getCategory().getId(), budget.getCategory().getName(),
+                    budget.getLimitAmount(), budget.getPeriod(),
+                    budget.getPeriod().start(today, budget.getRollingDays()), budget.getPeriod().end(today));
+            lines.add(line);
+            windows.add(new ExpenseAnalyticsCache.Window(line.categoryId, line.start, line.end));
+        }
+
+        ExpenseAnalyticsCache.WindowSums sums = analyticsCache.windowTotals(userId, windows);
+        WindowTotals totals = new WindowTotals(today, sums.coverage());
+        for (int i = 0; i < lines.size(); i++) {
+            BudgetLine line = lines.get(i);
+            line.spent = sums.totals().get(i);
+            totals.lines.computeIfAbsent(line.categoryId, id -> new ArrayList<>()).add(line);
+        }
+        return totals;
+    }
+
+    private static double percentage(BigDecimal spent, BigDecimal limit) {
+        if (limit == null || limit.signum() <= 0) {
+            return 0;
+        }
+        return spent.doubleValue() / limit.doubleValue() * 100;
+    }
+
+    public record TrackedWindow(Long categoryId, BudgetPeriod period, LocalDate start, LocalDate end, BigDecimal spent) {
+    }
+
+    // Windows are relative to "today", so the lines are rebuilt when the date changes
+    private static final class WindowTotals {
+        private final LocalDate today;
+        private final ExpenseAnalyticsCache.Coverage coverage;   // changes the loaded sums already include
+        private final Map<Long, List<BudgetLine>> lines = new HashMap<>();
+
+        private WindowTotals(LocalDate today, ExpenseAnalyticsCache.Coverage coverage) {
+            this.today = today;
+            this.coverage = coverage;
+        }
+    }
+
+    private static final class BudgetLine {
+        private final Long categoryId;
+        private final String categoryName;
+        private final BigDecimal limit;
+        private final BudgetPeriod period;
+        private final LocalDate start;
+        private final LocalDate end;
+        private BigDecimal spent = BigDecimal.ZERO;
+
+        private BudgetLine(Long categoryId, String categoryName, BigDecimal limit, BudgetPeriod period,
+                           LocalDate start, LocalDate end) {
+            this.categoryId = categoryId;
+            this.categoryName = categoryName;
+            this.limit = limit;
+            this.period = period;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
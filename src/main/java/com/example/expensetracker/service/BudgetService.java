@@ -0,0 +1,18 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.BudgetStatusDto;
+import com.example.expensetracker.model.Budget;
+import com.example.expensetracker.model.BudgetPeriod;
+import com.example.expensetracker.model.User;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface BudgetService {
+
+    Budget setBudget(User user, Long categoryId, BigDecimal limitAmount, BudgetPeriod period, Integer rollingDays);
+
+    List<Budget> getUserBudgets(User user);
+
+    List<BudgetStatusDto> getBudgetStatus(User user);
+}
@@ -0,0 +1,190 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.BudgetStatusDto;
+import com.example.expensetracker.dto.CacheStatsDto;
+import com.example.expensetracker.event.BudgetChangedEvent;
+import com.example.expensetracker.event.CacheInvalidation;
+import com.example.expensetracker.event.CacheRegion;
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Budget status per user, the most polled read. An entry is dropped after every committed expense or budget
+// change of its user and expires on the first day any of its windows moves (the end of the shortest calendar
+// period, or tomorrow for rolling windows). Concurrent misses for a user share one computation; a change
+// committed while it runs detaches it, so its result goes to the callers already waiting and is not kept.
+@Service
+public class BudgetStatusCache {
+
+    private final int maxEntries;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder computeNanos = new LongAdder();
+    private final AtomicLong maxComputeNanos = new AtomicLong();
+
+    public BudgetStatusCache(@Value("${budget.status-cache.max-entries:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    // After the analytics cache (order 0) has applied the change, so a recomputation sees it
+    @Order(5)
+    @TransactionalEventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    @TransactionalEventListener
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    // Statuses name categories and sum expenses against budgets, so any of the three written elsewhere
+    @EventListener
+    public void onRemoteInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.covers(CacheRegion.CATEGORIES, CacheRegion.EXPENSES, CacheRegion.BUDGETS)) {
+            invalidate(invalidation.getUserId());
+        }
+    }
+
+    public void invalidate(Long userId) {
+        if (entries.remove(userId) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public List<BudgetStatusDto> get(Long userId, LocalDate today, Supplier<List<BudgetStatusDto>> compute) {
+        while (true) {
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                if (!entry.future.isDone()) {
+                    coalesced.increment();
+                    return join(entry);
+                }
+                if (entry.isValidOn(today)) {
+                    entry.lastAccess = clock.incrementAndGet();
+                    hits.increment();
+                    return entry.future.join();
+                }
+                // Expired, or failed and not yet removed
+                if (entries.remove(userId, entry) && !entry.future.isCompletedExceptionally()) {
+                    expirations.increment();
+                }
+                continue;
+            }
+            Entry created = new Entry(today);
+            if (entries.putIfAbsent(userId, created) != null) {
+                continue;
+            }
+            misses.increment();
+            evictIfOverCapacity();
+            return computeInto(userId, created, compute);
+        }
+    }
+
+    public CacheStatsDto stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long coalescedCount = coalesced.sum();
+        long lookups = hitCount + missCount + coalescedCount;
+        return new CacheStatsDto(
+                entries.size(),
+                hitCount,
+                missCount,
+                coalescedCount,
+                lookups == 0 ? 0 : (double) (hitCount + coalescedCount) / lookups,
+                invalidations.sum(),
+                expirations.sum(),
+                missCount == 0 ? 0 : computeNanos.sum() / missCount / 1000,
+                maxComputeNanos.get() / 1000);
+    }
+
+    private List<BudgetStatusDto> computeInto(Long userId, Entry entry, Supplier<List<BudgetStatusDto>> compute) {
+        long started = System.nanoTime();
+        try {
+            List<BudgetStatusDto> statuses = List.copyOf(compute.get());
+            entry.validUntil = validUntil(statuses, entry.computedOn);
+            entry.future.complete(statuses);
+            return statuses;
+        } catch (RuntimeException | Error e) {
+            entries.remove(userId, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            computeNanos.add(elapsed);
+            maxComputeNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    // Windows are whole days, so the statuses hold until the day after the earliest window end
+    private static LocalDate validUntil(List<BudgetStatusDto> statuses, LocalDate today) {
+        LocalDate until = LocalDate.MAX;
+        for (BudgetStatusDto status : statuses) {
+            LocalDate next = status.getPeriodEnd().isBefore(today) ? today.plusDays(1) : status.getPeriodEnd().plusDays(1);
+            if (next.isBefore(until)) {
+                until = next;
+            }
+        }
+        return until;
+    }
+
+    private static List<BudgetStatusDto> join(Entry entry) {
+        try {
+            return entry.future.join();
+        } catch (CompletionException e) {
+            // The computing caller already got the original; waiters see the same exception
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void evictIfOverCapacity() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        // Down to 90%, so the sort is paid once per tenth of the capacity
+        List<Map.Entry<Long, Entry>> byAge = new ArrayList<>(entries.entrySet());
+        byAge.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        int excess = byAge.size() - maxEntries * 9 / 10;
+        for (int i = 0; i < excess; i++) {
+            entries.remove(byAge.get(i).getKey(), byAge.get(i).getValue());
+        }
+    }
+
+    private final class Entry {
+        private final CompletableFuture<List<BudgetStatusDto>> future = new CompletableFuture<>();
+        private final LocalDate computedOn;
+        // Written before the future completes, read after isDone
+        private volatile LocalDate validUntil;
+        private volatile long lastAccess = clock.incrementAndGet();
+
+        private Entry(LocalDate computedOn) {
+            this.computedOn = computedOn;
+        }
+
+        private boolean isValidOn(LocalDate today) {
+            return !future.isCompletedExceptionally() && !today.isBefore(computedOn) && today.isBefore(validUntil);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.CacheBusStatsDto;
+import com.example.expensetracker.event.BudgetChangedEvent;
+import com.example.expensetracker.event.CacheInvalidation;
+import com.example.expensetracker.event.CacheRegion;
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.event.ExpenseTagsChangedEvent;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps the in-process caches of several instances coherent. Writes name the regions of a user's data
+// they change; the regions are merged per transaction into one invalidation per user and handed to the
+// transport just before commit. Invalidations from other instances are republished here as
+// CacheInvalidation events, which each cache handles by evicting the user. Without a transport
+// (cache.bus.transport unset) publishing is a no-op.
+@Service
+public class CacheInvalidationBus {
+
+    private final CacheInvalidationTransport transport;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder lagMillis = new LongAdder();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private volatile long lastLagMillis;
+
+    public CacheInvalidationBus(ObjectProvider<CacheInvalidationTransport> transport,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${cache.bus.node-id:}") String nodeId) {
+        this.transport = transport.getIfAvailable();
+        this.eventPublisher = eventPublisher;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        if (this.transport != null) {
+            this.transport.subscribe(this::receive);
+        }
+    }
+
+    // Inside the publishing transaction, like ExpenseSketchStore
+    @EventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        publish(event.getUserId(), CacheRegion.EXPENSES);
+    }
+
+    @EventListener
+    public void onBudgetChanged(BudgetChangedEvent event) {
+        publish(event.getUserId(), CacheRegion.BUDGETS);
+    }
+
+    @EventListener
+    public void onTagsChanged(ExpenseTagsChangedEvent event) {
+        publish(event.getUserId(), CacheRegion.TAGS);
+    }
+
+    public void publish(Long userId, CacheRegion... regions) {
+        if (transport == null) {
+            return;
+        }
+        int mask = 0;
+        for (CacheRegion region : regions) {
+            mask |= region.bit();
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(Map.of(userId, mask));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<Long, Integer> pending = (Map<Long, Integer>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<Long, Integer> registered = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, registered);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    send(registered);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidationBus.this);
+                }
+            });
+            pending = registered;
+        }
+        pending.merge(userId, mask, (a, b) -> a | b);
+    }
+
+    public CacheBusStatsDto stats() {
+        long count = received.sum();
+        return new CacheBusStatsDto(
+                nodeId,
+                transport != null ? transport.name() : "none",
+                published.sum(),
+                count,
+                lastLagMillis,
+                count == 0 ? 0 : lagMillis.sum() / count,
+                maxLagMillis.get());
+    }
+
+    private void send(Map<Long, Integer> regionsByUser) {
+        if (regionsByUser.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<CacheInvalidation> invalidations = new ArrayList<>(regionsByUser.size());
+        regionsByUser.forEach((userId, regions) -> invalidations.add(new CacheInvalidation(nodeId, userId, regions, now)));
+        transport.send(invalidations);
+        published.add(invalidations.size());
+    }
+
+    private void receive(CacheInvalidation invalidation, long lag) {
+        if (invalidation.getOrigin().equals(nodeId)) {
+            return;
+        }
+        eventPublisher.publishEvent(invalidation);
+        received.increment();
+        lagMillis.add(lag);
+        maxLagMillis.accumulateAndGet(lag, Math::max);
+        lastLagMillis = lag;
+    }
+}
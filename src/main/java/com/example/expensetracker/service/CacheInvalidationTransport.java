@@ -0,0 +1,21 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.event.CacheInvalidation;
+
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+// Carries cache invalidations between application instances for CacheInvalidationBus. Select one with
+// cache.bus.transport; without one, instances don't hear about each other's writes.
+public interface CacheInvalidationTransport {
+
+    String name();
+
+    // Runs inside the writing transaction just before it commits (or on its own outside one), so a
+    // transport that writes to the database sends nothing for a rolled back change
+    void send(List<CacheInvalidation> invalidations);
+
+    // Received invalidations go to the listener with their delivery lag in millis; they may include this
+    // instance's own, which the bus skips
+    void subscribe(ObjLongConsumer<CacheInvalidation> listener);
+}
@@ -0,0 +1,17 @@
+package com.example.expensetracker.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Amounts as whole cents for the in-memory and columnar copies of expenses. Amounts with more than two
+// decimals are rounded half up, as the amount columns (scale 2) store them, so every copy agrees.
+public final class Cents {
+
+    private Cents() {
+        // prevent instantiation
+    }
+
+    public static long of(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.ChangeTombstone;
+import com.example.expensetracker.model.SyncEntityType;
+import com.example.expensetracker.repository.ChangeTombstoneRepository;
+import com.example.expensetracker.repository.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+// Hands out per-user change sequence numbers; must run inside the caller's write transaction
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class ChangeSequenceService {
+
+    private final UserRepository userRepository;
+    private final ChangeTombstoneRepository tombstoneRepository;
+
+    public ChangeSequenceService(UserRepository userRepository,
+                                 ChangeTombstoneRepository tombstoneRepository) {
+        this.userRepository = userRepository;
+        this.tombstoneRepository = tombstoneRepository;
+    }
+
+    public long nextSeq(Long userId) {
+        return reserve(userId, 1);
+    }
+
+    // Reserves "count" consecutive numbers and returns the highest one
+    public long reserve(Long userId, int count) {
+        if (userRepository.incrementChangeSeq(userId, count) == 0) {
+            throw new IllegalArgumentException("User not found");
+        }
+        return userRepository.findChangeSeq(userId);
+    }
+
+    // Returns the tombstone's sequence number
+    public long recordDeletion(Long userId, SyncEntityType entityType, Long entityId) {
+        ChangeTombstone tombstone = new ChangeTombstone();
+        tombstone.setUserId(userId);
+        tombstone.setEntityType(entityType);
+        tombstone.setEntityId(entityId);
+        tombstone.setChangeSeq(nextSeq(userId));
+        tombstone.setDeletedAt(LocalDateTime.now());
+        tombstoneRepository.save(tombstone);
+        return tombstone.getChangeSeq();
+    }
+}
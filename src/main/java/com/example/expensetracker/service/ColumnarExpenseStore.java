@@ -0,0 +1,569 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.event.CacheInvalidation;
+import com.example.expensetracker.event.CacheRegion;
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.event.ExpenseSnapshot;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Append-only, memory-mapped copy of every expense as (user, epoch day, category, cents) for
+// platform-wide analytics. Updates and deletes are appended as delta rows (old amount negated, new
+// amount added), so sums over the rows are always current without rewriting anything.
+//
+// Deltas come from this instance's committed changes through a bounded queue. Whatever that misses is
+// reconciled rather than lost: a user whose delta was dropped, who was written on another instance
+// (seen on the invalidation bus) or whose rows were bulk-deleted is marked stale, and the writer later
+// appends the difference between the user's rows in SQL and in the store. The whole store is
+// re-exported when it wasn't shut down cleanly, since queued deltas and stale users were lost with it,
+// or when too many users are stale at once. Each export and reconciliation reads the users' change_seq
+// in the same statement as their expenses, and queued deltas already covered by it are skipped.
+//
+// Every export goes to its own export-<millis> directory, renamed from .tmp once complete; the
+// previous one is deleted after the switch.
+//
+// Segment file layout: 16-byte header (magic, row count), then four fixed-capacity columns:
+// long user ids, int epoch days, long category ids (0 = none), long amounts in cents.
+@Service
+public class ColumnarExpenseStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ColumnarExpenseStore.class);
+
+    private static final int MAGIC = 0x45585031;
+    private static final int HEADER_BYTES = 16;
+    private static final int ROW_COUNT_OFFSET = 4;
+    private static final String EXPORT_PREFIX = "export-";
+    private static final String INCOMPLETE_SUFFIX = ".tmp";
+    private static final String CLEAN_MARKER = "clean-shutdown";
+    private static final int RECONCILE_CHUNK = 500;
+
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentRows;
+    private final long reconcileIntervalNanos;
+    private final int maxStaleUsers;
+
+    private volatile List<Segment> segments = new CopyOnWriteArrayList<>();
+    private Path generation;                                            // writer thread only, once started
+    private final BlockingQueue<long[]> pending;
+    private final AtomicLong droppedDeltas = new AtomicLong();
+
+    private final Set<Long> staleUsers = ConcurrentHashMap.newKeySet();
+    private volatile boolean stale;
+    // User id -> change_seq the last export or reconciliation read; writer thread only
+    private Map<Long, Long> coveredSeq = new HashMap<>();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public ColumnarExpenseStore(ShardRouter shardRouter,
+                                JdbcTemplate jdbcTemplate,
+                                @Value("${analytics.store.enabled:false}") boolean enabled,
+                                @Value("${analytics.store.dir:./data/analytics}") String directory,
+                                @Value("${analytics.store.segment-rows:1048576}") int segmentRows,
+                                @Value("${analytics.store.queue-capacity:100000}") int queueCapacity,
+                                @Value("${analytics.store.reconcile-interval-ms:10000}") long reconcileIntervalMs,
+                                @Value("${analytics.store.max-stale-users:10000}") int maxStaleUsers) {
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentRows = segmentRows;
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        this.reconcileIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reconcileIntervalMs);
+        this.maxStaleUsers = maxStaleUsers;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<Segment> segments() {
+        return List.copyOf(segments);
+    }
+
+    public long droppedDeltas() {
+        return droppedDeltas.get();
+    }
+
+    // True until the pending export or reconciliation has run
+    public boolean isStale() {
+        return stale || !staleUsers.isEmpty();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        boolean clean = Files.deleteIfExists(directory.resolve(CLEAN_MARKER));
+
+        // The newest complete export; stores written before exports had their own directory keep segments at the top
+        Path live = directory;
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path entry : entries.filter(Files::isDirectory).sorted().toList()) {
+                String name = entry.getFileName().toString();
+                if (!name.startsWith(EXPORT_PREFIX)) {
+                    continue;
+                }
+                if (name.endsWith(INCOMPLETE_SUFFIX)) {
+                    deleteSegments(entry);
+                } else {
+                    deleteSegments(live);
+                    live = entry;
+                }
+            }
+        }
+        List<Segment> opened = new CopyOnWriteArrayList<>();
+        try (Stream<Path> files = Files.list(live)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".col")).sorted().toList()) {
+                opened.add(Segment.open(file));
+            }
+        }
+        segments = opened;
+        generation = live;
+        stale = opened.isEmpty() || !clean;
+        if (!opened.isEmpty() && !clean) {
+            log.warn("Columnar store was not shut down cleanly; re-exporting");
+        }
+
+        running = true;
+        writer = new Thread(this::writeLoop, "columnar-store-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        // One segment failing to flush must not keep the others mapped
+        boolean flushed = true;
+        for (Segment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                flushed = false;
+                log.error("Closing columnar store segment failed", e);
+            }
+        }
+        // Anything still stale would be forgotten, so the next start re-exports instead
+        if (enabled && flushed && writer != null && !writer.isAlive() && !isStale()) {
+            Files.createFile(directory.resolve(CLEAN_MARKER));
+        }
+    }
+
+    // Never blocks the write path: when the exporter falls behind, deltas are dropped and counted, and the
+    // user is reconciled later
+    @Order(20)
+    @TransactionalEventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        if (!running) {
+            return;
+        }
+        enqueue(event, event.getBefore(), -1);
+        enqueue(event, event.getAfter(), 1);
+    }
+
+    // A write on another instance never reaches the queue here
+    @EventListener
+    public void onRemoteInvalidation(CacheInvalidation invalidation) {
+        if (running && invalidation.covers(CacheRegion.EXPENSES)) {
+            markStale(invalidation.getUserId());
+        }
+    }
+
+    // For changes that publish no events, such as AccountPurgeService's bulk deletes
+    public void markStale(Long userId) {
+        if (!running) {
+            return;
+        }
+        if (staleUsers.size() >= maxStaleUsers) {
+            stale = true;
+        } else {
+            staleUsers.add(userId);
+        }
+    }
+
+    private void enqueue(ExpenseChangedEvent event, ExpenseSnapshot snapshot, int sign) {
+        if (snapshot == null) {
+            return;
+        }
+        long[] row = {
+                event.getUserId(),
+                snapshot.getExpenseDate().toEpochDay(),
+                snapshot.getCategoryId() != null ? snapshot.getCategoryId() : 0,
+                sign * Cents.of(snapshot.getAmount()),
+                event.getChangeSeq()
+        };
+        if (!pending.offer(row)) {
+            droppedDeltas.incrementAndGet();
+            markStale(event.getUserId());
+        }
+    }
+
+    private void writeLoop() {
+        List<long[]> batch = new ArrayList<>();
+        long nextReconcile = System.nanoTime();
+        while (running || !pending.isEmpty()) {
+            try {
+                if (running && (stale || !staleUsers.isEmpty()) && System.nanoTime() - nextReconcile >= 0) {
+                    nextReconcile = System.nanoTime() + reconcileIntervalNanos;
+                    if (stale) {
+                        export();
+                    } else {
+                        reconcileStaleUsers();
+                    }
+                }
+                long[] first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch);
+                for (long[] row : batch) {
+                    Long covered = coveredSeq.get(row[0]);
+                    if (covered == null || row[4] > covered) {
+                        append(segments, generation, row[0], row[1], row[2], row[3]);
+                    }
+                }
+                publish(segments);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Columnar store append failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+        publish(segments);
+    }
+
+    // Copies the OLTP tables into a new generation of segments and switches to it once complete. Users
+    // marked stale from here on are reconciled against the new generation.
+    private void export() {
+        long started = System.nanoTime();
+        staleUsers.clear();
+        stale = false;
+        Path target = directory.resolve(EXPORT_PREFIX + System.currentTimeMillis());
+        Path incomplete = target.resolveSibling(target.getFileName() + INCOMPLETE_SUFFIX);
+        List<Segment> exported = new CopyOnWriteArrayList<>();
+        Map<Long, Long> exportedSeq = new HashMap<>();
+        try {
+            Files.createDirectories(incomplete);
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                shardRouter.runOn(shard, () -> jdbcTemplate.query(con -> {
+                    PreparedStatement statement = con.prepareStatement(rowsQuery(0));
+                    statement.setFetchSize(10_000);
+                    return statement;
+                }, (RowCallbackHandler) rs -> {
+                    if (rs.getDate(2) == null) {
+                        exportedSeq.put(rs.getLong(1), rs.getLong(5));
+                    } else {
+                        append(exported, incomplete, rs.getLong(1), rs.getDate(2).toLocalDate().toEpochDay(),
+                                rs.getLong(3), Cents.of(rs.getBigDecimal(4)));
+                    }
+                }));
+            }
+            publish(exported);
+            for (Segment segment : exported) {
+                segment.buffer.force();
+            }
+            Files.move(incomplete, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            stale = true;
+            close(exported);
+            deleteQuietly(incomplete);
+            log.error("Columnar store export failed; retrying later", e);
+            return;
+        }
+
+        List<Segment> previous = segments;
+        Path previousGeneration = generation;
+        segments = exported;
+        generation = target;
+        coveredSeq = exportedSeq;
+        close(previous);
+        deleteQuietly(previousGeneration);
+        log.info("Exported {} expenses to the columnar store in {} ms", totalRows(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    // Appends, per stale user, day and category, the difference between the rows in SQL and in the store
+    private void reconcileStaleUsers() {
+        List<Long> users = new ArrayList<>(staleUsers);
+        staleUsers.removeAll(users);
+
+        Map<Cell, Long> difference = new HashMap<>();
+        Map<Long, Long> readSeq = new HashMap<>();
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (Long userId : users) {
+            byShard.computeIfAbsent(shardRouter.shardForUserId(userId), shard -> new ArrayList<>()).add(userId);
+        }
+        for (Map.Entry<Integer, List<Long>> shard : byShard.entrySet()) {
+            for (int from = 0; from < shard.getValue().size(); from += RECONCILE_CHUNK) {
+                Object[] chunk = shard.getValue().subList(from, Math.min(from + RECONCILE_CHUNK, shard.getValue().size())).toArray();
+                Object[] args = new Object[chunk.length * 3];
+                for (int i = 0; i < 3; i++) {
+                    System.arraycopy(chunk, 0, args, i * chunk.length, chunk.length);
+                }
+                shardRouter.runOn(shard.getKey(), () -> jdbcTemplate.query(rowsQuery(chunk.length), (RowCallbackHandler) rs -> {
+                    if (rs.getDate(2) == null) {
+                        readSeq.put(rs.getLong(1), rs.getLong(5));
+                    } else {
+                        difference.merge(new Cell(rs.getLong(1), (int) rs.getDate(2).toLocalDate().toEpochDay(), rs.getLong(3)),
+                                Cents.of(rs.getBigDecimal(4)), Long::sum);
+                    }
+                }, args));
+            }
+        }
+        // Moved while being read: the rows were looked for on the wrong shard, so try again next time
+        Set<Long> moved = new HashSet<>();
+        for (Map.Entry<Integer, List<Long>> shard : byShard.entrySet()) {
+            for (Long userId : shard.getValue()) {
+                if (shardRouter.shardForUserId(userId) != shard.getKey()) {
+                    moved.add(userId);
+                    staleUsers.add(userId);
+                }
+            }
+        }
+        difference.keySet().removeIf(cell -> moved.contains(cell.userId));
+        readSeq.keySet().removeAll(moved);
+        long[] ids = users.stream().filter(userId -> !moved.contains(userId)).mapToLong(Long::longValue).sorted().toArray();
+
+        for (Segment segment : segments) {
+            for (int row = 0, rows = segment.rows(); row < rows; row++) {
+                if (Arrays.binarySearch(ids, segment.userId(row)) >= 0) {
+                    difference.merge(new Cell(segment.userId(row), segment.epochDay(row), segment.categoryId(row)),
+                            -segment.cents(row), Long::sum);
+                }
+            }
+        }
+        int corrections = 0;
+        for (Map.Entry<Cell, Long> cell : difference.entrySet()) {
+            if (cell.getValue() != 0) {
+                append(segments, generation, cell.getKey().userId, cell.getKey().epochDay, cell.getKey().categoryId, cell.getValue());
+                corrections++;
+            }
+        }
+        publish(segments);
+        // A deleted user has no users row and gets no more deltas
+        coveredSeq.putAll(readSeq);
+        log.info("Reconciled {} users in the columnar store with {} correction rows", ids.length, corrections);
+    }
+
+    // Every expense row, then one row per user carrying its change_seq (null date), in one statement so
+    // both come from the same snapshot. With users > 0, only those users, bound three times over.
+    private static String rowsQuery(int users) {
+        String filter = users == 0 ? "" : " WHERE user_id IN (" + String.join(", ", Collections.nCopies(users, "?")) + ")";
+        String userFilter = users == 0 ? "" : " WHERE id IN (" + String.join(", ", Collections.nCopies(users, "?")) + ")";
+        String columns = "user_id, expense_date, COALESCE(category_id, 0), amount, CAST(NULL AS BIGINT)";
+        return "SELECT " + columns + " FROM expenses" + filter +
+                " UNION ALL SELECT " + columns + " FROM expenses_archive" + filter +
+                " UNION ALL SELECT id, CAST(NULL AS DATE), CAST(NULL AS BIGINT), CAST(NULL AS DECIMAL), change_seq FROM users" + userFilter;
+    }
+
+    private long totalRows() {
+        long rows = 0;
+        for (Segment segment : segments) {
+            rows += segment.rows;
+        }
+        return rows;
+    }
+
+    // Writer thread only
+    private void append(List<Segment> into, Path segmentDirectory, long userId, long epochDay, long categoryId, long cents) {
+        Segment tail = into.isEmpty() ? null : into.getLast();
+        if (tail == null || tail.written == tail.capacity) {
+            if (tail != null) {
+                tail.publish();
+            }
+            tail = Segment.create(segmentDirectory.resolve(String.format("segment-%06d.col", into.size())), segmentRows);
+            into.add(tail);
+        }
+        tail.write(userId, (int) epochDay, categoryId, cents);
+    }
+
+    private static void publish(List<Segment> segments) {
+        if (!segments.isEmpty()) {
+            segments.getLast().publish();
+        }
+    }
+
+    // Readers still scanning an old generation keep their mappings; only the channels are closed
+    private static void close(List<Segment> segments) {
+        for (Segment segment : segments) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                log.warn("Closing columnar store segment failed", e);
+            }
+        }
+    }
+
+    private void deleteQuietly(Path segmentDirectory) {
+        try {
+            deleteSegments(segmentDirectory);
+        } catch (IOException e) {
+            log.warn("Could not delete old columnar store segments in {}", segmentDirectory, e);
+        }
+    }
+
+    // Segment files, and the directory itself unless it's the store's own
+    private void deleteSegments(Path segmentDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(segmentDirectory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".col")).toList()) {
+                Files.delete(file);
+            }
+        }
+        if (!segmentDirectory.equals(directory)) {
+            Files.deleteIfExists(segmentDirectory);
+        }
+    }
+
+    private record Cell(long userId, int epochDay, long categoryId) {
+    }
+
+    public static final class Segment {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final int userOffset;
+        private final int dayOffset;
+        private final int categoryOffset;
+        private final int amountOffset;
+
+        private int written;            // writer thread only
+        private volatile int rows;      // rows visible to readers
+
+        private Segment(FileChannel channel, MappedByteBuffer buffer, int capacity, int rows) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.userOffset = HEADER_BYTES;
+            this.dayOffset = userOffset + capacity * 8;
+            this.categoryOffset = dayOffset + capacity * 4;
+            this.amountOffset = categoryOffset + capacity * 8;
+            this.written = rows;
+            this.rows = rows;
+        }
+
+        private static long bytes(int capacity) {
+            return HEADER_BYTES + (long) capacity * (8 + 4 + 8 + 8);
+        }
+
+        private static Segment create(Path file, int capacity) {
+            Segment segment = map(file, capacity);
+            segment.buffer.putInt(0, MAGIC);
+            return segment;
+        }
+
+        // Capacity comes from the file size, so changing segment-rows only affects new segments
+        private static Segment open(Path file) {
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Segment segment = map(file, (int) ((size - HEADER_BYTES) / (8 + 4 + 8 + 8)));
+            if (segment.buffer.getInt(0) != MAGIC) {
+                throw new IllegalStateException("Not a columnar segment: " + file);
+            }
+            return segment;
+        }
+
+        private static Segment map(Path file, int capacity) {
+            try {
+                FileChannel channel = FileChannel.open(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes(capacity));
+                return new Segment(channel, buffer, capacity, buffer.getInt(ROW_COUNT_OFFSET));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void write(long userId, int epochDay, long categoryId, long cents) {
+            int i = written;
+            buffer.putLong(userOffset + i * 8, userId);
+            buffer.putInt(dayOffset + i * 4, epochDay);
+            buffer.putLong(categoryOffset + i * 8, categoryId);
+            buffer.putLong(amountOffset + i * 8, cents);
+            written = i + 1;
+        }
+
+        // Row count goes to the header last, so a crash never exposes half-written rows
+        private void publish() {
+            if (rows != written) {
+                buffer.putInt(ROW_COUNT_OFFSET, written);
+                rows = written;
+            }
+        }
+
+        private void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+
+        public int rows() {
+            return rows;
+        }
+
+        public long userId(int row) {
+            return buffer.getLong(userOffset + row * 8);
+        }
+
+        public int epochDay(int row) {
+            return buffer.getInt(dayOffset + row * 4);
+        }
+
+        public long categoryId(int row) {
+            return buffer.getLong(categoryOffset + row * 8);
+        }
+
+        public long cents(int row) {
+            return buffer.getLong(amountOffset + row * 8);
+        }
+    }
+}
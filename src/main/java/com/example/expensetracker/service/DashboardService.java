@@ -0,0 +1,9 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.DashboardDto;
+import com.example.expensetracker.model.User;
+
+public interface DashboardService {
+
+    DashboardDto load(User user, int recentExpenses);
+}
@@ -0,0 +1,445 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.DescriptionSuggestionDto;
+import com.example.expensetracker.event.CacheInvalidation;
+import com.example.expensetracker.event.CacheRegion;
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.event.ExpenseSnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Description autocomplete for the expense form. Each cached user has the distinct descriptions they've
+// used (compared trimmed, lower case, with single spaces) with a use count, the latest amount and their
+// usual category, plus an immutable radix trie over the most used ones. Every trie node keeps its
+// subtree's best suggestions, so a keystroke is a walk down the typed prefix. Writes update the counts
+// and drop the trie, which the next lookup rebuilds. Users are loaded on first use and evicted
+// least-recently-used once autocomplete.max-bytes is exceeded.
+@Service
+public class DescriptionAutocompleteIndex {
+
+    public static final int MAX_SUGGESTIONS = 8;
+
+    // Rough object overhead of a Usage with its strings and category counts, on top of the characters
+    private static final int BYTES_PER_USAGE = 160;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxBytes;
+    private final int maxEntries;
+
+    private final Map<Long, Holder> holders = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+
+    public DescriptionAutocompleteIndex(JdbcTemplate jdbcTemplate,
+                                        @Value("${autocomplete.max-bytes:33554432}") long maxBytes,
+                                        @Value("${autocomplete.max-entries-per-user:1000}") int maxEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+    }
+
+    @Order(40)
+    @TransactionalEventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        Holder holder = holders.get(event.getUserId());
+        if (holder != null) {
+            holder.apply(event.getBefore(), event.getAfter());
+        }
+    }
+
+    // Expenses written on another instance
+    @EventListener
+    public void onRemoteInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.covers(CacheRegion.EXPENSES)) {
+            forget(invalidation.getUserId());
+        }
+    }
+
+    public void forget(Long userId) {
+        Holder holder = holders.remove(userId);
+        if (holder != null) {
+            holder.release();
+        }
+    }
+
+    // Most used descriptions starting with the prefix, most used first; an empty prefix gives the overall favourites
+    public List<DescriptionSuggestionDto> suggest(Long userId, String prefix, int limit) {
+        Holder holder = holders.computeIfAbsent(userId, Holder::new);
+        holder.lastAccess = clock.incrementAndGet();
+        Trie trie = holder.trie;
+        if (trie == null) {
+            trie = holder.build();
+            evictIfOverBudget();
+        }
+        return trie.lookup(normalize(prefix, true), Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
+    private void evictIfOverBudget() {
+        if (usedBytes.get() <= maxBytes) {
+            return;
+        }
+        List<Holder> byAge = new ArrayList<>(holders.values());
+        byAge.sort(Comparator.comparingLong(h -> h.lastAccess));
+        for (Holder holder : byAge) {
+            if (usedBytes.get() <= maxBytes) {
+                break;
+            }
+            if (holders.remove(holder.userId, holder)) {
+                holder.release();
+            }
+        }
+    }
+
+    // Lower case with runs of whitespace collapsed; a prefix keeps one trailing space so "tea " skips "teapot"
+    static String normalize(String text, boolean prefix) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = !normalized.isEmpty();
+                continue;
+            }
+            if (space) {
+                normalized.append(' ');
+                space = false;
+            }
+            normalized.append(Character.toLowerCase(c));
+        }
+        if (prefix && space) {
+            normalized.append(' ');
+        }
+        return normalized.toString();
+    }
+
+    private static final class Usage {
+        private String description;
+        private int uses;
+        private long amount;
+        private int lastDay = Integer.MIN_VALUE;
+        private Long lastCategoryId;
+        private final Map<Long, Integer> categories = new HashMap<>(4);
+
+        // Most used category; the latest one on a tie
+        private Long categoryId() {
+            Long best = lastCategoryId;
+            int bestUses = best != null ? categories.getOrDefault(best, 0) : 0;
+            for (Map.Entry<Long, Integer> entry : categories.entrySet()) {
+                if (entry.getValue() > bestUses) {
+                    best = entry.getKey();
+                    bestUses = entry.getValue();
+                }
+            }
+            return best;
+        }
+    }
+
+    // Entries are numbered by rank (most used first), so a node's best suggestions are simply the smallest
+    // entry numbers in its subtree. Edges are ranges of the sorted keys rather than copied strings.
+    private static final class Trie {
+        private static final Trie EMPTY = new Trie(new String[0], new int[0], new DescriptionSuggestionDto[0]);
+
+        private final String[] keys;
+        private final int[] entryOfKey;
+        private final DescriptionSuggestionDto[] suggestions;
+
+        private int[] edgeKey;
+        private int[] edgeStart;
+        private int[] edgeEnd;
+        private int[] firstChild;
+        private int[] childCount;
+        private int[] topStart;
+        private int[] topLength;
+        private int[] top;
+        private int nodes;
+        private int topSize;
+
+        private Trie(String[] keys, int[] entryOfKey, DescriptionSuggestionDto[] suggestions) {
+            this.keys = keys;
+            this.entryOfKey = entryOfKey;
+            this.suggestions = suggestions;
+        }
+
+        private static Trie of(Map<String, Usage> usages, int maxEntries) {
+            List<Map.Entry<String, Usage>> ranked = new ArrayList<>(usages.entrySet());
+            ranked.sort(Comparator.comparingInt((Map.Entry<String, Usage> e) -> e.getValue().uses).reversed()
+                    .thenComparing(Comparator.comparingInt((Map.Entry<String, Usage> e) -> e.getValue().lastDay).reversed())
+                    .thenComparing(Map.Entry::getKey));
+            int n = Math.min(ranked.size(), maxEntries);
+            if (n == 0) {
+                return EMPTY;
+            }
+
+            DescriptionSuggestionDto[] suggestions = new DescriptionSuggestionDto[n];
+            Integer[] byKey = new Integer[n];
+            for (int entry = 0; entry < n; entry++) {
+                Usage usage = ranked.get(entry).getValue();
+                suggestions[entry] = new DescriptionSuggestionDto(usage.description, usage.uses, usage.categoryId(),
+                        BigDecimal.valueOf(usage.amount, 2));
+                byKey[entry] = entry;
+            }
+            Arrays.sort(byKey, Comparator.comparing(entry -> ranked.get(entry).getKey()));
+            String[] keys = new String[n];
+            int[] entryOfKey = new int[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = ranked.get(byKey[i]).getKey();
+                entryOfKey[i] = byKey[i];
+            }
+
+            Trie trie = new Trie(keys, entryOfKey, suggestions);
+            // A radix trie over n keys has fewer than 2n nodes
+            int capacity = 2 * n;
+            trie.edgeKey = new int[capacity];
+            trie.edgeStart = new int[capacity];
+            trie.edgeEnd = new int[capacity];
+            trie.firstChild = new int[capacity];
+            trie.childCount = new int[capacity];
+            trie.topStart = new int[capacity];
+            trie.topLength = new int[capacity];
+            trie.top = new int[capacity * 2];
+            trie.nodes = 1;
+            trie.build(0, 0, n, 0);
+            trie.top = Arrays.copyOf(trie.top, trie.topSize);
+            return trie;
+        }
+
+        // keys[lo, hi) share the first "depth" characters
+        private void build(int node, int lo, int hi, int depth) {
+            int end = commonPrefix(keys[lo], keys[hi - 1], depth);
+            edgeKey[node] = lo;
+            edgeStart[node] = depth;
+            edgeEnd[node] = end;
+
+            // Sorted, so a key that ends at this node comes first
+            int terminal = keys[lo].length() == end ? lo : -1;
+            int from = terminal >= 0 ? lo + 1 : lo;
+
+            int runs = 0;
+            for (int i = from; i < hi; i++) {
+                if (i == from || keys[i].charAt(end) != keys[i - 1].charAt(end)) {
+                    runs++;
+                }
+            }
+            firstChild[node] = nodes;
+            childCount[node] = runs;
+            nodes += runs;
+
+            int child = firstChild[node];
+            int runStart = from;
+            for (int i = from + 1; i <= hi; i++) {
+                if (i == hi || keys[i].charAt(end) != keys[runStart].charAt(end)) {
+                    build(child++, runStart, i, end);
+                    runStart = i;
+                }
+            }
+
+            int[] candidates = new int[(terminal >= 0 ? 1 : 0) + runs * MAX_SUGGESTIONS];
+            int count = 0;
+            if (terminal >= 0) {
+                candidates[count++] = entryOfKey[terminal];
+            }
+            for (int c = firstChild[node]; c < firstChild[node] + runs; c++) {
+                for (int t = topStart[c]; t < topStart[c] + topLength[c]; t++) {
+                    candidates[count++] = top[t];
+                }
+            }
+            Arrays.sort(candidates, 0, count);
+            int kept = Math.min(count, MAX_SUGGESTIONS);
+            if (topSize + kept > top.length) {
+                top = Arrays.copyOf(top, Math.max(top.length * 2, topSize + kept));
+            }
+            System.arraycopy(candidates, 0, top, topSize, kept);
+            topStart[node] = topSize;
+            topLength[node] = kept;
+            topSize += kept;
+        }
+
+        private List<DescriptionSuggestionDto> lookup(String prefix, int limit) {
+            if (keys.length == 0) {
+                return List.of();
+            }
+            int node = 0;
+            int pos = 0;
+            while (true) {
+                String label = keys[edgeKey[node]];
+                for (int i = edgeStart[node]; i < edgeEnd[node]; i++) {
+                    if (pos == prefix.length()) {
+                        return suggestionsAt(node, limit);
+                    }
+                    if (label.charAt(i) != prefix.charAt(pos)) {
+                        return List.of();
+                    }
+                    pos++;
+                }
+                if (pos == prefix.length()) {
+                    return suggestionsAt(node, limit);
+                }
+                node = child(node, prefix.charAt(pos));
+                if (node < 0) {
+                    return List.of();
+                }
+            }
+        }
+
+        // Children are in key order, so their first characters are sorted
+        private int child(int node, char c) {
+            int low = firstChild[node];
+            int high = low + childCount[node] - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char first = keys[edgeKey[mid]].charAt(edgeStart[mid]);
+                if (first < c) {
+                    low = mid + 1;
+                } else if (first > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        private List<DescriptionSuggestionDto> suggestionsAt(int node, int limit) {
+            int count = Math.min(limit, topLength[node]);
+            List<DescriptionSuggestionDto> result = new ArrayList<>(count);
+            for (int t = topStart[node]; t < topStart[node] + count; t++) {
+                result.add(suggestions[top[t]]);
+            }
+            return result;
+        }
+
+        private static int commonPrefix(String a, String b, int from) {
+            int max = Math.min(a.length(), b.length());
+            int i = from;
+            while (i < max && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+            return i;
+        }
+
+        private long bytes() {
+            long bytes = (long) edgeKey.length * 7 * 4 + top.length * 4L + suggestions.length * 48L;
+            for (String key : keys) {
+                bytes += 40 + key.length();
+            }
+            return bytes;
+        }
+    }
+
+    private final class Holder {
+        private final Long userId;
+        private volatile Trie trie;
+        private volatile long lastAccess;
+        private Map<String, Usage> usages;   // guarded by this, like the fields below
+        private long bytes;
+        private boolean released;
+
+        private Holder(Long userId) {
+            this.userId = userId;
+        }
+
+        private synchronized Trie build() {
+            if (trie != null) {
+                return trie;
+            }
+            if (usages == null) {
+                usages = load();
+            }
+            Trie built = Trie.of(usages, maxEntries);
+            // Evicted meanwhile: answer this caller but don't keep anything
+            if (released) {
+                return built;
+            }
+            long usageBytes = 0;
+            for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+                usageBytes += BYTES_PER_USAGE + entry.getKey().length() + entry.getValue().description.length();
+            }
+            long total = usageBytes + built.bytes();
+            usedBytes.addAndGet(total - bytes);
+            bytes = total;
+            trie = built;
+            return built;
+        }
+
+        // A change committed while this user was loading can be counted twice; counts only rank suggestions
+        private Map<String, Usage> load() {
+            Map<String, Usage> loaded = new HashMap<>();
+            String columns = "description, category_id, amount, expense_date";
+            jdbcTemplate.query("SELECT " + columns + " FROM expenses WHERE user_id = ? " +
+                            "UNION ALL SELECT " + columns + " FROM expenses_archive WHERE user_id = ? ORDER BY 4",
+                    rs -> {
+                        add(loaded, rs.getString(1), rs.getObject(2, Long.class), rs.getBigDecimal(3),
+                                rs.getDate(4).toLocalDate());
+                    },
+                    userId, userId);
+            return loaded;
+        }
+
+        private synchronized void apply(ExpenseSnapshot before, ExpenseSnapshot after) {
+            if (usages == null || released) {
+                return;
+            }
+            if (before != null) {
+                remove(before);
+            }
+            if (after != null) {
+                add(usages, after.getDescription(), after.getCategoryId(), after.getAmount(), after.getExpenseDate());
+            }
+            trie = null;
+        }
+
+        private void remove(ExpenseSnapshot expense) {
+            if (expense.getDescription() == null) {
+                return;
+            }
+            String key = normalize(expense.getDescription(), false);
+            Usage usage = usages.get(key);
+            if (usage == null) {
+                return;
+            }
+            if (--usage.uses <= 0) {
+                usages.remove(key);
+                return;
+            }
+            if (expense.getCategoryId() != null) {
+                usage.categories.computeIfPresent(expense.getCategoryId(), (id, uses) -> uses > 1 ? uses - 1 : null);
+            }
+        }
+
+        private static void add(Map<String, Usage> into, String description, Long categoryId, BigDecimal amount, LocalDate date) {
+            if (description == null || description.isBlank()) {
+                return;
+            }
+            Usage usage = into.computeIfAbsent(normalize(description, false), key -> new Usage());
+            usage.uses++;
+            if (categoryId != null) {
+                usage.categories.merge(categoryId, 1, Integer::sum);
+            }
+            int day = (int) date.toEpochDay();
+            if (day >= usage.lastDay) {
+                usage.description = description.strip().replaceAll("\\s+", " ");
+                usage.amount = Cents.of(amount);
+                usage.lastDay = day;
+                usage.lastCategoryId = categoryId;
+            }
+        }
+
+        private synchronized void release() {
+            released = true;
+            usedBytes.addAndGet(-bytes);
+            bytes = 0;
+            usages = null;
+            trie = null;
+        }
+    }
+}
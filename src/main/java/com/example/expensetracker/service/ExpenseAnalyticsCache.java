@@ -0,0 +1,615 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.event.CacheInvalidation;
+import com.example.expensetracker.event.CacheRegion;
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.event.ExpenseSnapshot;
+import com.example.expensetracker.repository.ExpenseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Each active user's expenses as primitive columns sorted by date: amounts in minor units (cents),
+// epoch days and dictionary-encoded category ids. Loaded on first use, patched from ExpenseChangedEvent
+// and evicted least-recently-used once analytics.cache.max-bytes is exceeded. Events are applied in change
+// sequence order per expense, whatever order the committing threads deliver them in. Writes are collected
+// and merged into new columns in one pass when next read (or once enough have piled up), so a burst of k
+// writes costs one O(n + k log k) rebuild instead of k copies.
+// Scans touch only the arrays, with no per-row allocation. Budget windows are answered from per-category
+// Fenwick trees over daily totals (last year and this year), patched together with the columns.
+@Service
+public class ExpenseAnalyticsCache {
+
+    // id + amount + day + category code
+    private static final int BYTES_PER_ROW = 8 + 8 + 4 + 4;
+    // Rough cost of a HashMap entry of two boxed longs
+    private static final int BYTES_PER_CHANGE = 64;
+    // Pending writes are merged once there are more than this many, or an eighth of the rows
+    private static final int MIN_MERGE = 64;
+
+    private final ExpenseRepository expenseRepository;
+    private final long maxBytes;
+
+    private final Map<Long, Holder> holders = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+
+    public ExpenseAnalyticsCache(ExpenseRepository expenseRepository,
+                                 @Value("${analytics.cache.max-bytes:67108864}") long maxBytes) {
+        this.expenseRepository = expenseRepository;
+        this.maxBytes = maxBytes;
+    }
+
+    // Runs before other expense listeners so they can read an up-to-date cache
+    @Order(0)
+    @TransactionalEventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        Holder holder = holders.get(event.getUserId());
+        if (holder != null) {
+            holder.apply(event.getChangeSeq(), event.getBefore(), event.getAfter());
+        }
+    }
+
+    // Expenses written on another instance
+    @EventListener
+    public void onRemoteInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.covers(CacheRegion.EXPENSES)) {
+            evict(invalidation.getUserId());
+        }
+    }
+
+    public void evict(Long userId) {
+        Holder holder = holders.remove(userId);
+        if (holder != null) {
+            holder.release();
+        }
+    }
+
+    public BigDecimal total(Long userId, LocalDate from, LocalDate to) {
+        Columns columns = columns(userId);
+        int start = columns.lowerBound((int) from.toEpochDay());
+        int end = columns.lowerBound((int) to.toEpochDay() + 1);
+        long sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += columns.amounts[i];
+        }
+        return BigDecimal.valueOf(sum, 2);
+    }
+
+    public long count(Long userId) {
+        return columns(userId).size;
+    }
+
+    // Category id -> total for the range; uncategorized expenses are left out
+    public Map<Long, BigDecimal> totalsByCategory(Long userId, LocalDate from, LocalDate to) {
+        Columns columns = columns(userId);
+        int start = columns.lowerBound((int) from.toEpochDay());
+        int end = columns.lowerBound((int) to.toEpochDay() + 1);
+
+        long[] sums = new long[columns.categoryIds.length];
+        for (int i = start; i < end; i++) {
+            sums[columns.categoryCodes[i]] += columns.amounts[i];
+        }
+
+        Map<Long, BigDecimal> totals = new HashMap<>();
+        for (int code = 1; code < sums.length; code++) {
+            if (sums[code] != 0) {
+                totals.put(columns.categoryIds[code], BigDecimal.valueOf(sums[code], 2));
+            }
+        }
+        return totals;
+    }
+
+    // Spend in one category over [from, to]: O(log days) when the window lies within last year and this
+    // year, which covers every budget period, otherwise a scan of the columns
+    public BigDecimal windowTotal(Long userId, Long categoryId, LocalDate from, LocalDate to) {
+        Holder holder = holders.computeIfAbsent(userId, Holder::new);
+        holder.lastAccess = clock.incrementAndGet();
+        boolean load = holder.columns == null;
+        long cents = holder.windowTotal(categoryId, (int) from.toEpochDay(), (int) to.toEpochDay());
+        if (load) {
+            evictIfOverBudget();
+        }
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    // Several windows read under one lock, with the changes they already include. Lets a listener that keeps
+    // running totals of its own load them here and skip the events the load contains.
+    public WindowSums windowTotals(Long userId, List<Window> windows) {
+        Holder holder = holders.computeIfAbsent(userId, Holder::new);
+        holder.lastAccess = clock.incrementAndGet();
+        boolean load = holder.columns == null;
+        WindowSums sums = holder.windowTotals(windows);
+        if (load) {
+            evictIfOverBudget();
+        }
+        return sums;
+    }
+
+    // One entry per month in [from, to], including empty months
+    public Map<YearMonth, BigDecimal> monthlyTotals(Long userId, YearMonth from, YearMonth to) {
+        Columns columns = columns(userId);
+        Map<YearMonth, BigDecimal> totals = new LinkedHashMap<>();
+        int i = columns.lowerBound((int) from.atDay(1).toEpochDay());
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            int monthEnd = (int) month.plusMonths(1).atDay(1).toEpochDay();
+            long sum = 0;
+            for (; i < columns.size && columns.days[i] < monthEnd; i++) {
+                sum += columns.amounts[i];
+            }
+            totals.put(month, BigDecimal.valueOf(sum, 2));
+        }
+        return totals;
+    }
+
+    private Columns columns(Long userId) {
+        Holder holder = holders.computeIfAbsent(userId, Holder::new);
+        holder.lastAccess = clock.incrementAndGet();
+        Columns columns = holder.current();
+        if (columns == null) {
+            columns = holder.load();
+            evictIfOverBudget();
+        }
+        return columns;
+    }
+
+    private void evictIfOverBudget() {
+        if (usedBytes.get() <= maxBytes) {
+            return;
+        }
+        List<Holder> byAge = new ArrayList<>(holders.values());
+        byAge.sort(Comparator.comparingLong(h -> h.lastAccess));
+        for (Holder holder : byAge) {
+            if (usedBytes.get() <= maxBytes) {
+                break;
+            }
+            if (holders.remove(holder.userId, holder)) {
+                holder.release();
+            }
+        }
+    }
+
+    public record Window(Long categoryId, LocalDate from, LocalDate to) {
+    }
+
+    public record WindowSums(List<BigDecimal> totals, Coverage coverage) {
+    }
+
+    // Every change up to loadedSeq, and per expense the latest change applied since
+    public record Coverage(long loadedSeq, Map<Long, Long> appliedSeq) {
+
+        public boolean includes(ExpenseChangedEvent event) {
+            Long id = event.getAfter() != null ? event.getAfter().getId() : event.getBefore().getId();
+            return event.getChangeSeq() <= loadedSeq || appliedSeq.getOrDefault(id, 0L) >= event.getChangeSeq();
+        }
+    }
+
+    // Immutable; writers swap in a new instance so readers never lock. Arrays may be longer than size.
+    private static final class Columns {
+        private final long seq;   // change sequence of the load the columns were built from
+        private final long[] ids;
+        private final long[] amounts;
+        private final int[] days;
+        private final int[] categoryCodes;
+        private final long[] categoryIds;   // code -> category id; code 0 is "no category"
+        private final int size;
+
+        private Columns(long seq, long[] ids, long[] amounts, int[] days, int[] categoryCodes, long[] categoryIds, int size) {
+            this.seq = seq;
+            this.ids = ids;
+            this.amounts = amounts;
+            this.days = days;
+            this.categoryCodes = categoryCodes;
+            this.categoryIds = categoryIds;
+            this.size = size;
+        }
+
+        // First row dated on or after the given epoch day
+        private int lowerBound(int day) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (days[mid] < day) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private long bytes() {
+            return (long) ids.length * BYTES_PER_ROW + categoryIds.length * 8L;
+        }
+    }
+
+    // Fenwick trees of daily totals per category code, over a fixed span of days; trees are allocated on first use
+    private static final class DailyIndex {
+        private final int year;
+        private final int firstDay;
+        private final int days;
+        private long[][] trees;
+
+        private DailyIndex(int year, int codes) {
+            this.year = year;
+            this.firstDay = (int) LocalDate.of(year - 1, 1, 1).toEpochDay();
+            this.days = (int) LocalDate.of(year + 1, 1, 1).toEpochDay() - firstDay;
+            this.trees = new long[codes][];
+        }
+
+        private boolean covers(int fromDay, int toDay) {
+            return fromDay >= firstDay && toDay < firstDay + days;
+        }
+
+        // Returns the bytes newly allocated
+        private long add(int code, int day, long cents) {
+            if (code == 0 || day < firstDay || day >= firstDay + days) {
+                return 0;
+            }
+            if (code >= trees.length) {
+                trees = Arrays.copyOf(trees, code + 1);
+            }
+            long allocated = 0;
+            if (trees[code] == null) {
+                trees[code] = new long[days + 1];
+                allocated = (days + 1) * 8L;
+            }
+            long[] tree = trees[code];
+            for (int i = day - firstDay + 1; i <= days; i += i & -i) {
+                tree[i] += cents;
+            }
+            return allocated;
+        }
+
+        private long sum(int code, int fromDay, int toDay) {
+            if (code >= trees.length || trees[code] == null) {
+                return 0;
+            }
+            return prefix(trees[code], toDay - firstDay + 1) - prefix(trees[code], fromDay - firstDay);
+        }
+
+        private static long prefix(long[] tree, int count) {
+            long sum = 0;
+            for (int i = count; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        private long bytes() {
+            long bytes = 0;
+            for (long[] tree : trees) {
+                if (tree != null) {
+                    bytes += tree.length * 8L;
+                }
+            }
+            return bytes;
+        }
+    }
+
+    private final class Holder {
+        private final Long userId;
+        private volatile Columns columns;
+        private volatile long lastAccess;
+        private boolean released;
+        private DailyIndex index;   // guarded by this, like the fields below
+        private long loadedSeq;
+        private Map<Long, Long> appliedSeq;   // expense id -> change sequence of the last event applied since load
+        private int loading;
+        private List<Change> missed;   // events delivered while a load is in flight, replayed when it lands
+        private final Map<Long, ExpenseSnapshot> unmerged = new HashMap<>();   // expense id -> latest state, null once deleted
+        private volatile boolean merging;   // unmerged is not empty
+
+        private Holder(Long userId) {
+            this.userId = userId;
+        }
+
+        // The queries run outside the lock: writers apply their events after commit while still holding a
+        // connection, so a loader waiting for one under the lock could starve the pool
+        private Columns load() {
+            synchronized (this) {
+                if (columns != null) {
+                    merge();
+                    return columns;
+                }
+                if (loading++ == 0) {
+                    missed = new ArrayList<>();
+                }
+            }
+            try {
+                return read();
+            } finally {
+                synchronized (this) {
+                    if (--loading == 0) {
+                        missed = null;
+                    }
+                }
+            }
+        }
+
+        private Columns read() {
+            // A user's writes commit in change sequence order (they hold the user row lock from taking their
+            // sequence to commit), and the snapshot carries the user's committed sequence, so it holds every
+            // change up to that sequence and none after it. Later events are applied on top.
+            long seq = 0;
+            List<Object[]> rows = new ArrayList<>();
+            Set<Long> seen = new HashSet<>();
+            for (Object[] row : expenseRepository.findAnalyticsRows(userId)) {
+                if (row[4] != null) {
+                    seq = Math.max(seq, (Long) row[4]);
+                }
+                // A row is only ever in one table within a snapshot, but a copy left behind must not count twice
+                if (row[0] != null && seen.add((Long) row[0])) {
+                    rows.add(row);
+                }
+            }
+            rows.sort(Comparator.comparing(row -> (LocalDate) row[2]));
+
+            int n = rows.size();
+            long[] ids = new long[n];
+            long[] amounts = new long[n];
+            int[] days = new int[n];
+            int[] codes = new int[n];
+            Map<Long, Integer> dictionary = new HashMap<>();
+            List<Long> categoryIds = new ArrayList<>();
+            categoryIds.add(0L);
+            for (int i = 0; i < n; i++) {
+                Object[] row = rows.get(i);
+                ids[i] = (Long) row[0];
+                amounts[i] = Cents.of((BigDecimal) row[1]);
+                days[i] = (int) ((LocalDate) row[2]).toEpochDay();
+                Long categoryId = (Long) row[3];
+                codes[i] = categoryId == null ? 0 : dictionary.computeIfAbsent(categoryId, id -> {
+                    categoryIds.add(id);
+                    return categoryIds.size() - 1;
+                });
+            }
+
+            return install(seq, new Columns(seq, ids, amounts, days, codes,
+                    categoryIds.stream().mapToLong(Long::longValue).toArray(), n));
+        }
+
+        private synchronized Columns install(long seq, Columns loaded) {
+            // Another load got there first and has been patched since
+            if (columns != null) {
+                merge();
+                return columns;
+            }
+            // Evicted while loading: answer this caller but don't keep the columns
+            if (released) {
+                return loaded;
+            }
+            loadedSeq = seq;
+            appliedSeq = new HashMap<>();
+            publish(loaded);
+            for (Change change : missed) {
+                apply(change.changeSeq, change.before, change.after);
+            }
+            merge();
+            return columns;
+        }
+
+        // The columns with every applied write merged in; null when not loaded
+        private Columns current() {
+            if (merging) {
+                synchronized (this) {
+                    merge();
+                }
+            }
+            return columns;
+        }
+
+        private long windowTotal(Long categoryId, int fromDay, int toDay) {
+            Columns loaded = load();
+            synchronized (this) {
+                merge();
+                return windowTotal(columns != null ? columns : loaded, categoryId, fromDay, toDay);
+            }
+        }
+
+        private WindowSums windowTotals(List<Window> windows) {
+            Columns loaded = load();
+            synchronized (this) {
+                merge();
+                // Evicted while loading: the load alone, with nothing applied since
+                Columns current = columns != null ? columns : loaded;
+                Coverage coverage = columns != null
+                        ? new Coverage(loadedSeq, Map.copyOf(appliedSeq))
+                        : new Coverage(loaded.seq, Map.of());
+                List<BigDecimal> totals = new ArrayList<>(windows.size());
+                for (Window window : windows) {
+                    totals.add(BigDecimal.valueOf(windowTotal(current, window.categoryId(),
+                            (int) window.from().toEpochDay(), (int) window.to().toEpochDay()), 2));
+                }
+                return new WindowSums(totals, coverage);
+            }
+        }
+
+        private long windowTotal(Columns current, Long categoryId, int fromDay, int toDay) {
+            int code = codeOf(current.categoryIds, categoryId);
+            if (code < 0 || fromDay > toDay) {
+                return 0;
+            }
+            DailyIndex daily = released ? null : index(current);
+            if (daily != null && daily.covers(fromDay, toDay)) {
+                return daily.sum(code, fromDay, toDay);
+            }
+            long sum = 0;
+            int end = current.lowerBound(toDay + 1);
+            for (int i = current.lowerBound(fromDay); i < end; i++) {
+                if (current.categoryCodes[i] == code) {
+                    sum += current.amounts[i];
+                }
+            }
+            return sum;
+        }
+
+        // Built from the columns on first use and again when the year rolls over
+        private DailyIndex index(Columns current) {
+            int year = LocalDate.now().getYear();
+            if (index == null || index.year != year) {
+                dropIndex();
+                DailyIndex built = new DailyIndex(year, current.categoryIds.length);
+                for (int i = 0; i < current.size; i++) {
+                    built.add(current.categoryCodes[i], current.days[i], current.amounts[i]);
+                }
+                index = built;
+                usedBytes.addAndGet(built.bytes());
+            }
+            return index;
+        }
+
+        private void dropIndex() {
+            if (index != null) {
+                usedBytes.addAndGet(-index.bytes());
+                index = null;
+            }
+        }
+
+        // Records the expense's new state (or its deletion) for the next merge. Events older than the load or
+        // than the last one applied to the same expense are skipped.
+        private synchronized void apply(long changeSeq, ExpenseSnapshot before, ExpenseSnapshot after) {
+            Columns current = columns;
+            if (current == null) {
+                if (missed != null) {
+                    missed.add(new Change(changeSeq, before, after));
+                }
+                return;
+            }
+            Long id = after != null ? after.getId() : before.getId();
+            if (changeSeq <= loadedSeq) {
+                return;
+            }
+            Long previousSeq = appliedSeq.put(id, changeSeq);
+            if (previousSeq == null) {
+                usedBytes.addAndGet(BYTES_PER_CHANGE);
+            } else if (previousSeq > changeSeq) {
+                appliedSeq.put(id, previousSeq);
+                return;
+            }
+            unmerged.put(id, after);
+            merging = true;
+            if (unmerged.size() > Math.max(MIN_MERGE, current.size / 8)) {
+                merge();
+            }
+        }
+
+        // One pass over the rows: those of changed expenses are dropped (whether or not the load already had
+        // the change) and the changed expenses' current states are inserted in date order
+        private void merge() {
+            Columns current = columns;
+            if (unmerged.isEmpty() || current == null) {
+                return;
+            }
+            long[] categoryIds = current.categoryIds;
+            List<Row> inserts = new ArrayList<>(unmerged.size());
+            for (Map.Entry<Long, ExpenseSnapshot> change : unmerged.entrySet()) {
+                ExpenseSnapshot after = change.getValue();
+                if (after == null) {
+                    continue;
+                }
+                int code = 0;
+                if (after.getCategoryId() != null) {
+                    code = codeOf(categoryIds, after.getCategoryId());
+                    if (code < 0) {
+                        categoryIds = Arrays.copyOf(categoryIds, categoryIds.length + 1);
+                        code = categoryIds.length - 1;
+                        categoryIds[code] = after.getCategoryId();
+                    }
+                }
+                inserts.add(new Row(change.getKey(), Cents.of(after.getAmount()), (int) after.getExpenseDate().toEpochDay(), code));
+            }
+            inserts.sort(Comparator.comparingInt(Row::day));
+
+            int capacity = current.size + inserts.size();
+            long[] ids = new long[capacity];
+            long[] amounts = new long[capacity];
+            int[] days = new int[capacity];
+            int[] codes = new int[capacity];
+            long allocated = 0;
+            int j = 0;
+            int next = 0;
+            for (int i = 0; i < current.size; i++) {
+                if (unmerged.containsKey(current.ids[i])) {
+                    // The index follows the rows actually replaced, so it stays exact
+                    if (index != null) {
+                        allocated += index.add(current.categoryCodes[i], current.days[i], -current.amounts[i]);
+                    }
+                    continue;
+                }
+                for (; next < inserts.size() && inserts.get(next).day() < current.days[i]; next++, j++) {
+                    inserts.get(next).copyTo(ids, amounts, days, codes, j);
+                }
+                ids[j] = current.ids[i];
+                amounts[j] = current.amounts[i];
+                days[j] = current.days[i];
+                codes[j++] = current.categoryCodes[i];
+            }
+            for (; next < inserts.size(); next++, j++) {
+                inserts.get(next).copyTo(ids, amounts, days, codes, j);
+            }
+            if (index != null) {
+                for (Row row : inserts) {
+                    allocated += index.add(row.code(), row.day(), row.amount());
+                }
+                usedBytes.addAndGet(allocated);
+            }
+            publish(new Columns(current.seq, ids, amounts, days, codes, categoryIds, j));
+            unmerged.clear();
+            merging = false;
+        }
+
+        private void publish(Columns next) {
+            Columns previous = columns;
+            columns = next;
+            usedBytes.addAndGet(next.bytes() - (previous != null ? previous.bytes() : 0));
+        }
+
+        private synchronized void release() {
+            released = true;
+            unmerged.clear();
+            merging = false;
+            dropIndex();
+            if (appliedSeq != null) {
+                usedBytes.addAndGet(-(long) appliedSeq.size() * BYTES_PER_CHANGE);
+                appliedSeq = null;
+            }
+            if (columns != null) {
+                usedBytes.addAndGet(-columns.bytes());
+                columns = null;
+            }
+        }
+
+        private int codeOf(long[] categoryIds, long categoryId) {
+            for (int code = 1; code < categoryIds.length; code++) {
+                if (categoryIds[code] == categoryId) {
+                    return code;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private record Change(long changeSeq, ExpenseSnapshot before, ExpenseSnapshot after) {
+    }
+
+    private record Row(long id, long amount, int day, int code) {
+
+        private void copyTo(long[] ids, long[] amounts, int[] days, int[] codes, int at) {
+            ids[at] = id;
+            amounts[at] = amount;
+            days[at] = day;
+            codes[at] = code;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.event.ExpenseSnapshot;
+import com.example.expensetracker.model.AnomalyType;
+import com.example.expensetracker.model.ExpenseAnomaly;
+import com.example.expensetracker.repository.ExpenseAnomalyRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Flags new expenses that look unusual, scored on arrival against per-user state kept in memory:
+// per category, Welford mean/variance and streaming median/MAD estimates of ln(amount), each O(1) per
+// expense, plus a short ring of recent expenses for duplicate checks. Only amounts as created are learned,
+// once committed; later edits and deletes leave the statistics alone. The state is rebuilt from history in
+// a parallel scan on startup, or on demand through the admin API.
+@Service
+public class ExpenseAnomalyDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseAnomalyDetector.class);
+
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExpenseAnomalyRepository anomalyRepository;
+    private final TransactionTemplate writeTransaction;
+    private final int minHistory;
+    private final double outlierScore;
+    private final double outlierRatio;
+    private final int duplicateWindowDays;
+    private final int rebuildParallelism;
+
+    private final ExecutorService rebuildExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private volatile Map<Long, UserState> states = new ConcurrentHashMap<>();
+
+    // Non-null while a rebuild runs: creations committed meanwhile, applied once the scan is done
+    private final Object rebuildLock = new Object();
+    private List<PendingExpense> backlog;
+
+    public ExpenseAnomalyDetector(ShardRouter shardRouter,
+                                  JdbcTemplate jdbcTemplate,
+                                  ExpenseAnomalyRepository anomalyRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${anomaly.min-history:8}") int minHistory,
+                                  @Value("${anomaly.outlier-score:3.5}") double outlierScore,
+                                  @Value("${anomaly.outlier-ratio:3}") double outlierRatio,
+                                  @Value("${anomaly.duplicate-window-days:3}") int duplicateWindowDays,
+                                  @Value("${anomaly.rebuild-parallelism:4}") int rebuildParallelism) {
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.anomalyRepository = anomalyRepository;
+        // For creations held back during a rebuild, which are flagged on the rebuild thread
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.minHistory = minHistory;
+        this.outlierScore = outlierScore;
+        this.outlierRatio = outlierRatio;
+        this.duplicateWindowDays = duplicateWindowDays;
+        this.rebuildParallelism = rebuildParallelism;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    // Covers every creation path: ExpenseServiceImpl.createExpense, the ingestion queue and RecurringExpenseScheduler.
+    // Flags are written in the expense's own transaction: after commit its connection is still held, and taking
+    // a second one per creation starves the pool once more writers than connections run at the same time.
+    // Only scoring happens here; the statistics and the duplicate ring learn the expense once the transaction
+    // has committed, so a creation that rolls back leaves no trace.
+    @Order(30)
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        ExpenseSnapshot created = event.getBefore() == null ? event.getAfter() : null;
+        if (created == null) {
+            return;
+        }
+        boolean rebuilding;
+        synchronized (rebuildLock) {
+            rebuilding = backlog != null;
+        }
+        List<PendingExpense> committing = committing();
+        // While a rebuild runs the expense is scored once it's done, against the rebuilt state
+        if (!rebuilding) {
+            UserState state = states.computeIfAbsent(event.getUserId(), id -> new UserState());
+            List<ExpenseAnomaly> anomalies;
+            synchronized (state) {
+                anomalies = score(state, event.getUserId(), created, committing);
+            }
+            if (!anomalies.isEmpty()) {
+                anomalyRepository.saveAll(anomalies);
+            }
+        }
+        committing.add(new PendingExpense(shardRouter.currentShard(), event.getUserId(), created, !rebuilding));
+    }
+
+    // The creations scored in the current transaction, learned after it commits and dropped otherwise
+    private List<PendingExpense> committing() {
+        @SuppressWarnings("unchecked")
+        List<PendingExpense> committing = (List<PendingExpense>) TransactionSynchronizationManager.getResource(this);
+        if (committing == null) {
+            List<PendingExpense> registered = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, registered);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    committed(registered);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ExpenseAnomalyDetector.this);
+                }
+            });
+            committing = registered;
+        }
+        return committing;
+    }
+
+    private void committed(List<PendingExpense> created) {
+        List<List<ExpenseAnomaly>> unsaved = new ArrayList<>();
+        synchronized (rebuildLock) {
+            for (PendingExpense pending : created) {
+                if (backlog != null) {
+                    backlog.add(pending);
+                } else {
+                    // Scored before a rebuild started and finished, or held back from one that finished since
+                    unsaved.add(observe(states, pending.userId, pending.expense, !pending.scored));
+                }
+            }
+        }
+        unsaved.forEach(this::save);
+    }
+
+    public void forget(Long userId) {
+        states.remove(userId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        startRebuild();
+    }
+
+    // Replays every expense, oldest first per user, in parallel partitions of user ids. The scan stops at
+    // the highest id committed when it started; creations after that are held back and applied on top.
+    // Returns false when a rebuild is already running.
+    public boolean startRebuild() {
+        synchronized (rebuildLock) {
+            if (backlog != null) {
+                return false;
+            }
+            backlog = new ArrayList<>();
+        }
+        rebuildExecutor.submit(this::rebuild);
+        return true;
+    }
+
+    private void rebuild() {
+        long started = System.nanoTime();
+        Map<Integer, Long> maxIds = new ConcurrentHashMap<>();
+        Map<Long, UserState> rebuilt = new ConcurrentHashMap<>();
+        boolean complete = false;
+        try {
+            shardRouter.fanOut(shard -> {
+                Long maxId = jdbcTemplate.queryForObject("SELECT GREATEST(COALESCE((SELECT MAX(id) FROM expenses), 0), " +
+                        "COALESCE((SELECT MAX(id) FROM expenses_archive), 0))", Long.class);
+                maxIds.put(shard, maxId);
+
+                List<Future<?>> partitions = new ArrayList<>();
+                for (int p = 0; p < rebuildParallelism; p++) {
+                    int partition = p;
+                    partitions.add(rebuildExecutor.submit(() ->
+                            shardRouter.runOn(shard, () -> scanPartition(partition, maxId, rebuilt))));
+                }
+                for (Future<?> partition : partitions) {
+                    await(partition);
+                }
+                return null;
+            });
+            complete = true;
+            log.info("Rebuilt anomaly state for {} users in {} ms", rebuilt.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (RuntimeException e) {
+            log.error("Anomaly state rebuild failed; keeping the previous state", e);
+        } finally {
+            synchronized (rebuildLock) {
+                if (complete) {
+                    states = rebuilt;
+                }
+                for (PendingExpense pending : backlog) {
+                    if (!complete || pending.expense.getId() > maxIds.getOrDefault(pending.shard, 0L)) {
+                        save(observe(states, pending.userId, pending.expense, !pending.scored));
+                    }
+                }
+                backlog = null;
+            }
+        }
+    }
+
+    private void scanPartition(int partition, long maxId, Map<Long, UserState> into) {
+        String columns = "user_id, id, category_id, amount, description, expense_date";
+        jdbcTemplate.query(
+                "SELECT " + columns + " FROM expenses WHERE MOD(user_id, ?) = ? AND id <= ? " +
+                "UNION ALL SELECT " + columns + " FROM expenses_archive WHERE MOD(user_id, ?) = ? AND id <= ? " +
+                "ORDER BY 1, 2",
+                rs -> {
+                    ExpenseSnapshot expense = new ExpenseSnapshot(rs.getLong(2), rs.getObject(3, Long.class),
+                            rs.getBigDecimal(4), rs.getDate(6).toLocalDate(), rs.getString(5));
+                    observe(into, rs.getLong(1), expense, false);
+                },
+                rebuildParallelism, partition, maxId, rebuildParallelism, partition, maxId);
+    }
+
+    private List<ExpenseAnomaly> observe(Map<Long, UserState> into, Long userId, ExpenseSnapshot expense, boolean score) {
+        UserState state = into.computeIfAbsent(userId, id -> new UserState());
+        synchronized (state) {
+            List<ExpenseAnomaly> anomalies = score ? score(state, userId, expense, List.of()) : List.of();
+            double amount = expense.getAmount().doubleValue();
+            if (amount > 0) {
+                state.stats.computeIfAbsent(categoryKey(expense), key -> new Stats()).add(Math.log(amount));
+            }
+            state.recent.add(expense.getId(), cents(expense), categoryKey(expense), descriptionKey(expense),
+                    expense.getExpenseDate().toEpochDay());
+            return anomalies;
+        }
+    }
+
+    // Against the learned state, plus for duplicates the user's creations earlier in the same transaction
+    private List<ExpenseAnomaly> score(UserState state, Long userId, ExpenseSnapshot expense, List<PendingExpense> earlier) {
+        long categoryKey = categoryKey(expense);
+        long cents = cents(expense);
+        int description = descriptionKey(expense);
+        long day = expense.getExpenseDate().toEpochDay();
+        double amount = expense.getAmount().doubleValue();
+
+        List<ExpenseAnomaly> anomalies = new ArrayList<>(0);
+        Stats stats = state.stats.get(categoryKey);
+        if (stats != null && amount > 0 && stats.n >= minHistory) {
+            double typical = Math.exp(stats.median);
+            double robustScore = stats.robustScore(Math.log(amount));
+            if (robustScore >= outlierScore && amount >= typical * outlierRatio) {
+                anomalies.add(anomaly(userId, expense, AnomalyType.AMOUNT_OUTLIER,
+                        BigDecimal.valueOf(typical).setScale(2, RoundingMode.HALF_UP), robustScore, null));
+            }
+        }
+        Long duplicateOf = null;
+        for (int i = earlier.size() - 1; i >= 0 && duplicateOf == null; i--) {
+            ExpenseSnapshot other = earlier.get(i).expense;
+            if (earlier.get(i).userId.equals(userId) && !other.getId().equals(expense.getId())
+                    && cents(other) == cents && categoryKey(other) == categoryKey && descriptionKey(other) == description
+                    && Math.abs(other.getExpenseDate().toEpochDay() - day) <= duplicateWindowDays) {
+                duplicateOf = other.getId();
+            }
+        }
+        if (duplicateOf == null) {
+            int match = state.recent.find(expense.getId(), cents, categoryKey, description, day, duplicateWindowDays);
+            if (match >= 0) {
+                duplicateOf = state.recent.expenseIds[match];
+            }
+        }
+        if (duplicateOf != null) {
+            anomalies.add(anomaly(userId, expense, AnomalyType.DUPLICATE, expense.getAmount(), 0, duplicateOf));
+        }
+        return anomalies;
+    }
+
+    private static long categoryKey(ExpenseSnapshot expense) {
+        return expense.getCategoryId() != null ? expense.getCategoryId() : 0;
+    }
+
+    private static long cents(ExpenseSnapshot expense) {
+        return Cents.of(expense.getAmount());
+    }
+
+    private static int descriptionKey(ExpenseSnapshot expense) {
+        return expense.getDescription() != null ? expense.getDescription().trim().toLowerCase(Locale.ROOT).hashCode() : 0;
+    }
+
+    private static ExpenseAnomaly anomaly(Long userId, ExpenseSnapshot expense, AnomalyType type,
+                                          BigDecimal typicalAmount, double score, Long relatedExpenseId) {
+        ExpenseAnomaly anomaly = new ExpenseAnomaly();
+        anomaly.setUserId(userId);
+        anomaly.setExpenseId(expense.getId());
+        anomaly.setCategoryId(expense.getCategoryId());
+        anomaly.setType(type);
+        anomaly.setAmount(expense.getAmount());
+        anomaly.setTypicalAmount(typicalAmount);
+        anomaly.setScore(score);
+        anomaly.setRelatedExpenseId(relatedExpenseId);
+        anomaly.setExpenseDate(expense.getExpenseDate());
+        anomaly.setDescription(expense.getDescription());
+        anomaly.setDetectedAt(LocalDateTime.now());
+        return anomaly;
+    }
+
+    private void save(List<ExpenseAnomaly> anomalies) {
+        if (anomalies.isEmpty()) {
+            return;
+        }
+        try {
+            writeTransaction.executeWithoutResult(status -> anomalyRepository.saveAll(anomalies));
+        } catch (RuntimeException e) {
+            log.warn("Could not store {} anomalies for expense {}", anomalies.size(), anomalies.getFirst().getExpenseId(), e);
+        }
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding anomaly state", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // scored: flagged before commit already, so only the state still has to learn it
+    private record PendingExpense(int shard, Long userId, ExpenseSnapshot expense, boolean scored) {
+    }
+
+    private static final class UserState {
+        private final Map<Long, Stats> stats = new HashMap<>();
+        private final RecentExpenses recent = new RecentExpenses();
+    }
+
+    // Statistics of ln(amount) in one category. The median and MAD are exact over the first WARMUP values,
+    // then follow a stochastic approximation: each value nudges the estimate towards its side by a step
+    // that shrinks with n, but never below MIN_RATE so the estimates keep up with changing habits.
+    private static final class Stats {
+        private static final int WARMUP = 8;
+        private static final double MIN_SPREAD = 0.05;
+        private static final double MIN_RATE = 0.02;
+
+        private long n;
+        private double mean;
+        private double m2;
+        private double median;
+        private double mad;
+        private double[] warmup = new double[WARMUP];
+
+        private void add(double x) {
+            n++;
+            double delta = x - mean;
+            mean += delta / n;
+            m2 += delta * (x - mean);
+
+            if (warmup != null) {
+                warmup[(int) n - 1] = x;
+                double[] values = Arrays.copyOf(warmup, (int) n);
+                median = exactMedian(values);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = Math.abs(values[i] - median);
+                }
+                mad = exactMedian(values);
+                if (n == WARMUP) {
+                    warmup = null;
+                }
+                return;
+            }
+
+            double step = Math.max(mad, MIN_SPREAD) * Math.max(1.5 / Math.sqrt(n), MIN_RATE);
+            median += step * Math.signum(x - median);
+            mad = Math.max(0, mad + step * Math.signum(Math.abs(x - median) - mad));
+        }
+
+        // Modified z-score (Iglewicz and Hoaglin); 3.5 and above is the usual outlier cut-off
+        private double robustScore(double x) {
+            return (x - median) / (1.4826 * Math.max(mad, MIN_SPREAD));
+        }
+
+        private static double exactMedian(double[] values) {
+            Arrays.sort(values);
+            int mid = values.length / 2;
+            return values.length % 2 == 1 ? values[mid] : (values[mid - 1] + values[mid]) / 2;
+        }
+    }
+
+    // The user's last RECENT expenses, for duplicate checks
+    private static final class RecentExpenses {
+        private static final int RECENT = 16;
+
+        private final long[] expenseIds = new long[RECENT];
+        private final long[] cents = new long[RECENT];
+        private final long[] categories = new long[RECENT];
+        private final int[] descriptions = new int[RECENT];
+        private final long[] days = new long[RECENT];
+        private int size;
+        private int next;
+
+        private int find(long expenseId, long amount, long category, int description, long day, int windowDays) {
+            for (int i = 0; i < size; i++) {
+                if (expenseIds[i] != expenseId && cents[i] == amount && categories[i] == category
+                        && descriptions[i] == description && Math.abs(days[i] - day) <= windowDays) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void add(long expenseId, long amount, long category, int description, long day) {
+            expenseIds[next] = expenseId;
+            cents[next] = amount;
+            categories[next] = category;
+            descriptions[next] = description;
+            days[next] = day;
+            next = (next + 1) % RECENT;
+            size = Math.min(size + 1, RECENT);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Write-behind path for POST /api/expenses/user/{userId} when expense.ingestion.queued=true.
+// Requests are validated on their own thread, then a single writer group-commits them in JDBC batches.
+@Service
+public class ExpenseIngestionQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseIngestionQueue.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO expenses (amount, description, expense_date, user_id, category_id, created_at, updated_at, change_seq, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final ExpenseService expenseService;
+    private final ChangeSequenceService changeSequenceService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shardRouter;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxWaitNanos;
+    private final long offerTimeoutMs;
+    private final BlockingQueue<PendingExpense> queue;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public ExpenseIngestionQueue(ExpenseService expenseService,
+                                 ChangeSequenceService changeSequenceService,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 ApplicationEventPublisher eventPublisher,
+                                 ShardRouter shardRouter,
+                                 @Value("${expense.ingestion.queued:false}") boolean enabled,
+                                 @Value("${expense.ingestion.capacity:10000}") int capacity,
+                                 @Value("${expense.ingestion.batch-size:500}") int batchSize,
+                                 @Value("${expense.ingestion.max-wait-ms:5}") long maxWaitMs,
+                                 @Value("${expense.ingestion.offer-timeout-ms:100}") long offerTimeoutMs) {
+        this.expenseService = expenseService;
+        this.changeSequenceService = changeSequenceService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::drainLoop, "expense-ingestion-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    // The future completes only after the batch holding this expense has committed
+    public CompletableFuture<Expense> submit(Expense expense, User user) {
+        if (!running) {
+            throw new IllegalStateException("Queued ingestion is not enabled");
+        }
+        expense.setUser(user);
+        if (expense.getCategory() != null) {
+            expense.setCategory(expenseService.resolveCategory(expense.getCategory().getId(), user));
+        }
+
+        PendingExpense pending = new PendingExpense(expense, shardRouter.currentShard());
+        try {
+            if (!queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Expense ingestion queue is full, retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while queueing expense", e);
+        }
+        return pending.future;
+    }
+
+    private void drainLoop() {
+        List<PendingExpense> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingExpense first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Group-commit window: gather whatever arrives within max-wait-ms, up to batch-size
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingExpense next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flushByShard(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+                queue.drainTo(batch);
+                RejectedExecutionException shutdown = new RejectedExecutionException("Ingestion writer stopped");
+                batch.forEach(pending -> pending.future.completeExceptionally(shutdown));
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // A transaction only spans one shard, so a mixed batch commits once per shard
+    private void flushByShard(List<PendingExpense> batch) {
+        if (shardRouter.shardCount() == 1) {
+            flush(batch);
+            return;
+        }
+        Map<Integer, List<PendingExpense>> byShard = new HashMap<>();
+        for (PendingExpense pending : batch) {
+            byShard.computeIfAbsent(pending.shard, shard -> new ArrayList<>()).add(pending);
+        }
+        byShard.forEach((shard, pendings) -> shardRouter.runOn(shard, () -> flush(pendings)));
+    }
+
+    private void flush(List<PendingExpense> batch) {
+        try {
+            commit(batch);
+        } catch (RuntimeException batchFailure) {
+            // Isolate the bad row(s) so one invalid expense doesn't fail its neighbours
+            log.warn("Batch of {} expenses failed, retrying individually", batch.size(), batchFailure);
+            for (PendingExpense pending : batch) {
+                try {
+                    commit(List.of(pending));
+                } catch (RuntimeException e) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+            return;
+        }
+        for (PendingExpense pending : batch) {
+            pending.future.complete(pending.expense);
+        }
+    }
+
+    private void commit(List<PendingExpense> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            assignChangeSeqs(batch);
+            insert(batch);
+            for (PendingExpense pending : batch) {
+                eventPublisher.publishEvent(ExpenseChangedEvent.created(pending.expense));
+            }
+        });
+    }
+
+    // One sequence reservation per user in the batch rather than one per expense
+    private void assignChangeSeqs(List<PendingExpense> batch) {
+        Map<Long, List<Expense>> byUser = new HashMap<>();
+        for (PendingExpense pending : batch) {
+            byUser.computeIfAbsent(pending.expense.getUser().getId(), id -> new ArrayList<>()).add(pending.expense);
+        }
+        byUser.forEach((userId, expenses) -> {
+            long seq = changeSequenceService.reserve(userId, expenses.size()) - expenses.size();
+            for (Expense expense : expenses) {
+                expense.setChangeSeq(++seq);
+            }
+        });
+    }
+
+    private void insert(List<PendingExpense> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (PendingExpense pending : batch) {
+                    Expense expense = pending.expense;
+                    expense.setCreatedAt(now);
+                    expense.setUpdatedAt(now);
+                    expense.setVersion(0L);
+
+                    ps.setBigDecimal(1, expense.getAmount());
+                    ps.setString(2, expense.getDescription());
+                    ps.setDate(3, Date.valueOf(expense.getExpenseDate()));
+                    ps.setLong(4, expense.getUser().getId());
+                    if (expense.getCategory() != null) {
+                        ps.setLong(5, expense.getCategory().getId());
+                    } else {
+                        ps.setNull(5, Types.BIGINT);
+                    }
+                    ps.setTimestamp(6, Timestamp.valueOf(now));
+                    ps.setTimestamp(7, Timestamp.valueOf(now));
+                    ps.setLong(8, expense.getChangeSeq());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next()) {
+                        batch.get(i++).expense.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private static final class PendingExpense {
+        private final Expense expense;
+        private final int shard;
+        private final CompletableFuture<Expense> future = new CompletableFuture<>();
+
+        private PendingExpense(Expense expense, int shard) {
+            this.expense = expense;
+            this.shard = shard;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.expensetracker.service;
 
+import com.example.expensetracker.dto.DescriptionSuggestionDto;
+import com.example.expensetracker.dto.ExpensePatchRequest;
+import com.example.expensetracker.model.Category;
 import com.example.expensetracker.model.Expense;
 import com.example.expensetracker.model.User;
 import org.springframework.data.domain.Page;
@@ -13,6 +16,8 @@ public interface ExpenseService {
 
     Expense createExpense(Expense expense, User user);
 
+    Category resolveCategory(Long categoryId, User user);
+
     List<Expense> getUserExpenses(User user);
 
     Page<Expense> getUserExpenses(User user, Pageable pageable);
@@ -24,4 +29,8 @@ public interface ExpenseService {
     void deleteExpense(Long expenseId, User user);
 
     Expense updateExpense(Long expenseId, Expense expenseDetails, User user);
+
+    Expense patchExpense(Long expenseId, Long userId, ExpensePatchRequest patch);
+
+    List<DescriptionSuggestionDto> suggestDescriptions(User user, String prefix, int limit);
 }
@@ -0,0 +1,302 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.event.ExpenseSnapshot;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Keeps expense_sketches, one KllSketch of amounts per user, category and month, in step with expense
+// writes. Changes are collected per transaction and applied just before it commits, once per touched
+// cell: creations are added to the stored sketch, while an edit or delete rebuilds the cell from its
+// expenses, since a sketch can't forget an item. Every write path holds the user's row lock
+// (ChangeSequenceService) by then, so the read-modify-write can't interleave with another one.
+@Service
+public class ExpenseSketchStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseSketchStore.class);
+
+    private static final long UNCATEGORIZED = 0;
+
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int k;
+
+    // Shards on which every user's sketches are built; elsewhere writes check the user's flag first
+    private final Set<Integer> builtShards = ConcurrentHashMap.newKeySet();
+    private final ExecutorService backfillExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ExpenseSketchStore(ShardRouter shardRouter,
+                              JdbcTemplate jdbcTemplate,
+                              EntityManager entityManager,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${distribution.sketch-k:200}") int k) {
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.k = k;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+
+    // Runs synchronously inside the publishing transaction, unlike the after-commit listeners
+    @EventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            log.warn("Expense change for user {} published outside a transaction; sketches not updated", event.getUserId());
+            return;
+        }
+        PendingCells pending = (PendingCells) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            PendingCells registered = new PendingCells();
+            TransactionSynchronizationManager.bindResource(this, registered);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    apply(registered);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ExpenseSketchStore.this);
+                }
+            });
+            pending = registered;
+        }
+        if (event.getBefore() != null) {
+            pending.changes(cell(event.getUserId(), event.getBefore())).rebuild = true;
+        }
+        if (event.getAfter() != null) {
+            pending.changes(cell(event.getUserId(), event.getAfter())).added.add(Cents.of(event.getAfter().getAmount()));
+        }
+    }
+
+    // Category id (0 for uncategorized) -> the user's sketches for the months from..to, merged
+    public Map<Long, KllSketch> userSketches(Long userId, YearMonth from, YearMonth to) {
+        Map<Long, KllSketch> merged = new HashMap<>();
+        jdbcTemplate.query("SELECT category_id, sketch FROM expense_sketches WHERE user_id = ? AND sketch_month BETWEEN ? AND ?",
+                rs -> {
+                    mergeInto(merged, rs.getLong(1), rs.getBytes(2));
+                },
+                userId, monthKey(from), monthKey(to));
+        return merged;
+    }
+
+    // Category id -> every user's sketches in those categories for the months from..to. Shards are read in
+    // parallel and their partial merges combined, which is as accurate as merging row by row.
+    public Map<Long, KllSketch> allUserSketches(Collection<Long> categoryIds, YearMonth from, YearMonth to) {
+        if (categoryIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        String placeholders = categoryIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        List<Object> args = new ArrayList<>(categoryIds);
+        args.add(monthKey(from));
+        args.add(monthKey(to));
+
+        List<Map<Long, KllSketch>> perShard = shardRouter.fanOut(shard -> {
+            Map<Long, KllSketch> merged = new HashMap<>();
+            jdbcTemplate.query("SELECT category_id, sketch FROM expense_sketches WHERE category_id IN (" + placeholders + ") " +
+                            "AND sketch_month BETWEEN ? AND ?",
+                    rs -> {
+                        mergeInto(merged, rs.getLong(1), rs.getBytes(2));
+                    },
+                    args.toArray());
+            return merged;
+        });
+
+        Map<Long, KllSketch> merged = new HashMap<>();
+        for (Map<Long, KllSketch> shard : perShard) {
+            shard.forEach((categoryId, sketch) -> merged.merge(categoryId, sketch, (a, b) -> {
+                a.merge(b);
+                return a;
+            }));
+        }
+        return merged;
+    }
+
+    // Users whose expenses predate the sketches are backfilled once, in the background; until a user is
+    // done their distribution is incomplete and their writes leave the sketches alone
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        shardRouter.fanOut(shard -> {
+            List<Long> userIds = jdbcTemplate.queryForList("SELECT id FROM users WHERE sketches_built = FALSE", Long.class);
+            if (userIds.isEmpty()) {
+                builtShards.add(shard);
+            } else {
+                backfillExecutor.submit(() -> shardRouter.runOn(shard, () -> backfill(shard, userIds)));
+            }
+            return null;
+        });
+    }
+
+    private void backfill(int shard, List<Long> userIds) {
+        long started = System.nanoTime();
+        try {
+            for (Long userId : userIds) {
+                transactionTemplate.executeWithoutResult(status -> backfillUser(userId));
+            }
+            builtShards.add(shard);
+            log.info("Built expense sketches for {} users on shard {} in {} ms", userIds.size(), shard,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (RuntimeException e) {
+            // Finished users keep their flag; the rest are picked up on the next start
+            log.error("Expense sketch backfill on shard {} failed", shard, e);
+        }
+    }
+
+    private void backfillUser(Long userId) {
+        // Flipping the flag takes the user's row lock, so none of their writes is in flight meanwhile
+        if (jdbcTemplate.update("UPDATE users SET sketches_built = TRUE WHERE id = ? AND sketches_built = FALSE", userId) == 0) {
+            return;
+        }
+        Map<Cell, KllSketch> cells = new HashMap<>();
+        jdbcTemplate.query("SELECT category_id, expense_date, amount FROM expenses WHERE user_id = ? " +
+                        "UNION ALL SELECT category_id, expense_date, amount FROM expenses_archive WHERE user_id = ?",
+                rs -> {
+                    Long categoryId = rs.getObject(1, Long.class);
+                    Cell cell = new Cell(userId, categoryId != null ? categoryId : UNCATEGORIZED,
+                            monthKey(YearMonth.from(rs.getDate(2).toLocalDate())));
+                    cells.computeIfAbsent(cell, c -> new KllSketch(k)).update(Cents.of(rs.getBigDecimal(3)));
+                },
+                userId, userId);
+
+        jdbcTemplate.update("DELETE FROM expense_sketches WHERE user_id = ?", userId);
+        jdbcTemplate.batchUpdate("INSERT INTO expense_sketches (user_id, category_id, sketch_month, item_count, sketch) VALUES (?, ?, ?, ?, ?)",
+                cells.entrySet().stream()
+                        .map(entry -> new Object[]{userId, entry.getKey().categoryId, entry.getKey().month,
+                                entry.getValue().count(), entry.getValue().toBytes()})
+                        .collect(Collectors.toList()));
+    }
+
+    private void apply(PendingCells pending) {
+        // Row-level rebuilds read the expenses table, so this transaction's own JPA writes go out first
+        entityManager.flush();
+        try {
+            Set<Long> unbuilt = unbuiltUsers(pending.cells.keySet());
+            pending.cells.forEach((cell, changes) -> {
+                if (unbuilt.contains(cell.userId)) {
+                    return;
+                }
+                KllSketch sketch;
+                if (changes.rebuild) {
+                    sketch = scan(cell);
+                } else {
+                    sketch = load(cell);
+                    changes.added.forEach(sketch::update);
+                }
+                store(cell, sketch);
+            });
+        } catch (DataAccessException e) {
+            // The sketches are derived data: the expense write still commits, and the users are rebuilt by
+            // the backfill on the next start, their distribution incomplete until then
+            List<Long> userIds = pending.cells.keySet().stream().map(Cell::userId).distinct().collect(Collectors.toList());
+            log.error("Updating expense sketches of users {} failed; they will be rebuilt", userIds, e);
+            builtShards.remove(shardRouter.currentShard());
+            String placeholders = userIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+            jdbcTemplate.update("UPDATE users SET sketches_built = FALSE WHERE id IN (" + placeholders + ")", userIds.toArray());
+        }
+    }
+
+    private Set<Long> unbuiltUsers(Set<Cell> cells) {
+        if (builtShards.contains(shardRouter.currentShard())) {
+            return Set.of();
+        }
+        List<Long> userIds = cells.stream().map(Cell::userId).distinct().collect(Collectors.toList());
+        String placeholders = userIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM users WHERE sketches_built = FALSE AND id IN (" + placeholders + ")", Long.class, userIds.toArray()));
+    }
+
+    private KllSketch load(Cell cell) {
+        List<byte[]> stored = jdbcTemplate.query("SELECT sketch FROM expense_sketches WHERE user_id = ? AND category_id = ? AND sketch_month = ?",
+                (rs, row) -> rs.getBytes(1), cell.userId, cell.categoryId, cell.month);
+        return stored.isEmpty() ? new KllSketch(k) : KllSketch.fromBytes(stored.getFirst());
+    }
+
+    private KllSketch scan(Cell cell) {
+        YearMonth month = YearMonth.of(cell.month / 100, cell.month % 100);
+        String categoryFilter = cell.categoryId == UNCATEGORIZED ? "category_id IS NULL" : "category_id = " + cell.categoryId;
+        String where = " WHERE user_id = ? AND " + categoryFilter + " AND expense_date BETWEEN ? AND ?";
+        Date first = Date.valueOf(month.atDay(1));
+        Date last = Date.valueOf(month.atEndOfMonth());
+
+        KllSketch sketch = new KllSketch(k);
+        jdbcTemplate.query("SELECT amount FROM expenses" + where + " UNION ALL SELECT amount FROM expenses_archive" + where,
+                rs -> {
+                    sketch.update(Cents.of(rs.getBigDecimal(1)));
+                },
+                cell.userId, first, last, cell.userId, first, last);
+        return sketch;
+    }
+
+    private void store(Cell cell, KllSketch sketch) {
+        if (sketch.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM expense_sketches WHERE user_id = ? AND category_id = ? AND sketch_month = ?",
+                    cell.userId, cell.categoryId, cell.month);
+            return;
+        }
+        jdbcTemplate.update("MERGE INTO expense_sketches (user_id, category_id, sketch_month, item_count, sketch) " +
+                        "KEY (user_id, category_id, sketch_month) VALUES (?, ?, ?, ?, ?)",
+                cell.userId, cell.categoryId, cell.month, sketch.count(), sketch.toBytes());
+    }
+
+    private static void mergeInto(Map<Long, KllSketch> merged, long categoryId, byte[] bytes) {
+        KllSketch sketch = KllSketch.fromBytes(bytes);
+        KllSketch existing = merged.putIfAbsent(categoryId, sketch);
+        if (existing != null) {
+            existing.merge(sketch);
+        }
+    }
+
+    private static Cell cell(Long userId, ExpenseSnapshot expense) {
+        long categoryId = expense.getCategoryId() != null ? expense.getCategoryId() : UNCATEGORIZED;
+        return new Cell(userId, categoryId, monthKey(YearMonth.from(expense.getExpenseDate())));
+    }
+
+    private static int monthKey(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+    private record Cell(Long userId, long categoryId, int month) {
+    }
+
+    private static final class CellChanges {
+        private boolean rebuild;
+        private final List<Long> added = new ArrayList<>();
+    }
+
+    // Insertion-ordered, so cells are written in the order the transaction touched them
+    private static final class PendingCells {
+        private final Map<Cell, CellChanges> cells = new LinkedHashMap<>();
+
+        private CellChanges changes(Cell cell) {
+            return cells.computeIfAbsent(cell, c -> new CellChanges());
+        }
+    }
+}
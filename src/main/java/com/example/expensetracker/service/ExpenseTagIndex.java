@@ -0,0 +1,275 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.event.CacheInvalidation;
+import com.example.expensetracker.event.CacheRegion;
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.event.ExpenseTagsChangedEvent;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Tag filters without a join per tag. Each cached user's tagged expenses get dense ordinals (0, 1, 2, ...)
+// and every tag a compressed Roaring bitmap of those ordinals, so "a AND b NOT c" is a couple of bitmap
+// operations however many expenses carry the tags. Ordinals of untagged or deleted expenses are not
+// reused until the user is reloaded. Users are loaded on first use and evicted least-recently-used once
+// tags.index.max-bytes is exceeded.
+@Service
+public class ExpenseTagIndex {
+
+    // Rough cost of an ordinal in the id array and the reverse map
+    private static final int BYTES_PER_ORDINAL = 56;
+    private static final int BYTES_PER_TAG = 96;
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxBytes;
+
+    private final Map<Long, Holder> holders = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+
+    public ExpenseTagIndex(JdbcTemplate jdbcTemplate,
+                           @Value("${tags.index.max-bytes:33554432}") long maxBytes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxBytes = maxBytes;
+    }
+
+    @Order(50)
+    @TransactionalEventListener
+    public void onTagsChanged(ExpenseTagsChangedEvent event) {
+        Holder holder = holders.get(event.getUserId());
+        if (holder != null) {
+            holder.setTags(event.getExpenseId(), event.getTags());
+        }
+    }
+
+    @Order(50)
+    @TransactionalEventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        if (event.getAfter() != null) {
+            return;
+        }
+        Holder holder = holders.get(event.getUserId());
+        if (holder != null) {
+            holder.setTags(event.getBefore().getId(), List.of());
+        }
+    }
+
+    // Deleting an expense drops its tags too
+    @EventListener
+    public void onRemoteInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.covers(CacheRegion.TAGS, CacheRegion.EXPENSES)) {
+            forget(invalidation.getUserId());
+        }
+    }
+
+    public void forget(Long userId) {
+        Holder holder = holders.remove(userId);
+        if (holder != null) {
+            holder.release();
+        }
+    }
+
+    public TagSelection select(Long userId, TagQuery query) {
+        return holder(userId).select(query);
+    }
+
+    // Tag names of every tagged expense, sorted by name
+    public Map<Long, List<String>> tagsByExpense(Long userId) {
+        return holder(userId).tagsByExpense();
+    }
+
+    public List<String> tagsOf(Long userId, Long expenseId) {
+        return holder(userId).tagsOf(expenseId);
+    }
+
+    // Number of expenses per tag, by name
+    public SortedMap<String, Integer> tagCounts(Long userId) {
+        return holder(userId).tagCounts();
+    }
+
+    private Holder holder(Long userId) {
+        Holder holder = holders.computeIfAbsent(userId, Holder::new);
+        holder.lastAccess = clock.incrementAndGet();
+        if (holder.ensureLoaded()) {
+            evictIfOverBudget();
+        }
+        return holder;
+    }
+
+    private void evictIfOverBudget() {
+        if (usedBytes.get() <= maxBytes) {
+            return;
+        }
+        List<Holder> byAge = new ArrayList<>(holders.values());
+        byAge.sort(Comparator.comparingLong(h -> h.lastAccess));
+        for (Holder holder : byAge) {
+            if (usedBytes.get() <= maxBytes) {
+                break;
+            }
+            if (holders.remove(holder.userId, holder)) {
+                holder.release();
+            }
+        }
+    }
+
+    // Expense ids matching a tag query. A negated selection matches every expense except the listed ones,
+    // which is what a query such as "NOT personal" gives without enumerating all of the user's expenses.
+    public static final class TagSelection {
+        private final long[] expenseIds;
+        private final boolean negated;
+
+        private TagSelection(long[] expenseIds, boolean negated) {
+            this.expenseIds = expenseIds;
+            this.negated = negated;
+        }
+
+        public long[] getExpenseIds() {
+            return expenseIds;
+        }
+
+        public boolean isNegated() {
+            return negated;
+        }
+
+        public boolean matches(long expenseId) {
+            return (Arrays.binarySearch(expenseIds, expenseId) >= 0) != negated;
+        }
+    }
+
+    private final class Holder {
+        private final Long userId;
+        private volatile long lastAccess;
+        private Map<String, RoaringBitmap> bitmaps;   // guarded by this, like the fields below
+        private long[] expenseOfOrdinal;
+        private int ordinals;
+        private Map<Long, Integer> ordinalOfExpense;
+        private long bytes;
+        private boolean released;
+
+        private Holder(Long userId) {
+            this.userId = userId;
+        }
+
+        // True when this call loaded the user. Loading under the lock holds back listeners for changes that
+        // commit meanwhile; they replace an expense's whole tag set, so applying one the query already saw is harmless.
+        private synchronized boolean ensureLoaded() {
+            if (bitmaps != null) {
+                return false;
+            }
+            bitmaps = new HashMap<>();
+            expenseOfOrdinal = new long[16];
+            ordinalOfExpense = new HashMap<>();
+            jdbcTemplate.query("SELECT et.expense_id, t.name FROM expense_tags et JOIN tags t ON t.id = et.tag_id " +
+                            "WHERE et.user_id = ? ORDER BY et.expense_id",
+                    rs -> {
+                        add(rs.getLong(1), rs.getString(2));
+                    },
+                    userId);
+            updateBytes();
+            return true;
+        }
+
+        private synchronized TagSelection select(TagQuery query) {
+            TagQuery.Result result = query.evaluate(tag -> bitmaps.getOrDefault(tag, EMPTY));
+            long[] ids = new long[result.bitmap().getCardinality()];
+            int i = 0;
+            for (int ordinal : result.bitmap()) {
+                ids[i++] = expenseOfOrdinal[ordinal];
+            }
+            Arrays.sort(ids);
+            return new TagSelection(ids, result.negated());
+        }
+
+        private synchronized Map<Long, List<String>> tagsByExpense() {
+            Map<Long, List<String>> result = new HashMap<>();
+            for (String tag : new TreeSet<>(bitmaps.keySet())) {
+                for (int ordinal : bitmaps.get(tag)) {
+                    result.computeIfAbsent(expenseOfOrdinal[ordinal], id -> new ArrayList<>(2)).add(tag);
+                }
+            }
+            return result;
+        }
+
+        private synchronized List<String> tagsOf(Long expenseId) {
+            Integer ordinal = ordinalOfExpense.get(expenseId);
+            if (ordinal == null) {
+                return List.of();
+            }
+            List<String> tags = new ArrayList<>();
+            bitmaps.forEach((tag, bitmap) -> {
+                if (bitmap.contains(ordinal)) {
+                    tags.add(tag);
+                }
+            });
+            Collections.sort(tags);
+            return tags;
+        }
+
+        private synchronized SortedMap<String, Integer> tagCounts() {
+            SortedMap<String, Integer> counts = new TreeMap<>();
+            bitmaps.forEach((tag, bitmap) -> counts.put(tag, bitmap.getCardinality()));
+            return counts;
+        }
+
+        private synchronized void setTags(Long expenseId, List<String> tags) {
+            if (bitmaps == null || released) {
+                return;
+            }
+            Integer ordinal = ordinalOfExpense.get(expenseId);
+            if (ordinal != null) {
+                Iterator<RoaringBitmap> it = bitmaps.values().iterator();
+                while (it.hasNext()) {
+                    RoaringBitmap bitmap = it.next();
+                    bitmap.remove(ordinal);
+                    if (bitmap.isEmpty()) {
+                        it.remove();
+                    }
+                }
+            }
+            for (String tag : tags) {
+                add(expenseId, tag);
+            }
+            updateBytes();
+        }
+
+        private void add(Long expenseId, String tag) {
+            Integer ordinal = ordinalOfExpense.get(expenseId);
+            if (ordinal == null) {
+                if (ordinals == expenseOfOrdinal.length) {
+                    expenseOfOrdinal = Arrays.copyOf(expenseOfOrdinal, ordinals * 2);
+                }
+                ordinal = ordinals++;
+                expenseOfOrdinal[ordinal] = expenseId;
+                ordinalOfExpense.put(expenseId, ordinal);
+            }
+            bitmaps.computeIfAbsent(tag, t -> new RoaringBitmap()).add(ordinal);
+        }
+
+        private void updateBytes() {
+            if (released) {
+                return;
+            }
+            long total = (long) ordinals * BYTES_PER_ORDINAL;
+            for (Map.Entry<String, RoaringBitmap> entry : bitmaps.entrySet()) {
+                total += BYTES_PER_TAG + entry.getKey().length() + entry.getValue().getSizeInBytes();
+            }
+            usedBytes.addAndGet(total - bytes);
+            bytes = total;
+        }
+
+        private synchronized void release() {
+            released = true;
+            usedBytes.addAndGet(-bytes);
+            bytes = 0;
+        }
+    }
+}
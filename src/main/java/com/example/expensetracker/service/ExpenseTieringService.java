@@ -0,0 +1,244 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.ArchivedExpense;
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.repository.ArchivedExpenseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Moves expenses older than the hot window into expenses_archive. Every archived row is dated before
+// the watermark, so reads whose range starts at or after it never touch the archive. The watermark lives in
+// archive_watermark and is read per request: another instance may have archived since this one started.
+@Service
+public class ExpenseTieringService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpenseTieringService.class);
+
+    private static final String COLUMNS =
+            "id, amount, description, expense_date, user_id, category_id, created_at, updated_at, change_seq, version";
+
+    private final ArchivedExpenseRepository archivedExpenseRepository;
+    private final ShardRouter shardRouter;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int hotYears;
+    private final int chunkSize;
+
+    public ExpenseTieringService(ArchivedExpenseRepository archivedExpenseRepository,
+                                 ShardRouter shardRouter,
+                                 NamedParameterJdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${expense.tiering.hot-years:1}") int hotYears,
+                                 @Value("${expense.tiering.chunk-size:1000}") int chunkSize) {
+        this.archivedExpenseRepository = archivedExpenseRepository;
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.hotYears = hotYears;
+        this.chunkSize = chunkSize;
+    }
+
+    // Archives written before the watermark was stored: the newest archived date bounds them from above
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillWatermark() {
+        shardRouter.fanOut(shard -> inTransaction(() -> {
+            LocalDate latest = archivedExpenseRepository.findLatestExpenseDate();
+            if (latest != null) {
+                raiseWatermark(latest.plusDays(1));
+            }
+            return 0;
+        }));
+    }
+
+    // One primary key read on the current shard; null until something has been archived there
+    public LocalDate watermark() {
+        List<LocalDate> watermark = jdbcTemplate.queryForList(
+                "SELECT watermark FROM archive_watermark WHERE id = 1", new MapSqlParameterSource(), LocalDate.class);
+        return watermark.isEmpty() ? null : watermark.getFirst();
+    }
+
+    public boolean needsArchive(LocalDate startDate) {
+        LocalDate current = watermark();
+        return current != null && (startDate == null || startDate.isBefore(current));
+    }
+
+    // Keeps the current year plus expense.tiering.hot-years previous years in the hot table
+    @Scheduled(cron = "${expense.tiering.cron:0 0 4 * * *}")
+    public void archiveOldExpenses() {
+        LocalDate cutoff = LocalDate.now().minusYears(hotYears).withDayOfYear(1);
+
+        shardRouter.fanOut(shard -> {
+            // Committed first: while rows are moving, readers of that range must already look in both tables
+            inTransaction(() -> raiseWatermark(cutoff));
+            long moved = 0;
+            int chunk;
+            do {
+                chunk = inTransaction(() -> archiveChunk(cutoff));
+                moved += chunk;
+            } while (chunk == chunkSize);
+
+            if (moved > 0) {
+                log.info("Archived {} expenses dated before {} on shard {}", moved, cutoff, shard);
+            }
+            return moved;
+        });
+    }
+
+    private int archiveChunk(LocalDate cutoff) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM expenses WHERE expense_date < :cutoff ORDER BY id FETCH FIRST :limit ROWS ONLY FOR UPDATE",
+                new MapSqlParameterSource("cutoff", cutoff).addValue("limit", chunkSize),
+                Long.class);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        jdbcTemplate.update("INSERT INTO expenses_archive (" + COLUMNS + ") SELECT " + COLUMNS +
+                " FROM expenses WHERE id IN (:ids)", params);
+        jdbcTemplate.update("DELETE FROM expenses WHERE id IN (:ids)", params);
+        return ids.size();
+    }
+
+    // Moves one archived expense back to the hot table so it can be edited or deleted like any other.
+    // Joins the caller's transaction.
+    public boolean restore(Long expenseId, Long userId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("id", expenseId).addValue("userId", userId);
+        int restored = jdbcTemplate.update("INSERT INTO expenses (" + COLUMNS + ") SELECT " + COLUMNS +
+                " FROM expenses_archive WHERE id = :id AND user_id = :userId", params);
+        if (restored == 0) {
+            return false;
+        }
+        jdbcTemplate.update("DELETE FROM expenses_archive WHERE id = :id", params);
+        return true;
+    }
+
+    // Archived rows in range, as detached Expenses; empty when the range is entirely hot
+    public List<Expense> findArchived(Long userId, LocalDate startDate, LocalDate endDate) {
+        if (!needsArchive(startDate)) {
+            return List.of();
+        }
+        return toExpenses(archivedExpenseRepository.findByUserIdAndExpenseDateBetween(userId, startDate, endDate));
+    }
+
+    // Lookups without a date range go straight to the archive: that costs the same one statement as
+    // reading the watermark would
+    public Optional<Expense> findArchivedById(Long expenseId, Long userId) {
+        return archivedExpenseRepository.findById(expenseId)
+                .filter(a -> a.getUser().getId().equals(userId))
+                .map(a -> toExpenses(List.of(a)).getFirst());
+    }
+
+    public List<Expense> findArchivedByIds(Long userId, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return toExpenses(archivedExpenseRepository.findByUserIdAndIdIn(userId, ids));
+    }
+
+    public List<Expense> findAllArchived(Long userId) {
+        return toExpenses(archivedExpenseRepository.findByUserId(userId));
+    }
+
+    public List<Expense> findArchivedChangedSince(Long userId, long changeSeq) {
+        return toExpenses(archivedExpenseRepository.findByUserIdAndChangeSeqGreaterThan(userId, changeSeq));
+    }
+
+    // Hot rows are read before archived ones, so a row moved in between shows up twice rather than not at all
+    public List<Expense> union(List<Expense> hot, List<Expense> archived) {
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        Set<Long> hotIds = hot.stream().map(Expense::getId).collect(Collectors.toSet());
+        List<Expense> merged = new ArrayList<>(hot);
+        archived.stream().filter(e -> !hotIds.contains(e.getId())).forEach(merged::add);
+        return merged;
+    }
+
+    // Both tables' first offset + size rows in the page's order, merged, then the page cut out of them.
+    // Totals add up, except for a row moved between the two reads, which is counted twice.
+    public Page<Expense> page(Long userId, Pageable pageable, Function<Pageable, Page<Expense>> hotPage) {
+        if (pageable.isUnpaged()) {
+            return hotPage.apply(pageable);
+        }
+        Pageable head = PageRequest.of(0, (int) pageable.getOffset() + pageable.getPageSize(), pageable.getSort());
+        Page<Expense> hot = hotPage.apply(head);
+        Page<ArchivedExpense> archived = archivedExpenseRepository.findByUserId(userId, head);
+        if (archived.getTotalElements() == 0) {
+            return cut(hot.getContent(), pageable, hot.getTotalElements());
+        }
+        List<Expense> merged = new ArrayList<>(union(hot.getContent(), toExpenses(archived.getContent())));
+        merged.sort(comparator(pageable.getSort()));
+        return cut(merged, pageable, hot.getTotalElements() + archived.getTotalElements());
+    }
+
+    private static Page<Expense> cut(List<Expense> head, Pageable pageable, long total) {
+        int from = (int) Math.min(pageable.getOffset(), head.size());
+        int to = Math.min(from + pageable.getPageSize(), head.size());
+        return new PageImpl<>(new ArrayList<>(head.subList(from, to)), pageable, total);
+    }
+
+    // The order the database applied to each table, for merging their rows
+    @SuppressWarnings("unchecked")
+    private static Comparator<Expense> comparator(Sort sort) {
+        Comparator<Expense> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<Expense> byProperty = Comparator.comparing(
+                    e -> (Comparable<Object>) new BeanWrapperImpl(e).getPropertyValue(order.getProperty()),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    // Never lowers it, so a late run with an older cutoff can't hide archived rows
+    private int raiseWatermark(LocalDate candidate) {
+        return jdbcTemplate.update("MERGE INTO archive_watermark (id, watermark) KEY (id) " +
+                        "SELECT 1, GREATEST(:candidate, COALESCE(MAX(watermark), :candidate)) FROM archive_watermark",
+                new MapSqlParameterSource("candidate", candidate));
+    }
+
+    private int inTransaction(Supplier<Integer> work) {
+        Integer result = transactionTemplate.execute(status -> work.get());
+        return result != null ? result : 0;
+    }
+
+    private static List<Expense> toExpenses(List<ArchivedExpense> archived) {
+        List<Expense> expenses = new ArrayList<>(archived.size());
+        for (ArchivedExpense a : archived) {
+            Expense expense = new Expense();
+            expense.setId(a.getId());
+            expense.setAmount(a.getAmount());
+            expense.setDescription(a.getDescription());
+            expense.setExpenseDate(a.getExpenseDate());
+            expense.setUser(a.getUser());
+            expense.setCategory(a.getCategory());
+            expense.setCreatedAt(a.getCreatedAt());
+            expense.setUpdatedAt(a.getUpdatedAt());
+            expense.setChangeSeq(a.getChangeSeq());
+            expense.setVersion(a.getVersion());
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.model.IdempotencyRecord;
+import com.example.expensetracker.model.IdempotentOperation;
+import com.example.expensetracker.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+// Makes create requests sent with an Idempotency-Key safe to retry. The first request with a key runs
+// the write; concurrent duplicates wait on that execution and later ones get its response without
+// touching the write path. Responses stay in a bounded in-memory map; idempotency_keys keeps the id of
+// the created row, committed with it, so retries are still recognised after a restart or eviction.
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final IdempotencyRecordRepository repository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+
+    // Access-ordered: the least recently used key goes first once max-entries is reached
+    private final Map<CacheKey, Entry> entries;
+
+    public IdempotencyService(IdempotencyRecordRepository repository,
+                              ShardRouter shardRouter,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${idempotency.max-entries:10000}") int maxEntries) {
+        this.repository = repository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // Without a key the action simply runs. resourceId extracts the created row's id from the response;
+    // replay rebuilds the response from that id when only the stored row is left.
+    public <T> CompletableFuture<T> execute(Long userId, IdempotentOperation operation, String key, long fingerprint,
+                                            Supplier<CompletableFuture<T>> action,
+                                            Function<T, Long> resourceId,
+                                            LongFunction<T> replay) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        CacheKey cacheKey = new CacheKey(userId, operation, key);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        boolean first = false;
+        synchronized (entries) {
+            entry = entries.get(cacheKey);
+            if (entry == null || entry.expiresAt < now) {
+                entry = new Entry(fingerprint, new CompletableFuture<>(), now + ttl.toMillis());
+                entries.put(cacheKey, entry);
+                first = true;
+            }
+        }
+        checkFingerprint(entry.fingerprint, fingerprint);
+
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> result = (CompletableFuture<T>) entry.result;
+        if (first) {
+            run(cacheKey, entry, result, action, resourceId, replay);
+        }
+        return result;
+    }
+
+    // Nightly, like tombstone compaction
+    @Scheduled(cron = "${idempotency.cleanup-cron:0 45 3 * * *}")
+    public void removeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.expiresAt < now && entry.result.isDone());
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(ttl);
+        shardRouter.fanOut(shard -> transactionTemplate.execute(status -> repository.deleteOlderThan(cutoff)));
+    }
+
+    // Order-sensitive hash of the fields that make up a request; amounts compare by value (10 == 10.00)
+    public static long fingerprint(Object... fields) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object field : fields) {
+                String value = field instanceof BigDecimal amount ? amount.stripTrailingZeros().toPlainString() : String.valueOf(field);
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private <T> void run(CacheKey cacheKey, Entry entry, CompletableFuture<T> result,
+                         Supplier<CompletableFuture<T>> action, Function<T, Long> resourceId, LongFunction<T> replay) {
+        try {
+            Optional<IdempotencyRecord> stored = find(cacheKey);
+            if (stored.isPresent() && !expired(stored.get())) {
+                result.complete(replay(stored.get(), entry.fingerprint, replay));
+                return;
+            }
+
+            CompletableFuture<T> outcome;
+            try {
+                outcome = transactionTemplate.execute(status -> {
+                    stored.ifPresent(repository::delete);
+                    CompletableFuture<T> execution = action.get();
+                    // A synchronous write joins this transaction, so its row and the key commit together
+                    if (execution.isDone()) {
+                        record(cacheKey, entry.fingerprint, resourceId.apply(execution.join()));
+                    }
+                    return execution;
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Another instance committed the same key first and this write was rolled back
+                IdempotencyRecord winner = find(cacheKey).orElseThrow(() -> e);
+                result.complete(replay(winner, entry.fingerprint, replay));
+                return;
+            }
+
+            if (outcome.isDone()) {
+                result.complete(outcome.join());
+                return;
+            }
+
+            // Queued ingestion commits later on its writer thread; the key is recorded once that's durable
+            int shard = shardRouter.currentShard();
+            outcome.whenComplete((value, error) -> {
+                if (error != null) {
+                    fail(cacheKey, entry, error);
+                    return;
+                }
+                try {
+                    shardRouter.runOn(shard, () -> transactionTemplate.executeWithoutResult(status ->
+                            record(cacheKey, entry.fingerprint, resourceId.apply(value))));
+                } catch (RuntimeException e) {
+                    log.warn("Could not store {} for user {}; only the in-memory copy will answer retries",
+                            HEADER, cacheKey.userId, e);
+                }
+                result.complete(value);
+            });
+        } catch (RuntimeException e) {
+            fail(cacheKey, entry, e);
+            throw e;
+        }
+    }
+
+    private Optional<IdempotencyRecord> find(CacheKey cacheKey) {
+        return repository.findByUserIdAndOperationAndIdempotencyKey(cacheKey.userId, cacheKey.operation, cacheKey.key);
+    }
+
+    private void record(CacheKey cacheKey, long fingerprint, Long resourceId) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setUserId(cacheKey.userId);
+        record.setOperation(cacheKey.operation);
+        record.setIdempotencyKey(cacheKey.key);
+        record.setFingerprint(fingerprint);
+        record.setResourceId(resourceId);
+        record.setCreatedAt(LocalDateTime.now());
+        repository.save(record);
+    }
+
+    private boolean expired(IdempotencyRecord record) {
+        return record.getCreatedAt().isBefore(LocalDateTime.now().minus(ttl));
+    }
+
+    // Failed requests aren't remembered, so a retry runs the write again
+    private void fail(CacheKey cacheKey, Entry entry, Throwable error) {
+        synchronized (entries) {
+            entries.remove(cacheKey, entry);
+        }
+        entry.result.completeExceptionally(error);
+    }
+
+    private static <T> T replay(IdempotencyRecord record, long fingerprint, LongFunction<T> replay) {
+        checkFingerprint(record.getFingerprint(), fingerprint);
+        return replay.apply(record.getResourceId());
+    }
+
+    private static void checkFingerprint(long expected, long actual) {
+        if (expected != actual) {
+            throw new IllegalArgumentException(HEADER + " was already used for a different request");
+        }
+    }
+
+    private record CacheKey(Long userId, IdempotentOperation operation, String key) {
+    }
+
+    private record Entry(long fingerprint, CompletableFuture<?> result, long expiresAt) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.event.CacheInvalidation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
+
+// Cache invalidations through the database, with no extra infrastructure: senders insert rows into
+// cache_invalidations as part of their transaction and every instance polls each shard for rows with a
+// higher id than it has seen. Ids are taken at insert but become visible at commit, so a skipped id is
+// looked up again on later polls for cache.bus.gap-grace-ms before it is taken for a rollback.
+@Service
+@ConditionalOnProperty(name = "cache.bus.transport", havingValue = "jdbc")
+public class JdbcPollingInvalidationTransport implements CacheInvalidationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcPollingInvalidationTransport.class);
+
+    private static final int BATCH_SIZE = 1000;
+    // A larger jump is an identity cache skip after a restart, not transactions still committing
+    private static final int MAX_TRACKED_GAP = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final long gapGraceMs;
+    private final long retentionMs;
+
+    private final Map<Integer, Cursor> cursors = new ConcurrentHashMap<>();
+    private volatile ObjLongConsumer<CacheInvalidation> listener;
+
+    public JdbcPollingInvalidationTransport(JdbcTemplate jdbcTemplate,
+                                            ShardRouter shardRouter,
+                                            @Value("${cache.bus.gap-grace-ms:10000}") long gapGraceMs,
+                                            @Value("${cache.bus.retention-ms:600000}") long retentionMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.gapGraceMs = gapGraceMs;
+        this.retentionMs = retentionMs;
+    }
+
+    @Override
+    public String name() {
+        return "jdbc";
+    }
+
+    // On the current shard, which is the written user's
+    @Override
+    public void send(List<CacheInvalidation> invalidations) {
+        jdbcTemplate.batchUpdate("INSERT INTO cache_invalidations (origin, user_id, regions, sent_at) VALUES (?, ?, ?, ?)",
+                invalidations.stream()
+                        .map(i -> new Object[]{i.getOrigin(), i.getUserId(), i.getRegions(), i.getSentAt()})
+                        .toList());
+    }
+
+    @Override
+    public void subscribe(ObjLongConsumer<CacheInvalidation> listener) {
+        this.listener = listener;
+    }
+
+    @Scheduled(fixedDelayString = "${cache.bus.poll-interval-ms:500}")
+    public void poll() {
+        shardRouter.fanOut(shard -> {
+            try {
+                cursors.computeIfAbsent(shard, s -> new Cursor()).poll();
+            } catch (RuntimeException e) {
+                log.warn("Polling cache invalidations on shard {} failed", shard, e);
+            }
+            return null;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${cache.bus.cleanup-interval-ms:60000}")
+    public void deleteExpired() {
+        long before = System.currentTimeMillis() - retentionMs;
+        shardRouter.fanOut(shard -> jdbcTemplate.update("DELETE FROM cache_invalidations WHERE sent_at < ?", before));
+    }
+
+    // Polling state of one shard; only touched by the poller thread of that shard
+    private final class Cursor {
+        private long lastId = -1;
+        private final Map<Long, Long> gaps = new HashMap<>();   // id -> give up after, epoch millis
+
+        private void poll() {
+            if (lastId < 0) {
+                // A starting instance has empty caches, so earlier invalidations don't concern it
+                Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM cache_invalidations", Long.class);
+                lastId = max != null ? max : 0;
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (!gaps.isEmpty()) {
+                String ids = gaps.keySet().stream().map(String::valueOf).collect(Collectors.joining(", "));
+                deliver(jdbcTemplate.query("SELECT id, origin, user_id, regions, sent_at FROM cache_invalidations " +
+                        "WHERE id IN (" + ids + ")", this::row), now);
+                gaps.values().removeIf(deadline -> deadline < now);
+            }
+            List<Row> rows;
+            do {
+                rows = jdbcTemplate.query("SELECT id, origin, user_id, regions, sent_at FROM cache_invalidations " +
+                        "WHERE id > ? ORDER BY id LIMIT " + BATCH_SIZE, this::row, lastId);
+                for (Row row : rows) {
+                    if (row.id - lastId - 1 <= MAX_TRACKED_GAP) {
+                        for (long missing = lastId + 1; missing < row.id; missing++) {
+                            gaps.put(missing, now + gapGraceMs);
+                        }
+                    }
+                    lastId = row.id;
+                }
+                deliver(rows, now);
+            } while (rows.size() == BATCH_SIZE);
+        }
+
+        private void deliver(List<Row> rows, long now) {
+            ObjLongConsumer<CacheInvalidation> target = listener;
+            for (Row row : rows) {
+                gaps.remove(row.id);
+                if (target != null) {
+                    target.accept(row.invalidation, Math.max(0, now - row.invalidation.getSentAt()));
+                }
+            }
+        }
+
+        private Row row(ResultSet rs, int rowNum) throws SQLException {
+            return new Row(rs.getLong("id"), new CacheInvalidation(rs.getString("origin"), rs.getLong("user_id"),
+                    rs.getInt("regions"), rs.getLong("sent_at")));
+        }
+    }
+
+    private record Row(long id, CacheInvalidation invalidation) {
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.expensetracker.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+// KLL quantile sketch over non-negative longs (amounts in cents). Level h holds items of weight 2^h; when
+// the sketch outgrows its capacity the lowest full level is sorted and every other item, from a random
+// offset, moves up a level. Capacities shrink by 2/3 per level below the top, so at most about 3k items
+// are retained whatever the count. Sketches merge level by level, so a merge of per-month or per-user
+// sketches has the same error as one sketch fed every item.
+//
+// Error: exact up to k items. Beyond that a quantile's rank is off by at most about 1.65% of the count
+// with 99% confidence for k = 200 (the bound scales roughly with 1/k, see rankError).
+public final class KllSketch {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_LEVEL_CAPACITY = 2;
+    private static final byte FORMAT_VERSION = 1;
+    private static final double RANK_ERROR_TIMES_K = 3.3;
+
+    // Room below the top bits for the level when items are packed for sorting
+    private static final int LEVEL_BITS = 6;
+    private static final long MAX_VALUE = Long.MAX_VALUE >>> LEVEL_BITS;
+
+    private int k;
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private long[][] levels;
+    private int[] sizes;
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        if (k < 8 || k > 0xFFFF) {
+            throw new IllegalArgumentException("k must be between 8 and 65535");
+        }
+        this.k = k;
+        this.levels = new long[][]{new long[16]};
+        this.sizes = new int[1];
+    }
+
+    public void update(long value) {
+        if (value < 0 || value > MAX_VALUE) {
+            throw new IllegalArgumentException("Sketch values must be between 0 and " + MAX_VALUE);
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        append(0, value);
+        compressWhileFull();
+    }
+
+    public void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        // The coarser sketch bounds the error of the result, so it keeps the smaller k
+        k = Math.min(k, other.k);
+        while (levels.length < other.levels.length) {
+            addLevel();
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compressWhileFull();
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // True until the first compaction: every item is still held at weight 1
+    public boolean isExact() {
+        return levels.length == 1;
+    }
+
+    // Bound on |estimated rank - true rank| / count at 99% confidence
+    public double rankError() {
+        return isExact() ? 0 : RANK_ERROR_TIMES_K / k;
+    }
+
+    public long min() {
+        requireItems();
+        return min;
+    }
+
+    public long max() {
+        requireItems();
+        return max;
+    }
+
+    // Smallest retained item whose weighted rank reaches fraction * count
+    public long quantile(double fraction) {
+        return quantiles(fraction)[0];
+    }
+
+    // One sort for several fractions
+    public long[] quantiles(double... fractions) {
+        requireItems();
+        int retained = retained();
+        long[] packed = new long[retained];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                packed[n++] = (levels[h][i] << LEVEL_BITS) | h;
+            }
+        }
+        Arrays.sort(packed);
+
+        long[] result = new long[fractions.length];
+        for (int q = 0; q < fractions.length; q++) {
+            double fraction = fractions[q];
+            if (fraction < 0 || fraction > 1) {
+                throw new IllegalArgumentException("Quantile fractions must be between 0 and 1");
+            }
+            if (fraction == 0) {
+                result[q] = min;
+                continue;
+            }
+            if (fraction == 1) {
+                result[q] = max;
+                continue;
+            }
+            long target = (long) Math.ceil(fraction * count);
+            long weight = 0;
+            long value = max;
+            for (long item : packed) {
+                weight += 1L << (item & ((1 << LEVEL_BITS) - 1));
+                if (weight >= target) {
+                    value = item >>> LEVEL_BITS;
+                    break;
+                }
+            }
+            result[q] = value;
+        }
+        return result;
+    }
+
+    // Header, then each level's items sorted and delta-encoded as varints: a few bytes per item for amounts
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + retained() * 3);
+        out.write(FORMAT_VERSION);
+        writeVarLong(out, k);
+        writeVarLong(out, count);
+        if (count > 0) {
+            writeVarLong(out, min);
+            writeVarLong(out, max);
+        }
+        writeVarLong(out, levels.length);
+        for (int h = 0; h < levels.length; h++) {
+            Arrays.sort(levels[h], 0, sizes[h]);
+            writeVarLong(out, sizes[h]);
+            long previous = 0;
+            for (int i = 0; i < sizes[h]; i++) {
+                writeVarLong(out, levels[h][i] - previous);
+                previous = levels[h][i];
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static KllSketch fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (in.get() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown sketch format");
+        }
+        KllSketch sketch = new KllSketch((int) readVarLong(in));
+        sketch.count = readVarLong(in);
+        if (sketch.count > 0) {
+            sketch.min = readVarLong(in);
+            sketch.max = readVarLong(in);
+        }
+        int levelCount = (int) readVarLong(in);
+        sketch.levels = new long[levelCount][];
+        sketch.sizes = new int[levelCount];
+        for (int h = 0; h < levelCount; h++) {
+            int size = (int) readVarLong(in);
+            long[] items = new long[Math.max(size, 2)];
+            long previous = 0;
+            for (int i = 0; i < size; i++) {
+                previous += readVarLong(in);
+                items[i] = previous;
+            }
+            sketch.levels[h] = items;
+            sketch.sizes[h] = size;
+        }
+        return sketch;
+    }
+
+    private void compressWhileFull() {
+        while (retained() > totalCapacity()) {
+            for (int h = 0; h < levels.length; h++) {
+                if (sizes[h] >= capacity(h)) {
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    // Halves level h into level h + 1; with an odd size the smallest item stays behind at its weight
+    private void compact(int h) {
+        if (h == levels.length - 1) {
+            addLevel();
+        }
+        long[] items = levels[h];
+        int size = sizes[h];
+        Arrays.sort(items, 0, size);
+        int kept = size % 2;
+        int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+        for (int i = kept + offset; i < size; i += 2) {
+            append(h + 1, items[i]);
+        }
+        sizes[h] = kept;
+    }
+
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        levels[levels.length - 1] = new long[16];
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+    }
+
+    private void append(int h, long value) {
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        }
+        levels[h][sizes[h]++] = value;
+    }
+
+    private int capacity(int h) {
+        int depth = levels.length - 1 - h;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int totalCapacity() {
+        int total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            total += capacity(h);
+        }
+        return total;
+    }
+
+    private int retained() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    private void requireItems() {
+        if (count == 0) {
+            throw new IllegalStateException("Sketch is empty");
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.CategoryMonthTotalDto;
+import com.example.expensetracker.dto.SpendDistributionDto;
+import com.example.expensetracker.model.Category;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+// Platform-wide aggregates computed from ColumnarExpenseStore, never from the OLTP tables.
+// Segments are cut into slices that are scanned in parallel on a fork/join pool, reading the mapped
+// columns in place.
+@Service
+public class PlatformAnalyticsService {
+
+    private static final int SLICE_ROWS = 1 << 18;
+
+    private final ColumnarExpenseStore store;
+    private final CategoryService categoryService;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // Global categories never change at runtime; loaded on first use
+    private volatile Map<Long, String> globalCategories;
+
+    public PlatformAnalyticsService(ColumnarExpenseStore store, CategoryService categoryService) {
+        this.store = store;
+        this.categoryService = categoryService;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public List<CategoryMonthTotalDto> totalsByGlobalCategoryAndMonth(YearMonth from, YearMonth to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        Map<Long, String> categories = globalCategories();
+        long[] categoryIds = categories.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+
+        int fromDay = (int) from.atDay(1).toEpochDay();
+        int toDay = (int) to.atEndOfMonth().toEpochDay();
+        int months = (int) (to.getYear() * 12L + to.getMonthValue() - from.getYear() * 12L - from.getMonthValue()) + 1;
+
+        // Day offset -> month index, so the scan never builds a date
+        int[] monthOfDay = new int[toDay - fromDay + 1];
+        for (int m = 0; m < months; m++) {
+            YearMonth month = from.plusMonths(m);
+            int start = (int) month.atDay(1).toEpochDay() - fromDay;
+            int end = (int) month.atEndOfMonth().toEpochDay() - fromDay;
+            Arrays.fill(monthOfDay, start, end + 1, m);
+        }
+
+        long[] sums = scan(() -> new long[categoryIds.length * months], (slice, acc) -> {
+            ColumnarExpenseStore.Segment segment = slice.segment;
+            for (int i = slice.from; i < slice.to; i++) {
+                int day = segment.epochDay(i);
+                if (day < fromDay || day > toDay) {
+                    continue;
+                }
+                int c = Arrays.binarySearch(categoryIds, segment.categoryId(i));
+                if (c >= 0) {
+                    acc[c * months + monthOfDay[day - fromDay]] += segment.cents(i);
+                }
+            }
+        }, (a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        });
+
+        List<CategoryMonthTotalDto> totals = new ArrayList<>();
+        for (int c = 0; c < categoryIds.length; c++) {
+            for (int m = 0; m < months; m++) {
+                totals.add(new CategoryMonthTotalDto(categoryIds[c], categories.get(categoryIds[c]),
+                        from.plusMonths(m).toString(), BigDecimal.valueOf(sums[c * months + m], 2)));
+            }
+        }
+        return totals;
+    }
+
+    public SpendDistributionDto monthlySpendDistribution(YearMonth month) {
+        int fromDay = (int) month.atDay(1).toEpochDay();
+        int toDay = (int) month.atEndOfMonth().toEpochDay();
+
+        LongSumMap perUser = scan(LongSumMap::new, (slice, acc) -> {
+            ColumnarExpenseStore.Segment segment = slice.segment;
+            for (int i = slice.from; i < slice.to; i++) {
+                int day = segment.epochDay(i);
+                if (day >= fromDay && day <= toDay) {
+                    acc.add(segment.userId(i), segment.cents(i));
+                }
+            }
+        }, LongSumMap::merge);
+
+        long[] totals = perUser.positiveValues();
+        Arrays.sort(totals);
+        long sum = 0;
+        for (long total : totals) {
+            sum += total;
+        }
+        int n = totals.length;
+        return new SpendDistributionDto(
+                month.toString(),
+                n,
+                BigDecimal.valueOf(sum, 2),
+                n == 0 ? BigDecimal.ZERO : BigDecimal.valueOf(sum, 2).divide(BigDecimal.valueOf(n), 2, RoundingMode.HALF_UP),
+                percentile(totals, 50),
+                percentile(totals, 75),
+                percentile(totals, 90),
+                percentile(totals, 99),
+                n == 0 ? BigDecimal.ZERO : BigDecimal.valueOf(totals[n - 1], 2)
+        );
+    }
+
+    // Nearest-rank percentile of a sorted array of cents
+    private static BigDecimal percentile(long[] sorted, int p) {
+        if (sorted.length == 0) {
+            return BigDecimal.ZERO;
+        }
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return BigDecimal.valueOf(sorted[Math.max(rank, 1) - 1], 2);
+    }
+
+    private Map<Long, String> globalCategories() {
+        Map<Long, String> categories = globalCategories;
+        if (categories == null) {
+            categories = new HashMap<>();
+            for (Category category : categoryService.getGlobalCategories()) {
+                categories.put(category.getId(), category.getName());
+            }
+            globalCategories = categories;
+        }
+        return categories;
+    }
+
+    private <A> A scan(Supplier<A> identity, SliceScanner<A> scanner, BinaryOperator<A> merge) {
+        if (!store.isEnabled()) {
+            throw new NoSuchElementException("The analytics store is not enabled (analytics.store.enabled)");
+        }
+        List<Slice> slices = new ArrayList<>();
+        for (ColumnarExpenseStore.Segment segment : store.segments()) {
+            int rows = segment.rows();
+            for (int from = 0; from < rows; from += SLICE_ROWS) {
+                slices.add(new Slice(segment, from, Math.min(from + SLICE_ROWS, rows)));
+            }
+        }
+        if (slices.isEmpty()) {
+            return identity.get();
+        }
+        return pool.invoke(new ScanTask<>(slices, 0, slices.size(), identity, scanner, merge));
+    }
+
+    @FunctionalInterface
+    private interface SliceScanner<A> {
+        void scan(Slice slice, A accumulator);
+    }
+
+    private record Slice(ColumnarExpenseStore.Segment segment, int from, int to) {
+    }
+
+    private static final class ScanTask<A> extends RecursiveTask<A> {
+        private final List<Slice> slices;
+        private final int low;
+        private final int high;
+        private final Supplier<A> identity;
+        private final SliceScanner<A> scanner;
+        private final BinaryOperator<A> merge;
+
+        private ScanTask(List<Slice> slices, int low, int high, Supplier<A> identity,
+                         SliceScanner<A> scanner, BinaryOperator<A> merge) {
+            this.slices = slices;
+            this.low = low;
+            this.high = high;
+            this.identity = identity;
+            this.scanner = scanner;
+            this.merge = merge;
+        }
+
+        @Override
+        protected A compute() {
+            if (high - low == 1) {
+                A accumulator = identity.get();
+                scanner.scan(slices.get(low), accumulator);
+                return accumulator;
+            }
+            int mid = (low + high) >>> 1;
+            ScanTask<A> left = new ScanTask<>(slices, low, mid, identity, scanner, merge);
+            ScanTask<A> right = new ScanTask<>(slices, mid, high, identity, scanner, merge);
+            left.fork();
+            A rightResult = right.compute();
+            return merge.apply(left.join(), rightResult);
+        }
+    }
+
+    // Open-addressing user id -> cents map; user ids are never 0, which marks an empty slot
+    private static final class LongSumMap {
+        private long[] keys = new long[1024];
+        private long[] values = new long[1024];
+        private int size;
+
+        private void add(long key, long value) {
+            int mask = keys.length - 1;
+            int i = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                keys[i] = key;
+                if (++size * 2 > keys.length) {
+                    values[i] += value;
+                    grow();
+                    return;
+                }
+            }
+            values[i] += value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    add(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private LongSumMap merge(LongSumMap other) {
+            LongSumMap into = size >= other.size ? this : other;
+            LongSumMap from = into == this ? other : this;
+            for (int i = 0; i < from.keys.length; i++) {
+                if (from.keys[i] != 0) {
+                    into.add(from.keys[i], from.values[i]);
+                }
+            }
+            return into;
+        }
+
+        // Users whose deltas net out to zero or less (e.g. everything deleted) are left out
+        private long[] positiveValues() {
+            long[] result = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0 && values[i] > 0) {
+                    result[n++] = values[i];
+                }
+            }
+            return Arrays.copyOf(result, n);
+        }
+    }
+}
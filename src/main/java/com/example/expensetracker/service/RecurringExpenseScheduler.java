@@ -1,48 +1,98 @@
 package com.example.expensetracker.service;
 
+import com.example.expensetracker.event.ExpenseChangedEvent;
 import com.example.expensetracker.model.Expense;
 import com.example.expensetracker.model.RecurringExpense;
 import com.example.expensetracker.repository.ExpenseRepository;
 import com.example.expensetracker.repository.RecurringExpenseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
-import java.util.List;
 
 @Service
 public class RecurringExpenseScheduler {
 
+    private static final Logger log = LoggerFactory.getLogger(RecurringExpenseScheduler.class);
+
     private final RecurringExpenseRepository recurringRepository;
     private final ExpenseRepository expenseRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeSequenceService changeSequenceService;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
 
-    public RecurringExpenseScheduler(RecurringExpenseRepository recurringRepo, ExpenseRepository expenseRepo) {
+    public RecurringExpenseScheduler(RecurringExpenseRepository recurringRepo, ExpenseRepository expenseRepo,
+                                     ApplicationEventPublisher eventPublisher,
+                                     ChangeSequenceService changeSequenceService,
+                                     ShardRouter shardRouter,
+                                     PlatformTransactionManager transactionManager) {
         this.recurringRepository = recurringRepo;
         this.expenseRepository = expenseRepo;
+        this.eventPublisher = eventPublisher;
+        this.changeSequenceService = changeSequenceService;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    // Runs every day
+    // Runs every day, on all shards in parallel. Each subscription is posted in its own transaction, so one
+    // failure doesn't hold back the rest and no user row stays locked for the whole batch.
     @Scheduled(cron = "0 0 0 * * *")
-    @Transactional
     public void processRecurringExpenses() {
         LocalDate today = LocalDate.now();
-        List<RecurringExpense> dueExpenses = recurringRepository.findByNextDueDateLessThanEqual(today);
-
-        for (RecurringExpense recurring : dueExpenses) {
-            // 1. Create the actual Expense
-            Expense newExpense = new Expense();
-            newExpense.setAmount(recurring.getAmount());
-            newExpense.setDescription(recurring.getDescription() + " (Auto)");
-            newExpense.setExpenseDate(recurring.getNextDueDate());
-            newExpense.setCategory(recurring.getCategory());
-            newExpense.setUser(recurring.getUser());
-
-            expenseRepository.save(newExpense);
-
-            // 2. Update Next Due Date (Add 1 Month)
-            recurring.setNextDueDate(recurring.getNextDueDate().plusMonths(1));
-            recurringRepository.save(recurring);
+        shardRouter.fanOut(shard -> {
+            processDue(today);
+            return null;
+        });
+    }
+
+    private void processDue(LocalDate today) {
+        for (Object[] due : recurringRepository.findDueIds(today)) {
+            Long recurringId = (Long) due[0];
+            Long userId = (Long) due[1];
+            try {
+                transactionTemplate.executeWithoutResult(status -> postIfDue(recurringId, userId, today, status));
+            } catch (RuntimeException e) {
+                // Picked up again by the next run
+                log.warn("Posting recurring expense {} failed", recurringId, e);
+            }
+        }
+    }
+
+    private void postIfDue(Long recurringId, Long userId, LocalDate today, TransactionStatus status) {
+        // Both rows change, so reserve two sequence numbers at once. Reserving locks the user row, so it comes
+        // before the read: edits of the same user and overlapping runs queue up behind it instead of racing.
+        long seq = changeSequenceService.reserve(userId, 2);
+
+        RecurringExpense recurring = recurringRepository.findById(recurringId).orElse(null);
+        if (recurring == null || recurring.getNextDueDate().isAfter(today)) {
+            // Cancelled or already posted meanwhile
+            status.setRollbackOnly();
+            return;
         }
+
+        // 1. Claim the occurrence by moving the due date on (adds 1 month), unless it moved already
+        LocalDate dueDate = recurring.getNextDueDate();
+        if (recurringRepository.advanceDueDate(recurringId, dueDate, dueDate.plusMonths(1), seq) == 0) {
+            status.setRollbackOnly();
+            return;
+        }
+
+        // 2. Create the actual Expense
+        Expense newExpense = new Expense();
+        newExpense.setAmount(recurring.getAmount());
+        newExpense.setDescription(recurring.getDescription() + " (Auto)");
+        newExpense.setExpenseDate(dueDate);
+        newExpense.setCategory(recurring.getCategory());
+        newExpense.setUser(recurring.getUser());
+        newExpense.setChangeSeq(seq - 1);
+        expenseRepository.save(newExpense);
+        eventPublisher.publishEvent(ExpenseChangedEvent.created(newExpense));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,22 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.ExpenseDto;
+import com.example.expensetracker.dto.SubscriptionPatchRequest;
+import com.example.expensetracker.model.RecurringExpense;
+import com.example.expensetracker.model.User;
+
+import java.util.List;
+import java.util.Map;
+
+public interface RecurringExpenseService {
+
+    RecurringExpense addRecurring(User user, ExpenseDto dto);
+
+    List<RecurringExpense> getUserSubscriptions(User user);
+
+    RecurringExpense updateSubscription(Long recId, Map<String, Object> updates);
+
+    RecurringExpense patchSubscription(Long recId, Long userId, SubscriptionPatchRequest patch);
+
+    void cancelSubscription(Long recId);
+}
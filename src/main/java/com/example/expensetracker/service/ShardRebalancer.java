@@ -0,0 +1,112 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.event.CacheRegion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Moves one user and everything they own to another shard, keeping row ids. The user row stays
+// locked on the source for the whole copy, so writes for that user wait and then fail once it's gone.
+// Other instances learn of the move through the cache invalidation bus.
+@Service
+public class ShardRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    // Tables keyed by user_id, in insert order (parents first)
+    private static final List<String> USER_TABLES = List.of(
+            "categories", "budget", "recurring_expense", "expenses", "expenses_archive", "change_tombstones",
+            "idempotency_keys", "expense_anomalies", "expense_sketches", "tags", "expense_tags");
+
+    private static final int COPY_CHUNK = 1000;
+
+    private final ShardRouter shardRouter;
+    private final CacheInvalidationBus invalidationBus;
+
+    public ShardRebalancer(ShardRouter shardRouter, CacheInvalidationBus invalidationBus) {
+        this.shardRouter = shardRouter;
+        this.invalidationBus = invalidationBus;
+    }
+
+    public void moveUser(Long userId, int targetShard) {
+        if (!shardRouter.isEnabled()) {
+            throw new IllegalStateException("Sharding is not enabled");
+        }
+        int sourceShard = shardRouter.shardForUserId(userId);
+        if (sourceShard == targetShard) {
+            log.info("User {} is already on shard {}", userId, targetShard);
+            return;
+        }
+
+        DataSource source = shardRouter.dataSource(sourceShard);
+        DataSource target = shardRouter.dataSource(targetShard);
+        JdbcTemplate sourceJdbc = new JdbcTemplate(source);
+        JdbcTemplate targetJdbc = new JdbcTemplate(target);
+
+        new TransactionTemplate(new DataSourceTransactionManager(source)).executeWithoutResult(status -> {
+            List<Map<String, Object>> user = sourceJdbc.queryForList("SELECT * FROM users WHERE id = ? FOR UPDATE", userId);
+            if (user.isEmpty()) {
+                throw new IllegalArgumentException("User " + userId + " not found on shard " + sourceShard);
+            }
+            String email = (String) user.getFirst().get("EMAIL");
+
+            new TransactionTemplate(new DataSourceTransactionManager(target)).executeWithoutResult(targetStatus -> {
+                // Leftovers of an earlier attempt that failed after the copy committed
+                deleteUserRows(targetJdbc, userId);
+                insert(targetJdbc, "users", user);
+                for (String table : USER_TABLES) {
+                    copyTable(sourceJdbc, targetJdbc, table, userId);
+                }
+            });
+
+            // From here on requests are routed to the target
+            shardRouter.recordMove(userId, email, targetShard);
+            deleteUserRows(sourceJdbc, userId);
+        });
+
+        shardRouter.runOn(targetShard, () -> invalidationBus.publish(userId, CacheRegion.SHARD));
+        log.info("Moved user {} from shard {} to shard {}", userId, sourceShard, targetShard);
+    }
+
+    // Keyset-paged, with row locks so the archive job can't move rows out from under the copy
+    private static void copyTable(JdbcTemplate sourceJdbc, JdbcTemplate targetJdbc, String table, Long userId) {
+        long lastId = Long.MIN_VALUE;
+        List<Map<String, Object>> rows;
+        do {
+            rows = sourceJdbc.queryForList("SELECT * FROM " + table + " WHERE user_id = ? AND id > ? " +
+                    "ORDER BY id FETCH FIRST " + COPY_CHUNK + " ROWS ONLY FOR UPDATE", userId, lastId);
+            if (!rows.isEmpty()) {
+                insert(targetJdbc, table, rows);
+                lastId = ((Number) rows.getLast().get("ID")).longValue();
+            }
+        } while (rows.size() == COPY_CHUNK);
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, String table, List<Map<String, Object>> rows) {
+        List<String> columns = new ArrayList<>(rows.getFirst().keySet());
+        String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                columns.stream().map(c -> "?").collect(Collectors.joining(", ")) + ")";
+
+        List<Object[]> batch = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            batch.add(columns.stream().map(row::get).toArray());
+        }
+        jdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    private static void deleteUserRows(JdbcTemplate jdbcTemplate, Long userId) {
+        for (String table : USER_TABLES.reversed()) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE user_id = ?", userId);
+        }
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+    }
+}
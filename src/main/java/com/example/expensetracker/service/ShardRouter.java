@@ -0,0 +1,269 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.config.ShardContext;
+import com.example.expensetracker.config.ShardingProperties;
+import com.example.expensetracker.event.CacheInvalidation;
+import com.example.expensetracker.event.CacheRegion;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+// Maps users to shards and runs work on a given shard. New users are placed by a consistent hash of
+// their email, and every user's shard is recorded in shard_directory on shard 0 at registration, so adding
+// a shard moves no one. Signed-in requests are routed by user id, whose high bits hold the shard the user
+// was created on; only users ShardRebalancer moved since are kept in memory to override it.
+// With sharding disabled there is a single shard 0 and every method degrades to a plain call.
+@Service
+public class ShardRouter {
+
+    public static final int SHARD_ID_BITS = 40;
+
+    private final boolean enabled;
+    private final Map<Integer, DataSource> shards = new LinkedHashMap<>();
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+
+    // Moved users only, so the map stays small. Updated by recordMove on this instance and from the
+    // invalidation bus for moves made by another.
+    private final Map<Long, Integer> movedById = new ConcurrentHashMap<>();
+
+    private final ExecutorService fanOutExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ShardRouter(ShardingProperties properties) {
+        this.enabled = properties.isEnabled();
+        if (!enabled) {
+            return;
+        }
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("sharding.enabled=true requires at least one sharding.shards entry");
+        }
+
+        for (int k = 0; k < properties.getShards().size(); k++) {
+            ShardingProperties.Shard shard = properties.getShards().get(k);
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("shard-" + k);
+            config.setJdbcUrl(shard.getUrl());
+            config.setUsername(shard.getUsername());
+            config.setPassword(shard.getPassword());
+            config.setMaximumPoolSize(properties.getPoolSize());
+            shards.put(k, new HikariDataSource(config));
+
+            for (int v = 0; v < properties.getVirtualNodes(); v++) {
+                ring.put(hash("shard-" + k + "#" + v), k);
+            }
+        }
+
+        JdbcTemplate directory = directory();
+        directory.execute("CREATE TABLE IF NOT EXISTS shard_directory (" +
+                "user_id BIGINT PRIMARY KEY, email VARCHAR(255) NOT NULL UNIQUE, shard INT NOT NULL)");
+        directory.query("SELECT user_id, shard FROM shard_directory WHERE shard <> user_id / ?",
+                rs -> {
+                    movedById.put(rs.getLong(1), rs.getInt(2));
+                }, 1L << SHARD_ID_BITS);
+    }
+
+    // Users registered before the directory held everyone; a shard whose users are all listed is skipped
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillDirectory() {
+        if (!enabled) {
+            return;
+        }
+        for (Map.Entry<Integer, DataSource> shard : shards.entrySet()) {
+            JdbcTemplate users = new JdbcTemplate(shard.getValue());
+            Long onShard = users.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+            Long listed = directory().queryForObject("SELECT COUNT(*) FROM shard_directory WHERE shard = ?",
+                    Long.class, shard.getKey());
+            if (Objects.equals(onShard, listed)) {
+                continue;
+            }
+            List<Object[]> rows = new ArrayList<>();
+            users.query("SELECT id, email FROM users", rs -> {
+                rows.add(new Object[]{rs.getLong(1), normalize(rs.getString(2)), shard.getKey()});
+            });
+            directory().batchUpdate("MERGE INTO shard_directory (user_id, email, shard) KEY (user_id) VALUES (?, ?, ?)", rows);
+        }
+    }
+
+    // A user moved by another instance
+    @EventListener
+    public void onRemoteInvalidation(CacheInvalidation invalidation) {
+        if (enabled && invalidation.covers(CacheRegion.SHARD)) {
+            Long userId = invalidation.getUserId();
+            List<Integer> shard = directory().queryForList(
+                    "SELECT shard FROM shard_directory WHERE user_id = ?", Integer.class, userId);
+            if (shard.isEmpty() || shard.getFirst() == homeShard(userId)) {
+                movedById.remove(userId);
+            } else {
+                movedById.put(userId, shard.getFirst());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int shardCount() {
+        return enabled ? shards.size() : 1;
+    }
+
+    public Map<Integer, DataSource> shardDataSources() {
+        return Collections.unmodifiableMap(shards);
+    }
+
+    public DataSource dataSource(int shard) {
+        DataSource dataSource = shards.get(shard);
+        if (dataSource == null) {
+            throw new IllegalArgumentException("Unknown shard " + shard);
+        }
+        return dataSource;
+    }
+
+    public int currentShard() {
+        return ShardContext.current();
+    }
+
+    public int shardForUserId(Long userId) {
+        if (!enabled || userId == null) {
+            return 0;
+        }
+        Integer moved = movedById.get(userId);
+        if (moved != null) {
+            return moved;
+        }
+        int home = homeShard(userId);
+        return shards.containsKey(home) ? home : 0;
+    }
+
+    // The directory's entry, or for an email not registered yet the shard a new user would be placed on
+    public int shardForEmail(String email) {
+        if (!enabled || email == null) {
+            return 0;
+        }
+        String key = normalize(email);
+        List<Integer> listed = directory().queryForList(
+                "SELECT shard FROM shard_directory WHERE email = ?", Integer.class, key);
+        if (!listed.isEmpty()) {
+            return listed.getFirst();
+        }
+        Map.Entry<Long, Integer> point = ring.ceilingEntry(hash(key));
+        return (point != null ? point : ring.firstEntry()).getValue();
+    }
+
+    public <T> T callOn(int shard, Supplier<T> work) {
+        Integer previous = ShardContext.set(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    public void runOn(int shard, Runnable work) {
+        callOn(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    // Runs the work once per shard in parallel and returns the results in shard order
+    public <T> List<T> fanOut(IntFunction<T> work) {
+        if (shardCount() == 1) {
+            return Collections.singletonList(callOn(0, () -> work.apply(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>();
+        for (int shard : shards.keySet()) {
+            futures.add(fanOutExecutor.submit(() -> callOn(shard, () -> work.apply(shard))));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for shards", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    // Called once the user is committed on the shard it was registered on
+    public void recordRegistration(Long userId, String email, int shard) {
+        if (enabled) {
+            directory().update("MERGE INTO shard_directory (user_id, email, shard) KEY (user_id) VALUES (?, ?, ?)",
+                    userId, normalize(email), shard);
+        }
+    }
+
+    public void recordMove(Long userId, String email, int shard) {
+        directory().update("MERGE INTO shard_directory (user_id, email, shard) KEY (user_id) VALUES (?, ?, ?)",
+                userId, normalize(email), shard);
+        if (shard == homeShard(userId)) {
+            movedById.remove(userId);
+        } else {
+            movedById.put(userId, shard);
+        }
+    }
+
+    // The account is gone, so its email can be registered again on whichever shard the ring picks
+    public void recordDeletion(Long userId) {
+        if (enabled) {
+            directory().update("DELETE FROM shard_directory WHERE user_id = ?", userId);
+            movedById.remove(userId);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        fanOutExecutor.shutdownNow();
+        for (DataSource dataSource : shards.values()) {
+            ((HikariDataSource) dataSource).close();
+        }
+    }
+
+    private JdbcTemplate directory() {
+        return new JdbcTemplate(shards.get(0));
+    }
+
+    private static int homeShard(Long userId) {
+        return (int) (userId >>> SHARD_ID_BITS);
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (digest[i] & 0xFF);
+            }
+            return value;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
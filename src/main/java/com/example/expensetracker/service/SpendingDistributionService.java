@@ -0,0 +1,15 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.CategoryDistributionDto;
+import com.example.expensetracker.model.User;
+
+import java.time.YearMonth;
+import java.util.List;
+
+public interface SpendingDistributionService {
+
+    List<CategoryDistributionDto> getUserDistribution(User user, YearMonth from, YearMonth to);
+
+    // Global categories only, across all users
+    List<CategoryDistributionDto> getPlatformDistribution(YearMonth from, YearMonth to);
+}
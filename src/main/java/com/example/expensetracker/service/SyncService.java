@@ -0,0 +1,11 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.SyncResponse;
+import com.example.expensetracker.model.User;
+
+public interface SyncService {
+
+    SyncResponse getChangesSince(User user, long since);
+
+    void compactTombstones();
+}
@@ -0,0 +1,170 @@
+package com.example.expensetracker.service;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+// Boolean filter over tags, e.g. "reimbursable AND trip-paris NOT personal". NOT binds tighter than AND,
+// AND tighter than OR, adjacent terms are ANDed ("a NOT b" is "a AND NOT b") and parentheses group.
+// Keywords are case-insensitive; tag names are compared lower case.
+public final class TagQuery {
+
+    public static final Pattern TAG_NAME = Pattern.compile("[a-z0-9][a-z0-9_.:-]{0,63}");
+
+    private static final int MAX_LENGTH = 1000;
+
+    private final Node root;
+
+    private TagQuery(Node root) {
+        this.root = root;
+    }
+
+    public static TagQuery parse(String text) {
+        if (text.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Tag query is longer than " + MAX_LENGTH + " characters");
+        }
+        Parser parser = new Parser(tokenize(text));
+        Node root = parser.or();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position) + "' in tag query");
+        }
+        return new TagQuery(root);
+    }
+
+    // Evaluates without a universe of all expenses: a negated result stands for everything except its bitmap.
+    // The bitmaps handed out by bitmapOf are never modified.
+    public Result evaluate(Function<String, RoaringBitmap> bitmapOf) {
+        return root.evaluate(bitmapOf);
+    }
+
+    public record Result(RoaringBitmap bitmap, boolean negated) {
+
+        private Result not() {
+            return new Result(bitmap, !negated);
+        }
+
+        private Result and(Result other) {
+            if (!negated && !other.negated) {
+                return new Result(RoaringBitmap.and(bitmap, other.bitmap), false);
+            }
+            if (!negated) {
+                return new Result(RoaringBitmap.andNot(bitmap, other.bitmap), false);
+            }
+            if (!other.negated) {
+                return new Result(RoaringBitmap.andNot(other.bitmap, bitmap), false);
+            }
+            // not a and not b = not (a or b)
+            return new Result(RoaringBitmap.or(bitmap, other.bitmap), true);
+        }
+
+        private Result or(Result other) {
+            if (!negated && !other.negated) {
+                return new Result(RoaringBitmap.or(bitmap, other.bitmap), false);
+            }
+            // a or not b = not (b and not a)
+            if (!negated) {
+                return new Result(RoaringBitmap.andNot(other.bitmap, bitmap), true);
+            }
+            if (!other.negated) {
+                return new Result(RoaringBitmap.andNot(bitmap, other.bitmap), true);
+            }
+            return new Result(RoaringBitmap.and(bitmap, other.bitmap), true);
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isWhitespace(c) || c == '(' || c == ')') {
+                if (!word.isEmpty()) {
+                    tokens.add(word.toString());
+                    word.setLength(0);
+                }
+                if (c != ' ' && !Character.isWhitespace(c)) {
+                    tokens.add(String.valueOf(c));
+                }
+            } else {
+                word.append(c);
+            }
+        }
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("Tag query is empty");
+        }
+        return tokens;
+    }
+
+    private interface Node {
+        Result evaluate(Function<String, RoaringBitmap> bitmapOf);
+    }
+
+    private static final class Parser {
+        private final List<String> tokens;
+        private int position;
+
+        private Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        private Node or() {
+            Node left = and();
+            while (accept("OR")) {
+                Node l = left;
+                Node r = and();
+                left = bitmapOf -> l.evaluate(bitmapOf).or(r.evaluate(bitmapOf));
+            }
+            return left;
+        }
+
+        private Node and() {
+            Node left = unary();
+            while (position < tokens.size() && !peek("OR") && !peek(")")) {
+                accept("AND");
+                Node l = left;
+                Node r = unary();
+                left = bitmapOf -> l.evaluate(bitmapOf).and(r.evaluate(bitmapOf));
+            }
+            return left;
+        }
+
+        private Node unary() {
+            if (accept("NOT")) {
+                Node operand = unary();
+                return bitmapOf -> operand.evaluate(bitmapOf).not();
+            }
+            if (accept("(")) {
+                Node inner = or();
+                if (!accept(")")) {
+                    throw new IllegalArgumentException("Missing ')' in tag query");
+                }
+                return inner;
+            }
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Tag query ends early");
+            }
+            String token = tokens.get(position++);
+            String tag = token.toLowerCase(Locale.ROOT);
+            if (!TAG_NAME.matcher(tag).matches() || tag.equals("and") || tag.equals("or")) {
+                throw new IllegalArgumentException("Unexpected '" + token + "' in tag query");
+            }
+            return bitmapOf -> new Result(bitmapOf.apply(tag), false);
+        }
+
+        private boolean peek(String keyword) {
+            return position < tokens.size() && tokens.get(position).equalsIgnoreCase(keyword);
+        }
+
+        private boolean accept(String keyword) {
+            if (peek(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.expensetracker.service;
+
+import com.example.expensetracker.dto.ExpenseSummaryDto;
+import com.example.expensetracker.dto.TagDto;
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+public interface TagService {
+
+    List<String> setTags(Long expenseId, User user, List<String> names);
+
+    List<String> getTags(Long expenseId, Long userId);
+
+    List<TagDto> getUserTags(User user);
+
+    Map<Long, List<String>> tagsByExpense(User user);
+
+    // Every filter is optional: tagQuery such as "reimbursable AND trip-paris NOT personal", dates inclusive
+    List<Expense> filterExpenses(User user, String tagQuery, LocalDate from, LocalDate to, Long categoryId);
+
+    ExpenseSummaryDto summarize(List<Expense> expenses);
+}
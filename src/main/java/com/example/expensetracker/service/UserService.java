@@ -14,7 +14,7 @@ public interface UserService {
 
     boolean existsByEmail(String email);
 
-    void deleteUser(Long id);
-
     void updatePassword(String email, String newPassword);
+
+    void updateEncodedPassword(Long userId, String encodedPassword);
 }
@@ -0,0 +1,39 @@
+package com.example.expensetracker.service.impl;
+
+import com.example.expensetracker.dto.ExpenseAnomalyDto;
+import com.example.expensetracker.mapper.ExpenseAnomalyMapper;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.repository.ExpenseAnomalyRepository;
+import com.example.expensetracker.service.AnomalyService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+@Service
+@Transactional
+public class AnomalyServiceImpl implements AnomalyService {
+
+    private final ExpenseAnomalyRepository anomalyRepository;
+
+    public AnomalyServiceImpl(ExpenseAnomalyRepository anomalyRepository) {
+        this.anomalyRepository = anomalyRepository;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ExpenseAnomalyDto> getAnomalies(User user, boolean includeDismissed) {
+        return anomalyRepository.findForUser(user.getId(), includeDismissed).stream()
+                .map(ExpenseAnomalyMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void dismiss(Long anomalyId, User user) {
+        if (anomalyRepository.dismiss(anomalyId, user.getId()) == 0) {
+            throw new NoSuchElementException("Anomaly not found");
+        }
+    }
+}
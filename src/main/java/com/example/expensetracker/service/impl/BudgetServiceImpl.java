@@ -0,0 +1,123 @@
+package com.example.expensetracker.service.impl;
+
+import com.example.expensetracker.dto.BudgetStatusDto;
+import com.example.expensetracker.event.BudgetChangedEvent;
+import com.example.expensetracker.model.Budget;
+import com.example.expensetracker.model.BudgetPeriod;
+import com.example.expensetracker.model.Category;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.repository.BudgetRepository;
+import com.example.expensetracker.repository.CategoryRepository;
+import com.example.expensetracker.service.BudgetService;
+import com.example.expensetracker.service.BudgetStatusCache;
+import com.example.expensetracker.service.ChangeSequenceService;
+import com.example.expensetracker.service.ExpenseAnalyticsCache;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+@Transactional
+public class BudgetServiceImpl implements BudgetService {
+
+    private final BudgetRepository budgetRepository;
+    private final CategoryRepository categoryRepository;
+    private final ChangeSequenceService changeSequenceService;
+    private final ExpenseAnalyticsCache analyticsCache;
+    private final BudgetStatusCache statusCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate primaryTransaction;
+
+    public BudgetServiceImpl(BudgetRepository budgetRepository,
+                             CategoryRepository categoryRepository,
+                             ChangeSequenceService changeSequenceService,
+                             ExpenseAnalyticsCache analyticsCache,
+                             BudgetStatusCache statusCache,
+                             ApplicationEventPublisher eventPublisher,
+                             PlatformTransactionManager transactionManager) {
+        this.budgetRepository = budgetRepository;
+        this.categoryRepository = categoryRepository;
+        this.changeSequenceService = changeSequenceService;
+        this.analyticsCache = analyticsCache;
+        this.statusCache = statusCache;
+        this.eventPublisher = eventPublisher;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        // Also when called from a read-only transaction, such as a dashboard section
+        this.primaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public Budget setBudget(User user, Long categoryId, BigDecimal limitAmount, BudgetPeriod period, Integer rollingDays) {
+        if (period == null) {
+            period = BudgetPeriod.MONTHLY;
+        }
+        if (period == BudgetPeriod.ROLLING_DAYS) {
+            if (rollingDays == null || rollingDays < 1 || rollingDays > BudgetPeriod.MAX_ROLLING_DAYS) {
+                throw new IllegalArgumentException("rollingDays must be between 1 and " + BudgetPeriod.MAX_ROLLING_DAYS);
+            }
+        } else {
+            rollingDays = null;
+        }
+
+        Category category = categoryRepository.findById(categoryId)
+                .orElseThrow(() -> new IllegalArgumentException("Category not found"));
+
+        // Taken before the lookup: it locks the user row, so two concurrent calls can't both miss the
+        // existing budget and insert a second one (uk_budget_user_category_period backs this up)
+        long changeSeq = changeSequenceService.nextSeq(user.getId());
+
+        // One budget per category and period, so a category can have e.g. both a weekly and a yearly limit
+        Budget budget = budgetRepository.findByUserAndCategoryIdAndPeriod(user, categoryId, period).orElse(new Budget());
+
+        budget.setUser(user);
+        budget.setCategory(category);
+        budget.setLimitAmount(limitAmount);
+        budget.setPeriod(period);
+        budget.setRollingDays(rollingDays);
+        budget.setChangeSeq(changeSeq);
+
+        Budget saved = budgetRepository.save(budget);
+        eventPublisher.publishEvent(new BudgetChangedEvent(user.getId()));
+        return saved;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Budget> getUserBudgets(User user) {
+        return budgetRepository.findByUser(user);
+    }
+
+    // A cache hit opens no transaction. A miss reads the budgets on the primary, since a lagging replica's
+    // answer would stay cached, and answers each window sum with two Fenwick prefix queries on the daily index.
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<BudgetStatusDto> getBudgetStatus(User user) {
+        LocalDate today = LocalDate.now();
+        return statusCache.get(user.getId(), today, () -> primaryTransaction.execute(status -> computeStatus(user, today)));
+    }
+
+    private List<BudgetStatusDto> computeStatus(User user, LocalDate today) {
+        return budgetRepository.findByUser(user).stream().map(b -> {
+            LocalDate start = b.getPeriod().start(today, b.getRollingDays());
+            LocalDate end = b.getPeriod().end(today);
+            BigDecimal spent = analyticsCache.windowTotal(user.getId(), b.getCategory().getId(), start, end);
+
+            double percentage = 0;
+            if (b.getLimitAmount().doubleValue() > 0) {
+                percentage = spent.doubleValue() / b.getLimitAmount().doubleValue() * 100;
+            }
+
+            return new BudgetStatusDto(b.getCategory().getName(), b.getLimitAmount(), spent, percentage,
+                    b.getPeriod(), start, end);
+        }).collect(Collectors.toList());
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.expensetracker.service.impl;
 
+import com.example.expensetracker.event.CacheRegion;
 import com.example.expensetracker.model.Category;
 import com.example.expensetracker.model.User;
 import com.example.expensetracker.repository.CategoryRepository;
+import com.example.expensetracker.service.CacheInvalidationBus;
 import com.example.expensetracker.service.CategoryService;
+import com.example.expensetracker.service.ChangeSequenceService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,9 +17,15 @@ import java.util.List;
 public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ChangeSequenceService changeSequenceService;
+    private final CacheInvalidationBus invalidationBus;
 
-    public CategoryServiceImpl(CategoryRepository categoryRepository) {
+    public CategoryServiceImpl(CategoryRepository categoryRepository,
+                               ChangeSequenceService changeSequenceService,
+                               CacheInvalidationBus invalidationBus) {
         this.categoryRepository = categoryRepository;
+        this.changeSequenceService = changeSequenceService;
+        this.invalidationBus = invalidationBus;
     }
 
     @Override
@@ -28,16 +37,21 @@ public class CategoryServiceImpl implements CategoryService {
         Category category = new Category();
         category.setName(name);
         category.setUser(user);
+        category.setChangeSeq(changeSequenceService.nextSeq(user.getId()));
 
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        invalidationBus.publish(user.getId(), CacheRegion.CATEGORIES);
+        return saved;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Category> getUserCategories(User user) {
         return categoryRepository.findByUser(user);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Category> getGlobalCategories() {
         return categoryRepository.findByUserIsNull();
     }
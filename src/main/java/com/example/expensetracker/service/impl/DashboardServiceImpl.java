@@ -0,0 +1,145 @@
+package com.example.expensetracker.service.impl;
+
+import com.example.expensetracker.dto.*;
+import com.example.expensetracker.mapper.CategoryMapper;
+import com.example.expensetracker.mapper.ExpenseMapper;
+import com.example.expensetracker.mapper.SubscriptionMapper;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.service.*;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Runs the dashboard's independent reads concurrently, one virtual thread per section, so the
+// response takes as long as the slowest section (capped by dashboard.section-timeout-ms) rather
+// than the sum. Each section runs, mapping included, in its own read-only transaction on the caller's
+// shard, since lazy associations can't be loaded from another thread's session. Every section holds a
+// connection, so at most dashboard.max-concurrent-sections (the connection pool's size) run at once
+// across all requests; a section still running at the deadline is interrupted, not left to finish.
+@Service
+public class DashboardServiceImpl implements DashboardService {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardServiceImpl.class);
+
+    private final ExpenseService expenseService;
+    private final CategoryService categoryService;
+    private final BudgetService budgetService;
+    private final RecurringExpenseService recurringExpenseService;
+    private final ExpenseAnalyticsCache analyticsCache;
+    private final TagService tagService;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long sectionTimeoutMs;
+    private final Semaphore sections;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public DashboardServiceImpl(ExpenseService expenseService,
+                                CategoryService categoryService,
+                                BudgetService budgetService,
+                                RecurringExpenseService recurringExpenseService,
+                                ExpenseAnalyticsCache analyticsCache,
+                                TagService tagService,
+                                ShardRouter shardRouter,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${dashboard.section-timeout-ms:2000}") long sectionTimeoutMs,
+                                @Value("${dashboard.max-concurrent-sections:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrentSections) {
+        this.expenseService = expenseService;
+        this.categoryService = categoryService;
+        this.budgetService = budgetService;
+        this.recurringExpenseService = recurringExpenseService;
+        this.analyticsCache = analyticsCache;
+        this.tagService = tagService;
+        this.shardRouter = shardRouter;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.sectionTimeoutMs = sectionTimeoutMs;
+        this.sections = new Semaphore(maxConcurrentSections, true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public DashboardDto load(User user, int recentExpenses) {
+        int shard = shardRouter.currentShard();
+        LocalDate today = LocalDate.now();
+
+        // Newest first from the hot table; archived expenses are never among the most recent
+        Future<List<ExpenseDto>> expenses = fork(shard, () -> {
+            Map<Long, List<String>> tags = tagService.tagsByExpense(user);
+            return expenseService
+                    .getUserExpenses(user, PageRequest.of(0, recentExpenses, Sort.by(Sort.Direction.DESC, "expenseDate", "id")))
+                    .stream().map(e -> ExpenseMapper.toDto(e, tags.getOrDefault(e.getId(), List.of()))).collect(Collectors.toList());
+        });
+        Future<List<CategoryDto>> globalCategories = fork(shard, () -> categoryService.getGlobalCategories()
+                .stream().map(CategoryMapper::toDto).collect(Collectors.toList()));
+        Future<List<CategoryDto>> userCategories = fork(shard, () -> categoryService.getUserCategories(user)
+                .stream().map(CategoryMapper::toDto).collect(Collectors.toList()));
+        Future<List<BudgetStatusDto>> budgets = fork(shard, () -> budgetService.getBudgetStatus(user));
+        Future<List<SubscriptionDto>> subscriptions = fork(shard, () -> recurringExpenseService
+                .getUserSubscriptions(user).stream().map(SubscriptionMapper::toDto).collect(Collectors.toList()));
+        Future<DashboardSummaryDto> summary = fork(shard, () -> new DashboardSummaryDto(
+                analyticsCache.total(user.getId(), today.withDayOfMonth(1), today.withDayOfMonth(today.lengthOfMonth())),
+                analyticsCache.total(user.getId(), today.withDayOfYear(1), today.withDayOfYear(today.lengthOfYear())),
+                analyticsCache.count(user.getId())));
+
+        // One deadline for all sections, so these joins wait at most one timeout in total
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sectionTimeoutMs);
+        Map<String, String> errors = new LinkedHashMap<>();
+        return new DashboardDto(
+                join("recentExpenses", expenses, deadline, errors),
+                join("globalCategories", globalCategories, deadline, errors),
+                join("userCategories", userCategories, deadline, errors),
+                join("budgets", budgets, deadline, errors),
+                join("subscriptions", subscriptions, deadline, errors),
+                join("summary", summary, deadline, errors),
+                errors);
+    }
+
+    // Waiting for a permit counts against the deadline, and cancelling interrupts the wait too
+    private <T> Future<T> fork(int shard, Supplier<T> section) {
+        return executor.submit(() -> {
+            sections.acquire();
+            try {
+                return shardRouter.callOn(shard, () -> readOnlyTransaction.execute(status -> section.get()));
+            } finally {
+                sections.release();
+            }
+        });
+    }
+
+    private <T> T join(String section, Future<T> future, long deadline, Map<String, String> errors) {
+        try {
+            return future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            errors.put(section, "timed out");
+            log.warn("Dashboard section {} timed out after {} ms", section, sectionTimeoutMs);
+        } catch (ExecutionException e) {
+            errors.put(section, "failed");
+            log.warn("Dashboard section {} failed", section, e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            errors.put(section, "failed");
+        }
+        return null;
+    }
+}
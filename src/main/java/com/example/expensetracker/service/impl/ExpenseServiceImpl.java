@@ -1,18 +1,37 @@
 package com.example.expensetracker.service.impl;
 
+import com.example.expensetracker.dto.DescriptionSuggestionDto;
+import com.example.expensetracker.dto.ExpensePatchRequest;
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.event.ExpenseSnapshot;
 import com.example.expensetracker.model.Category;
 import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.SyncEntityType;
 import com.example.expensetracker.model.User;
 import com.example.expensetracker.repository.CategoryRepository;
 import com.example.expensetracker.repository.ExpenseRepository;
+import com.example.expensetracker.repository.ExpenseTagRepository;
+import com.example.expensetracker.service.ChangeSequenceService;
+import com.example.expensetracker.service.DescriptionAutocompleteIndex;
 import com.example.expensetracker.service.ExpenseService;
+import com.example.expensetracker.service.ExpenseTieringService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.sql.Types;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 @Service
@@ -21,13 +40,31 @@ public class ExpenseServiceImpl implements ExpenseService {
 
     private final ExpenseRepository expenseRepository;
     private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ChangeSequenceService changeSequenceService;
+    private final ExpenseTieringService tieringService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DescriptionAutocompleteIndex autocompleteIndex;
+    private final ExpenseTagRepository expenseTagRepository;
 
     public ExpenseServiceImpl(
             ExpenseRepository expenseRepository,
-            CategoryRepository categoryRepository
+            CategoryRepository categoryRepository,
+            ApplicationEventPublisher eventPublisher,
+            ChangeSequenceService changeSequenceService,
+            ExpenseTieringService tieringService,
+            NamedParameterJdbcTemplate jdbcTemplate,
+            DescriptionAutocompleteIndex autocompleteIndex,
+            ExpenseTagRepository expenseTagRepository
     ) {
         this.expenseRepository = expenseRepository;
         this.categoryRepository = categoryRepository;
+        this.eventPublisher = eventPublisher;
+        this.changeSequenceService = changeSequenceService;
+        this.tieringService = tieringService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.autocompleteIndex = autocompleteIndex;
+        this.expenseTagRepository = expenseTagRepository;
     }
 
     @Override
@@ -35,56 +72,82 @@ public class ExpenseServiceImpl implements ExpenseService {
         expense.setUser(user);
 
         if (expense.getCategory() != null) {
-            Category category = categoryRepository.findById(expense.getCategory().getId())
-                    .orElseThrow(() -> new IllegalArgumentException("Invalid category ID"));
+            expense.setCategory(resolveCategory(expense.getCategory().getId(), user));
+        }
+        expense.setChangeSeq(changeSequenceService.nextSeq(user.getId()));
+        Expense saved = expenseRepository.save(expense);
+        eventPublisher.publishEvent(ExpenseChangedEvent.created(saved));
+        return saved;
+    }
 
-            // ✅ SECURITY CHECK: Ensure category belongs to user or is global
-            if (category.getUser() != null && !category.getUser().getId().equals(user.getId())) {
-                throw new IllegalArgumentException("Access Denied: You do not own this category.");
-            }
-            expense.setCategory(category);
+    @Override
+    @Transactional(readOnly = true)
+    public Category resolveCategory(Long categoryId, User user) {
+        Category category = categoryRepository.findById(categoryId)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid category ID"));
+
+        // ✅ SECURITY CHECK: Ensure category belongs to user or is global
+        if (category.getUser() != null && !category.getUser().getId().equals(user.getId())) {
+            throw new IllegalArgumentException("Access Denied: You do not own this category.");
         }
-        return expenseRepository.save(expense);
+        return category;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Expense> getUserExpenses(User user) {
-        return expenseRepository.findByUser(user);
+        List<Expense> hot = expenseRepository.findByUser(user);
+        return tieringService.union(hot, tieringService.findAllArchived(user.getId()));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<Expense> getUserExpenses(User user, Pageable pageable) {
-        return expenseRepository.findByUser(user, pageable);
+        return tieringService.page(user.getId(), pageable, head -> expenseRepository.findByUser(user, head));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Expense> getExpenseById(Long expenseId, User user) {
-        return expenseRepository.findByIdAndUser(expenseId, user);
+        return expenseRepository.findByIdAndUser(expenseId, user)
+                .or(() -> tieringService.findArchivedById(expenseId, user.getId()));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Expense> getExpensesByDateRange(
             User user,
             LocalDate startDate,
             LocalDate endDate
     ) {
-        return expenseRepository.findByUserAndExpenseDateBetween(
+        List<Expense> hot = expenseRepository.findByUserAndExpenseDateBetween(
                 user, startDate, endDate
         );
+        return tieringService.union(hot, tieringService.findArchived(user.getId(), startDate, endDate));
     }
 
     @Override
     public void deleteExpense(Long expenseId, User user) {
-        Expense expense = expenseRepository.findByIdAndUser(expenseId, user)
+        // The tombstone goes first: it locks the user row, so the expense is read after any concurrent write
+        // of it has committed instead of failing its version check on delete. A miss rolls it back.
+        long changeSeq = changeSequenceService.recordDeletion(user.getId(), SyncEntityType.EXPENSE, expenseId);
+        Expense expense = findForWrite(expenseId, user)
                 .orElseThrow(() -> new IllegalArgumentException("Expense not found or access denied"));
 
         expenseRepository.delete(expense);
+        expenseTagRepository.deleteByExpenseId(expense.getId());
+        eventPublisher.publishEvent(ExpenseChangedEvent.deleted(expense, changeSeq));
     }
 
     @Override
     public Expense updateExpense(Long expenseId, Expense expenseDetails, User user) {
+        // Taken before the lookup, like setBudget: the user row lock orders this after concurrent writes
+        // of the expense, so the version read here is the one the save checks against
+        long changeSeq = changeSequenceService.nextSeq(user.getId());
+
         // 1. Find the existing expense
-        Expense existingExpense = expenseRepository.findById(expenseId)
+        Expense existingExpense = findForWrite(expenseId, user)
+                .or(() -> expenseRepository.findById(expenseId))
                 .orElseThrow(() -> new RuntimeException("Expense not found with id: " + expenseId));
 
         // 2. Security Check: Ensure the user owns this expense
@@ -92,6 +155,8 @@ public class ExpenseServiceImpl implements ExpenseService {
             throw new RuntimeException("Unauthorized access to expense");
         }
 
+        ExpenseSnapshot before = ExpenseSnapshot.of(existingExpense);
+
         // 3. Update the fields
         existingExpense.setDescription(expenseDetails.getDescription());
         existingExpense.setAmount(expenseDetails.getAmount());
@@ -102,9 +167,120 @@ public class ExpenseServiceImpl implements ExpenseService {
             existingExpense.setCategory(expenseDetails.getCategory());
         }
 
+        existingExpense.setChangeSeq(changeSeq);
+
         // 5. Save and return
-        return expenseRepository.save(existingExpense);
+        Expense saved = expenseRepository.save(existingExpense);
+        eventPublisher.publishEvent(new ExpenseChangedEvent(user.getId(), saved.getChangeSeq(), before, ExpenseSnapshot.of(saved)));
+        return saved;
+    }
+
+    // Ownership, category access, version check and the write are one conditional UPDATE; the old row
+    // comes back from the same statement for the change event. Failures are diagnosed afterwards.
+    @Override
+    public Expense patchExpense(Long expenseId, Long userId, ExpensePatchRequest patch) {
+        if (patch.getAmount() == null && patch.getDescription() == null
+                && patch.getExpenseDate() == null && patch.getCategoryId() == null) {
+            throw new IllegalArgumentException("Nothing to update");
+        }
+        long changeSeq = changeSequenceService.nextSeq(userId);
+
+        StringBuilder set = new StringBuilder("change_seq = :changeSeq, version = version + 1, updated_at = :now");
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", expenseId)
+                .addValue("userId", userId)
+                .addValue("version", patch.getVersion())
+                .addValue("changeSeq", changeSeq)
+                .addValue("now", LocalDateTime.now())
+                .addValue("categoryId", patch.getCategoryId(), Types.BIGINT);
+        if (patch.getAmount() != null) {
+            set.append(", amount = :amount");
+            params.addValue("amount", patch.getAmount());
+        }
+        if (patch.getDescription() != null) {
+            set.append(", description = :description");
+            params.addValue("description", patch.getDescription());
+        }
+        if (patch.getExpenseDate() != null) {
+            set.append(", expense_date = :expenseDate");
+            params.addValue("expenseDate", patch.getExpenseDate());
+        }
+        String where = "WHERE id = :id AND user_id = :userId AND version = :version";
+        if (patch.getCategoryId() != null) {
+            set.append(", category_id = :categoryId");
+            where += " AND EXISTS (SELECT 1 FROM categories c WHERE c.id = :categoryId " +
+                    "AND (c.user_id IS NULL OR c.user_id = :userId))";
+        }
+
+        String sql = "SELECT o.amount, o.description, o.expense_date, o.category_id, c.name " +
+                "FROM OLD TABLE (UPDATE expenses SET " + set + " " + where + ") o " +
+                "LEFT JOIN categories c ON c.id = COALESCE(:categoryId, o.category_id)";
+        RowMapper<Object[]> rowMapper = (rs, i) -> new Object[]{
+                rs.getBigDecimal(1), rs.getString(2), rs.getObject(3, LocalDate.class),
+                rs.getObject(4, Long.class), rs.getString(5)};
+
+        List<Object[]> old = jdbcTemplate.query(sql, params, rowMapper);
+        if (old.isEmpty() && tieringService.restore(expenseId, userId)) {
+            old = jdbcTemplate.query(sql, params, rowMapper);
+        }
+        if (old.isEmpty()) {
+            throw patchFailure(expenseId, userId, patch);
+        }
+
+        Object[] row = old.getFirst();
+        ExpenseSnapshot before = new ExpenseSnapshot(expenseId, (Long) row[3], (BigDecimal) row[0],
+                (LocalDate) row[2], (String) row[1]);
+
+        Expense updated = new Expense();
+        updated.setId(expenseId);
+        updated.setAmount(patch.getAmount() != null ? patch.getAmount() : before.getAmount());
+        updated.setDescription(patch.getDescription() != null ? patch.getDescription() : before.getDescription());
+        updated.setExpenseDate(patch.getExpenseDate() != null ? patch.getExpenseDate() : before.getExpenseDate());
+        Long categoryId = patch.getCategoryId() != null ? patch.getCategoryId() : before.getCategoryId();
+        if (categoryId != null) {
+            Category category = new Category();
+            category.setId(categoryId);
+            category.setName((String) row[4]);
+            updated.setCategory(category);
+        }
+        updated.setChangeSeq(changeSeq);
+        updated.setVersion(patch.getVersion() + 1);
+
+        eventPublisher.publishEvent(new ExpenseChangedEvent(userId, changeSeq, before, ExpenseSnapshot.of(updated)));
+        return updated;
     }
 
+    // Answered from memory, so a keystroke doesn't open a transaction
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<DescriptionSuggestionDto> suggestDescriptions(User user, String prefix, int limit) {
+        return autocompleteIndex.suggest(user.getId(), prefix, limit);
+    }
 
-}
\ No newline at end of file
+    private RuntimeException patchFailure(Long expenseId, Long userId, ExpensePatchRequest patch) {
+        if (patch.getCategoryId() != null) {
+            Category category = categoryRepository.findById(patch.getCategoryId())
+                    .orElseThrow(() -> new IllegalArgumentException("Invalid category ID"));
+            if (category.getUser() != null && !category.getUser().getId().equals(userId)) {
+                return new IllegalArgumentException("Access Denied: You do not own this category.");
+            }
+        }
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT version FROM expenses WHERE id = :id AND user_id = :userId",
+                new MapSqlParameterSource().addValue("id", expenseId).addValue("userId", userId), Long.class);
+        if (current.isEmpty()) {
+            return new NoSuchElementException("Expense not found: " + expenseId);
+        }
+        return new OptimisticLockingFailureException("Expense " + expenseId + " was changed by another request " +
+                "(version " + current.getFirst() + ", expected " + patch.getVersion() + ")");
+    }
+
+    // Archived expenses are moved back to the hot table before they are changed
+    private Optional<Expense> findForWrite(Long expenseId, User user) {
+        Optional<Expense> hot = expenseRepository.findByIdAndUser(expenseId, user);
+        if (hot.isPresent() || !tieringService.restore(expenseId, user.getId())) {
+            return hot;
+        }
+        return expenseRepository.findByIdAndUser(expenseId, user);
+    }
+}
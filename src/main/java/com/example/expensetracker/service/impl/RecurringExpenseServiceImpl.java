@@ -0,0 +1,175 @@
+package com.example.expensetracker.service.impl;
+
+import com.example.expensetracker.dto.ExpenseDto;
+import com.example.expensetracker.dto.SubscriptionPatchRequest;
+import com.example.expensetracker.model.Category;
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.RecurringExpense;
+import com.example.expensetracker.model.SyncEntityType;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.repository.CategoryRepository;
+import com.example.expensetracker.repository.RecurringExpenseRepository;
+import com.example.expensetracker.service.ChangeSequenceService;
+import com.example.expensetracker.service.ExpenseService;
+import com.example.expensetracker.service.RecurringExpenseService;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@Service
+@Transactional
+public class RecurringExpenseServiceImpl implements RecurringExpenseService {
+
+    private final RecurringExpenseRepository recurringRepository;
+    private final CategoryRepository categoryRepository;
+    private final ExpenseService expenseService;
+    private final ChangeSequenceService changeSequenceService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public RecurringExpenseServiceImpl(RecurringExpenseRepository recurringRepository,
+                                       CategoryRepository categoryRepository,
+                                       ExpenseService expenseService,
+                                       ChangeSequenceService changeSequenceService,
+                                       NamedParameterJdbcTemplate jdbcTemplate) {
+        this.recurringRepository = recurringRepository;
+        this.categoryRepository = categoryRepository;
+        this.expenseService = expenseService;
+        this.changeSequenceService = changeSequenceService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public RecurringExpense addRecurring(User user, ExpenseDto dto) {
+        Category category = categoryRepository.findById(dto.getCategoryId())
+                .orElseThrow(() -> new IllegalArgumentException("Category not found"));
+
+        // 1. Save Recurring Record
+        RecurringExpense rec = new RecurringExpense();
+        rec.setAmount(dto.getAmount());
+        rec.setDescription(dto.getDescription());
+        rec.setFrequency("MONTHLY");
+        rec.setNextDueDate(dto.getExpenseDate().plusMonths(1));
+        rec.setCategory(category);
+        rec.setUser(user);
+        rec.setChangeSeq(changeSequenceService.nextSeq(user.getId()));
+        recurringRepository.save(rec);
+
+        // 2. Save Immediate Expense
+        Expense firstExp = new Expense();
+        firstExp.setAmount(dto.getAmount());
+        firstExp.setDescription(dto.getDescription());
+        firstExp.setExpenseDate(dto.getExpenseDate());
+        firstExp.setCategory(category);
+        expenseService.createExpense(firstExp, user);
+
+        return rec;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<RecurringExpense> getUserSubscriptions(User user) {
+        return recurringRepository.findByUser(user);
+    }
+
+    @Override
+    public RecurringExpense updateSubscription(Long recId, Map<String, Object> updates) {
+        RecurringExpense rec = recurringRepository.findById(recId)
+                .orElseThrow(() -> new IllegalArgumentException("Subscription not found"));
+
+        if (updates.containsKey("amount")) {
+            rec.setAmount(new BigDecimal(updates.get("amount").toString()));
+        }
+        if (updates.containsKey("description")) {
+            rec.setDescription((String) updates.get("description"));
+        }
+        // Handle Date updates if needed
+        if (updates.containsKey("nextDueDate")) {
+            rec.setNextDueDate(LocalDate.parse((String) updates.get("nextDueDate")));
+        }
+        rec.setChangeSeq(changeSequenceService.nextSeq(rec.getUser().getId()));
+
+        return recurringRepository.save(rec);
+    }
+
+    // One conditional UPDATE scoped to the owner and the version the client read; the new row is
+    // returned by the same statement
+    @Override
+    public RecurringExpense patchSubscription(Long recId, Long userId, SubscriptionPatchRequest patch) {
+        if (patch.getAmount() == null && patch.getDescription() == null && patch.getNextDueDate() == null) {
+            throw new IllegalArgumentException("Nothing to update");
+        }
+
+        StringBuilder set = new StringBuilder("change_seq = :changeSeq, version = version + 1");
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", recId)
+                .addValue("userId", userId)
+                .addValue("version", patch.getVersion())
+                .addValue("changeSeq", changeSequenceService.nextSeq(userId));
+        if (patch.getAmount() != null) {
+            set.append(", amount = :amount");
+            params.addValue("amount", patch.getAmount());
+        }
+        if (patch.getDescription() != null) {
+            set.append(", description = :description");
+            params.addValue("description", patch.getDescription());
+        }
+        if (patch.getNextDueDate() != null) {
+            set.append(", next_due_date = :nextDueDate");
+            params.addValue("nextDueDate", patch.getNextDueDate());
+        }
+
+        List<RecurringExpense> updated = jdbcTemplate.query(
+                "SELECT r.id, r.amount, r.description, r.frequency, r.next_due_date, r.change_seq, r.version, " +
+                "c.id AS category_id, c.name AS category_name " +
+                "FROM FINAL TABLE (UPDATE recurring_expense SET " + set +
+                " WHERE id = :id AND user_id = :userId AND version = :version) r " +
+                "LEFT JOIN categories c ON c.id = r.category_id",
+                params, (rs, i) -> {
+                    RecurringExpense rec = new RecurringExpense();
+                    rec.setId(rs.getLong("id"));
+                    rec.setAmount(rs.getBigDecimal("amount"));
+                    rec.setDescription(rs.getString("description"));
+                    rec.setFrequency(rs.getString("frequency"));
+                    rec.setNextDueDate(rs.getObject("next_due_date", LocalDate.class));
+                    rec.setChangeSeq(rs.getLong("change_seq"));
+                    rec.setVersion(rs.getLong("version"));
+                    Long categoryId = rs.getObject("category_id", Long.class);
+                    if (categoryId != null) {
+                        Category category = new Category();
+                        category.setId(categoryId);
+                        category.setName(rs.getString("category_name"));
+                        rec.setCategory(category);
+                    }
+                    return rec;
+                });
+
+        if (updated.isEmpty()) {
+            List<Long> current = jdbcTemplate.queryForList(
+                    "SELECT version FROM recurring_expense WHERE id = :id AND user_id = :userId",
+                    new MapSqlParameterSource().addValue("id", recId).addValue("userId", userId), Long.class);
+            if (current.isEmpty()) {
+                throw new NoSuchElementException("Subscription not found: " + recId);
+            }
+            throw new OptimisticLockingFailureException("Subscription " + recId + " was changed by another request " +
+                    "(version " + current.getFirst() + ", expected " + patch.getVersion() + ")");
+        }
+        return updated.getFirst();
+    }
+
+    @Override
+    public void cancelSubscription(Long recId) {
+        // Cancelling an unknown subscription stays a no-op, as deleteById was
+        recurringRepository.findById(recId).ifPresent(rec -> {
+            recurringRepository.delete(rec);
+            changeSequenceService.recordDeletion(rec.getUser().getId(), SyncEntityType.RECURRING_EXPENSE, rec.getId());
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.expensetracker.service.impl;
+
+import com.example.expensetracker.dto.CategoryDistributionDto;
+import com.example.expensetracker.model.Category;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.service.CategoryService;
+import com.example.expensetracker.service.ExpenseSketchStore;
+import com.example.expensetracker.service.KllSketch;
+import com.example.expensetracker.service.SpendingDistributionService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.*;
+
+@Service
+@Transactional(readOnly = true)
+public class SpendingDistributionServiceImpl implements SpendingDistributionService {
+
+    private static final int MAX_MONTHS = 120;
+
+    private final ExpenseSketchStore sketchStore;
+    private final CategoryService categoryService;
+
+    public SpendingDistributionServiceImpl(ExpenseSketchStore sketchStore, CategoryService categoryService) {
+        this.sketchStore = sketchStore;
+        this.categoryService = categoryService;
+    }
+
+    @Override
+    public List<CategoryDistributionDto> getUserDistribution(User user, YearMonth from, YearMonth to) {
+        checkRange(from, to);
+        Map<Long, KllSketch> sketches = sketchStore.userSketches(user.getId(), from, to);
+        if (sketches.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, String> names = new HashMap<>();
+        for (Category category : categoryService.getGlobalCategories()) {
+            names.put(category.getId(), category.getName());
+        }
+        for (Category category : categoryService.getUserCategories(user)) {
+            names.put(category.getId(), category.getName());
+        }
+        names.put(0L, "Uncategorized");
+        return toDtos(sketches, names);
+    }
+
+    @Override
+    public List<CategoryDistributionDto> getPlatformDistribution(YearMonth from, YearMonth to) {
+        checkRange(from, to);
+        Map<Long, String> names = new HashMap<>();
+        for (Category category : categoryService.getGlobalCategories()) {
+            names.put(category.getId(), category.getName());
+        }
+        return toDtos(sketchStore.allUserSketches(names.keySet(), from, to), names);
+    }
+
+    // Sketches of categories that no longer exist are left out
+    private static List<CategoryDistributionDto> toDtos(Map<Long, KllSketch> sketches, Map<Long, String> names) {
+        List<CategoryDistributionDto> result = new ArrayList<>();
+        sketches.forEach((categoryId, sketch) -> {
+            String name = names.get(categoryId);
+            if (name == null) {
+                return;
+            }
+            long[] percentiles = sketch.quantiles(0.5, 0.9, 0.99);
+            result.add(new CategoryDistributionDto(
+                    categoryId == 0 ? null : categoryId,
+                    name,
+                    sketch.count(),
+                    BigDecimal.valueOf(sketch.min(), 2),
+                    BigDecimal.valueOf(percentiles[0], 2),
+                    BigDecimal.valueOf(percentiles[1], 2),
+                    BigDecimal.valueOf(percentiles[2], 2),
+                    BigDecimal.valueOf(sketch.max(), 2),
+                    sketch.rankError()));
+        });
+        result.sort(Comparator.comparingLong(CategoryDistributionDto::getCount).reversed());
+        return result;
+    }
+
+    private static void checkRange(YearMonth from, YearMonth to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        if (from.plusMonths(MAX_MONTHS).isBefore(to)) {
+            throw new IllegalArgumentException("The range can span at most " + MAX_MONTHS + " months");
+        }
+    }
+}
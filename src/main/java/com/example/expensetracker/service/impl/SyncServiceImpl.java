@@ -0,0 +1,138 @@
+package com.example.expensetracker.service.impl;
+
+import com.example.expensetracker.dto.CategoryDto;
+import com.example.expensetracker.dto.SyncResponse;
+import com.example.expensetracker.dto.TombstoneDto;
+import com.example.expensetracker.mapper.BudgetMapper;
+import com.example.expensetracker.mapper.CategoryMapper;
+import com.example.expensetracker.mapper.ExpenseMapper;
+import com.example.expensetracker.mapper.SubscriptionMapper;
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.repository.*;
+import com.example.expensetracker.service.ExpenseTieringService;
+import com.example.expensetracker.service.ShardRouter;
+import com.example.expensetracker.service.SyncService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Service
+@Transactional
+public class SyncServiceImpl implements SyncService {
+
+    private final UserRepository userRepository;
+    private final ExpenseRepository expenseRepository;
+    private final CategoryRepository categoryRepository;
+    private final BudgetRepository budgetRepository;
+    private final RecurringExpenseRepository recurringRepository;
+    private final ChangeTombstoneRepository tombstoneRepository;
+    private final ExpenseTieringService tieringService;
+    private final ExpenseTagRepository expenseTagRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final int tombstoneRetentionDays;
+
+    public SyncServiceImpl(UserRepository userRepository,
+                           ExpenseRepository expenseRepository,
+                           CategoryRepository categoryRepository,
+                           BudgetRepository budgetRepository,
+                           RecurringExpenseRepository recurringRepository,
+                           ChangeTombstoneRepository tombstoneRepository,
+                           ExpenseTieringService tieringService,
+                           ExpenseTagRepository expenseTagRepository,
+                           ShardRouter shardRouter,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${sync.tombstone-retention-days:30}") int tombstoneRetentionDays) {
+        this.userRepository = userRepository;
+        this.expenseRepository = expenseRepository;
+        this.categoryRepository = categoryRepository;
+        this.budgetRepository = budgetRepository;
+        this.recurringRepository = recurringRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.tieringService = tieringService;
+        this.expenseTagRepository = expenseTagRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tombstoneRetentionDays = tombstoneRetentionDays;
+    }
+
+    @Override
+    public SyncResponse getChangesSince(User user, long since) {
+        Long userId = user.getId();
+
+        // Read the counter first: every row at or below it is already committed
+        long current = userRepository.findChangeSeq(userId);
+        long floor = userRepository.findSyncFloorSeq(userId);
+
+        // Deletes older than the floor are gone, and a cursor ahead of us is from another database
+        boolean fullResync = since > 0 && (since < floor || since > current);
+        long from = fullResync ? 0 : since;
+
+        List<CategoryDto> categories = new ArrayList<>();
+        if (from == 0) {
+            categoryRepository.findByUserIsNull().stream().map(CategoryMapper::toDto).forEach(categories::add);
+        }
+        categoryRepository.findByUserIdAndChangeSeqGreaterThan(userId, from).stream()
+                .map(CategoryMapper::toDto)
+                .forEach(categories::add);
+
+        List<TombstoneDto> deleted = from == 0 ? List.of() : tombstoneRepository
+                .findByUserIdAndChangeSeqGreaterThan(userId, from).stream()
+                .map(t -> new TombstoneDto(t.getEntityType(), t.getEntityId(), t.getChangeSeq()))
+                .collect(Collectors.toList());
+
+        // Archived expenses keep their sequence, so they are only sent to clients that haven't seen them
+        List<Expense> expenses = tieringService.union(
+                expenseRepository.findByUserIdAndChangeSeqGreaterThan(userId, from),
+                tieringService.findArchivedChangedSince(userId, from));
+        // Tagging bumps the expense's sequence, so a tag change reaches clients as a changed expense. Only the
+        // delta's tags are read, in one query.
+        Map<Long, List<String>> tags = new HashMap<>();
+        if (!expenses.isEmpty()) {
+            List<Long> ids = expenses.stream().map(Expense::getId).toList();
+            for (Object[] row : expenseTagRepository.findTagNames(userId, ids)) {
+                tags.computeIfAbsent((Long) row[0], id -> new ArrayList<>(2)).add((String) row[1]);
+            }
+        }
+
+        return new SyncResponse(
+                current,
+                fullResync,
+                expenses.stream().map(e -> ExpenseMapper.toDto(e, tags.getOrDefault(e.getId(), List.of()))).collect(Collectors.toList()),
+                categories,
+                budgetRepository.findByUserIdAndChangeSeqGreaterThan(userId, from).stream()
+                        .map(BudgetMapper::toDto).collect(Collectors.toList()),
+                recurringRepository.findByUserIdAndChangeSeqGreaterThan(userId, from).stream()
+                        .map(SubscriptionMapper::toDto).collect(Collectors.toList()),
+                deleted
+        );
+    }
+
+    // Runs every night; clients whose cursor falls below the new floor get a full resync
+    @Override
+    @Scheduled(cron = "${sync.compaction-cron:0 30 3 * * *}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void compactTombstones() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(tombstoneRetentionDays);
+
+        // One transaction per shard, opened after the shard is chosen
+        shardRouter.fanOut(shard -> transactionTemplate.execute(status -> {
+            for (Object[] row : tombstoneRepository.findCompactableFloors(cutoff)) {
+                userRepository.raiseSyncFloorSeq((Long) row[0], (Long) row[1]);
+            }
+            return tombstoneRepository.deleteOlderThan(cutoff);
+        }));
+    }
+}
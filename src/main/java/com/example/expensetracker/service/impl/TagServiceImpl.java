@@ -0,0 +1,214 @@
+package com.example.expensetracker.service.impl;
+
+import com.example.expensetracker.dto.ExpenseSummaryDto;
+import com.example.expensetracker.dto.TagDto;
+import com.example.expensetracker.event.ExpenseTagsChangedEvent;
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.ExpenseTag;
+import com.example.expensetracker.model.Tag;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.repository.ExpenseRepository;
+import com.example.expensetracker.repository.ExpenseTagRepository;
+import com.example.expensetracker.repository.TagRepository;
+import com.example.expensetracker.service.ChangeSequenceService;
+import com.example.expensetracker.service.ExpenseService;
+import com.example.expensetracker.service.ExpenseTagIndex;
+import com.example.expensetracker.service.ExpenseTieringService;
+import com.example.expensetracker.service.TagQuery;
+import com.example.expensetracker.service.TagService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+@Service
+@Transactional
+public class TagServiceImpl implements TagService {
+
+    private static final int MAX_TAGS_PER_EXPENSE = 20;
+    private static final Set<String> RESERVED = Set.of("and", "or", "not");
+
+    // Open ends of a date filter
+    private static final LocalDate EARLIEST = LocalDate.of(1, 1, 1);
+    private static final LocalDate LATEST = LocalDate.of(9999, 12, 31);
+
+    private final TagRepository tagRepository;
+    private final ExpenseTagRepository expenseTagRepository;
+    private final ExpenseRepository expenseRepository;
+    private final ExpenseService expenseService;
+    private final ExpenseTieringService tieringService;
+    private final ChangeSequenceService changeSequenceService;
+    private final ExpenseTagIndex tagIndex;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public TagServiceImpl(TagRepository tagRepository,
+                          ExpenseTagRepository expenseTagRepository,
+                          ExpenseRepository expenseRepository,
+                          ExpenseService expenseService,
+                          ExpenseTieringService tieringService,
+                          ChangeSequenceService changeSequenceService,
+                          ExpenseTagIndex tagIndex,
+                          ApplicationEventPublisher eventPublisher) {
+        this.tagRepository = tagRepository;
+        this.expenseTagRepository = expenseTagRepository;
+        this.expenseRepository = expenseRepository;
+        this.expenseService = expenseService;
+        this.tieringService = tieringService;
+        this.changeSequenceService = changeSequenceService;
+        this.tagIndex = tagIndex;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // Replaces the expense's tags. The new change sequence moves the expense into the next sync, and
+    // taking it first locks the user row, so concurrent calls can't create the same tag twice.
+    @Override
+    public List<String> setTags(Long expenseId, User user, List<String> names) {
+        List<String> tags = normalize(names);
+        Long userId = user.getId();
+
+        long changeSeq = changeSequenceService.nextSeq(userId);
+        if (expenseRepository.updateChangeSeq(expenseId, userId, changeSeq) == 0
+                && (!tieringService.restore(expenseId, userId)
+                || expenseRepository.updateChangeSeq(expenseId, userId, changeSeq) == 0)) {
+            throw new NoSuchElementException("Expense not found: " + expenseId);
+        }
+
+        Map<String, Long> tagIds = new HashMap<>();
+        if (!tags.isEmpty()) {
+            for (Tag tag : tagRepository.findByUserIdAndNameIn(userId, tags)) {
+                tagIds.put(tag.getName(), tag.getId());
+            }
+            List<Tag> created = new ArrayList<>();
+            for (String name : tags) {
+                if (!tagIds.containsKey(name)) {
+                    Tag tag = new Tag();
+                    tag.setUserId(userId);
+                    tag.setName(name);
+                    created.add(tag);
+                }
+            }
+            for (Tag tag : tagRepository.saveAll(created)) {
+                tagIds.put(tag.getName(), tag.getId());
+            }
+        }
+
+        expenseTagRepository.deleteByExpenseId(expenseId);
+        List<ExpenseTag> rows = new ArrayList<>(tags.size());
+        for (String name : tags) {
+            ExpenseTag row = new ExpenseTag();
+            row.setUserId(userId);
+            row.setExpenseId(expenseId);
+            row.setTagId(tagIds.get(name));
+            rows.add(row);
+        }
+        expenseTagRepository.saveAll(rows);
+
+        eventPublisher.publishEvent(new ExpenseTagsChangedEvent(userId, expenseId, tags));
+        return tags;
+    }
+
+    // The tag lookups below are answered from the in-memory index
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<String> getTags(Long expenseId, Long userId) {
+        return tagIndex.tagsOf(userId, expenseId);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<TagDto> getUserTags(User user) {
+        List<TagDto> tags = new ArrayList<>();
+        tagIndex.tagCounts(user.getId()).forEach((name, count) -> tags.add(new TagDto(name, count)));
+        return tags;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Map<Long, List<String>> tagsByExpense(User user) {
+        return tagIndex.tagsByExpense(user.getId());
+    }
+
+    // A positive tag selection is fetched by id, so a rare tag never reads the user's whole history.
+    // Negated selections ("NOT personal") filter the date range or everything instead.
+    @Override
+    @Transactional(readOnly = true)
+    public List<Expense> filterExpenses(User user, String tagQuery, LocalDate from, LocalDate to, Long categoryId) {
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        ExpenseTagIndex.TagSelection selection = tagQuery == null || tagQuery.isBlank()
+                ? null : tagIndex.select(user.getId(), TagQuery.parse(tagQuery));
+
+        List<Expense> candidates;
+        if (selection != null && !selection.isNegated()) {
+            long[] ids = selection.getExpenseIds();
+            if (ids.length == 0) {
+                return List.of();
+            }
+            List<Long> idList = Arrays.stream(ids).boxed().toList();
+            candidates = tieringService.union(expenseRepository.findByUserAndIdIn(user, idList),
+                    tieringService.findArchivedByIds(user.getId(), idList));
+        } else if (from != null || to != null) {
+            candidates = expenseService.getExpensesByDateRange(user,
+                    from != null ? from : EARLIEST, to != null ? to : LATEST);
+        } else {
+            candidates = expenseService.getUserExpenses(user);
+        }
+
+        List<Expense> result = new ArrayList<>(candidates.size());
+        for (Expense expense : candidates) {
+            if (selection != null && !selection.matches(expense.getId())) {
+                continue;
+            }
+            if (from != null && expense.getExpenseDate().isBefore(from)
+                    || to != null && expense.getExpenseDate().isAfter(to)) {
+                continue;
+            }
+            if (categoryId != null && (expense.getCategory() == null || !categoryId.equals(expense.getCategory().getId()))) {
+                continue;
+            }
+            result.add(expense);
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ExpenseSummaryDto summarize(List<Expense> expenses) {
+        BigDecimal total = BigDecimal.ZERO;
+        Map<String, BigDecimal> byCategory = new TreeMap<>();
+        for (Expense expense : expenses) {
+            total = total.add(expense.getAmount());
+            String category = expense.getCategory() != null ? expense.getCategory().getName() : "Uncategorized";
+            byCategory.merge(category, expense.getAmount(), BigDecimal::add);
+        }
+        return new ExpenseSummaryDto(expenses.size(), total, byCategory);
+    }
+
+    // Lower case, sorted and without duplicates
+    private static List<String> normalize(List<String> names) {
+        SortedSet<String> tags = new TreeSet<>();
+        for (String name : names) {
+            if (name == null) {
+                throw new IllegalArgumentException("Tag names must not be null");
+            }
+            String tag = name.strip().toLowerCase(Locale.ROOT);
+            if (!TagQuery.TAG_NAME.matcher(tag).matches()) {
+                throw new IllegalArgumentException("Invalid tag '" + name + "': use letters, digits, '_', '.', ':' " +
+                        "or '-', starting with a letter or digit, at most 64 characters");
+            }
+            if (RESERVED.contains(tag)) {
+                throw new IllegalArgumentException("'" + tag + "' is reserved for tag queries");
+            }
+            tags.add(tag);
+        }
+        if (tags.size() > MAX_TAGS_PER_EXPENSE) {
+            throw new IllegalArgumentException("An expense can have at most " + MAX_TAGS_PER_EXPENSE + " tags");
+        }
+        return List.copyOf(tags);
+    }
+}
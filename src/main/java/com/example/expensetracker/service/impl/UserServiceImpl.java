@@ -1,17 +1,17 @@
 package com.example.expensetracker.service.impl;
 
-import com.example.expensetracker.model.Category;
-import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.event.CacheRegion;
 import com.example.expensetracker.model.User;
-import com.example.expensetracker.repository.CategoryRepository;
-import com.example.expensetracker.repository.ExpenseRepository;
 import com.example.expensetracker.repository.UserRepository;
+import com.example.expensetracker.service.CacheInvalidationBus;
 import com.example.expensetracker.service.UserService;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 @Service
@@ -19,71 +19,76 @@ import java.util.Optional;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
-    private final ExpenseRepository expenseRepository;   // ✅ Added
-    private final CategoryRepository categoryRepository; // ✅ Added
     private final PasswordEncoder passwordEncoder;
+    private final CacheInvalidationBus invalidationBus;
 
-    // ✅ Updated Constructor to inject all repositories
     public UserServiceImpl(UserRepository userRepository,
-                           ExpenseRepository expenseRepository,
-                           CategoryRepository categoryRepository,
-                           PasswordEncoder passwordEncoder) {
+                           PasswordEncoder passwordEncoder,
+                           CacheInvalidationBus invalidationBus) {
         this.userRepository = userRepository;
-        this.expenseRepository = expenseRepository;
-        this.categoryRepository = categoryRepository;
         this.passwordEncoder = passwordEncoder;
+        this.invalidationBus = invalidationBus;
     }
 
     @Override
     public User registerUser(User user) {
-        if (userRepository.existsByEmail(user.getEmail())) {
-            throw new IllegalArgumentException("Email already registered");
-        }
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         user.setEnabled(true);
         user.setAccountLocked(false);
-        return userRepository.save(user);
+
+        // The unique email constraint replaces a separate existsByEmail round trip
+        try {
+            return userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if (violates(e, "uk_user_email")) {
+                throw new IllegalArgumentException("Email already registered");
+            }
+            throw e;
+        }
+    }
+
+    // H2 and Postgres report the constraint with schema and index decorations, so match by name inside it
+    private static boolean violates(DataIntegrityViolationException e, String constraint) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return violation.getConstraintName().toLowerCase(Locale.ROOT).contains(constraint);
+            }
+        }
+        return false;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<User> findByEmail(String email) {
-        return userRepository.findByEmail(email);
+        // Accounts being purged are treated as already gone
+        return userRepository.findByEmailAndPendingDeletionFalse(email);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
-        return userRepository.findById(id);
+        return userRepository.findByIdAndPendingDeletionFalse(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public boolean existsByEmail(String email) {
         return userRepository.existsByEmail(email);
     }
 
-    // ✅ FIXED DELETE METHOD
-    @Override
-    public void deleteUser(Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-        // 1. Delete all expenses owned by this user
-        List<Expense> userExpenses = expenseRepository.findByUser(user);
-        expenseRepository.deleteAll(userExpenses);
-
-        // 2. Delete all custom categories created by this user
-        List<Category> userCategories = categoryRepository.findByUser(user);
-        categoryRepository.deleteAll(userCategories);
-
-        // 3. Finally, delete the user
-        userRepository.delete(user);
-    }
-
     @Override
     public void updatePassword(String email, String newPassword) {
-        User user = userRepository.findByEmail(email)
+        User user = userRepository.findByEmailAndPendingDeletionFalse(email)
                 .orElseThrow(() -> new IllegalArgumentException("User not found with this email"));
 
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        invalidationBus.publish(user.getId(), CacheRegion.USER);
+    }
+
+    @Override
+    public void updateEncodedPassword(Long userId, String encodedPassword) {
+        userRepository.updatePassword(userId, encodedPassword);
+        invalidationBus.publish(userId, CacheRegion.USER);
     }
 }
\ No newline at end of file
@@ -0,0 +1,213 @@
+package com.example.expensetracker;
+
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.repository.ExpenseRepository;
+import com.example.expensetracker.service.ExpenseAnalyticsCache;
+import com.example.expensetracker.service.UserService;
+import com.example.expensetracker.support.MarkdownReport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The analytics reads budgets and charts make (a month's total, a year's totals per category, twelve monthly
+// totals, a 45-day budget window) answered by ExpenseAnalyticsCache and by the stream/reduce over Expense
+// entities it replaced: once loading the entities per call, as the services did, and once over entities
+// already in memory, which isolates the cost of the BigDecimal arithmetic. Results must agree; latency and
+// bytes allocated per call go to target/analytics-cache-report/. Scale a run with
+// -Danalytics-bench.per-day=<n> -Danalytics-bench.rounds=<n>.
+@SpringBootTest(properties = {"ratelimit.enabled=false", "spring.datasource.url=jdbc:h2:mem:analytics-cache-benchmark"})
+class AnalyticsCacheBenchmarkTests {
+
+    private static final int PER_DAY = Integer.getInteger("analytics-bench.per-day", 8);
+    private static final int ROUNDS = Integer.getInteger("analytics-bench.rounds", 200);
+    private static final int WARMUP_ROUNDS = 50;
+    private static final int HISTORY_YEARS = 3;
+    // A total or window sum from the cache builds its result and nothing per row
+    private static final long MAX_CACHE_BYTES_PER_CALL = 1024;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private ExpenseAnalyticsCache analyticsCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final List<String> report = new ArrayList<>();
+    private final Random random = new Random(20261019L);
+
+    @Test
+    void cacheAgainstStreamReduce() {
+        User user = new User();
+        user.setName("Analytics Tester");
+        user.setEmail("analytics-bench@example.com");
+        user.setPassword("secret-password");
+        User saved = userService.registerUser(user);
+        List<Long> categoryIds = jdbcTemplate.queryForList(
+                "SELECT id FROM categories WHERE user_id IS NULL ORDER BY id LIMIT 3", Long.class);
+        LocalDate today = LocalDate.now();
+        int rows = seed(saved.getId(), categoryIds, today.minusYears(HISTORY_YEARS), today);
+
+        Long userId = saved.getId();
+        Long categoryId = categoryIds.getFirst();
+        LocalDate monthStart = today.withDayOfMonth(1);
+        LocalDate yearStart = today.withDayOfYear(1);
+        LocalDate windowStart = today.minusDays(44);
+        YearMonth firstMonth = YearMonth.from(today).minusMonths(11);
+        List<Expense> loaded = expenseRepository.findByUser(saved);
+        assertThat(loaded).hasSize(rows);
+
+        compare("month total",
+                () -> analyticsCache.total(userId, monthStart, today),
+                () -> sum(expenseRepository.findByUserAndExpenseDateBetween(saved, monthStart, today)),
+                () -> sum(inRange(loaded, monthStart, today)),
+                true);
+        compare("year totals by category",
+                () -> analyticsCache.totalsByCategory(userId, yearStart, today),
+                () -> byCategory(expenseRepository.findByUserAndExpenseDateBetween(saved, yearStart, today)),
+                () -> byCategory(inRange(loaded, yearStart, today)),
+                false);
+        compare("12 monthly totals",
+                () -> analyticsCache.monthlyTotals(userId, firstMonth, YearMonth.from(today)),
+                () -> byMonth(expenseRepository.findByUserAndExpenseDateBetween(saved, firstMonth.atDay(1), today), firstMonth, today),
+                () -> byMonth(inRange(loaded, firstMonth.atDay(1), today), firstMonth, today),
+                false);
+        compare("45-day window, one category",
+                () -> analyticsCache.windowTotal(userId, categoryId, windowStart, today),
+                () -> sum(inCategory(expenseRepository.findByUserAndExpenseDateBetween(saved, windowStart, today), categoryId)),
+                () -> sum(inCategory(inRange(loaded, windowStart, today), categoryId)),
+                true);
+
+        write(rows);
+    }
+
+    private void compare(String read, Supplier<Object> cache, Supplier<Object> streamQuery, Supplier<Object> streamLoaded,
+                         boolean allocationFree) {
+        Object expected = normalize(streamQuery.get());
+        assertThat(normalize(cache.get())).as(read).isEqualTo(expected);
+        assertThat(normalize(streamLoaded.get())).as(read).isEqualTo(expected);
+
+        long cacheBytes = time(read, "cache", cache);
+        time(read, "stream/reduce, entities queried", streamQuery);
+        time(read, "stream/reduce, entities in memory", streamLoaded);
+        if (allocationFree) {
+            assertThat(cacheBytes).as(read + ": bytes allocated per cache call").isLessThan(MAX_CACHE_BYTES_PER_CALL);
+        }
+    }
+
+    // Records p50, p99 and bytes allocated per call; returns the bytes
+    private long time(String read, String path, Supplier<Object> call) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            call.get();
+        }
+        long[] nanos = new long[ROUNDS];
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ROUNDS; i++) {
+            long started = System.nanoTime();
+            Objects.requireNonNull(call.get());
+            nanos[i] = System.nanoTime() - started;
+        }
+        long bytesPerCall = (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / ROUNDS;
+
+        Arrays.sort(nanos);
+        report.add(String.format("| %-28s | %-34s | %10.1f | %10.1f | %14d |", read, path,
+                nanos[ROUNDS / 2] / 1e3, nanos[ROUNDS * 99 / 100] / 1e3, bytesPerCall));
+        return bytesPerCall;
+    }
+
+    // PER_DAY expenses on every day of [from, to], straight into the table
+    private int seed(Long userId, List<Long> categoryIds, LocalDate from, LocalDate to) {
+        List<Object[]> rows = new ArrayList<>();
+        long seq = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            for (int i = 0; i < PER_DAY; i++) {
+                rows.add(new Object[]{BigDecimal.valueOf(100 + random.nextInt(20_000), 2), "Seeded " + day + " #" + i,
+                        Date.valueOf(day), userId, categoryIds.get(random.nextInt(categoryIds.size())), ++seq});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO expenses (amount, description, expense_date, user_id, category_id, change_seq, version, " +
+                "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", rows);
+        jdbcTemplate.update("UPDATE users SET change_seq = ? WHERE id = ?", seq, userId);
+        return rows.size();
+    }
+
+    private static List<Expense> inRange(List<Expense> expenses, LocalDate from, LocalDate to) {
+        return expenses.stream().filter(e -> !e.getExpenseDate().isBefore(from) && !e.getExpenseDate().isAfter(to)).toList();
+    }
+
+    private static List<Expense> inCategory(List<Expense> expenses, Long categoryId) {
+        return expenses.stream().filter(e -> e.getCategory() != null && e.getCategory().getId().equals(categoryId)).toList();
+    }
+
+    private static BigDecimal sum(List<Expense> expenses) {
+        return expenses.stream().map(Expense::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static Map<Long, BigDecimal> byCategory(List<Expense> expenses) {
+        return expenses.stream().filter(e -> e.getCategory() != null).collect(Collectors.groupingBy(
+                e -> e.getCategory().getId(), Collectors.reducing(BigDecimal.ZERO, Expense::getAmount, BigDecimal::add)));
+    }
+
+    private static Map<YearMonth, BigDecimal> byMonth(List<Expense> expenses, YearMonth from, LocalDate to) {
+        Map<YearMonth, BigDecimal> totals = new LinkedHashMap<>();
+        for (YearMonth month = from; !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            totals.put(month, BigDecimal.ZERO);
+        }
+        expenses.forEach(e -> totals.merge(YearMonth.from(e.getExpenseDate()), e.getAmount(), BigDecimal::add));
+        return totals;
+    }
+
+    // Amounts compared by value, maps by sorted entries
+    private static Object normalize(Object result) {
+        if (result instanceof BigDecimal amount) {
+            return amount.stripTrailingZeros();
+        }
+        if (result instanceof Map<?, ?> map) {
+            Map<Object, Object> sorted = new TreeMap<>();
+            map.forEach((key, value) -> sorted.put(key, normalize(value)));
+            return sorted;
+        }
+        return result;
+    }
+
+    private void write(int rows) {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Analytics cache against stream/reduce over Expense entities");
+        lines.add("");
+        lines.add(String.format("One user, %d expenses (%d a day over %d years), %d calls per read after %d warm-up calls",
+                rows, PER_DAY, HISTORY_YEARS, ROUNDS, WARMUP_ROUNDS));
+        lines.add("");
+        lines.add(String.format("| %-28s | %-34s | %10s | %10s | %14s |", "Read", "Path", "p50 µs", "p99 µs", "Bytes per call"));
+        lines.add("|------------------------------|------------------------------------|-----------:|-----------:|---------------:|");
+        lines.addAll(report);
+
+        MarkdownReport.write("analytics-cache-report", "cache-vs-stream", lines);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.expensetracker;
+
+import com.example.expensetracker.event.CacheInvalidation;
+import com.example.expensetracker.event.CacheRegion;
+import com.example.expensetracker.model.Category;
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.service.AccountPurgeService;
+import com.example.expensetracker.service.ColumnarExpenseStore;
+import com.example.expensetracker.service.ExpenseService;
+import com.example.expensetracker.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The columnar store's delta queue holds one row, so updates (old amount out, new amount in) from several
+// threads drop deltas. Writes the queue never sees are simulated too: an expense inserted as if by another
+// instance and announced on the invalidation bus, and an account purge. Each time the store must catch up
+// with SQL.
+@SpringBootTest(properties = {
+        "ratelimit.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:columnar-store-reconcile",
+        "analytics.store.enabled=true",
+        "analytics.store.queue-capacity=1",
+        "analytics.store.reconcile-interval-ms=100"})
+class ColumnarStoreReconcileTests {
+
+    private static final long TIMEOUT_MS = 20_000;
+    private static final int WRITERS = 4;
+
+    @Autowired
+    private ColumnarExpenseStore store;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private AccountPurgeService accountPurgeService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void storeDirectory(DynamicPropertyRegistry registry) throws IOException {
+        String directory = Files.createTempDirectory("columnar-store").toAbsolutePath().toString();
+        registry.add("analytics.store.dir", () -> directory);
+    }
+
+    @Test
+    void storeCatchesUpWithWritesItMissed() throws InterruptedException {
+        User user = register("columnar-reconcile@example.com");
+        Long categoryId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM categories WHERE user_id IS NULL", Long.class);
+        List<Expense> created = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            created.add(expenseService.createExpense(expense(categoryId, "12.34", i), user));
+        }
+        // Writers on several threads, so some update finds the queue still full
+        for (int round = 0; round < 50 && store.droppedDeltas() == 0; round++) {
+            String amount = BigDecimal.valueOf(1000 + round, 2).toPlainString();
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < WRITERS; t++) {
+                int first = t;
+                writers.add(Thread.ofPlatform().start(() -> {
+                    for (int i = first; i < created.size(); i += WRITERS) {
+                        expenseService.updateExpense(created.get(i).getId(), expense(categoryId, amount, i), user);
+                    }
+                }));
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        assertThat(store.droppedDeltas()).isPositive();
+        awaitStoreMatchesRows(user.getId());
+
+        // Written by another instance: no event here, only the invalidation
+        Long seq = jdbcTemplate.queryForObject("SELECT change_seq + 1 FROM users WHERE id = ?", Long.class, user.getId());
+        jdbcTemplate.update("INSERT INTO expenses (amount, description, expense_date, user_id, category_id, change_seq, version, " +
+                "created_at, updated_at) VALUES (99.99, 'elsewhere', CURRENT_DATE, ?, ?, ?, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)",
+                user.getId(), categoryId, seq);
+        jdbcTemplate.update("UPDATE users SET change_seq = ? WHERE id = ?", seq, user.getId());
+        eventPublisher.publishEvent(new CacheInvalidation("other-instance", user.getId(), CacheRegion.EXPENSES.bit(),
+                System.currentTimeMillis()));
+        awaitStoreMatchesRows(user.getId());
+
+        User leaving = register("columnar-purged@example.com");
+        expenseService.createExpense(expense(categoryId, "40.00", 0), leaving);
+        awaitStoreMatchesRows(leaving.getId());
+        accountPurgeService.deleteAccount(leaving.getId());
+        awaitStoreMatchesRows(leaving.getId());
+        assertThat(storeCents(leaving.getId())).isZero();
+    }
+
+    private void awaitStoreMatchesRows(Long userId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (storeCents(userId) != rowCents(userId) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(storeCents(userId)).as("store total of user %d", userId).isEqualTo(rowCents(userId));
+    }
+
+    private long storeCents(Long userId) {
+        long cents = 0;
+        for (ColumnarExpenseStore.Segment segment : store.segments()) {
+            for (int row = 0; row < segment.rows(); row++) {
+                if (segment.userId(row) == userId) {
+                    cents += segment.cents(row);
+                }
+            }
+        }
+        return cents;
+    }
+
+    private long rowCents(Long userId) {
+        BigDecimal total = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(amount), 0) FROM expenses WHERE user_id = ?",
+                BigDecimal.class, userId);
+        return total.movePointRight(2).longValueExact();
+    }
+
+    private User register(String email) {
+        User user = new User();
+        user.setName("Columnar Tester");
+        user.setEmail(email);
+        user.setPassword("secret-password");
+        return userService.registerUser(user);
+    }
+
+    private static Expense expense(Long categoryId, String amount, int day) {
+        Expense expense = new Expense();
+        expense.setAmount(new BigDecimal(amount));
+        expense.setDescription("Columnar " + day);
+        expense.setExpenseDate(LocalDate.now().minusDays(day));
+        Category category = new Category();
+        category.setId(categoryId);
+        expense.setCategory(category);
+        return expense;
+    }
+}
@@ -0,0 +1,507 @@
+package com.example.expensetracker;
+
+import com.example.expensetracker.dto.BudgetStatusDto;
+import com.example.expensetracker.dto.ExpenseDto;
+import com.example.expensetracker.event.ExpenseChangedEvent;
+import com.example.expensetracker.model.BudgetPeriod;
+import com.example.expensetracker.model.Category;
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.RecurringExpense;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.service.BudgetAlertService;
+import com.example.expensetracker.service.BudgetService;
+import com.example.expensetracker.service.ExpenseAnalyticsCache;
+import com.example.expensetracker.service.ExpenseService;
+import com.example.expensetracker.service.RecurringExpenseScheduler;
+import com.example.expensetracker.service.RecurringExpenseService;
+import com.example.expensetracker.service.UserService;
+import com.example.expensetracker.support.StressReport;
+import com.example.expensetracker.support.StressReport.Outcome;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Worker threads hammering the write paths of the same users: expense create/update/delete, budget upserts,
+// subscriptions being added, edited and cancelled while the recurring scheduler runs. Every thread draws its
+// operations from Random(seed + thread), so a failing schedule can be replayed with -Dstress.seed=<seed>
+// (the interleaving itself is up to the scheduler). Afterwards the rows must satisfy the invariants the
+// services promise: one budget per category and period, one posted expense per subscription and month,
+// caches agreeing with SQL and change sequence numbers never shared. The report goes to target/stress-report/.
+@SpringBootTest(properties = "ratelimit.enabled=false")
+@Import({ConcurrentWriteStressTests.BetweenListeners.class, ConcurrentWriteStressTests.FailingCommit.class})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ConcurrentWriteStressTests {
+
+    private static final long SEED = Long.getLong("stress.seed", 20261019L);
+    private static final int THREADS = Integer.getInteger("stress.threads", 8);
+    private static final int OPS_PER_THREAD = Integer.getInteger("stress.ops", 150);
+    // Few users, so most threads share one and contend on its rows
+    private static final int USERS = 2;
+    private static final int SEEDED_EXPENSES = 20;
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2000, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(2100, 12, 31);
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private BudgetService budgetService;
+
+    @Autowired
+    private RecurringExpenseService recurringExpenseService;
+
+    @Autowired
+    private RecurringExpenseScheduler scheduler;
+
+    @Autowired
+    private ExpenseAnalyticsCache analyticsCache;
+
+    @Autowired
+    private BudgetAlertService budgetAlertService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<User> users = new ArrayList<>();
+    private final Map<Long, List<Long>> expenseIds = new ConcurrentHashMap<>();
+    private List<Long> categoryIds;
+
+    @BeforeAll
+    void seed() {
+        categoryIds = jdbcTemplate.queryForList(
+                "SELECT id FROM categories WHERE user_id IS NULL ORDER BY id LIMIT 3", Long.class);
+        Random random = new Random(SEED);
+        for (int u = 0; u < USERS; u++) {
+            User user = new User();
+            user.setName("Stress Tester " + u);
+            user.setEmail("stress-" + u + "@example.com");
+            user.setPassword("secret-password");
+            user = userService.registerUser(user);
+            users.add(user);
+
+            List<Long> ids = Collections.synchronizedList(new ArrayList<>());
+            for (int i = 0; i < SEEDED_EXPENSES; i++) {
+                ids.add(expenseService.createExpense(expense(random, "Seeded " + i), user).getId());
+            }
+            expenseIds.put(user.getId(), ids);
+            // Loaded up front, so the run patches the cache from events instead of loading it at the end
+            analyticsCache.count(user.getId());
+        }
+    }
+
+    @Test
+    @Order(1)
+    void expenseWritesOfTheSameUser() throws InterruptedException {
+        StressReport report = new StressReport("expense-writes");
+        // An open alert stream makes every write patch the running budget totals as well
+        for (User user : users) {
+            for (Long categoryId : categoryIds) {
+                budgetService.setBudget(user, categoryId, new BigDecimal("1000.00"), BudgetPeriod.MONTHLY, null);
+                budgetService.setBudget(user, categoryId, new BigDecimal("1500.00"), BudgetPeriod.ROLLING_DAYS, 45);
+            }
+            budgetAlertService.subscribe(user.getId());
+        }
+
+        run(report, (thread, random) -> {
+            User user = users.get(thread % USERS);
+            List<Long> ids = expenseIds.get(user.getId());
+            double roll = random.nextDouble();
+            Long target = pick(ids, random);
+            if (roll < 0.40 || target == null) {
+                Expense created = expense(random, "Stress " + thread + "-" + random.nextInt(1_000_000));
+                return new Op("create expense", () -> ids.add(expenseService.createExpense(created, user).getId()));
+            }
+            if (roll < 0.75) {
+                Expense details = expense(random, "Edited " + thread);
+                details.setCategory(null);
+                return new Op("update expense", () -> expenseService.updateExpense(target, details, user));
+            }
+            if (roll < 0.95) {
+                return new Op("delete expense", () -> {
+                    expenseService.deleteExpense(target, user);
+                    ids.remove(target);
+                });
+            }
+            // Reloads race the listeners of writes committing meanwhile
+            if (roll < 0.975) {
+                return new Op("reload alert totals", () -> budgetAlertService.budgetChanged(user.getId()));
+            }
+            return new Op("reload analytics cache", () -> {
+                analyticsCache.evict(user.getId());
+                analyticsCache.count(user.getId());
+            });
+        });
+
+        report.write(header());
+        int trackedWindows = 0;
+        for (User user : users) {
+            assertCachesMatchRows(user);
+            assertChangeSeqsUnique(user);
+            trackedWindows += assertAlertTotalsMatchRows(user);
+        }
+        // A user whose last operation was a reload has none until the next write
+        assertThat(trackedWindows).as("tracked budget windows").isPositive();
+    }
+
+    @Test
+    @Order(2)
+    void budgetsAndSubscriptionsWithTheScheduler() throws InterruptedException {
+        StressReport report = new StressReport("budgets-and-subscriptions");
+        // Description -> date of the first expense, for subscriptions added by the run
+        Map<String, LocalDate> started = new ConcurrentHashMap<>();
+        Map<Long, List<Long>> subscriptionIds = new ConcurrentHashMap<>();
+        users.forEach(user -> subscriptionIds.put(user.getId(), Collections.synchronizedList(new ArrayList<>())));
+
+        run(report, (thread, random) -> {
+            User user = users.get(thread % USERS);
+            List<Long> subscriptions = subscriptionIds.get(user.getId());
+            double roll = random.nextDouble();
+            Long target = pick(subscriptions, random);
+            if (roll < 0.30) {
+                Long categoryId = categoryIds.get(random.nextInt(categoryIds.size()));
+                BigDecimal limit = BigDecimal.valueOf(10_000 + random.nextInt(500_000), 2);
+                BudgetPeriod period = random.nextBoolean() ? BudgetPeriod.MONTHLY : BudgetPeriod.WEEKLY;
+                return new Op("set budget", () -> budgetService.setBudget(user, categoryId, limit, period, null));
+            }
+            if (roll < 0.50 || target == null) {
+                String description = "Subscription " + thread + "-" + random.nextInt(1_000_000);
+                // Up to three months back, so the scheduler has occurrences to catch up on
+                LocalDate date = LocalDate.now().minusMonths(1 + random.nextInt(3)).minusDays(random.nextInt(28));
+                ExpenseDto dto = new ExpenseDto(null, amount(random), description, date,
+                        categoryIds.get(random.nextInt(categoryIds.size())), null, null, null);
+                return new Op("add subscription", () -> {
+                    if (started.putIfAbsent(description, date) != null) {
+                        return;
+                    }
+                    subscriptions.add(recurringExpenseService.addRecurring(user, dto).getId());
+                });
+            }
+            if (roll < 0.75) {
+                // The amount only: the invariants find a subscription's expenses by its description
+                Map<String, Object> updates = Map.of("amount", amount(random).toPlainString());
+                return new Op("update subscription", () -> recurringExpenseService.updateSubscription(target, updates));
+            }
+            if (roll < 0.80) {
+                return new Op("cancel subscription", () -> {
+                    recurringExpenseService.cancelSubscription(target);
+                    subscriptions.remove(target);
+                });
+            }
+            return new Op("run scheduler", scheduler::processRecurringExpenses);
+        });
+
+        // Catch up on whatever is still due; three months back is at most three occurrences
+        for (int i = 0; i < 4; i++) {
+            scheduler.processRecurringExpenses();
+        }
+
+        report.write(header());
+
+        List<Map<String, Object>> duplicateBudgets = jdbcTemplate.queryForList(
+                "SELECT user_id, category_id, period, COUNT(*) AS budgets FROM budget " +
+                "GROUP BY user_id, category_id, period HAVING COUNT(*) > 1");
+        assertThat(duplicateBudgets).as("duplicate budgets").isEmpty();
+
+        List<Map<String, Object>> doublePosted = jdbcTemplate.queryForList(
+                "SELECT user_id, description, expense_date, COUNT(*) AS posted FROM expenses " +
+                "WHERE description LIKE '% (Auto)' GROUP BY user_id, description, expense_date HAVING COUNT(*) > 1");
+        assertThat(doublePosted).as("occurrences posted twice").isEmpty();
+
+        LocalDate today = LocalDate.now();
+        for (User user : users) {
+            for (RecurringExpense subscription : recurringExpenseService.getUserSubscriptions(user)) {
+                LocalDate firstDue = started.get(subscription.getDescription()).plusMonths(1);
+                assertThat(subscription.getNextDueDate()).as(subscription.getDescription()).isAfter(today);
+                int occurrences = 0;
+                for (LocalDate due = firstDue; due.isBefore(subscription.getNextDueDate()); due = due.plusMonths(1)) {
+                    occurrences++;
+                }
+                Integer posted = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM expenses WHERE user_id = ? AND description = ?",
+                        Integer.class, user.getId(), subscription.getDescription() + " (Auto)");
+                assertThat(posted).as("posted occurrences of " + subscription.getDescription()).isEqualTo(occurrences);
+            }
+
+            assertCachesMatchRows(user);
+            assertChangeSeqsUnique(user);
+            for (BudgetStatusDto status : budgetService.getBudgetStatus(user)) {
+                BigDecimal spent = jdbcTemplate.queryForObject(
+                        "SELECT COALESCE(SUM(e.amount), 0) FROM expenses e JOIN categories c ON c.id = e.category_id " +
+                        "WHERE e.user_id = ? AND c.name = ? AND e.expense_date BETWEEN ? AND ?",
+                        BigDecimal.class, user.getId(), status.getCategoryName(),
+                        status.getPeriodStart(), status.getPeriodEnd());
+                assertThat(status.getSpent()).as(status.getCategoryName() + " " + status.getPeriod())
+                        .isEqualByComparingTo(spent);
+            }
+        }
+    }
+
+    // The interleaving the random runs rarely hit: a second write loads the alert totals after the cache has
+    // applied the first write but before the first write's alert listener runs
+    @Test
+    @Order(3)
+    void alertTotalsLoadedBetweenTheCacheAndTheAlertListener() throws InterruptedException {
+        User user = users.get(0);
+        Random random = new Random(SEED);
+        budgetAlertService.subscribe(user.getId());
+        analyticsCache.count(user.getId());
+
+        Expense first = expense(random, "Between listeners, first");
+        Expense second = expense(random, "Between listeners, second");
+        first.setExpenseDate(LocalDate.now());
+        second.setExpenseDate(LocalDate.now());
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        BetweenListeners.HOOK.set(() -> {
+            Thread writer = new Thread(() -> {
+                try {
+                    expenseService.createExpense(second, user);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }, "between-listeners");
+            writer.start();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            expenseService.createExpense(first, user);
+        } finally {
+            BetweenListeners.HOOK.set(null);
+        }
+
+        assertThat(failures).isEmpty();
+        assertThat(assertAlertTotalsMatchRows(user)).as("tracked budget windows").isPositive();
+    }
+
+    // The anomaly detector scores before commit; a creation whose commit then fails must not be learned, or an
+    // identical expense created afterwards would be flagged as its duplicate
+    @Test
+    @Order(4)
+    void anomalyStateIgnoresCreationsThatRollBack() {
+        User user = users.get(1);
+        Random random = new Random(SEED);
+        Expense rolledBack = expense(random, "Rolled back twin");
+        Expense kept = expense(new Random(SEED), "Rolled back twin");
+
+        FailingCommit.ARMED.set(true);
+        try {
+            assertThatThrownBy(() -> expenseService.createExpense(rolledBack, user))
+                    .hasStackTraceContaining(FailingCommit.MESSAGE);
+        } finally {
+            FailingCommit.ARMED.set(false);
+        }
+        Long keptId = expenseService.createExpense(kept, user).getId();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses WHERE description = 'Rolled back twin'",
+                Long.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expense_anomalies WHERE expense_id = ? AND type = 'DUPLICATE'",
+                Long.class, keptId)).isZero();
+    }
+
+    // Amounts are stored with two decimals; the in-memory copies must round extra ones the same way
+    @Test
+    @Order(5)
+    void amountsWithMoreThanTwoDecimals() {
+        User user = users.get(1);
+        analyticsCache.count(user.getId());
+        Expense expense = expense(new Random(SEED), "Three decimals");
+        expense.setAmount(new BigDecimal("10.005"));
+        Long id = expenseService.createExpense(expense, user).getId();
+        Expense edited = expense(new Random(SEED), "Three decimals, edited");
+        edited.setAmount(new BigDecimal("7.1249"));
+        expenseService.updateExpense(id, edited, user);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT amount FROM expenses WHERE id = ?", BigDecimal.class, id))
+                .isEqualByComparingTo("7.12");
+        assertCachesMatchRows(user);
+    }
+
+    // Starts all workers together; each runs OPS_PER_THREAD operations from its own seeded Random
+    private void run(StressReport report, BiFunction<Integer, Random, Op> nextOp) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Throwable> unexpected = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(SEED + thread);
+                try {
+                    start.await();
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        Op op = nextOp.apply(thread, random);
+                        long began = System.nanoTime();
+                        Outcome outcome;
+                        try {
+                            op.action().run();
+                            outcome = Outcome.OK;
+                        } catch (RuntimeException e) {
+                            outcome = classify(e);
+                            if (outcome == Outcome.FAILED) {
+                                unexpected.add(e);
+                            }
+                        }
+                        report.record(op.name(), System.nanoTime() - began, outcome);
+                    }
+                } catch (Throwable e) {
+                    unexpected.add(e);
+                }
+            }, "stress-" + thread);
+            worker.start();
+            workers.add(worker);
+        }
+
+        report.start();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        report.finish();
+
+        assertThat(unexpected).as("unexpected failures").isEmpty();
+    }
+
+    // Lost races are expected and counted; anything else fails the run
+    private static Outcome classify(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockingFailureException) {
+                return Outcome.CONFLICT;
+            }
+            if (cause instanceof PessimisticLockingFailureException) {
+                return Outcome.LOCK_TIMEOUT;
+            }
+        }
+        // "Expense not found with id", "Expense not found or access denied", "Subscription not found"
+        String message = e.getMessage();
+        if (message != null && message.contains("not found")) {
+            return Outcome.GONE;
+        }
+        return Outcome.FAILED;
+    }
+
+    private void assertCachesMatchRows(User user) {
+        Map<String, Object> rows = jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS expenses, COALESCE(SUM(amount), 0) AS total FROM expenses WHERE user_id = ?",
+                user.getId());
+        assertThat(analyticsCache.count(user.getId())).as("cached expense count")
+                .isEqualTo(((Number) rows.get("expenses")).longValue());
+        assertThat(analyticsCache.total(user.getId(), FIRST_DAY, LAST_DAY)).as("cached total")
+                .isEqualByComparingTo((BigDecimal) rows.get("total"));
+    }
+
+    // A load that already contains a write must not have that write's event added on top. Returns the
+    // number of windows compared.
+    private int assertAlertTotalsMatchRows(User user) {
+        List<BudgetAlertService.TrackedWindow> windows = budgetAlertService.trackedWindows(user.getId());
+        for (BudgetAlertService.TrackedWindow window : windows) {
+            BigDecimal spent = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(amount), 0) FROM expenses WHERE user_id = ? AND category_id = ? " +
+                    "AND expense_date BETWEEN ? AND ?",
+                    BigDecimal.class, user.getId(), window.categoryId(), window.start(), window.end());
+            assertThat(window.spent()).as("alert total, category %d %s", window.categoryId(), window.period())
+                    .isEqualByComparingTo(spent);
+        }
+        return windows.size();
+    }
+
+    // Every write takes a fresh number under the user's row lock, so no two rows may share one
+    private void assertChangeSeqsUnique(User user) {
+        List<Long> shared = jdbcTemplate.queryForList(
+                "SELECT change_seq FROM (" +
+                "SELECT change_seq FROM expenses WHERE user_id = ? " +
+                "UNION ALL SELECT change_seq FROM budget WHERE user_id = ? " +
+                "UNION ALL SELECT change_seq FROM recurring_expense WHERE user_id = ?) s " +
+                "GROUP BY change_seq HAVING COUNT(*) > 1",
+                Long.class, user.getId(), user.getId(), user.getId());
+        assertThat(shared).as("change sequence numbers used twice").isEmpty();
+    }
+
+    // Other threads add and remove ids meanwhile
+    private static Long pick(List<Long> ids, Random random) {
+        synchronized (ids) {
+            return ids.isEmpty() ? null : ids.get(random.nextInt(ids.size()));
+        }
+    }
+
+    private String header() {
+        return String.format("Seed %d, %d threads x %d operations, %d users", SEED, THREADS, OPS_PER_THREAD, USERS);
+    }
+
+    private Expense expense(Random random, String description) {
+        Expense expense = new Expense();
+        expense.setAmount(amount(random));
+        expense.setDescription(description);
+        expense.setExpenseDate(LocalDate.now().minusDays(random.nextInt(60)));
+        Category category = new Category();
+        category.setId(categoryIds.get(random.nextInt(categoryIds.size())));
+        expense.setCategory(category);
+        return expense;
+    }
+
+    private static BigDecimal amount(Random random) {
+        return BigDecimal.valueOf(100 + random.nextInt(50_000), 2);
+    }
+
+    private record Op(String name, Runnable action) {
+    }
+
+    // Runs a hook once, between the analytics cache's listener (order 0) and the alert listener (order 10)
+    static class BetweenListeners {
+
+        static final AtomicReference<Runnable> HOOK = new AtomicReference<>();
+
+        @org.springframework.core.annotation.Order(5)
+        @TransactionalEventListener
+        public void onExpenseChanged(ExpenseChangedEvent event) {
+            Runnable hook = HOOK.getAndSet(null);
+            if (hook != null) {
+                hook.run();
+            }
+        }
+    }
+
+    // Fails the commit once armed, after the anomaly detector's before-commit listener (order 30) has run
+    static class FailingCommit {
+
+        static final String MESSAGE = "Commit failed on purpose";
+        static final AtomicBoolean ARMED = new AtomicBoolean();
+
+        @org.springframework.core.annotation.Order(40)
+        @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+        public void onExpenseChanged(ExpenseChangedEvent event) {
+            if (ARMED.get()) {
+                throw new IllegalStateException(MESSAGE);
+            }
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.expensetracker;
+
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.security.JwtService;
+import com.example.expensetracker.service.BudgetStatusCache;
+import com.example.expensetracker.service.ExpenseAnalyticsCache;
+import com.example.expensetracker.service.ExpenseService;
+import com.example.expensetracker.service.UserService;
+import com.example.expensetracker.support.QueryBudgetReport;
+import com.example.expensetracker.support.SqlRecordingConfig;
+import com.example.expensetracker.support.SqlStatementRecorder;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import tools.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+// Every controller endpoint against a user with 1,000 expenses, each with a ceiling on the SQL
+// statements it may issue. Budgets count everything the request runs, including the JWT filter's user
+// lookup and the after-commit listeners. The per-endpoint report goes to target/query-report/.
+@SpringBootTest(properties = "ratelimit.enabled=false")
+@AutoConfigureMockMvc
+@Import(SqlRecordingConfig.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class EndpointStatementBudgetTests {
+
+    private static final int SEEDED_EXPENSES = 1000;
+
+    private final QueryBudgetReport report = new QueryBudgetReport("endpoints");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SqlStatementRecorder recorder;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ExpenseAnalyticsCache analyticsCache;
+
+    @Autowired
+    private BudgetStatusCache budgetStatusCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Long userId;
+    private String token;
+    private List<Long> categoryIds;
+
+    @BeforeAll
+    void seed() throws Exception {
+        User user = register("Budget Tester", "budgets@example.com");
+        userId = user.getId();
+        token = jwtService.generateToken(user.getEmail());
+
+        for (String name : List.of("Rent", "Travel", "Gifts")) {
+            send(post("/api/categories/user/{userId}", userId).content(json(Map.of("name", name))));
+        }
+        categoryIds = jdbcTemplate.queryForList(
+                "SELECT id FROM categories WHERE user_id IS NULL OR user_id = ? ORDER BY id", Long.class, userId);
+
+        String today = LocalDate.now().toString();
+        send(post("/api/expenses/budget/user/{userId}", userId)
+                .content(json(Map.of("categoryId", categoryIds.get(0), "limitAmount", 500, "period", "MONTHLY"))));
+        send(post("/api/expenses/budget/user/{userId}", userId)
+                .content(json(Map.of("categoryId", categoryIds.get(1), "limitAmount", 100, "period", "WEEKLY"))));
+        send(post("/api/expenses/budget/user/{userId}", userId)
+                .content(json(Map.of("categoryId", categoryIds.get(5), "limitAmount", 5000, "period", "YEARLY"))));
+        send(post("/api/expenses/recurring/user/{userId}", userId)
+                .content(json(Map.of("amount", 9.99, "description", "Streaming", "expenseDate", today, "categoryId", categoryIds.get(3)))));
+        send(post("/api/expenses/recurring/user/{userId}", userId)
+                .content(json(Map.of("amount", 35, "description", "Gym", "expenseDate", today, "categoryId", categoryIds.get(4)))));
+
+        // Straight into the table: going through the API would take 1,000 requests
+        long seq = jdbcTemplate.queryForObject("SELECT change_seq FROM users WHERE id = ?", Long.class, userId);
+        List<Object[]> rows = new ArrayList<>(SEEDED_EXPENSES);
+        for (int i = 0; i < SEEDED_EXPENSES; i++) {
+            rows.add(new Object[]{BigDecimal.valueOf(100 + i, 2), "Seeded expense " + i,
+                    Date.valueOf(LocalDate.now().minusDays(i % 365)), userId,
+                    categoryIds.get(i % categoryIds.size()), seq + i + 1});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO expenses (amount, description, expense_date, user_id, category_id, change_seq, version, " +
+                "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", rows);
+        jdbcTemplate.update("UPDATE users SET change_seq = ? WHERE id = ?", seq + SEEDED_EXPENSES, userId);
+        analyticsCache.evict(userId);
+    }
+
+    @AfterAll
+    void writeReport() {
+        report.write();
+    }
+
+    @Test
+    @Order(1)
+    void authEndpoints() throws Exception {
+        // The login page sends no token, so neither do these
+        expectAnonymous("POST /api/auth/register", 3, 201, post("/api/auth/register")
+                .content(json(Map.of("name", "New User", "email", "new-user@example.com", "password", "secret-password"))));
+        MvcResult taken = expectAnonymous("POST /api/auth/register (email taken)", 3, 400, post("/api/auth/register")
+                .content(json(Map.of("name", "Same User", "email", "new-user@example.com", "password", "secret-password"))));
+        assertThat(JsonPath.<String>read(taken.getResponse().getContentAsString(), "$.message")).isEqualTo("Email already registered");
+        expectAnonymous("POST /api/auth/login", 3, 200, post("/api/auth/login")
+                .content(json(Map.of("email", "new-user@example.com", "password", "secret-password"))));
+        expectAnonymous("PUT /api/auth/reset-password", 3, 200, put("/api/auth/reset-password")
+                .content(json(Map.of("email", "new-user@example.com", "newPassword", "another-password"))));
+    }
+
+    @Test
+    @Order(2)
+    void categoryEndpoints() throws Exception {
+        expect("GET /api/categories/global", 2, 200, get("/api/categories/global"));
+        expect("GET /api/categories/user/{userId}", 3, 200, get("/api/categories/user/{userId}", userId));
+        expect("POST /api/categories/user/{userId}", 7, 201, post("/api/categories/user/{userId}", userId)
+                .content(json(Map.of("name", "Books"))));
+    }
+
+    @Test
+    @Order(3)
+    void listingExpensesIsOneQueryPlusTheUserLookups() throws Exception {
+        MvcResult result = expect("GET /api/expenses/user/{userId} (1,000 rows)", 5, 200,
+                get("/api/expenses/user/{userId}", userId));
+        assertThat(JsonPath.<List<?>>read(result.getResponse().getContentAsString(), "$")).hasSizeGreaterThanOrEqualTo(SEEDED_EXPENSES);
+    }
+
+    @Test
+    @Order(4)
+    void listingExpensesInTheService() {
+        User user = userService.findById(userId).orElseThrow();
+        recorder.start();
+        int size;
+        try {
+            // Touches every category, as the DTO mapping does
+            size = expenseService.getUserExpenses(user).stream()
+                    .map(e -> e.getCategory() != null ? e.getCategory().getName() : "")
+                    .toList().size();
+        } finally {
+            check("ExpenseService.getUserExpenses (1,000 rows)", 2, recorder.stop());
+        }
+        assertThat(size).isGreaterThanOrEqualTo(SEEDED_EXPENSES);
+    }
+
+    @Test
+    @Order(5)
+    void expenseWrites() throws Exception {
+        List<Map<String, Object>> expenses = jdbcTemplate.queryForList(
+                "SELECT id, version FROM expenses WHERE user_id = ? ORDER BY id FETCH FIRST 3 ROWS ONLY", userId);
+        String today = LocalDate.now().toString();
+
+        expect("POST /api/expenses/user/{userId}", 12, 201, post("/api/expenses/user/{userId}", userId)
+                .content(json(Map.of("amount", 12.5, "description", "Lunch", "expenseDate", today, "categoryId", categoryIds.get(0)))));
+        expect("PUT /api/expenses/{id}/user/{userId}", 14, 200, put("/api/expenses/{id}/user/{userId}", expenses.get(0).get("ID"), userId)
+                .content(json(Map.of("amount", 20, "description", "Dinner", "expenseDate", today, "categoryId", categoryIds.get(1)))));
+        expect("PATCH /api/expenses/{id}/user/{userId}", 8, 200, patch("/api/expenses/{id}/user/{userId}", expenses.get(1).get("ID"), userId)
+                .content(json(Map.of("amount", 7.25, "version", expenses.get(1).get("VERSION")))));
+        expect("PUT /api/expenses/{id}/user/{userId}/tags", 13, 200, put("/api/expenses/{id}/user/{userId}/tags", expenses.get(0).get("ID"), userId)
+                .content(json(Map.of("tags", List.of("reimbursable", "trip-paris")))));
+        expect("PUT /api/expenses/{id}/user/{userId}/tags (malformed body)", 2, 400,
+                put("/api/expenses/{id}/user/{userId}/tags", expenses.get(0).get("ID"), userId).content("{\"tags\": [\"reimbursable\""));
+        expect("DELETE /api/expenses/{id}/user/{userId}", 13, 204, delete("/api/expenses/{id}/user/{userId}", expenses.get(2).get("ID"), userId));
+    }
+
+    @Test
+    @Order(6)
+    void budgetEndpoints() throws Exception {
+        analyticsCache.evict(userId);
+        budgetStatusCache.invalidate(userId);
+        expect("GET /api/expenses/budget/status/user/{userId} (cold cache)", 5, 200,
+                get("/api/expenses/budget/status/user/{userId}", userId));
+        expect("GET /api/expenses/budget/status/user/{userId} (cached)", 2, 200,
+                get("/api/expenses/budget/status/user/{userId}", userId));
+        expect("POST /api/expenses/budget/user/{userId}", 10, 200, post("/api/expenses/budget/user/{userId}", userId)
+                .content(json(Map.of("categoryId", categoryIds.get(2), "limitAmount", 250, "period", "QUARTERLY"))));
+
+        MvcResult result = measure("GET /api/expenses/budget/alerts/user/{userId} (subscribe)", 6,
+                get("/api/expenses/budget/alerts/user/{userId}", userId).accept(MediaType.TEXT_EVENT_STREAM), token);
+        assertThat(result.getRequest().isAsyncStarted()).isTrue();
+    }
+
+    @Test
+    @Order(7)
+    void subscriptionEndpoints() throws Exception {
+        String today = LocalDate.now().toString();
+        expect("POST /api/expenses/recurring/user/{userId}", 14, 200, post("/api/expenses/recurring/user/{userId}", userId)
+                .content(json(Map.of("amount", 15, "description", "Music", "expenseDate", today, "categoryId", categoryIds.get(6)))));
+
+        MvcResult result = expect("GET /api/expenses/recurring/user/{userId}", 3, 200,
+                get("/api/expenses/recurring/user/{userId}", userId));
+        String content = result.getResponse().getContentAsString();
+        List<Integer> ids = JsonPath.read(content, "$[*].id");
+        List<Integer> versions = JsonPath.read(content, "$[*].version");
+        assertThat(ids).hasSizeGreaterThanOrEqualTo(3);
+
+        expect("PUT /api/expenses/recurring/{recId}", 8, 200, put("/api/expenses/recurring/{recId}", ids.get(0))
+                .content(json(Map.of("amount", 11, "description", "Streaming HD"))));
+        expect("PATCH /api/expenses/recurring/{recId}/user/{userId}", 5, 200,
+                patch("/api/expenses/recurring/{recId}/user/{userId}", ids.get(1), userId)
+                        .content(json(Map.of("amount", 40, "version", versions.get(1)))));
+        expect("DELETE /api/expenses/recurring/{recId}", 8, 200, delete("/api/expenses/recurring/{recId}", ids.get(2)));
+    }
+
+    @Test
+    @Order(8)
+    void readModels() throws Exception {
+        expect("GET /api/sync/user/{userId}?since=0", 12, 200, get("/api/sync/user/{userId}", userId).param("since", "0"));
+        expect("GET /api/dashboard/user/{userId}", 12, 200, get("/api/dashboard/user/{userId}", userId));
+        expect("GET /api/anomalies/user/{userId}", 3, 200, get("/api/anomalies/user/{userId}", userId));
+        expect("PUT /api/anomalies/{id}/user/{userId}/dismiss (unknown)", 3, 404,
+                put("/api/anomalies/{id}/user/{userId}/dismiss", Long.MAX_VALUE, userId));
+        expect("GET /api/distribution/user/{userId}", 5, 200, get("/api/distribution/user/{userId}", userId));
+        expect("GET /api/expenses/suggestions/user/{userId} (cold)", 3, 200,
+                get("/api/expenses/suggestions/user/{userId}", userId).param("prefix", "lu"));
+        expect("GET /api/expenses/suggestions/user/{userId}", 2, 200,
+                get("/api/expenses/suggestions/user/{userId}", userId).param("prefix", "lun"));
+        MvcResult tagged = expect("GET /api/expenses/user/{userId}?tags=... (fetched by id)", 4, 200,
+                get("/api/expenses/user/{userId}", userId).param("tags", "reimbursable AND trip-paris NOT personal"));
+        assertThat(JsonPath.<List<?>>read(tagged.getResponse().getContentAsString(), "$")).hasSize(1);
+        expect("GET /api/expenses/summary/user/{userId}?tags=NOT ...&from=...", 4, 200,
+                get("/api/expenses/summary/user/{userId}", userId).param("tags", "NOT reimbursable")
+                        .param("from", LocalDate.now().minusDays(30).toString()));
+        expect("GET /api/expenses/tags/user/{userId}", 2, 200, get("/api/expenses/tags/user/{userId}", userId));
+    }
+
+    @Test
+    @Order(9)
+    void adminEndpointsRejectUsersBeforeAnyQuery() throws Exception {
+        expect("GET /api/admin/analytics/category-monthly (not admin)", 1, 403,
+                get("/api/admin/analytics/category-monthly").param("from", "2026-01").param("to", "2026-03"));
+        expect("GET /api/admin/analytics/spend-distribution (not admin)", 1, 403,
+                get("/api/admin/analytics/spend-distribution").param("month", "2026-01"));
+        expect("GET /api/admin/analytics/budget-status-cache (not admin)", 1, 403,
+                get("/api/admin/analytics/budget-status-cache"));
+        expect("GET /api/admin/analytics/cache-bus (not admin)", 1, 403,
+                get("/api/admin/analytics/cache-bus"));
+        expect("GET /api/admin/analytics/category-distribution (not admin)", 1, 403,
+                get("/api/admin/analytics/category-distribution").param("from", "2026-01").param("to", "2026-03"));
+        expect("POST /api/admin/analytics/anomalies/rebuild (not admin)", 1, 403,
+                post("/api/admin/analytics/anomalies/rebuild"));
+    }
+
+    @Test
+    @Order(10)
+    void accountEndpoints() throws Exception {
+        expect("GET /api/users/{userId}/purge-status (none running)", 1, 404, get("/api/users/{userId}/purge-status", userId));
+
+        // A separate, small account, so the inline purge doesn't take the seeded data with it
+        User leaving = register("Leaving User", "leaving@example.com");
+        String ownToken = jwtService.generateToken(leaving.getEmail());
+        expect("DELETE /api/users/{userId} (inline purge)", 21, 204,
+                delete("/api/users/{userId}", leaving.getId()), ownToken);
+        expect("DELETE /api/users/{userId} (repeated, purged)", 2, 204, delete("/api/users/{userId}", leaving.getId()));
+        // The repeated delete reported the final state, so the purge's progress is gone
+        expect("GET /api/users/{userId}/purge-status (purged, already read)", 1, 404,
+                get("/api/users/{userId}/purge-status", leaving.getId()));
+
+        // Flagged by another request whose purge has not registered yet: no second purge starts
+        User flagged = register("Flagged User", "flagged@example.com");
+        jdbcTemplate.update("UPDATE users SET pending_deletion = TRUE WHERE id = ?", flagged.getId());
+        MvcResult repeated = expect("DELETE /api/users/{userId} (repeated, pending)", 3, 202,
+                delete("/api/users/{userId}", flagged.getId()));
+        assertThat(JsonPath.<String>read(repeated.getResponse().getContentAsString(), "$.state")).isEqualTo("RUNNING");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Long.class, flagged.getId()))
+                .isEqualTo(1);
+    }
+
+    private User register(String name, String email) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(email);
+        user.setPassword("secret-password");
+        return userService.registerUser(user);
+    }
+
+    private MvcResult expect(String call, int budget, int status, MockHttpServletRequestBuilder request) throws Exception {
+        return expect(call, budget, status, request, token);
+    }
+
+    private MvcResult expectAnonymous(String call, int budget, int status, MockHttpServletRequestBuilder request) throws Exception {
+        return expect(call, budget, status, request, null);
+    }
+
+    private MvcResult expect(String call, int budget, int status, MockHttpServletRequestBuilder request, String bearer) throws Exception {
+        MvcResult result = measure(call, budget, request, bearer);
+        assertThat(result.getResponse().getStatus()).as(call).isEqualTo(status);
+        return result;
+    }
+
+    private MvcResult measure(String call, int budget, MockHttpServletRequestBuilder request, String bearer) throws Exception {
+        recorder.start();
+        try {
+            return send(request, bearer);
+        } finally {
+            check(call, budget, recorder.stop());
+        }
+    }
+
+    private void check(String call, int budget, SqlStatementRecorder.SqlStats stats) {
+        report.add(call, budget, stats);
+        assertThat(stats.statements())
+                .as("%s issued %d statements (budget %d):%n%s", call, stats.statements(), budget, String.join(System.lineSeparator(), stats.sql()))
+                .isLessThanOrEqualTo(budget);
+    }
+
+    private MvcResult send(MockHttpServletRequestBuilder request) throws Exception {
+        return send(request, token);
+    }
+
+    private MvcResult send(MockHttpServletRequestBuilder request, String bearer) throws Exception {
+        request.contentType(MediaType.APPLICATION_JSON);
+        if (bearer != null) {
+            request.header(HttpHeaders.AUTHORIZATION, "Bearer " + bearer);
+        }
+        MvcResult result = mockMvc.perform(request).andReturn();
+        // CompletableFuture responses finish in an async dispatch; event streams stay open
+        if (result.getRequest().isAsyncStarted()
+                && !MediaType.TEXT_EVENT_STREAM_VALUE.equals(result.getRequest().getHeader(HttpHeaders.ACCEPT))) {
+            return mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        return result;
+    }
+
+    private String json(Map<String, Object> fields) {
+        return objectMapper.writeValueAsString(fields);
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.expensetracker;
+
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.security.BoundedPasswordEncoder;
+import com.example.expensetracker.security.JwtService;
+import com.example.expensetracker.service.UserService;
+import com.example.expensetracker.support.MarkdownReport;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import tools.jackson.databind.ObjectMapper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// What one sign-in costs per encoder and work factor (security.password.bcrypt-strength), as CPU time on
+// this thread after a warm-up; login throughput and latency through AuthController and the configured
+// BoundedPasswordEncoder as concurrent clients grow; and how BoundedPasswordEncoder caps the hashing running
+// at once: with every pool thread busy and the queue full, further callers are turned away instead of
+// waiting. Scale a run with -Dhash.rounds=<n> -Dhash.logins=<n>; the reports go to target/hash-report/.
+@SpringBootTest(properties = {"ratelimit.enabled=false", "spring.datasource.url=jdbc:h2:mem:password-hashing-benchmark"})
+@AutoConfigureMockMvc
+class PasswordHashingBenchmarkTests {
+
+    private static final int ROUNDS = Integer.getInteger("hash.rounds", 3);
+    private static final int LOGINS_PER_CLIENT = Integer.getInteger("hash.logins", 4);
+    private static final int[] CLIENTS = {1, 4, 16};
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void costPerEncoderAndStrength() {
+        Map<String, PasswordEncoder> encoders = new LinkedHashMap<>();
+        for (int strength = 8; strength <= 12; strength += 2) {
+            encoders.put("bcrypt, strength " + strength + (strength == 10 ? " (default)" : ""), new BCryptPasswordEncoder(strength));
+        }
+        encoders.put("pbkdf2 (Spring Security 5.8 defaults)", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        List<String> report = new ArrayList<>();
+        report.add("# Password hashing cost");
+        report.add("");
+        report.add(String.format("CPU time per call on one thread, %d rounds after a warm-up", ROUNDS));
+        report.add("");
+        report.add(String.format("| %-40s | %10s | %10s | %14s |", "Encoder", "Encode ms", "Match ms", "Sign-ins/s/core"));
+        report.add("|------------------------------------------|-----------:|-----------:|---------------:|");
+
+        Map<String, Double> matchMillis = new LinkedHashMap<>();
+        encoders.forEach((name, encoder) -> {
+            String hash = encoder.encode(PASSWORD);
+            assertThat(encoder.matches(PASSWORD, hash)).isTrue();
+
+            long started = threads.getCurrentThreadCpuTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                hash = encoder.encode(PASSWORD);
+            }
+            double encode = (threads.getCurrentThreadCpuTime() - started) / 1e6 / ROUNDS;
+
+            started = threads.getCurrentThreadCpuTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                assertThat(encoder.matches(PASSWORD, hash)).isTrue();
+            }
+            double match = (threads.getCurrentThreadCpuTime() - started) / 1e6 / ROUNDS;
+
+            matchMillis.put(name, match);
+            report.add(String.format("| %-40s | %10.1f | %10.1f | %14.1f |", name, encode, match, 1000 / match));
+        });
+        MarkdownReport.write("hash-report", "password-hashing", report);
+
+        // Each step of the work factor doubles the rounds
+        List<Double> bcrypt = new ArrayList<>(matchMillis.values()).subList(0, 3);
+        assertThat(bcrypt.get(1)).isGreaterThan(bcrypt.get(0) * 2);
+        assertThat(bcrypt.get(2)).isGreaterThan(bcrypt.get(1) * 2);
+    }
+
+    @Test
+    void loginThroughputAsClientsGrow() throws Exception {
+        assertThat(passwordEncoder).isInstanceOf(BoundedPasswordEncoder.class);
+        int maxClients = Arrays.stream(CLIENTS).max().orElseThrow();
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < maxClients; i++) {
+            User user = new User();
+            user.setName("Login Tester");
+            user.setEmail("login-bench-" + i + "@example.com");
+            user.setPassword(PASSWORD);
+            userService.registerUser(user);
+            emails.add(user.getEmail());
+        }
+        for (String email : emails.subList(0, Math.min(4, emails.size()))) {
+            assertThat(login(email)).isEqualTo(200);
+        }
+
+        List<String> report = new ArrayList<>();
+        report.add("# Login throughput");
+        report.add("");
+        report.add(String.format("POST /api/auth/login through BoundedPasswordEncoder on %d cores, %d logins per client",
+                Runtime.getRuntime().availableProcessors(), LOGINS_PER_CLIENT));
+        report.add("");
+        report.add(String.format("| %7s | %8s | %9s | %8s | %8s | %8s |", "Clients", "Logins/s", "Rejected", "p50 ms", "p99 ms", "Max ms"));
+        report.add("|--------:|---------:|----------:|---------:|---------:|---------:|");
+
+        double singleClient = 0;
+        for (int clients : CLIENTS) {
+            long[] latencies = new long[clients * LOGINS_PER_CLIENT];
+            AtomicInteger next = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+            AtomicLong failed = new AtomicLong();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                String email = emails.get(c);
+                threads.add(Thread.ofPlatform().name("login-client-" + c).start(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < LOGINS_PER_CLIENT; i++) {
+                            long started = System.nanoTime();
+                            int status = login(email);
+                            latencies[next.getAndIncrement()] = System.nanoTime() - started;
+                            if (status == 503) {
+                                rejected.incrementAndGet();
+                            } else if (status != 200) {
+                                failed.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception | AssertionError e) {
+                        failed.incrementAndGet();
+                    }
+                }));
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            assertThat(failed.get()).as("failed logins with %d clients", clients).isZero();
+
+            double throughput = (latencies.length - rejected.get()) / seconds;
+            if (clients == 1) {
+                singleClient = throughput;
+            }
+            Arrays.sort(latencies);
+            report.add(String.format("| %7d | %8.1f | %9d | %8.1f | %8.1f | %8.1f |", clients, throughput, rejected.get(),
+                    latencies[latencies.length / 2] / 1e6, latencies[latencies.length * 99 / 100] / 1e6,
+                    latencies[latencies.length - 1] / 1e6));
+            // More clients than hashing threads queue for the pool; they must not thrash it
+            assertThat(throughput).as("logins/s with %d clients", clients).isGreaterThan(singleClient / 2);
+        }
+        MarkdownReport.write("hash-report", "login-throughput", report);
+    }
+
+    @Test
+    void boundedEncoderRunsAtMostItsThreadsAndRejectsPastTheQueue() throws InterruptedException {
+        int poolThreads = 2;
+        int queue = 3;
+        int callers = 10;
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        // Holds every admitted hash until all callers have been admitted or turned away
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                    return bcrypt.encode(rawPassword);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return bcrypt.matches(rawPassword, encodedPassword);
+            }
+        };
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(blocking, poolThreads, queue, 10_000);
+
+        AtomicInteger encoded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(callers);
+        try {
+            for (int i = 0; i < callers; i++) {
+                new Thread(() -> {
+                    try {
+                        encoder.encode(PASSWORD);
+                        encoded.incrementAndGet();
+                    } catch (RejectedExecutionException e) {
+                        rejected.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }, "sign-in-" + i).start();
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            // The admitted callers reach the delegate on the pool threads some time after the rest are turned away
+            while ((rejected.get() < callers - poolThreads - queue || running.get() < poolThreads)
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(rejected.get()).isEqualTo(callers - poolThreads - queue);
+            assertThat(running.get()).isEqualTo(poolThreads);
+            release.countDown();
+
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(encoded.get()).isEqualTo(poolThreads + queue);
+            assertThat(maxRunning.get()).isEqualTo(poolThreads);
+        } finally {
+            release.countDown();
+            encoder.destroy();
+        }
+    }
+
+    private int login(String email) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("email", email, "password", PASSWORD)))).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        int status = result.getResponse().getStatus();
+        if (status == 200) {
+            assertThat(jwtService.extractUsername(JsonPath.read(result.getResponse().getContentAsString(), "$.token")))
+                    .isEqualTo(email);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.expensetracker;
+
+import com.example.expensetracker.config.RateLimitProperties;
+import com.example.expensetracker.security.RateLimitFilter;
+import com.example.expensetracker.security.TokenBucketRateLimiter;
+import com.example.expensetracker.support.MarkdownReport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Threads hammering the GCRA limiter for a fixed time: all on one key, which is the worst case for the CAS
+// loop, each on a key of its own, and one client IP through RateLimitFilter. Whatever the interleaving, a key
+// may never admit more than its burst plus one token per refill interval since its bucket was created. The
+// CPU time per check is reported along with the counts, measured after a warm-up run against a limiter of
+// its own, and must stay under a bound far above what the limiter costs, so only a regression trips it. Scale a run with -Dratelimit.threads=<n> -Dratelimit.duration-ms=<n>; the report goes to
+// target/rate-limit-report/.
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RateLimiterContentionTests {
+
+    private static final int THREADS = Integer.getInteger("ratelimit.threads",
+            Math.max(8, Runtime.getRuntime().availableProcessors()));
+    private static final long DURATION_NANOS = Long.getLong("ratelimit.duration-ms", 300) * 1_000_000L;
+
+    private static final int CAPACITY = 50;
+    // Fast enough that the refill, not just the burst, is exercised within a run
+    private static final double REFILL_PER_SECOND = 2000;
+    private static final long INTERVAL_NANOS = (long) (1_000_000_000L / REFILL_PER_SECOND);
+    // About 80 ns measured for a limiter check and 4 µs through the filter, which builds a mock request per call
+    private static final long MAX_LIMITER_CHECK_NANOS = 2_000;
+    private static final long MAX_FILTER_CHECK_NANOS = 50_000;
+
+    private final List<String> report = new ArrayList<>();
+
+    @Test
+    void oneKeySharedByEveryThread() throws InterruptedException {
+        Run run = measure(() -> {
+            TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(CAPACITY, REFILL_PER_SECOND, 100);
+            return thread -> limiter.tryAcquire("u:shared@example.com") == 0;
+        });
+
+        record("one key, " + THREADS + " threads", run, run.admitted(), bound(run));
+        assertThat(run.admitted()).isLessThanOrEqualTo(bound(run)).isGreaterThanOrEqualTo(CAPACITY);
+        assertThat(run.cpuNanosPerCheck()).isLessThan(MAX_LIMITER_CHECK_NANOS);
+    }
+
+    @Test
+    void oneKeyPerThread() throws InterruptedException {
+        String[] keys = new String[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            keys[t] = "u:user-" + t + "@example.com";
+        }
+        Run run = measure(() -> {
+            TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(CAPACITY, REFILL_PER_SECOND, 100);
+            return thread -> limiter.tryAcquire(keys[thread]) == 0;
+        });
+
+        record("one key per thread", run, run.maxAdmittedPerThread(), bound(run));
+        for (long admitted : run.admittedPerThread) {
+            assertThat(admitted).isLessThanOrEqualTo(bound(run)).isGreaterThanOrEqualTo(CAPACITY);
+        }
+        assertThat(run.cpuNanosPerCheck()).isLessThan(MAX_LIMITER_CHECK_NANOS);
+    }
+
+    @Test
+    void oneClientIpThroughTheFilter() throws InterruptedException {
+        RateLimitProperties.Group group = new RateLimitProperties.Group();
+        group.setName("api");
+        group.setPathPrefixes(List.of("/api/"));
+        group.setKey(RateLimitProperties.KeyType.IP);
+        group.setCapacity(CAPACITY);
+        group.setRefillPerSecond(REFILL_PER_SECOND);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setGroups(List.of(group));
+
+        // Shared: each request building its own context would dominate the measurement
+        MockServletContext servletContext = new MockServletContext();
+        AtomicLong passed = new AtomicLong();
+        AtomicLong rejectedWithoutRetryAfter = new AtomicLong();
+        Run run = measure(() -> {
+            RateLimitFilter filter = new RateLimitFilter(properties);
+            passed.set(0);
+            return thread -> {
+                MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/api/expenses/user/1");
+                request.setRemoteAddr("203.0.113.7");
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                filter.doFilter(request, response, (req, res) -> passed.incrementAndGet());
+                if (response.getStatus() == 429 && response.getHeader("Retry-After") == null) {
+                    rejectedWithoutRetryAfter.incrementAndGet();
+                }
+                return response.getStatus() == 200;
+            };
+        });
+
+        record("one client IP through RateLimitFilter", run, run.admitted(), bound(run));
+        assertThat(passed.get()).isEqualTo(run.admitted());
+        assertThat(rejectedWithoutRetryAfter.get()).isZero();
+        assertThat(run.admitted()).isLessThanOrEqualTo(bound(run)).isGreaterThanOrEqualTo(CAPACITY);
+        assertThat(run.cpuNanosPerCheck()).isLessThan(MAX_FILTER_CHECK_NANOS);
+    }
+
+    @AfterAll
+    void writeReport() {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Rate limiter contention");
+        lines.add("");
+        lines.add(String.format("%d threads for %d ms per scenario, capacity %d, refill %.0f/s",
+                THREADS, DURATION_NANOS / 1_000_000, CAPACITY, REFILL_PER_SECOND));
+        lines.add("");
+        lines.add(String.format("| %-40s | %11s | %13s | %9s | %9s | %9s |",
+                "Scenario", "Checks", "Checks/s", "CPU ns", "Admitted", "Bound"));
+        lines.add("|------------------------------------------|------------:|--------------:|----------:|----------:|----------:|");
+        lines.addAll(report);
+
+        MarkdownReport.write("rate-limit-report", "contention", lines);
+    }
+
+    // The bucket is created by the first check, which comes after the run started, so this is an upper bound
+    private static long bound(Run run) {
+        return CAPACITY + (run.finishedAt - run.startedAt) / INTERVAL_NANOS + 1;
+    }
+
+    private void record(String scenario, Run run, long admitted, long bound) {
+        double seconds = (run.finishedAt - run.startedAt) / 1e9;
+        report.add(String.format("| %-40s | %11d | %13.0f | %9.1f | %9d | %9d |",
+                scenario, run.checks(), run.checks() / seconds, run.cpuNanosPerCheck(), admitted, bound));
+    }
+
+    // Each run gets a fresh limiter, so the warm-up leaves the measured buckets untouched
+    private static Run measure(Supplier<Check> fresh) throws InterruptedException {
+        run(fresh.get());
+        return run(fresh.get());
+    }
+
+    private static Run run(Check check) throws InterruptedException {
+        Run run = new Run();
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    ThreadMXBean cpu = ManagementFactory.getThreadMXBean();
+                    long cpuStarted = cpu.getCurrentThreadCpuTime();
+                    long deadline = run.startedAt + DURATION_NANOS;
+                    long checks = 0;
+                    long admitted = 0;
+                    while (System.nanoTime() < deadline) {
+                        if (check.allowed(thread)) {
+                            admitted++;
+                        }
+                        checks++;
+                    }
+                    run.checksPerThread[thread] = checks;
+                    run.admittedPerThread[thread] = admitted;
+                    run.cpuNanosPerThread[thread] = cpu.getCurrentThreadCpuTime() - cpuStarted;
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "ratelimit-" + t);
+            threads.add(worker);
+            worker.start();
+        }
+        ready.await();
+        run.startedAt = System.nanoTime();
+        go.countDown();
+        for (Thread worker : threads) {
+            worker.join();
+        }
+        run.finishedAt = System.nanoTime();
+        assertThat(failures).isEmpty();
+        return run;
+    }
+
+    @FunctionalInterface
+    private interface Check {
+        boolean allowed(int thread) throws Exception;
+    }
+
+    private static final class Run {
+        private final long[] checksPerThread = new long[THREADS];
+        private final long[] admittedPerThread = new long[THREADS];
+        private final long[] cpuNanosPerThread = new long[THREADS];
+        private volatile long startedAt;
+        private long finishedAt;
+
+        private long checks() {
+            long sum = 0;
+            for (long checks : checksPerThread) {
+                sum += checks;
+            }
+            return sum;
+        }
+
+        private long admitted() {
+            long sum = 0;
+            for (long admitted : admittedPerThread) {
+                sum += admitted;
+            }
+            return sum;
+        }
+
+        private long maxAdmittedPerThread() {
+            long max = 0;
+            for (long admitted : admittedPerThread) {
+                max = Math.max(max, admitted);
+            }
+            return max;
+        }
+
+        private long cpuNanos() {
+            long sum = 0;
+            for (long nanos : cpuNanosPerThread) {
+                sum += nanos;
+            }
+            return sum;
+        }
+
+        private double cpuNanosPerCheck() {
+            return (double) cpuNanos() / checks();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.expensetracker;
+
+import com.example.expensetracker.config.ReplicaLagMonitor;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.security.JwtService;
+import com.example.expensetracker.service.UserService;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+// A primary and a replica as two separate H2 databases, the replica a copy of the primary taken after the
+// user registered. Reads of the expense list come from the replica; creating an expense, which first looks
+// the user up in a read-only transaction, writes to the primary only.
+@SpringBootTest(properties = {
+        "ratelimit.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:replica-routing-primary;DB_CLOSE_DELAY=-1",
+        "replicas.enabled=true",
+        "replicas.urls[0].url=jdbc:h2:mem:replica-routing-replica;DB_CLOSE_DELAY=-1",
+        "replicas.max-lag-ms=3600000",
+        "replicas.heartbeat-interval-ms=3600000",
+        "spring.jpa.open-in-view=false"})
+@AutoConfigureMockMvc
+class ReplicaRoutingTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void writeAfterReadOnlyLookupGoesToThePrimary() throws Exception {
+        User user = new User();
+        user.setName("Replica Tester");
+        user.setEmail("replica@example.com");
+        user.setPassword("secret-password");
+        Long userId = userService.registerUser(user).getId();
+        String token = jwtService.generateToken(user.getEmail());
+
+        JdbcTemplate primary = new JdbcTemplate(lagMonitor.primary());
+        JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:replica-routing-replica;DB_CLOSE_DELAY=-1", "sa", ""));
+        Path snapshot = Files.createTempFile("replica-routing", ".sql");
+        try {
+            primary.execute("SCRIPT TO '" + snapshot.toAbsolutePath() + "'");
+            replica.execute("RUNSCRIPT FROM '" + snapshot.toAbsolutePath() + "'");
+        } finally {
+            Files.deleteIfExists(snapshot);
+        }
+        Long categoryId = primary.queryForObject("SELECT MIN(id) FROM categories WHERE user_id IS NULL", Long.class);
+        // Only on the replica, so the list shows where it was read from
+        replica.update("INSERT INTO expenses (amount, description, expense_date, user_id, category_id, change_seq, version, " +
+                "created_at, updated_at) VALUES (1.00, 'replica only', CURRENT_DATE, ?, ?, 0, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)",
+                userId, categoryId);
+        replica.update("MERGE INTO replication_heartbeat (id, beat_millis) KEY (id) VALUES (1, ?)", System.currentTimeMillis());
+        lagMonitor.heartbeat();
+        assertThat(lagMonitor.pickReplica()).contains("replica-0");
+
+        MvcResult list = send(get("/api/expenses/user/{userId}", userId), token);
+        assertThat(list.getResponse().getStatus()).isEqualTo(200);
+        assertThat(JsonPath.<List<String>>read(list.getResponse().getContentAsString(), "$[*].description"))
+                .containsExactly("replica only");
+
+        MvcResult created = send(post("/api/expenses/user/{userId}", userId).content(objectMapper.writeValueAsString(Map.of(
+                "amount", 12.5, "description", "written after a lookup", "expenseDate", LocalDate.now().toString(),
+                "categoryId", categoryId))), token);
+        assertThat(created.getResponse().getStatus()).isEqualTo(201);
+
+        String written = "SELECT COUNT(*) FROM expenses WHERE user_id = ? AND description = 'written after a lookup'";
+        assertThat(primary.queryForObject(written, Long.class, userId)).isEqualTo(1);
+        assertThat(replica.queryForObject(written, Long.class, userId)).isZero();
+    }
+
+    private MvcResult send(MockHttpServletRequestBuilder request, String bearer) throws Exception {
+        request.contentType(MediaType.APPLICATION_JSON).header(HttpHeaders.AUTHORIZATION, "Bearer " + bearer);
+        MvcResult result = mockMvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            return mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        return result;
+    }
+}
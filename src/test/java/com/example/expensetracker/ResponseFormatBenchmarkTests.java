@@ -0,0 +1,234 @@
+package com.example.expensetracker;
+
+import com.example.expensetracker.config.CompactPayloadHttpMessageConverter;
+import com.example.expensetracker.dto.ExpenseDto;
+import com.example.expensetracker.model.Category;
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.security.JwtService;
+import com.example.expensetracker.service.ExpenseService;
+import com.example.expensetracker.service.UserService;
+import com.example.expensetracker.support.CompactPayloadDecoder;
+import com.example.expensetracker.support.FormatReport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.SmartHttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// The same expense list encoded by the converter the list endpoint picks for each Accept header, as it would
+// be for a response: payload size raw and gzipped, and CPU time per encoding on this thread after a warm-up.
+// The compact payload is decoded again and must describe the same expenses. Scale a run with
+// -Dformat.expenses=<n> -Dformat.rounds=<n>; the report goes to target/format-report/.
+@SpringBootTest(properties = "ratelimit.enabled=false")
+@AutoConfigureMockMvc
+class ResponseFormatBenchmarkTests {
+
+    private static final int EXPENSES = Integer.getInteger("format.expenses", 5000);
+    private static final int ROUNDS = Integer.getInteger("format.rounds", 200);
+    private static final int WARMUP_ROUNDS = 50;
+    private static final long SEED = 20261019L;
+
+    private static final ResolvableType EXPENSE_LIST = ResolvableType.forClassWithGenerics(List.class, ExpenseDto.class);
+    // JSON first: the report compares against it
+    private static final List<String> FORMATS = List.of(MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            CompactPayloadHttpMessageConverter.SMILE_MEDIA_TYPE, CompactPayloadHttpMessageConverter.MEDIA_TYPE);
+
+    private static final List<String> DESCRIPTIONS = List.of("Coffee", "Groceries", "Lunch with the team", "Train ticket",
+            "Netflix", "Electricity bill", "Taxi to the airport", "Pharmacy", "Gym membership", "Books");
+    private static final List<String> TAGS = List.of("reimbursable", "personal", "trip-paris", "work", "family", "cash");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RequestMappingHandlerAdapter handlerAdapter;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void listAndSyncEndpointsNegotiateTheFormat() throws Exception {
+        User user = new User();
+        user.setName("Format Tester");
+        user.setEmail("formats@example.com");
+        user.setPassword("secret-password");
+        user = userService.registerUser(user);
+        String token = jwtService.generateToken(user.getEmail());
+
+        Category category = new Category();
+        category.setId(jdbcTemplate.queryForObject("SELECT MIN(id) FROM categories WHERE user_id IS NULL", Long.class));
+        for (int i = 0; i < 3; i++) {
+            Expense expense = new Expense();
+            expense.setAmount(BigDecimal.valueOf(1250 + i, 2));
+            expense.setDescription("Negotiated " + i);
+            expense.setExpenseDate(LocalDate.now().minusDays(i));
+            expense.setCategory(category);
+            expenseService.createExpense(expense, user);
+        }
+
+        // Browsers and most HTTP clients accept anything; they keep getting JSON
+        assertThat(fetch("/api/expenses/user/{userId}", user, token, null).getResponse().getContentType())
+                .startsWith(MediaType.APPLICATION_JSON_VALUE);
+        assertThat(fetch("/api/expenses/user/{userId}", user, token, MediaType.ALL_VALUE).getResponse().getContentType())
+                .startsWith(MediaType.APPLICATION_JSON_VALUE);
+        for (String format : FORMATS) {
+            assertThat(fetch("/api/expenses/user/{userId}", user, token, format).getResponse().getContentType())
+                    .as(format).startsWith(format);
+            assertThat(fetch("/api/sync/user/{userId}", user, token, format).getResponse().getContentType())
+                    .as(format).startsWith(format);
+        }
+
+        byte[] compact = fetch("/api/expenses/user/{userId}", user, token, CompactPayloadHttpMessageConverter.MEDIA_TYPE)
+                .getResponse().getContentAsByteArray();
+        assertThat(CompactPayloadDecoder.expenses(compact)).extracting(ExpenseDto::getDescription)
+                .containsExactlyInAnyOrder("Negotiated 0", "Negotiated 1", "Negotiated 2");
+        byte[] sync = fetch("/api/sync/user/{userId}", user, token, CompactPayloadHttpMessageConverter.MEDIA_TYPE)
+                .getResponse().getContentAsByteArray();
+        assertThat(CompactPayloadDecoder.expenses(sync)).hasSize(3);
+    }
+
+    @Test
+    void payloadSizeAndEncodingCpuPerFormat() throws IOException {
+        List<ExpenseDto> expenses = expenses(new Random(SEED));
+        FormatReport report = new FormatReport("expense-list");
+        Map<String, Integer> sizes = new HashMap<>();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        for (String format : FORMATS) {
+            MediaType mediaType = MediaType.parseMediaType(format);
+            SmartHttpMessageConverter<Object> converter = converterFor(mediaType);
+
+            MockHttpOutputMessage captured = new MockHttpOutputMessage();
+            converter.write(expenses, EXPENSE_LIST, mediaType, captured, null);
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                converter.write(expenses, EXPENSE_LIST, mediaType, new DiscardingOutputMessage(), null);
+            }
+            long cpuStarted = threads.getCurrentThreadCpuTime();
+            long wallStarted = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                converter.write(expenses, EXPENSE_LIST, mediaType, new DiscardingOutputMessage(), null);
+            }
+            report.record(format + " (" + converter.getClass().getSimpleName() + ")", captured.getBodyAsBytes(),
+                    (threads.getCurrentThreadCpuTime() - cpuStarted) / ROUNDS, (System.nanoTime() - wallStarted) / ROUNDS);
+            sizes.put(format, captured.getBodyAsBytes().length);
+
+            if (format.equals(CompactPayloadHttpMessageConverter.MEDIA_TYPE)) {
+                assertThat(CompactPayloadDecoder.expenses(captured.getBodyAsBytes()))
+                        .extracting(ResponseFormatBenchmarkTests::describe)
+                        .containsExactlyElementsOf(expenses.stream().map(ResponseFormatBenchmarkTests::describe).toList());
+            }
+        }
+        report.write(String.format("%d expenses over two years, %d encodings per format after %d warm-up rounds",
+                EXPENSES, ROUNDS, WARMUP_ROUNDS));
+
+        int json = sizes.get(MediaType.APPLICATION_JSON_VALUE);
+        int cbor = sizes.get(MediaType.APPLICATION_CBOR_VALUE);
+        int smile = sizes.get(CompactPayloadHttpMessageConverter.SMILE_MEDIA_TYPE);
+        assertThat(cbor).isLessThan(json);
+        assertThat(smile).isLessThan(json);
+        // Dictionaries, cents and day deltas: well under half of JSON and below both generic binary formats
+        assertThat(sizes.get(CompactPayloadHttpMessageConverter.MEDIA_TYPE)).isLessThan(json / 2).isLessThan(cbor).isLessThan(smile);
+    }
+
+    private MvcResult fetch(String path, User user, String token, String accept) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        if (accept != null) {
+            headers.set(HttpHeaders.ACCEPT, accept);
+        }
+        MvcResult result = mockMvc.perform(get(path, user.getId()).headers(headers)).andReturn();
+        assertThat(result.getResponse().getStatus()).as(path + " " + accept).isEqualTo(200);
+        return result;
+    }
+
+    // The converter the endpoint would use for the negotiated type, which is the first one able to write it
+    @SuppressWarnings("unchecked")
+    private SmartHttpMessageConverter<Object> converterFor(MediaType mediaType) {
+        return handlerAdapter.getMessageConverters().stream()
+                .filter(c -> c instanceof SmartHttpMessageConverter<?> smart && smart.canWrite(EXPENSE_LIST, List.class, mediaType))
+                .map(c -> (SmartHttpMessageConverter<Object>) c)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No converter writes " + mediaType));
+    }
+
+    // Newest first like the list endpoint, a few per day, with a dozen categories and some tags
+    private static List<ExpenseDto> expenses(Random random) {
+        List<ExpenseDto> expenses = new ArrayList<>(EXPENSES);
+        LocalDate date = LocalDate.of(2026, 10, 19);
+        for (int i = 0; i < EXPENSES; i++) {
+            if (random.nextInt(3) == 0) {
+                date = date.minusDays(1);
+            }
+            long categoryId = 1 + random.nextInt(12);
+            List<String> tags = new ArrayList<>();
+            for (int t = random.nextInt(3); t > 0; t--) {
+                String tag = TAGS.get(random.nextInt(TAGS.size()));
+                if (!tags.contains(tag)) {
+                    tags.add(tag);
+                }
+            }
+            expenses.add(new ExpenseDto(
+                    200_000L - i,
+                    BigDecimal.valueOf(100 + random.nextInt(50_000), 2),
+                    DESCRIPTIONS.get(random.nextInt(DESCRIPTIONS.size())),
+                    date,
+                    categoryId,
+                    "Category " + categoryId,
+                    (long) random.nextInt(3),
+                    tags));
+        }
+        return expenses;
+    }
+
+    private static String describe(ExpenseDto expense) {
+        return String.join("|", String.valueOf(expense.getId()), expense.getAmount().movePointRight(2).toBigInteger().toString(),
+                expense.getDescription(), String.valueOf(expense.getExpenseDate()), String.valueOf(expense.getCategoryId()),
+                expense.getCategoryName(), String.valueOf(expense.getVersion()), String.join(",", expense.getTags()));
+    }
+
+    // Keeps nothing, so the rounds measure the encoder rather than buffer growth
+    private static final class DiscardingOutputMessage implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        @Override
+        public OutputStream getBody() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.expensetracker;
+
+import com.example.expensetracker.config.ShardingProperties;
+import com.example.expensetracker.event.CacheInvalidation;
+import com.example.expensetracker.event.CacheRegion;
+import com.example.expensetracker.security.JwtService;
+import com.example.expensetracker.service.ShardRebalancer;
+import com.example.expensetracker.service.ShardRouter;
+import com.jayway.jsonpath.JsonPath;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+// Two shards as H2 file databases. Users registered and signed in through the API must stay reachable when
+// a third shard is configured, after one of them is moved (also from an instance that learns of the move
+// from the invalidation bus), and an email whose account was deleted can be registered again.
+@SpringBootTest(properties = {"ratelimit.enabled=false", "sharding.enabled=true"})
+@AutoConfigureMockMvc
+class ShardingTests {
+
+    private static final int USERS = 12;
+
+    private static Path directory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private ShardingProperties shardingProperties;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) throws IOException {
+        directory = Files.createTempDirectory("sharding-tests");
+        registry.add("sharding.shards[0].url", () -> url(0));
+        registry.add("sharding.shards[1].url", () -> url(1));
+    }
+
+    @Test
+    void usersStayReachableAcrossShardChanges() throws Exception {
+        Map<String, Long> users = new LinkedHashMap<>();
+        Map<String, String> tokens = new LinkedHashMap<>();
+        for (int i = 0; i < USERS; i++) {
+            String email = "shard-user-" + i + "@example.com";
+            users.put(email, register(email));
+            tokens.put(email, login(email));
+            assertThat(jwtService.extractUserId(tokens.get(email))).isEqualTo(users.get(email));
+        }
+        assertThat(users.values()).extracting(id -> id >>> ShardRouter.SHARD_ID_BITS).containsOnly(0L, 1L).contains(0L, 1L);
+        for (String email : users.keySet()) {
+            assertReachable(users.get(email), tokens.get(email));
+        }
+
+        // Another instance started with a third shard: the ring changes, the users' homes don't
+        ShardingProperties grown = new ShardingProperties();
+        grown.setEnabled(true);
+        grown.setVirtualNodes(shardingProperties.getVirtualNodes());
+        grown.setPoolSize(2);
+        List<ShardingProperties.Shard> shards = new ArrayList<>(shardingProperties.getShards());
+        ShardingProperties.Shard third = new ShardingProperties.Shard();
+        third.setUrl(url(2));
+        shards.add(third);
+        grown.setShards(shards);
+        ShardRouter withThirdShard = new ShardRouter(grown);
+        ShardRouter otherInstance = new ShardRouter(shardingProperties);
+        try {
+            for (Map.Entry<String, Long> user : users.entrySet()) {
+                int home = (int) (user.getValue() >>> ShardRouter.SHARD_ID_BITS);
+                assertThat(withThirdShard.shardForEmail(user.getKey())).as(user.getKey()).isEqualTo(home);
+                assertThat(withThirdShard.shardForUserId(user.getValue())).as(user.getKey()).isEqualTo(home);
+            }
+
+            String movedEmail = users.keySet().iterator().next();
+            Long movedId = users.get(movedEmail);
+            int from = shardRouter.shardForUserId(movedId);
+            int to = 1 - from;
+            shardRebalancer.moveUser(movedId, to);
+
+            assertThat(shardRouter.shardForUserId(movedId)).isEqualTo(to);
+            assertThat(shardRouter.shardForEmail(movedEmail)).isEqualTo(to);
+            assertReachable(movedId, tokens.get(movedEmail));
+            assertReachable(movedId, login(movedEmail));
+            assertThat(count(from, movedId)).isZero();
+
+            // Until the move reaches it over the bus, the other instance still routes to the source
+            assertThat(otherInstance.shardForUserId(movedId)).isEqualTo(from);
+            otherInstance.onRemoteInvalidation(new CacheInvalidation("mover", movedId, CacheRegion.SHARD.bit(), System.currentTimeMillis()));
+            assertThat(otherInstance.shardForUserId(movedId)).isEqualTo(to);
+        } finally {
+            close(withThirdShard);
+            close(otherInstance);
+        }
+
+        // Deleting the account frees its email for a new registration
+        String leaving = "shard-user-" + (USERS - 1) + "@example.com";
+        MvcResult deleted = send(delete("/api/users/{userId}", users.get(leaving)), tokens.get(leaving));
+        assertThat(deleted.getResponse().getStatus()).isEqualTo(204);
+        Long again = register(leaving);
+        assertReachable(again, login(leaving));
+    }
+
+    private void assertReachable(Long userId, String token) throws Exception {
+        MvcResult created = send(post("/api/expenses/user/{userId}", userId).content(objectMapper.writeValueAsString(Map.of(
+                "amount", 10, "description", "Sharded", "expenseDate", LocalDate.now().toString(), "categoryId", 1))), token);
+        assertThat(created.getResponse().getStatus()).as("create for user %d", userId).isEqualTo(201);
+        MvcResult listed = send(get("/api/expenses/user/{userId}", userId), token);
+        assertThat(listed.getResponse().getStatus()).as("list for user %d", userId).isEqualTo(200);
+        assertThat(JsonPath.<List<Object>>read(listed.getResponse().getContentAsString(), "$")).isNotEmpty();
+    }
+
+    private Long register(String email) throws Exception {
+        MvcResult result = send(post("/api/auth/register").content(objectMapper.writeValueAsString(Map.of(
+                "name", "Shard User", "email", email, "password", "secret-password"))), null);
+        assertThat(result.getResponse().getStatus()).as("register " + email).isEqualTo(201);
+        return JsonPath.<Number>read(result.getResponse().getContentAsString(), "$.id").longValue();
+    }
+
+    private String login(String email) throws Exception {
+        MvcResult result = send(post("/api/auth/login").content(objectMapper.writeValueAsString(Map.of(
+                "email", email, "password", "secret-password"))), null);
+        assertThat(result.getResponse().getStatus()).as("login " + email).isEqualTo(200);
+        return JsonPath.read(result.getResponse().getContentAsString(), "$.token");
+    }
+
+    private long count(int shard, Long userId) {
+        Long count = new JdbcTemplate(shardRouter.dataSource(shard))
+                .queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Long.class, userId);
+        return count != null ? count : 0;
+    }
+
+    private MvcResult send(MockHttpServletRequestBuilder request, String bearer) throws Exception {
+        request.contentType(MediaType.APPLICATION_JSON);
+        if (bearer != null) {
+            request.header(HttpHeaders.AUTHORIZATION, "Bearer " + bearer);
+        }
+        MvcResult result = mockMvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            return mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        return result;
+    }
+
+    private static void close(ShardRouter router) {
+        router.shardDataSources().values().forEach(dataSource -> ((HikariDataSource) dataSource).close());
+    }
+
+    private static String url(int shard) {
+        return "jdbc:h2:file:" + directory.resolve("shard" + shard).toAbsolutePath();
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.expensetracker;
+
+import com.example.expensetracker.model.Expense;
+import com.example.expensetracker.model.User;
+import com.example.expensetracker.service.ExpenseService;
+import com.example.expensetracker.service.ExpenseTieringService;
+import com.example.expensetracker.service.UserService;
+import com.example.expensetracker.support.SqlRecordingConfig;
+import com.example.expensetracker.support.SqlStatementRecorder;
+import com.example.expensetracker.support.MarkdownReport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Latency of the hot-path reads (this month's expenses, the dashboard's most recent page) for a user with
+// only the hot window's expenses, then with five more years of history in the hot table, then after the
+// history has been archived. Results must be the same before and after archiving, including a page and a
+// range reaching into the archive, and hot reads must not touch the archive. Own database, since archiving
+// moves every user's old rows. Scale a run with -Dtiering.per-day=<n> -Dtiering.rounds=<n>; the report goes
+// to target/tiering-report/.
+@SpringBootTest(properties = {"ratelimit.enabled=false", "spring.datasource.url=jdbc:h2:mem:tiering-benchmark"})
+@Import(SqlRecordingConfig.class)
+class TieringBenchmarkTests {
+
+    private static final int PER_DAY = Integer.getInteger("tiering.per-day", 8);
+    private static final int ROUNDS = Integer.getInteger("tiering.rounds", 200);
+    private static final int WARMUP_ROUNDS = 50;
+    private static final int HISTORY_YEARS = 5;
+
+    private static final Pageable RECENT = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "expenseDate", "id"));
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private ExpenseTieringService tieringService;
+
+    @Autowired
+    private SqlStatementRecorder recorder;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<String> report = new ArrayList<>();
+    private final Random random = new Random(20261019L);
+    private long seq;
+
+    @Test
+    void hotPathLatencyWithAndWithoutHistory() {
+        User user = new User();
+        user.setName("Tiering Tester");
+        user.setEmail("tiering@example.com");
+        user.setPassword("secret-password");
+        User saved = userService.registerUser(user);
+
+        LocalDate today = LocalDate.now();
+        LocalDate cutoff = today.minusYears(1).withDayOfYear(1);
+        seed(saved.getId(), cutoff, today);
+        measure("hot window only", saved, today);
+
+        seed(saved.getId(), cutoff.minusYears(HISTORY_YEARS), cutoff.minusDays(1));
+        measure("+" + HISTORY_YEARS + " years of history, not archived", saved, today);
+        // Reaches across the cutoff, so it needs both tables once archived
+        LocalDate deepFrom = cutoff.minusMonths(3);
+        Pageable deepPage = PageRequest.of(40, 50, Sort.by(Sort.Direction.DESC, "expenseDate", "id"));
+        List<Long> rangeBefore = ids(expenseService.getExpensesByDateRange(saved, deepFrom, cutoff.plusMonths(3)));
+        Page<Expense> pageBefore = expenseService.getUserExpenses(saved, deepPage);
+
+        tieringService.archiveOldExpenses();
+        assertThat(tieringService.watermark()).isEqualTo(cutoff);
+        assertThat(count("SELECT COUNT(*) FROM expenses_archive WHERE user_id = ?", saved.getId())).isPositive();
+        measure("+" + HISTORY_YEARS + " years of history, archived", saved, today);
+
+        assertThat(ids(expenseService.getExpensesByDateRange(saved, deepFrom, cutoff.plusMonths(3))))
+                .containsExactlyInAnyOrderElementsOf(rangeBefore);
+        Page<Expense> pageAfter = expenseService.getUserExpenses(saved, deepPage);
+        assertThat(pageAfter.getTotalElements()).isEqualTo(pageBefore.getTotalElements());
+        assertThat(ids(pageAfter.getContent())).containsExactlyElementsOf(ids(pageBefore.getContent()));
+
+        // The current month starts after the watermark: one read of it, then the hot table only
+        recorder.start();
+        expenseService.getExpensesByDateRange(saved, today.withDayOfMonth(1), today);
+        List<String> sql = recorder.stop().sql();
+        assertThat(sql).noneMatch(statement -> statement.contains("expenses_archive"));
+
+        write();
+    }
+
+    private void measure(String state, User user, LocalDate today) {
+        long hot = count("SELECT COUNT(*) FROM expenses", null);
+        long archived = count("SELECT COUNT(*) FROM expenses_archive", null);
+        List<Long> month = ids(expenseService.getExpensesByDateRange(user, today.withDayOfMonth(1), today));
+        List<Long> recent = ids(expenseService.getUserExpenses(user, RECENT).getContent());
+
+        time(state, hot, archived, "this month's expenses",
+                () -> expenseService.getExpensesByDateRange(user, today.withDayOfMonth(1), today), month);
+        time(state, hot, archived, "most recent page of 20",
+                () -> expenseService.getUserExpenses(user, RECENT).getContent(), recent);
+    }
+
+    private void time(String state, long hot, long archived, String call, Supplier<List<Expense>> read, List<Long> expected) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            read.get();
+        }
+        long[] nanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long started = System.nanoTime();
+            List<Expense> result = read.get();
+            nanos[i] = System.nanoTime() - started;
+            assertThat(result).hasSize(expected.size());
+        }
+        recorder.start();
+        read.get();
+        int statements = recorder.stop().statements();
+
+        Arrays.sort(nanos);
+        report.add(String.format("| %-40s | %8d | %8d | %-24s | %10d | %8.1f | %8.1f |", state, hot, archived, call,
+                statements, nanos[ROUNDS / 2] / 1e3, nanos[ROUNDS * 99 / 100] / 1e3));
+    }
+
+    // PER_DAY expenses on every day of [from, to], straight into the table
+    private void seed(Long userId, LocalDate from, LocalDate to) {
+        Long categoryId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM categories WHERE user_id IS NULL", Long.class);
+        List<Object[]> rows = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            for (int i = 0; i < PER_DAY; i++) {
+                rows.add(new Object[]{BigDecimal.valueOf(100 + random.nextInt(20_000), 2), "Seeded " + day + " #" + i,
+                        Date.valueOf(day), userId, categoryId, ++seq});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO expenses (amount, description, expense_date, user_id, category_id, change_seq, version, " +
+                "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", rows);
+        jdbcTemplate.update("UPDATE users SET change_seq = ? WHERE id = ?", seq, userId);
+    }
+
+    private long count(String sql, Long userId) {
+        Long count = userId == null
+                ? jdbcTemplate.queryForObject(sql, Long.class)
+                : jdbcTemplate.queryForObject(sql, Long.class, userId);
+        return count != null ? count : 0;
+    }
+
+    private static List<Long> ids(List<Expense> expenses) {
+        return expenses.stream().map(Expense::getId).toList();
+    }
+
+    private void write() {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Hot-path reads with and without archived history");
+        lines.add("");
+        lines.add(String.format("%d expenses a day, %d calls per read after %d warm-up calls", PER_DAY, ROUNDS, WARMUP_ROUNDS));
+        lines.add("");
+        lines.add(String.format("| %-40s | %8s | %8s | %-24s | %10s | %8s | %8s |",
+                "State", "Hot", "Archived", "Read", "Statements", "p50 µs", "p99 µs"));
+        lines.add("|------------------------------------------|---------:|---------:|--------------------------|-----------:|---------:|---------:|");
+        lines.addAll(report);
+
+        MarkdownReport.write("tiering-report", "hot-path", lines);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.expensetracker.support;
+
+import com.example.expensetracker.dto.CategoryDto;
+import com.example.expensetracker.dto.ExpenseDto;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads the expenses back out of an application/vnd.expensetracker.compact body the way a client would:
+// dictionary references resolved and date deltas summed (src/main/proto/compact_payload.proto).
+// The other CompactPayload fields are skipped.
+public final class CompactPayloadDecoder {
+
+    private static final int LEN = 2;
+
+    private CompactPayloadDecoder() {
+    }
+
+    public static List<ExpenseDto> expenses(byte[] payload) {
+        Reader reader = new Reader(payload, 0, payload.length);
+        List<CategoryDto> categories = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        List<ExpenseDto> expenses = new ArrayList<>();
+        long day = 0;
+        while (reader.hasMore()) {
+            long key = reader.varint();
+            switch ((int) (key >>> 3)) {
+                case 1 -> categories.add(category(reader.element()));
+                case 2 -> tags.add(reader.string());
+                case 3 -> {
+                    ExpenseDto expense = expense(reader.element(), categories, tags, day);
+                    day = expense.getExpenseDate().toEpochDay();
+                    expenses.add(expense);
+                }
+                default -> reader.skip(key);
+            }
+        }
+        return expenses;
+    }
+
+    private static CategoryDto category(Reader reader) {
+        CategoryDto category = new CategoryDto();
+        while (reader.hasMore()) {
+            long key = reader.varint();
+            switch ((int) (key >>> 3)) {
+                case 1 -> category.setId(reader.varint());
+                case 2 -> category.setName(reader.string());
+                default -> reader.skip(key);
+            }
+        }
+        return category;
+    }
+
+    private static ExpenseDto expense(Reader reader, List<CategoryDto> categories, List<String> tags, long previousDay) {
+        // Fields at their default value are not sent
+        ExpenseDto expense = new ExpenseDto(null, BigDecimal.valueOf(0, 2), null, null, null, null, 0L, new ArrayList<>());
+        long day = previousDay;
+        while (reader.hasMore()) {
+            long key = reader.varint();
+            switch ((int) (key >>> 3)) {
+                case 1 -> expense.setId(reader.varint());
+                case 2 -> expense.setAmount(BigDecimal.valueOf(zigzag(reader.varint()), 2));
+                case 3 -> expense.setDescription(reader.string());
+                case 4 -> day += zigzag(reader.varint());
+                case 5 -> {
+                    CategoryDto category = categories.get((int) reader.varint() - 1);
+                    expense.setCategoryId(category.getId());
+                    expense.setCategoryName(category.getName());
+                }
+                case 6 -> expense.setVersion(reader.varint());
+                case 7 -> expense.getTags().add(tags.get((int) reader.varint() - 1));
+                default -> reader.skip(key);
+            }
+        }
+        expense.setExpenseDate(LocalDate.ofEpochDay(day));
+        return expense;
+    }
+
+    private static long zigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+
+        private Reader(byte[] bytes, int position, int end) {
+            this.bytes = bytes;
+            this.position = position;
+            this.end = end;
+        }
+
+        private boolean hasMore() {
+            return position < end;
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private Reader element() {
+            int length = (int) varint();
+            Reader element = new Reader(bytes, position, position + length);
+            position += length;
+            return element;
+        }
+
+        private String string() {
+            int length = (int) varint();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private void skip(long key) {
+            if ((key & 7) == LEN) {
+                position += (int) varint();
+            } else {
+                varint();
+            }
+        }
+    }
+}
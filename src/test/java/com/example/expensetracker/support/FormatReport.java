@@ -0,0 +1,62 @@
+package com.example.expensetracker.support;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+// Payload size and encoding cost per response format, relative to the first format recorded (JSON), written to
+// target/format-report/<name>.md
+public class FormatReport {
+
+    private static final String DIRECTORY = "format-report";
+
+    private final String name;
+    private final Map<String, Format> formats = new LinkedHashMap<>();
+
+    public FormatReport(String name) {
+        this.name = name;
+    }
+
+    public void record(String format, byte[] payload, long cpuNanos, long wallNanos) {
+        formats.put(format, new Format(payload.length, gzip(payload).length, cpuNanos, wallNanos));
+    }
+
+    public void write(String header) {
+        Format baseline = formats.values().iterator().next();
+
+        List<String> report = new ArrayList<>();
+        report.add("# Response formats: " + name);
+        report.add("");
+        report.add(header);
+        report.add("");
+        report.add(String.format("| %-76s | %9s | %6s | %9s | %6s | %8s | %6s | %8s |",
+                "Format", "Bytes", "%", "Gzipped", "%", "CPU µs", "%", "Wall µs"));
+        report.add("|" + "-".repeat(78) + "|----------:|-------:|----------:|-------:|---------:|-------:|---------:|");
+        formats.forEach((format, f) -> report.add(String.format("| %-76s | %9d | %6.1f | %9d | %6.1f | %8.1f | %6.1f | %8.1f |",
+                format,
+                f.bytes, 100.0 * f.bytes / baseline.bytes,
+                f.gzipped, 100.0 * f.gzipped / baseline.gzipped,
+                f.cpuNanos / 1e3, 100.0 * f.cpuNanos / baseline.cpuNanos,
+                f.wallNanos / 1e3)));
+
+        MarkdownReport.write(DIRECTORY, name, report);
+    }
+
+    private static byte[] gzip(byte[] payload) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private record Format(long bytes, long gzipped, long cpuNanos, long wallNanos) {
+    }
+}
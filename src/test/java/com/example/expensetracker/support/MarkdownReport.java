@@ -0,0 +1,25 @@
+package com.example.expensetracker.support;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Where the benchmark and budget tests leave their markdown reports: target/<directory>/<name>.md
+public final class MarkdownReport {
+
+    private MarkdownReport() {
+        // prevent instantiation
+    }
+
+    public static Path write(String directory, String name, List<String> lines) {
+        try {
+            Path dir = Path.of("target", directory);
+            Files.createDirectories(dir);
+            return Files.write(dir.resolve(name + ".md"), lines);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
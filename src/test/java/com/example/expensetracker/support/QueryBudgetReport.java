@@ -0,0 +1,34 @@
+package com.example.expensetracker.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Per-endpoint statement counts of one test class, written to target/query-report/<name>.md
+public class QueryBudgetReport {
+
+    private static final String DIRECTORY = "query-report";
+
+    private final String name;
+    private final List<String> lines = new ArrayList<>();
+
+    public QueryBudgetReport(String name) {
+        this.name = name;
+    }
+
+    public synchronized void add(String endpoint, int budget, SqlStatementRecorder.SqlStats stats) {
+        lines.add(String.format("| %-55s | %10d | %6d | %8d | %8d |%s",
+                endpoint, stats.statements(), budget, stats.rows(), stats.millis(),
+                stats.statements() > budget ? " OVER BUDGET" : ""));
+    }
+
+    public synchronized void write() {
+        List<String> report = new ArrayList<>();
+        report.add("# SQL statements per call: " + name);
+        report.add("");
+        report.add(String.format("| %-55s | %10s | %6s | %8s | %8s |", "Call", "Statements", "Budget", "Rows", "Time ms"));
+        report.add("|" + "-".repeat(57) + "|-----------:|-------:|---------:|---------:|");
+        report.addAll(lines);
+
+        MarkdownReport.write(DIRECTORY, name, report);
+    }
+}
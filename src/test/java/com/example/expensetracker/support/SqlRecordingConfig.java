@@ -0,0 +1,14 @@
+package com.example.expensetracker.support;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+@TestConfiguration(proxyBeanMethods = false)
+public class SqlRecordingConfig {
+
+    // Static so the post-processor is registered before the DataSource is created
+    @Bean
+    static SqlStatementRecorder sqlStatementRecorder() {
+        return new SqlStatementRecorder();
+    }
+}
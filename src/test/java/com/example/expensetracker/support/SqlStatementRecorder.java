@@ -0,0 +1,127 @@
+package com.example.expensetracker.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Wraps every DataSource bean in a JDBC proxy that counts executed statements, rows read and time
+// spent in the driver while recording is on. Counting is process-wide, not per thread, because a
+// request can hand work to other threads (dashboard sections, async dispatches): measure one call
+// at a time.
+public class SqlStatementRecorder implements BeanPostProcessor {
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+    private final Queue<String> sql = new ConcurrentLinkedQueue<>();
+    private volatile boolean recording;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !Proxy.isProxyClass(bean.getClass())) {
+            return proxy(DataSource.class, dataSource, (target, method, args) -> {
+                Object result = invoke(target, method, args);
+                return result instanceof Connection connection ? proxy(Connection.class, connection, this::onConnection) : result;
+            });
+        }
+        return bean;
+    }
+
+    public void start() {
+        statements.set(0);
+        rows.set(0);
+        nanos.set(0);
+        sql.clear();
+        recording = true;
+    }
+
+    public SqlStats stop() {
+        recording = false;
+        return new SqlStats(statements.get(), rows.get(), nanos.get(), new ArrayList<>(sql));
+    }
+
+    private Object onConnection(Connection connection, Method method, Object[] args) throws Throwable {
+        Object result = invoke(connection, method, args);
+        if (result instanceof Statement statement) {
+            // prepareStatement/prepareCall carry the SQL; plain statements get it on execute
+            String prepared = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            @SuppressWarnings("unchecked")
+            Class<Statement> type = (Class<Statement>) method.getReturnType();
+            return proxy(type, statement, (target, m, a) -> onStatement(target, m, a, prepared));
+        }
+        return result;
+    }
+
+    private Object onStatement(Statement statement, Method method, Object[] args, String prepared) throws Throwable {
+        if (!recording || !method.getName().startsWith("execute")) {
+            Object result = invoke(statement, method, args);
+            return method.getName().equals("getResultSet") ? countingRows(result) : result;
+        }
+        long started = System.nanoTime();
+        try {
+            return countingRows(invoke(statement, method, args));
+        } finally {
+            nanos.addAndGet(System.nanoTime() - started);
+            // A JDBC batch is one round trip and counts as one statement
+            statements.incrementAndGet();
+            sql.add(args != null && args.length > 0 && args[0] instanceof String s ? s : prepared);
+        }
+    }
+
+    private Object countingRows(Object result) {
+        if (!(result instanceof ResultSet resultSet) || !recording) {
+            return result;
+        }
+        return proxy(ResultSet.class, resultSet, (target, method, args) -> {
+            Object value = invoke(target, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(value) && recording) {
+                rows.incrementAndGet();
+            }
+            return value;
+        });
+    }
+
+    // unwrap/isWrapperFor go straight to the target, so pools and drivers can still be unwrapped
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Handler<T> handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> switch (method.getName()) {
+            case "unwrap", "isWrapperFor" -> invoke(target, method, args);
+            case "toString" -> "Recording" + type.getSimpleName() + "[" + target + "]";
+            default -> handler.handle(target, method, args);
+        };
+        return (T) Proxy.newProxyInstance(SqlStatementRecorder.class.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler<T> {
+        Object handle(T target, Method method, Object[] args) throws Throwable;
+    }
+
+    public record SqlStats(int statements, long rows, long nanos, List<String> sql) {
+
+        public long millis() {
+            return nanos / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.expensetracker.support;
+
+import java.util.*;
+
+// Throughput, latency and contention per operation of one concurrent run, written to target/stress-report/<name>.md
+public class StressReport {
+
+    private static final String DIRECTORY = "stress-report";
+
+    public enum Outcome {
+        OK,
+        // Lost an optimistic version check to a concurrent write
+        CONFLICT,
+        // Waited too long for a row lock, or was picked as a deadlock victim
+        LOCK_TIMEOUT,
+        // The row was deleted by another thread first
+        GONE,
+        FAILED
+    }
+
+    private final String name;
+    private final Map<String, Operation> operations = new TreeMap<>();
+    private long startedAt;
+    private long finishedAt;
+
+    public StressReport(String name) {
+        this.name = name;
+    }
+
+    public void start() {
+        startedAt = System.nanoTime();
+    }
+
+    public void finish() {
+        finishedAt = System.nanoTime();
+    }
+
+    public synchronized void record(String operation, long nanos, Outcome outcome) {
+        Operation op = operations.computeIfAbsent(operation, o -> new Operation());
+        op.nanos.add(nanos);
+        op.outcomes[outcome.ordinal()]++;
+    }
+
+    public synchronized long count(Outcome outcome) {
+        return operations.values().stream().mapToLong(op -> op.outcomes[outcome.ordinal()]).sum();
+    }
+
+    public synchronized void write(String header) {
+        long total = operations.values().stream().mapToLong(op -> op.nanos.size()).sum();
+        double seconds = (finishedAt - startedAt) / 1e9;
+
+        List<String> report = new ArrayList<>();
+        report.add("# Concurrent writes: " + name);
+        report.add("");
+        report.add(header);
+        report.add(String.format("%d operations in %.2f s, %.0f ops/s", total, seconds, seconds > 0 ? total / seconds : 0));
+        report.add("");
+        report.add(String.format("| %-28s | %6s | %6s | %8s | %8s | %6s | %6s | %7s | %7s |",
+                "Operation", "Calls", "OK", "Conflict", "Lock t/o", "Gone", "Failed", "p50 ms", "p99 ms"));
+        report.add("|" + "-".repeat(30) + "|-------:|-------:|---------:|---------:|-------:|-------:|--------:|--------:|");
+        operations.forEach((operation, op) -> {
+            long[] sorted = op.nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            report.add(String.format("| %-28s | %6d | %6d | %8d | %8d | %6d | %6d | %7.2f | %7.2f |",
+                    operation, sorted.length,
+                    op.outcomes[Outcome.OK.ordinal()], op.outcomes[Outcome.CONFLICT.ordinal()],
+                    op.outcomes[Outcome.LOCK_TIMEOUT.ordinal()], op.outcomes[Outcome.GONE.ordinal()],
+                    op.outcomes[Outcome.FAILED.ordinal()],
+                    percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6));
+        });
+
+        MarkdownReport.write(DIRECTORY, name, report);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static final class Operation {
+        private final List<Long> nanos = new ArrayList<>();
+        private final long[] outcomes = new long[Outcome.values().length];
+    }
+}